@@ -0,0 +1,90 @@
+package org.example;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 缓存加载基准（原processUserData）
+ * 对比原实现、流水线流式加载和fork/join并行解析，三者输出相同的用户列表
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class CacheLoadBenchmark {
+    @Param({"1000", "10000", "100000", "500000"})
+    public int users;
+
+    private File cacheFile;
+    private TagDictionary tagDictionary;
+    private LongObjectMap<FollowRecord> records;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Setup
+    public void setUp() throws IOException {
+        SyntheticDataset dataset = new SyntheticDataset(users);
+        cacheFile = File.createTempFile("user_data_cache", ".json");
+        try (OutputStream out = Files.newOutputStream(cacheFile.toPath())) {
+            dataset.writeCache(out);
+        }
+        tagDictionary = new TagDictionary();
+        records = dataset.followRecords(tagDictionary);
+    }
+
+    @TearDown
+    public void tearDown() {
+        cacheFile.delete();
+    }
+
+    // 原实现：整体读入List<Map>，逐个convertValue成JsonNode后按路径取值，再合并两个列表
+    @Benchmark
+    public List<UserData> legacyProcessUserData() throws IOException {
+        List<Map<String, Object>> userVidList = objectMapper.readValue(
+                cacheFile, new TypeReference<List<Map<String, Object>>>() {});
+        List<UserData> allUsers = new ArrayList<>();
+        List<UserData> usersWithNoVideos = new ArrayList<>();
+        for (Map<String, Object> entry : userVidList) {
+            long mid = ((Number) entry.get("mid")).longValue();
+            JsonNode userVid = objectMapper.convertValue(entry.get("user_vid"), JsonNode.class);
+            FollowRecord record = records.get(mid);
+            List<String> tags = tagDictionary.names(record.getTagIds());
+            JsonNode archives = userVid.path("data").path("archives");
+            if (archives.size() > 0) {
+                JsonNode first = archives.get(0);
+                allUsers.add(new UserData(mid, record.getName(), tags,
+                        first.path("title").asText(), first.path("pubdate").asLong(), first.path("bvid").asText()));
+            } else {
+                usersWithNoVideos.add(new UserData(mid, record.getName(), tags));
+            }
+        }
+        List<UserData> combined = new ArrayList<>(allUsers);
+        combined.addAll(usersWithNoVideos);
+        return combined;
+    }
+
+    // 流水线：流式读取缓存，decode/enrich阶段并行
+    @Benchmark
+    public List<UserData> pipelineStreaming() throws Exception {
+        return new UserPipeline(tagDictionary, null).run(UserPipeline.cacheSource(cacheFile, records));
+    }
+
+    // fork/join：扫描条目区间后并行解析
+    @Benchmark
+    public List<UserData> forkJoinDecode() throws IOException {
+        return new UserPipeline(tagDictionary, null).decodeCache(cacheFile, records, ForkJoinPool.commonPool());
+    }
+}
@@ -0,0 +1,55 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 导出基准
+ * 每种格式单独导出，以及一次遍历同时导出全部格式
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class ExportBenchmark {
+    @Param({"1000", "10000", "100000", "500000"})
+    public int users;
+
+    @Param({"UID_LIST", "DETAILED_CSV", "JSON_LINES", "CHUNKED_UID_LIST", "ALL"})
+    public String format;
+
+    private List<UserData> userList;
+    private File directory;
+    private EnumSet<ExportFormat> formats;
+
+    @Setup
+    public void setUp() throws IOException {
+        userList = new SyntheticDataset(users).userData();
+        directory = Files.createTempDirectory("export_bench").toFile();
+        formats = "ALL".equals(format) ? EnumSet.allOf(ExportFormat.class) : EnumSet.of(ExportFormat.valueOf(format));
+    }
+
+    @TearDown
+    public void tearDown() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Benchmark
+    public List<String> export() throws IOException {
+        return DataExporter.exportUsers(userList, directory, "导出全部", formats);
+    }
+}
@@ -0,0 +1,64 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 筛选基准
+ * 对比按不活跃天数阈值线性扫描与检索索引，以及索引上的关键字加分组组合查询
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class FilterBenchmark {
+    @Param({"1000", "10000", "100000", "500000"})
+    public int users;
+
+    @Param({"30", "365", "1500"})
+    public int threshold;
+
+    private List<UserData> userList;
+    private UserSearchIndex index;
+    private UserQuery thresholdQuery;
+    private UserQuery combinedQuery;
+
+    @Setup
+    public void setUp() {
+        userList = new SyntheticDataset(users).userData();
+        index = new UserSearchIndex(userList);
+        thresholdQuery = new UserQuery();
+        thresholdQuery.setMinInactiveDays(threshold);
+        combinedQuery = new UserQuery();
+        combinedQuery.setMinInactiveDays(threshold);
+        combinedQuery.setTitleContains("合集1");
+        combinedQuery.setTags("游戏");
+    }
+
+    // 原实现：逐个比较不活跃天数
+    @Benchmark
+    public List<UserData> linearThreshold() {
+        List<UserData> result = new ArrayList<>();
+        for (UserData user : userList) {
+            if (user.isInactive(threshold)) {
+                result.add(user);
+            }
+        }
+        return result;
+    }
+
+    @Benchmark
+    public List<UserData> indexThreshold() {
+        return index.select(thresholdQuery);
+    }
+
+    @Benchmark
+    public List<UserData> indexCombined() {
+        return index.select(combinedQuery);
+    }
+}
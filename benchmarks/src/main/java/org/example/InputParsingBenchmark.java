@@ -0,0 +1,77 @@
+package org.example;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * export_uids.json解析基准
+ * 对比原来的readValue成List<Map>再逐个convertValue，与流式读取为关注记录
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class InputParsingBenchmark {
+    @Param({"1000", "10000", "100000", "500000"})
+    public int users;
+
+    private File file;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Setup
+    public void setUp() throws IOException {
+        file = File.createTempFile("export_uids", ".json");
+        try (OutputStream out = Files.newOutputStream(file.toPath())) {
+            new SyntheticDataset(users).writeFollowList(out);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        file.delete();
+    }
+
+    // 原实现：整体读入List<Map>，再为每个用户调用convertValue并填充两个HashMap
+    @Benchmark
+    public Object readValueAndConvert() throws IOException {
+        List<Map<String, Object>> userData = objectMapper.readValue(
+                file, new TypeReference<List<Map<String, Object>>>() {});
+        Map<Long, String> midToName = new HashMap<>();
+        Map<Long, List<String>> midToTags = new HashMap<>();
+        for (Map<String, Object> user : userData) {
+            long mid = ((Number) user.get("mid")).longValue();
+            midToName.put(mid, (String) user.get("name"));
+            midToTags.put(mid, objectMapper.convertValue(user.get("tag"), new TypeReference<List<String>>() {}));
+        }
+        return midToTags;
+    }
+
+    // 流式读取为关注记录，按用户ID放入LongObjectMap
+    @Benchmark
+    public Object streamingReader() throws Exception {
+        LongObjectMap<FollowRecord> records = new LongObjectMap<>();
+        new FollowListReader(file).read(new FollowSource.Sink() {
+            @Override
+            public void onTotal(int total) {
+            }
+
+            @Override
+            public void accept(FollowRecord record) {
+                records.put(record.getMid(), record);
+            }
+        });
+        return records;
+    }
+}
@@ -0,0 +1,71 @@
+package org.example;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单个视频列表响应的解析基准，每次调用解析一批响应
+ * 对比readTree后按路径取值、流式解析原始字节，以及对已读入的JsonNode做流式遍历
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ResponseDecodeBenchmark {
+    private static final int RESPONSES = 1000;
+
+    private byte[][] responses;
+    private JsonNode[] nodes;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Setup
+    public void setUp() throws IOException {
+        SyntheticDataset dataset = new SyntheticDataset(RESPONSES);
+        responses = new byte[RESPONSES][];
+        nodes = new JsonNode[RESPONSES];
+        for (int i = 0; i < RESPONSES; i++) {
+            responses[i] = dataset.response(i);
+            nodes[i] = objectMapper.readTree(responses[i]);
+        }
+    }
+
+    // 原实现：构建完整的JsonNode树后按路径取第一个视频
+    @Benchmark
+    @OperationsPerInvocation(RESPONSES)
+    public void readTree(Blackhole blackhole) throws IOException {
+        for (byte[] response : responses) {
+            JsonNode archives = objectMapper.readTree(response).path("data").path("archives");
+            if (archives.size() > 0) {
+                JsonNode first = archives.get(0);
+                blackhole.consume(first.path("title").asText());
+                blackhole.consume(first.path("pubdate").asLong());
+                blackhole.consume(first.path("bvid").asText());
+            }
+        }
+    }
+
+    // 流式解析原始字节，只读取第一个视频
+    @Benchmark
+    @OperationsPerInvocation(RESPONSES)
+    public void streamingBytes(Blackhole blackhole) throws IOException {
+        for (byte[] response : responses) {
+            blackhole.consume(ArchiveSummary.decode(response));
+        }
+    }
+
+    // 对已读入的JsonNode做流式遍历（流水线读取旧缓存时的路径）
+    @Benchmark
+    @OperationsPerInvocation(RESPONSES)
+    public void streamingTree(Blackhole blackhole) throws IOException {
+        for (JsonNode node : nodes) {
+            blackhole.consume(ArchiveSummary.decode(node));
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package org.example;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * 合成测试数据生成器
+ * 按用户数量生成与真实数据结构相同的export_uids.json、recArchivesByKeywords响应和user_data_cache.json，
+ * 用于基准测试和性能对比。每个用户的数据只由种子和序号决定，任意顺序、任意次数生成的结果都相同。
+ *
+ * 数据分布：约十分之一的用户没有视频；最新视频距今0到约3000天，偏向近期；
+ * 约三分之一的用户不在任何分组，其余属于1到3个分组；标题中包含引号和逗号以覆盖CSV转义
+ */
+public class SyntheticDataset {
+    public static final int[] SIZES = {1_000, 10_000, 100_000, 500_000}; // 常用规模
+    public static final int ARCHIVES_PER_USER = 3; // 每个响应中的视频数，真实接口最多返回20个
+    private static final long DEFAULT_SEED = 20240601L;
+    private static final String[] TAG_NAMES = {"特别关注", "游戏", "音乐", "科技", "动画", "生活", "知识", "悄悄关注"};
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final int users;
+    private final long seed;
+    private final long now = System.currentTimeMillis() / 1000; // 生成时刻，发布时间相对于此
+
+    public SyntheticDataset(int users) {
+        this(users, DEFAULT_SEED);
+    }
+
+    public SyntheticDataset(int users, long seed) {
+        if (users <= 0) {
+            throw new IllegalArgumentException("用户数量必须大于0");
+        }
+        this.users = users;
+        this.seed = seed;
+    }
+
+    public int size() {
+        return users;
+    }
+
+    // 第i个用户的ID，从一个较大的值开始并带有间隔，接近真实UID的分布
+    public long mid(int i) {
+        return 1_000_000L + i * 37L;
+    }
+
+    private SplittableRandom random(int i) {
+        return new SplittableRandom(seed * 0x9E3779B97F4A7C15L + i);
+    }
+
+    public String name(int i) {
+        return "用户_" + Long.toString(mid(i), 36) + (i % 7 == 0 ? " (官方)" : "");
+    }
+
+    public List<String> tags(int i) {
+        SplittableRandom random = random(i);
+        List<String> tags = new ArrayList<>(3);
+        if (random.nextInt(3) != 0) {
+            int count = 1 + random.nextInt(3);
+            for (int t = 0; t < count; t++) {
+                String tag = TAG_NAMES[random.nextInt(TAG_NAMES.length)];
+                if (!tags.contains(tag)) {
+                    tags.add(tag);
+                }
+            }
+        }
+        return tags;
+    }
+
+    public boolean hasVideos(int i) {
+        return random(~i).nextInt(10) != 0;
+    }
+
+    // 最新视频的发布时间，平方分布使近期更新的用户更多
+    public long pubdate(int i) {
+        SplittableRandom random = random(~i);
+        random.nextInt(10); // 与hasVideos共用序列，跳过其取值
+        double r = random.nextDouble();
+        return now - (long) (r * r * 3000 * 86400);
+    }
+
+    public String title(int i, int archive) {
+        return "【合集" + (i % 13) + "】第" + (archive + 1) + "期, \"测试\"视频 #" + i;
+    }
+
+    public String bvid(int i, int archive) {
+        return "BV1" + Long.toString(mid(i) * 20 + archive, 36);
+    }
+
+    /**
+     * 第i个用户的recArchivesByKeywords响应
+     * @return UTF-8编码的响应内容
+     */
+    public byte[] response(int i) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(512 + ARCHIVES_PER_USER * 400);
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(out)) {
+            writeResponse(generator, i);
+        }
+        return out.toByteArray();
+    }
+
+    private void writeResponse(JsonGenerator generator, int i) throws IOException {
+        int archives = hasVideos(i) ? ARCHIVES_PER_USER : 0;
+        long pubdate = pubdate(i);
+        generator.writeStartObject();
+        generator.writeNumberField("code", 0);
+        generator.writeStringField("message", "0");
+        generator.writeNumberField("ttl", 1);
+        generator.writeObjectFieldStart("data");
+        generator.writeArrayFieldStart("archives");
+        for (int a = 0; a < archives; a++) {
+            generator.writeStartObject();
+            generator.writeNumberField("aid", mid(i) * 20 + a);
+            generator.writeStringField("bvid", bvid(i, a));
+            generator.writeNumberField("ctime", pubdate - a * 86400L);
+            generator.writeNumberField("duration", 60 + (i + a) % 3600);
+            generator.writeBooleanField("enable_vt", false);
+            generator.writeBooleanField("interactive_video", false);
+            generator.writeStringField("pic", "http://i0.hdslb.com/bfs/archive/" + Long.toHexString(mid(i) * 31 + a) + ".jpg");
+            generator.writeNumberField("playback_position", 0);
+            generator.writeNumberField("pubdate", pubdate - a * 86400L);
+            generator.writeObjectFieldStart("stat");
+            generator.writeNumberField("view", (i * 7919L + a) % 1_000_000);
+            generator.writeNumberField("vt", 0);
+            generator.writeEndObject();
+            generator.writeNumberField("state", 0);
+            generator.writeStringField("title", title(i, a));
+            generator.writeNumberField("ugc_pay", 0);
+            generator.writeStringField("vt_display", "");
+            generator.writeEndObject();
+        }
+        generator.writeEndArray();
+        generator.writeObjectFieldStart("page");
+        generator.writeNumberField("num", 1);
+        generator.writeNumberField("size", 20);
+        generator.writeNumberField("total", archives);
+        generator.writeEndObject();
+        generator.writeEndObject();
+        generator.writeEndObject();
+    }
+
+    // 以export_uids.json的格式写出关注列表
+    public void writeFollowList(OutputStream out) throws IOException {
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(out)) {
+            generator.writeStartArray();
+            for (int i = 0; i < users; i++) {
+                generator.writeStartObject();
+                generator.writeNumberField("mid", mid(i));
+                generator.writeStringField("name", name(i));
+                generator.writeArrayFieldStart("tag");
+                for (String tag : tags(i)) {
+                    generator.writeString(tag);
+                }
+                generator.writeEndArray();
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+        }
+    }
+
+    // 以user_data_cache.json的格式写出全部响应
+    public void writeCache(OutputStream out) throws IOException {
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(out)) {
+            generator.writeStartArray();
+            for (int i = 0; i < users; i++) {
+                generator.writeStartObject();
+                generator.writeNumberField("mid", mid(i));
+                generator.writeFieldName("user_vid");
+                writeResponse(generator, i);
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+        }
+    }
+
+    // 关注记录及其分组字典
+    public LongObjectMap<FollowRecord> followRecords(TagDictionary tagDictionary) {
+        LongObjectMap<FollowRecord> records = new LongObjectMap<>(users);
+        for (int i = 0; i < users; i++) {
+            List<String> tags = tags(i);
+            int[] tagIds = new int[tags.size()];
+            for (int t = 0; t < tagIds.length; t++) {
+                tagIds[t] = tagDictionary.intern(tags.get(t));
+            }
+            records.put(mid(i), new FollowRecord(mid(i), name(i), tagIds));
+        }
+        return records;
+    }
+
+    // 处理完成后的用户数据，顺序与加载结果相同：有视频的在前
+    public List<UserData> userData() {
+        List<UserData> withVideos = new ArrayList<>(users);
+        List<UserData> withoutVideos = new ArrayList<>();
+        for (int i = 0; i < users; i++) {
+            if (hasVideos(i)) {
+                withVideos.add(new UserData(mid(i), name(i), tags(i), title(i, 0), pubdate(i), bvid(i, 0)));
+            } else {
+                withoutVideos.add(new UserData(mid(i), name(i), tags(i)));
+            }
+        }
+        withVideos.addAll(withoutVideos);
+        return withVideos;
+    }
+
+    /**
+     * 在目录中生成export_uids.json和user_data_cache.json
+     * @param directory 输出目录，不存在时创建
+     */
+    public void writeTo(File directory) throws IOException {
+        Files.createDirectories(directory.toPath());
+        try (OutputStream out = Files.newOutputStream(new File(directory, "export_uids.json").toPath())) {
+            writeFollowList(out);
+        }
+        try (OutputStream out = Files.newOutputStream(new File(directory, "user_data_cache.json").toPath())) {
+            writeCache(out);
+        }
+    }
+
+    /**
+     * 参数：用户数量 [输出目录，默认当前目录] [种子]
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.out.println("用法: SyntheticDataset 用户数量 [输出目录] [种子]");
+            return;
+        }
+        int users = Integer.parseInt(args[0]);
+        File directory = new File(args.length > 1 ? args[1] : ".");
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : DEFAULT_SEED;
+        new SyntheticDataset(users, seed).writeTo(directory);
+        System.out.println("已生成 " + users + " 个用户的测试数据: " + directory.getAbsolutePath());
+    }
+}
@@ -0,0 +1,79 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 表格数据基准
+ * 包括构建检索索引、按列排序，以及把结果放入表格模型并读取全部单元格
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class TableModelBenchmark {
+    @Param({"1000", "10000", "100000", "500000"})
+    public int users;
+
+    private List<UserData> userList;
+    private UserSearchIndex index;
+    private BitSet all;
+    private UserTableModel tableModel;
+
+    @Setup
+    public void setUp() {
+        userList = new SyntheticDataset(users).userData();
+        index = new UserSearchIndex(userList);
+        index.getSortKeys();
+        all = new BitSet();
+        all.set(0, userList.size());
+        tableModel = new UserTableModel();
+    }
+
+    @Benchmark
+    public UserSearchIndex buildIndex() {
+        return new UserSearchIndex(userList);
+    }
+
+    // 使用预先计算的排序键按不活跃天数排序
+    @Benchmark
+    public int[] sortByInactiveDays() {
+        return index.getSortKeys().sort(all, 3, true);
+    }
+
+    // 使用预先计算的排序键按用户名排序（排序键基于Collator）
+    @Benchmark
+    public int[] sortByUsername() {
+        return index.getSortKeys().sort(all, 1, true);
+    }
+
+    // 对照：比较器排序
+    @Benchmark
+    public List<UserData> comparatorSortByInactiveDays() {
+        List<UserData> sorted = new ArrayList<>(userList);
+        sorted.sort(Comparator.comparingInt(UserData::getInactiveDays));
+        return sorted;
+    }
+
+    // 放入表格模型并读取全部单元格，近似表格首次绘制时的访问量
+    @Benchmark
+    public long populateTableModel() {
+        tableModel.setUsers(new ArrayList<>(userList));
+        long hash = 0;
+        int rows = tableModel.getRowCount();
+        int columns = tableModel.getColumnCount();
+        for (int row = 0; row < rows; row++) {
+            for (int column = 0; column < columns; column++) {
+                hash += tableModel.getValueAt(row, column).hashCode();
+            }
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,38 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * UserData构造基准
+ * 有视频的用户在构造时计算不活跃天数，是加载路径上每个用户都要付出的开销
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class UserDataBenchmark {
+    private final List<String> tags = Arrays.asList("游戏", "音乐");
+    private long mid = 1_000_000L;
+    private long pubdate = System.currentTimeMillis() / 1000 - 400 * 86400L;
+
+    @Benchmark
+    public UserData withVideo() {
+        return new UserData(mid++, "用户", tags, "视频标题", pubdate--, "BV1xx411c7mD");
+    }
+
+    @Benchmark
+    public UserData withoutVideo() {
+        return new UserData(mid++, "用户", tags);
+    }
+
+    @Benchmark
+    public int inactiveDaysSince() {
+        return UserData.inactiveDaysSince(pubdate--);
+    }
+}
@@ -0,0 +1,55 @@
+package org.example;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * 用户视频列表(活跃度)的数据来源
+ * 每个用户的结果都是recArchivesByKeywords格式的响应内容，由ArchiveSummary解码，因此不同来源可以互换。
+ * 来源通过getBatchSize声明一次请求最多能查询多少个用户，抓取线程按该数量分组，每组调用一次fetch；
+ * 响应缓存也按组查询和刷新。
+ *
+ * 实现需要允许抓取线程和响应缓存的后台刷新线程同时调用
+ */
+public interface ActivitySource extends Closeable {
+    /** 选择批量来源的系统属性名，值为每次请求的用户数，未设置或为1时逐个请求 */
+    String BATCH_SIZE_PROPERTY = "bilibili.activity.batch";
+
+    /**
+     * 一次fetch最多查询的用户数，1表示只能逐个查询
+     */
+    int getBatchSize();
+
+    /**
+     * 查询一组用户的视频列表
+     * @param mids 用户ID，数量不超过getBatchSize
+     * @return 用户ID到响应内容的映射；没有返回内容的用户不在其中
+     * @throws IOException 请求失败时，这一组用户都没有结果
+     */
+    LongObjectMap<byte[]> fetch(long[] mids) throws IOException;
+
+    /**
+     * 设置截止时间，之后每个请求的超时缩短到不超过截止时间
+     * @param deadlineMillis System.currentTimeMillis时间点，Long.MAX_VALUE表示不限
+     */
+    void setDeadline(long deadlineMillis);
+
+    // 已发出的请求数，包括失败的请求
+    long getRequestCount();
+
+    /**
+     * 按系统属性创建来源：设置了 bilibili.activity.endpoints 或 bilibili.activity.proxies 时
+     * 把请求分散到多个接口和出口(见EndpointRouter，只设置代理池时接口为keywords)；
+     * 否则 bilibili.activity.batch 大于1时使用批量接口，再否则逐个请求recArchivesByKeywords
+     * @throws IllegalArgumentException 接口列表或代理地址无法识别时
+     */
+    static ActivitySource create() {
+        String endpoints = System.getProperty(EndpointRouter.ENDPOINTS_PROPERTY, "").trim();
+        String proxies = System.getProperty(EndpointRouter.PROXIES_PROPERTY, "").trim();
+        if (!endpoints.isEmpty() || !proxies.isEmpty()) {
+            return EndpointRouter.parse(endpoints.isEmpty() ? "keywords" : endpoints, proxies);
+        }
+        int batchSize = Integer.getInteger(BATCH_SIZE_PROPERTY, 1);
+        return batchSize > 1 ? new BatchArchiveClient(batchSize) : new ArchiveClient();
+    }
+}
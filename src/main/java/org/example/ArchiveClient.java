@@ -0,0 +1,135 @@
+package org.example;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHost;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.util.EntityUtils;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 视频列表请求客户端
+ * 请求recArchivesByKeywords接口并记录请求指标和JFR事件；可以被抓取线程和响应缓存的后台刷新线程同时使用。
+ * 该接口一次只能查询一个用户，作为ActivitySource时批量大小为1
+ */
+public class ArchiveClient implements ActivitySource {
+    private static final int TIMEOUT_MILLIS = 5000;
+
+    private final CloseableHttpClient httpClient;
+    private final AtomicLong requestCount = new AtomicLong(); // 实际发出的请求数
+    private volatile long deadlineMillis = Long.MAX_VALUE; // 请求超时不超过该时间点
+
+    public ArchiveClient() {
+        this(null);
+    }
+
+    /**
+     * @param proxy 经由的HTTP代理，null表示直连
+     */
+    public ArchiveClient(HttpHost proxy) {
+        this.httpClient = createHttpClient(proxy);
+    }
+
+    // 视频列表客户端共用的HTTP客户端配置，连接池大小与并发上限的最大值相同
+    static CloseableHttpClient createHttpClient(HttpHost proxy) {
+        return HttpClients.custom()
+                .setMaxConnPerRoute(ConcurrencyLimiter.MAX_LIMIT)
+                .setMaxConnTotal(ConcurrencyLimiter.MAX_LIMIT)
+                .setProxy(proxy)
+                .build();
+    }
+
+    /**
+     * 设置截止时间，之后每个请求的超时缩短到不超过截止时间
+     * @param deadlineMillis System.currentTimeMillis时间点，Long.MAX_VALUE表示不限
+     */
+    @Override
+    public void setDeadline(long deadlineMillis) {
+        this.deadlineMillis = deadlineMillis;
+    }
+
+    @Override
+    public int getBatchSize() {
+        return 1;
+    }
+
+    @Override
+    public LongObjectMap<byte[]> fetch(long[] mids) throws IOException {
+        LongObjectMap<byte[]> bodies = new LongObjectMap<>(mids.length);
+        for (long mid : mids) {
+            byte[] body = load(mid);
+            if (body != null) {
+                bodies.put(mid, body);
+            }
+        }
+        return bodies;
+    }
+
+    /**
+     * 请求一个用户的视频列表
+     * @param mid 用户ID
+     * @return 响应内容，没有内容时为null
+     * @throws IOException 请求失败时
+     */
+    public byte[] load(long mid) throws IOException {
+        PerfEvents.FetchRequest event = new PerfEvents.FetchRequest();
+        event.mid = mid;
+        event.users = 1;
+        event.begin();
+        long start = System.nanoTime();
+        requestCount.incrementAndGet();
+        try {
+            String url = String.format("%s/x/series/recArchivesByKeywords?mid=%d&keywords=&orderby=senddate", BilibiliApi.baseUrl(), mid);
+            HttpGet request = new HttpGet(url);
+
+            // 设置请求头和超时
+            long remaining = deadlineMillis - System.currentTimeMillis();
+            BilibiliApi.prepare(request, (int) Math.max(1, Math.min(TIMEOUT_MILLIS, remaining)));
+
+            byte[] body = null;
+            try (CloseableHttpResponse response = httpClient.execute(request)) {
+                event.httpStatus = response.getStatusLine().getStatusCode();
+                HttpEntity entity = response.getEntity();
+                if (entity != null) {
+                    body = EntityUtils.toByteArray(entity);
+                }
+            }
+            record(event, start, body != null ? body.length : 0, null);
+            return body;
+        } catch (IOException e) {
+            record(event, start, 0, e.getMessage());
+            throw e;
+        }
+    }
+
+    // 记录一次视频列表请求的指标和JFR事件，BatchArchiveClient也使用
+    static void record(PerfEvents.FetchRequest event, long startNanos, long bytes, String error) {
+        Metrics metrics = Metrics.global();
+        metrics.increment(Metrics.FETCH_REQUESTS);
+        metrics.add(Metrics.FETCH_BYTES, bytes);
+        metrics.recordSince(Metrics.FETCH_LATENCY, startNanos);
+        if (error != null) {
+            metrics.increment(Metrics.FETCH_ERRORS);
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.bytes = bytes;
+            event.error = error;
+            event.commit();
+        }
+    }
+
+    @Override
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    @Override
+    public void close() throws IOException {
+        httpClient.close();
+    }
+}
@@ -0,0 +1,207 @@
+package org.example;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.io.IOException;
+
+/**
+ * 视频列表摘要
+ * 从recArchivesByKeywords接口的响应中提取接口返回码，以及最新一个视频的标题、发布时间和BV号。
+ * 同一次解析中还读取最近几个视频的发布时间，得到更新规律(PostingCadence)，不需要额外请求。
+ * 使用流式解析，第一个视频读取上述字段，之后的视频只读取发布时间，其余内容直接跳过，不构建完整的JsonNode树
+ */
+public class ArchiveSummary {
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final ArchiveSummary NO_VIDEOS = new ArchiveSummary(false, "", 0, "", 0, null);
+
+    private final boolean hasVideos; // 是否有视频
+    private final String title; // 最新视频标题
+    private final long pubdate; // 最新视频发布时间戳(秒)
+    private final String bvid; // 最新视频BV号
+    private final int code; // 接口返回码，0表示成功
+    private final PostingCadence cadence; // 更新规律，少于两个视频时为null
+
+    private ArchiveSummary(boolean hasVideos, String title, long pubdate, String bvid, int code, PostingCadence cadence) {
+        this.hasVideos = hasVideos;
+        this.title = title;
+        this.pubdate = pubdate;
+        this.bvid = bvid;
+        this.code = code;
+        this.cadence = cadence;
+    }
+
+    /**
+     * 解析接口返回的原始JSON
+     * @param json 响应内容，编码由Jackson自动识别
+     * @return 摘要
+     * @throws IOException 内容不是合法JSON时
+     */
+    public static ArchiveSummary decode(byte[] json) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(json)) {
+            return decode(parser);
+        }
+    }
+
+    /**
+     * 解析已读入的JSON树，例如缓存文件中的user_vid
+     * @param node 响应内容
+     * @return 摘要
+     * @throws IOException 解析失败时
+     */
+    public static ArchiveSummary decode(JsonNode node) throws IOException {
+        try (JsonParser parser = node.traverse()) {
+            return decode(parser);
+        }
+    }
+
+    /**
+     * 从解析器的当前位置读取一个响应对象
+     * @param parser 尚未读取响应对象起始标记的解析器
+     * @return 摘要，没有data.archives或列表为空时为没有视频
+     * @throws IOException 解析失败时
+     */
+    public static ArchiveSummary decode(JsonParser parser) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new JsonParseException(parser, "视频列表响应应为JSON对象");
+        }
+        ArchiveSummary summary = NO_VIDEOS;
+        int code = 0;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            if (value == JsonToken.START_OBJECT && "data".equals(field)) {
+                summary = readData(parser);
+            } else if ("code".equals(field)) {
+                code = parser.getValueAsInt(0);
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return code == summary.code ? summary
+                : new ArchiveSummary(summary.hasVideos, summary.title, summary.pubdate, summary.bvid, code, summary.cadence);
+    }
+
+    // 读取data对象，只关心其中的archives
+    private static ArchiveSummary readData(JsonParser parser) throws IOException {
+        ArchiveSummary summary = NO_VIDEOS;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            if (parser.nextToken() == JsonToken.START_ARRAY && "archives".equals(field)) {
+                summary = readArchives(parser);
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return summary;
+    }
+
+    // 读取视频列表，前MAX_PUBDATES个视频的发布时间用于更新规律；
+    // 列表一般按发布时间倒序，但第一个不一定最新(例如置顶视频)，取其中发布时间最大的作为最新视频
+    private static ArchiveSummary readArchives(JsonParser parser) throws IOException {
+        ArchiveSummary summary = NO_VIDEOS;
+        long[] pubdates = new long[PostingCadence.MAX_PUBDATES];
+        int count = 0;
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            if (token == null) {
+                throw new JsonParseException(parser, "视频列表不完整");
+            }
+            if (count == 0 && token != JsonToken.START_OBJECT) {
+                summary = new ArchiveSummary(true, "", 0, "", 0, null);
+                pubdates[count++] = 0;
+            } else if (count < pubdates.length && token == JsonToken.START_OBJECT) {
+                ArchiveSummary archive = readArchive(parser);
+                if (count == 0 || archive.pubdate > summary.pubdate) {
+                    summary = archive;
+                }
+                pubdates[count++] = archive.pubdate;
+            }
+            parser.skipChildren();
+        }
+        PostingCadence cadence = count > 1 ? PostingCadence.of(pubdates, count) : null;
+        return cadence == null ? summary
+                : new ArchiveSummary(true, summary.title, summary.pubdate, summary.bvid, 0, cadence);
+    }
+
+    // 读取单个视频对象的标题、发布时间和BV号
+    private static ArchiveSummary readArchive(JsonParser parser) throws IOException {
+        String title = "";
+        long pubdate = 0;
+        String bvid = "";
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            switch (field) {
+                case "title":
+                    title = value.isScalarValue() ? parser.getValueAsString("") : "";
+                    break;
+                case "pubdate":
+                    pubdate = parser.getValueAsLong(0);
+                    break;
+                case "bvid":
+                    bvid = value.isScalarValue() ? parser.getValueAsString("") : "";
+                    break;
+                default:
+                    break;
+            }
+            parser.skipChildren();
+        }
+        return new ArchiveSummary(true, title, pubdate, bvid, 0, null);
+    }
+
+    public boolean hasVideos() {
+        return hasVideos;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public long getPubdate() {
+        return pubdate;
+    }
+
+    public String getBvid() {
+        return bvid;
+    }
+
+    public int getCode() {
+        return code;
+    }
+
+    // 更新规律，少于两个视频时为null
+    public PostingCadence getCadence() {
+        return cadence;
+    }
+
+    /**
+     * 是否为接口返回限流错误码的响应，这样的内容不能当作用户数据
+     * @param json 响应内容
+     * @return 是否被限流，无法解析的内容返回false(由流水线丢弃)
+     */
+    public static boolean isThrottled(byte[] json) {
+        return Boolean.TRUE.equals(throttled(json));
+    }
+
+    /**
+     * 能否当作用户数据：可以解析且不是限流错误码，代理返回的错误页等都不算
+     * @param json 响应内容
+     * @return 是否可用
+     */
+    public static boolean isUsable(byte[] json) {
+        return Boolean.FALSE.equals(throttled(json));
+    }
+
+    // 是否被限流，无法解析时为null
+    private static Boolean throttled(byte[] json) {
+        try {
+            return BilibiliApi.isThrottled(decode(json).getCode());
+        } catch (IOException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package org.example;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHost;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.util.EntityUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 批量视频列表客户端
+ * 一次请求查询一组用户：GET /x/series/recArchivesBatch?mids=1,2,3，
+ * 响应为 {"code":0,"data":{"items":[{"mid":1,"archives":[...]},...]}}。
+ * B站官方接口没有批量查询，该接口由自建的聚合服务或测试用的LocalApiStub提供，API地址同样取自 bilibili.api.base。
+ *
+ * 响应按用户拆分成recArchivesByKeywords格式的内容，只复制各用户的archives数组，解码和缓存与逐个请求时相同；
+ * 整个请求返回错误码(例如被风控)时，组内每个用户都得到这份错误响应
+ */
+public class BatchArchiveClient implements ActivitySource {
+    public static final int MAX_BATCH_SIZE = 50; // 接口一次最多查询的用户数
+    private static final int TIMEOUT_MILLIS = 10000;
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final int batchSize;
+    private final CloseableHttpClient httpClient;
+    private final AtomicLong requestCount = new AtomicLong();
+    private volatile long deadlineMillis = Long.MAX_VALUE;
+
+    public BatchArchiveClient() {
+        this(MAX_BATCH_SIZE);
+    }
+
+    /**
+     * @param batchSize 每次请求的用户数，1到50
+     */
+    public BatchArchiveClient(int batchSize) {
+        this(batchSize, null);
+    }
+
+    /**
+     * @param batchSize 每次请求的用户数，1到50
+     * @param proxy 经由的HTTP代理，null表示直连
+     */
+    public BatchArchiveClient(int batchSize, HttpHost proxy) {
+        if (batchSize < 1 || batchSize > MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("批量大小应在1到" + MAX_BATCH_SIZE + "之间");
+        }
+        this.batchSize = batchSize;
+        this.httpClient = ArchiveClient.createHttpClient(proxy);
+    }
+
+    @Override
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    @Override
+    public void setDeadline(long deadlineMillis) {
+        this.deadlineMillis = deadlineMillis;
+    }
+
+    @Override
+    public LongObjectMap<byte[]> fetch(long[] mids) throws IOException {
+        if (mids.length > batchSize) {
+            throw new IllegalArgumentException("一次最多查询" + batchSize + "个用户");
+        }
+        LongObjectMap<byte[]> bodies = new LongObjectMap<>(mids.length);
+        if (mids.length == 0) {
+            return bodies;
+        }
+        PerfEvents.FetchRequest event = new PerfEvents.FetchRequest();
+        event.mid = mids[0];
+        event.users = mids.length;
+        event.begin();
+        long start = System.nanoTime();
+        requestCount.incrementAndGet();
+        try {
+            StringBuilder url = new StringBuilder(BilibiliApi.baseUrl()).append("/x/series/recArchivesBatch?mids=");
+            for (int i = 0; i < mids.length; i++) {
+                if (i > 0) {
+                    url.append(',');
+                }
+                url.append(mids[i]);
+            }
+            HttpGet request = new HttpGet(url.toString());
+            long remaining = deadlineMillis - System.currentTimeMillis();
+            BilibiliApi.prepare(request, (int) Math.max(1, Math.min(TIMEOUT_MILLIS, remaining)));
+
+            byte[] body = null;
+            try (CloseableHttpResponse response = httpClient.execute(request)) {
+                event.httpStatus = response.getStatusLine().getStatusCode();
+                HttpEntity entity = response.getEntity();
+                if (entity != null) {
+                    body = EntityUtils.toByteArray(entity);
+                }
+            }
+            if (body != null) {
+                split(body, mids, bodies);
+            }
+            ArchiveClient.record(event, start, body != null ? body.length : 0, null);
+            return bodies;
+        } catch (IOException e) {
+            ArchiveClient.record(event, start, 0, e.getMessage());
+            throw e;
+        }
+    }
+
+    /**
+     * 把批量响应拆分成每个用户的响应
+     * @param body 批量响应
+     * @param mids 本次请求的用户，整体返回错误码时都使用原响应
+     * @param bodies 写入结果
+     * @throws IOException 响应不是合法JSON时
+     */
+    static void split(byte[] body, long[] mids, LongObjectMap<byte[]> bodies) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new JsonParseException(parser, "批量响应应为JSON对象");
+            }
+            int code = 0;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                if ("code".equals(field)) {
+                    code = parser.getValueAsInt(0);
+                } else if ("data".equals(field) && value == JsonToken.START_OBJECT) {
+                    readData(parser, bodies);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            if (code != 0) {
+                bodies.clear();
+                for (long mid : mids) {
+                    bodies.put(mid, body);
+                }
+            }
+        }
+    }
+
+    private static void readData(JsonParser parser, LongObjectMap<byte[]> bodies) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            if ("items".equals(field) && value == JsonToken.START_ARRAY) {
+                while (parser.nextToken() == JsonToken.START_OBJECT) {
+                    readItem(parser, bodies);
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    // 一个用户：mid、可选的code和archives数组，字段顺序不限
+    private static void readItem(JsonParser parser, LongObjectMap<byte[]> bodies) throws IOException {
+        long mid = -1;
+        int code = 0;
+        ByteArrayOutputStream archives = new ByteArrayOutputStream();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            if ("mid".equals(field)) {
+                mid = parser.getValueAsLong(-1);
+            } else if ("code".equals(field)) {
+                code = parser.getValueAsInt(0);
+            } else if ("archives".equals(field) && value == JsonToken.START_ARRAY) {
+                try (JsonGenerator generator = JSON_FACTORY.createGenerator(archives)) {
+                    generator.copyCurrentStructure(parser);
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+        if (mid < 0) {
+            return;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(archives.size() + 64);
+        out.write(("{\"code\":" + code + ",\"message\":\"0\",\"data\":{\"archives\":").getBytes(StandardCharsets.UTF_8));
+        if (archives.size() > 0) {
+            archives.writeTo(out);
+        } else {
+            out.write('[');
+            out.write(']');
+        }
+        out.write('}');
+        out.write('}');
+        bodies.put(mid, out.toByteArray());
+    }
+
+    @Override
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    @Override
+    public void close() throws IOException {
+        httpClient.close();
+    }
+}
@@ -0,0 +1,88 @@
+package org.example;
+
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpRequestBase;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * B站API公共配置
+ * 统一管理请求头、超时设置和API地址；API地址可通过系统属性 bilibili.api.base 指向本地桩服务（见测试代码中的 LocalApiStub）
+ */
+public class BilibiliApi {
+    /** 默认API地址 */
+    public static final String DEFAULT_BASE_URL = "https://api.bilibili.com";
+    /** 覆盖API地址的系统属性名 */
+    public static final String BASE_URL_PROPERTY = "bilibili.api.base";
+
+    // B站API请求头
+    private static final Map<String, String> HEADERS = new HashMap<>();
+    static {
+        HEADERS.put("authority", "api.vc.bilibili.com");
+        HEADERS.put("accept", "application/json, text/plain, */*");
+        HEADERS.put("accept-language", "zh-CN,zh;q=0.9,en;q=0.8,en-GB;q=0.7,en-US;q=0.6");
+        HEADERS.put("content-type", "application/x-www-form-urlencoded");
+        HEADERS.put("origin", "https://message.bilibili.com");
+        HEADERS.put("referer", "https://message.bilibili.com/");
+        HEADERS.put("sec-ch-ua", "\"Chromium\";v=\"116\", \"Not)A;Brand\";v=\"24\", \"Microsoft Edge\";v=\"116\"");
+        HEADERS.put("sec-ch-ua-mobile", "?0");
+        HEADERS.put("sec-ch-ua-platform", "\"Windows\"");
+        HEADERS.put("sec-fetch-dest", "empty");
+        HEADERS.put("sec-fetch-mode", "cors");
+        HEADERS.put("sec-fetch-site", "same-site");
+        HEADERS.put("user-agent", "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/116.0.0.0 Safari/537.36 Edg/116.0.1938.81");
+    }
+
+    private BilibiliApi() {
+    }
+
+    // 当前使用的API地址，末尾不带斜杠
+    public static String baseUrl() {
+        String base = System.getProperty(BASE_URL_PROPERTY, DEFAULT_BASE_URL).trim();
+        return base.endsWith("/") ? base.substring(0, base.length() - 1) : base;
+    }
+
+    /**
+     * 为请求设置通用请求头和超时
+     * @param request HTTP请求
+     * @param timeoutMillis 连接和读取超时（毫秒）
+     */
+    public static void prepare(HttpRequestBase request, int timeoutMillis) {
+        for (Map.Entry<String, String> entry : HEADERS.entrySet()) {
+            request.setHeader(entry.getKey(), entry.getValue());
+        }
+        request.setConfig(RequestConfig.custom()
+                .setConnectTimeout(timeoutMillis)
+                .setSocketTimeout(timeoutMillis)
+                .build());
+    }
+
+    /**
+     * 判断返回码是否表示请求被限流（-412 请求被拦截，-509 请求过于频繁，-799 请求过于频繁）
+     * @param code 返回码
+     * @return 是否被限流，被限流的请求可以稍后重试
+     */
+    public static boolean isThrottled(int code) {
+        return code == -412 || code == -509 || code == -799;
+    }
+
+    /**
+     * 从Cookie字符串中取出指定项的值
+     * @param cookie 形如 "SESSDATA=xxx; bili_jct=yyy" 的Cookie
+     * @param name 项名称
+     * @return 值，不存在时返回空字符串
+     */
+    public static String cookieValue(String cookie, String name) {
+        if (cookie == null) {
+            return "";
+        }
+        for (String part : cookie.split(";")) {
+            int eq = part.indexOf('=');
+            if (eq > 0 && part.substring(0, eq).trim().equals(name)) {
+                return part.substring(eq + 1).trim();
+            }
+        }
+        return "";
+    }
+}
@@ -0,0 +1,508 @@
+package org.example;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonStreamContext;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * 内存受限的关注列表与视频数据连接
+ * 用于汇总大量账号、关注用户达到数百万而结果无法全部放在内存中的情况：
+ * 关注记录和缓存文件中的视频数据分别按用户ID外部排序(SpillSorter)，再归并连接，
+ * 连接出的用户逐个交给下游、不在内存中保留，堆内存占用由设置的上限决定，与用户数无关。
+ *
+ * 与图形界面的处理不同，结果按用户ID升序，只包含关注列表和缓存中都有的用户；
+ * 多个账号时与MultiAccountSource一样，以关注该用户的账号名称作为分组
+ */
+public class BoundedJoin {
+    public static final long DEFAULT_MEMORY_BYTES = 64L * 1024 * 1024;
+    private static final int ARENA_BYTES = 1024 * 1024; // 已交出的用户的字符串累计到该大小后换新的存储区
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final List<FollowSource> accounts;
+    private final List<String> labels; // 账号名称，只有一个账号时不使用
+    private final List<File> cacheFiles;
+    private long memoryBytes = DEFAULT_MEMORY_BYTES;
+    private File tempDirectory = new File(System.getProperty("java.io.tmpdir"));
+    private int inactiveDays; // 0表示不按不活跃天数筛选
+
+    /**
+     * @param accounts 各账号的关注列表来源
+     * @param labels 各账号的名称，与accounts一一对应且不能重复
+     * @param cacheFiles 缓存文件，同一用户在多个文件中出现时以后面的文件为准
+     */
+    public BoundedJoin(List<FollowSource> accounts, List<String> labels, List<File> cacheFiles) {
+        if (accounts == null || accounts.isEmpty()) {
+            throw new IllegalArgumentException("至少需要一个账号");
+        }
+        if (labels == null || labels.size() != accounts.size()) {
+            throw new IllegalArgumentException("账号名称数量与账号数量不一致");
+        }
+        if (labels.stream().distinct().count() != labels.size()) {
+            throw new IllegalArgumentException("账号名称不能重复");
+        }
+        if (cacheFiles == null || cacheFiles.isEmpty()) {
+            throw new IllegalArgumentException("至少需要一个缓存文件");
+        }
+        this.accounts = new ArrayList<>(accounts);
+        this.labels = new ArrayList<>(labels);
+        this.cacheFiles = new ArrayList<>(cacheFiles);
+    }
+
+    /**
+     * 设置排序和归并可使用的内存，关注记录和视频数据各占一半
+     * @param memoryBytes 字节数
+     */
+    public void setMemoryBytes(long memoryBytes) {
+        if (memoryBytes < 4L * SpillSorter.READ_BUFFER_SIZE) {
+            throw new IllegalArgumentException("内存上限过小");
+        }
+        this.memoryBytes = memoryBytes;
+    }
+
+    // 有序段写入的目录，默认为系统临时目录
+    public void setTempDirectory(File tempDirectory) {
+        this.tempDirectory = tempDirectory;
+    }
+
+    /**
+     * 只输出不活跃天数达到阈值的用户
+     * @param inactiveDays 不活跃天数阈值，0表示输出全部用户
+     */
+    public void setInactiveDays(int inactiveDays) {
+        if (inactiveDays < 0) {
+            throw new IllegalArgumentException("不活跃天数不能为负数");
+        }
+        this.inactiveDays = inactiveDays;
+    }
+
+    /**
+     * 读取全部关注列表和缓存文件并排序落盘，返回按用户ID升序逐个连接的游标
+     * @return 连接结果，使用完毕后需要关闭以删除临时文件
+     * @throws Exception 读取失败时
+     */
+    public Cursor open() throws Exception {
+        File directory = Files.createTempDirectory(tempDirectory.toPath(), "bounded-join").toFile();
+        SpillSorter follows = new SpillSorter(directory, memoryBytes / 2);
+        SpillSorter activities = new SpillSorter(directory, memoryBytes / 2);
+        boolean opened = false;
+        try {
+            for (int i = 0; i < accounts.size(); i++) {
+                readFollows(i, follows);
+            }
+            long invalid = 0;
+            for (File cacheFile : cacheFiles) {
+                invalid += readActivities(cacheFile, activities);
+            }
+            Cursor cursor = new Cursor(directory, follows, activities, invalid);
+            opened = true;
+            return cursor;
+        } finally {
+            if (!opened) {
+                follows.close();
+                activities.close();
+                directory.delete();
+            }
+        }
+    }
+
+    // 关注记录的内容：[账号序号][用户名][分组数][分组名...]，多个账号时分组由账号名称决定，不再保存
+    private void readFollows(int account, SpillSorter follows) throws Exception {
+        FollowSource source = accounts.get(account);
+        boolean withTags = accounts.size() == 1;
+        source.read(new FollowSource.Sink() {
+            @Override
+            public void onTotal(int total) {
+            }
+
+            @Override
+            public void accept(FollowRecord record) {
+                List<String> tags = withTags ? source.getTagDictionary().names(record.getTagIds()) : null;
+                try {
+                    ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+                    DataOutputStream out = new DataOutputStream(bytes);
+                    out.writeInt(account);
+                    writeUtf8(out, record.getName());
+                    out.writeInt(tags != null ? tags.size() : 0);
+                    if (tags != null) {
+                        for (String tag : tags) {
+                            writeUtf8(out, tag);
+                        }
+                    }
+                    synchronized (follows) {
+                        follows.add(record.getMid(), bytes.toByteArray());
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        });
+    }
+
+    // 视频数据的内容：[是否有视频][发布时间][标题][BV号][更新间隔个数][各间隔(秒)]；与流式加载缓存相同，逐条解析user_vid
+    // 与流水线一样，user_vid无法解析的条目跳过并计数，不中断整个连接；返回跳过的条目数
+    private static int readActivities(File cacheFile, SpillSorter activities) throws IOException {
+        int invalid = 0;
+        try (JsonParser parser = JSON_FACTORY.createParser(cacheFile)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IOException("缓存文件格式错误：应为数组");
+            }
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                long mid = 0;
+                ArchiveSummary summary = null;
+                boolean valid = true;
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.getCurrentName();
+                    if ("user_vid".equals(field)) {
+                        JsonStreamContext entry = parser.getParsingContext();
+                        try {
+                            summary = ArchiveSummary.decode(parser);
+                        } catch (JsonProcessingException e) {
+                            System.err.println("解析缓存条目时出错: " + e.getOriginalMessage());
+                            valid = false;
+                            skipTo(parser, entry);
+                        }
+                    } else {
+                        parser.nextToken();
+                        if ("mid".equals(field)) {
+                            mid = parser.getValueAsLong();
+                        } else {
+                            parser.skipChildren();
+                        }
+                    }
+                }
+                if (!valid) {
+                    invalid++;
+                    Metrics.global().increment(Metrics.DECODE_ERRORS);
+                    continue;
+                }
+                if (summary == null) {
+                    continue;
+                }
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+                DataOutputStream out = new DataOutputStream(bytes);
+                out.writeBoolean(summary.hasVideos());
+                out.writeLong(summary.getPubdate());
+                writeUtf8(out, summary.hasVideos() ? summary.getTitle() : null);
+                writeUtf8(out, summary.hasVideos() ? summary.getBvid() : null);
+                int[] gaps = summary.getCadence() != null ? summary.getCadence().getGaps() : new int[0];
+                out.writeByte(gaps.length);
+                for (int gap : gaps) {
+                    out.writeInt(gap);
+                }
+                activities.add(mid, bytes.toByteArray());
+            }
+        }
+        return invalid;
+    }
+
+    // 解析出错后向后读取，直到回到条目对象这一层；文件本身不是合法JSON时继续抛出异常
+    private static void skipTo(JsonParser parser, JsonStreamContext context) throws IOException {
+        while (parser.getParsingContext() != context) {
+            if (parser.nextToken() == null) {
+                throw new IOException("缓存文件不完整");
+            }
+        }
+    }
+
+    // 长度为-1表示null
+    private static void writeUtf8(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * 连接结果
+     * 归并两个有序序列，每次只在内存中保留当前的一个用户；读写临时文件出错时next抛出UncheckedIOException
+     */
+    public final class Cursor implements Iterator<UserData>, Closeable {
+        private final File directory;
+        private final SpillSorter follows;
+        private final SpillSorter activities;
+        private final SpillSorter.Cursor followCursor;
+        private final SpillSorter.Cursor activityCursor;
+        private final Map<String, String> tagNames = new HashMap<>(); // 分组名只保留一份
+        private boolean followValid; // followCursor当前有记录
+        private boolean activityValid;
+        private Utf8Arena arena = new Utf8Arena();
+        private UserData pending; // hasNext已取出但尚未返回的用户
+        private long distinctFollows; // 去重后的关注用户数
+        private long joined; // 连接成功的用户数，包括未通过筛选的
+        private long unmatched; // 缓存中没有视频数据的关注用户
+        private long orphans; // 关注列表中没有的缓存条目
+        private final long invalid; // 视频数据无法解析而跳过的缓存条目
+
+        private Cursor(File directory, SpillSorter follows, SpillSorter activities, long invalid) throws IOException {
+            this.directory = directory;
+            this.invalid = invalid;
+            this.follows = follows;
+            this.activities = activities;
+            this.followCursor = follows.sorted();
+            this.activityCursor = activities.sorted();
+            followValid = followCursor.next();
+            activityValid = activityCursor.next();
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (pending == null) {
+                try {
+                    pending = advance();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            return pending != null;
+        }
+
+        @Override
+        public UserData next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            UserData user = pending;
+            pending = null;
+            return user;
+        }
+
+        // 找到下一个连接成功且通过筛选的用户，没有时返回null
+        private UserData advance() throws IOException {
+            while (followValid) {
+                long mid = followCursor.mid();
+                ByteBuffer first = ByteBuffer.wrap(followCursor.payload());
+                List<String> accountTags = accounts.size() > 1 ? new ArrayList<>(1) : null;
+                // 同一用户的关注记录按账号顺序相邻，用户名取第一条
+                do {
+                    if (accountTags != null) {
+                        String label = labels.get(ByteBuffer.wrap(followCursor.payload()).getInt());
+                        if (!accountTags.contains(label)) {
+                            accountTags.add(label);
+                        }
+                    }
+                    followValid = followCursor.next();
+                } while (followValid && followCursor.mid() == mid);
+                distinctFollows++;
+
+                while (activityValid && activityCursor.mid() < mid) {
+                    orphans++;
+                    activityValid = activityCursor.next();
+                }
+                byte[] activity = null;
+                while (activityValid && activityCursor.mid() == mid) {
+                    activity = activityCursor.payload(); // 后面的缓存文件优先
+                    activityValid = activityCursor.next();
+                }
+                if (activity == null) {
+                    unmatched++;
+                    continue;
+                }
+
+                joined++;
+                UserData user = toUserData(mid, first, accountTags, ByteBuffer.wrap(activity));
+                if (inactiveDays == 0 || user.isInactive(inactiveDays)) {
+                    return user;
+                }
+            }
+            while (activityValid) {
+                orphans++;
+                activityValid = activityCursor.next();
+            }
+            return null;
+        }
+
+        private UserData toUserData(long mid, ByteBuffer follow, List<String> accountTags, ByteBuffer activity) {
+            if (arena.size() >= ARENA_BYTES) {
+                arena = new Utf8Arena(); // 之前交出的用户仍引用原来的存储区
+            }
+            follow.getInt(); // 账号序号
+            long name = readUtf8(follow);
+            int tagCount = follow.getInt();
+            List<String> tags = accountTags;
+            if (tags == null) {
+                tags = new ArrayList<>(tagCount);
+                for (int i = 0; i < tagCount; i++) {
+                    byte[] bytes = new byte[follow.getInt()];
+                    follow.get(bytes);
+                    String tag = new String(bytes, StandardCharsets.UTF_8);
+                    tags.add(tagNames.computeIfAbsent(tag, t -> t));
+                }
+            }
+
+            boolean hasVideos = activity.get() != 0;
+            long pubdate = activity.getLong();
+            if (!hasVideos) {
+                return new UserData(mid, arena, name, tags);
+            }
+            long title = readUtf8(activity);
+            UserData user = new UserData(mid, arena, name, tags, title, pubdate, readUtf8(activity));
+            int[] gaps = new int[activity.get()];
+            for (int i = 0; i < gaps.length; i++) {
+                gaps[i] = activity.getInt();
+            }
+            user.setCadence(PostingCadence.ofGaps(gaps));
+            return user;
+        }
+
+        // 把UTF-8字节原样存入存储区
+        private long readUtf8(ByteBuffer buffer) {
+            int length = buffer.getInt();
+            return length < 0 ? Utf8Arena.NULL : arena.add(buffer, length);
+        }
+
+        public long getDistinctFollows() {
+            return distinctFollows;
+        }
+
+        public long getJoined() {
+            return joined;
+        }
+
+        public long getUnmatched() {
+            return unmatched;
+        }
+
+        public long getOrphans() {
+            return orphans;
+        }
+
+        public long getInvalid() {
+            return invalid;
+        }
+
+        // 关注记录和视频数据写入磁盘的字节数，0表示全部在内存中完成
+        public long getSpilledBytes() {
+            return follows.getSpilledBytes() + activities.getSpilledBytes();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                followCursor.close();
+                activityCursor.close();
+            } finally {
+                follows.close();
+                activities.close();
+                directory.delete();
+            }
+        }
+    }
+
+    /**
+     * 命令行入口，不启动图形界面
+     * 参数：--follow 关注列表(export_uids.json，可重复，多个时按账号处理，账号名称为文件名)
+     *      --cache 缓存文件(可重复)
+     *      [--days 不活跃天数，默认0即不筛选] [--type 导出类型，默认导出全部]
+     *      [--format 导出格式，逗号分隔的UID_LIST/DETAILED_CSV/JSON_LINES/CHUNKED_UID_LIST，默认UID_LIST]
+     *      [--memory-mb 内存上限，默认64] [--temp 临时目录] [--out 导出目录，默认当前目录]
+     * 堆内存(-Xmx)应比内存上限多留出几十MB给解析和导出
+     */
+    public static void main(String[] args) {
+        List<FollowSource> accounts = new ArrayList<>();
+        List<String> labels = new ArrayList<>();
+        List<File> cacheFiles = new ArrayList<>();
+        int days = 0;
+        String exportType = "导出全部";
+        Set<ExportFormat> formats = EnumSet.of(ExportFormat.UID_LIST);
+        long memoryBytes = DEFAULT_MEMORY_BYTES;
+        File tempDirectory = null;
+        File outputDirectory = new File(System.getProperty("user.dir"));
+        BoundedJoin join;
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String option = args[i];
+                if (i + 1 >= args.length) {
+                    throw new IllegalArgumentException("参数缺少值: " + option);
+                }
+                String value = args[++i];
+                switch (option) {
+                    case "--follow": {
+                        File file = new File(value);
+                        String label = file.getName().replaceFirst("\\.json$", "");
+                        accounts.add(new FollowListReader(file));
+                        labels.add(labels.contains(label) ? label + "_" + (labels.size() + 1) : label);
+                        break;
+                    }
+                    case "--cache":
+                        cacheFiles.add(new File(value));
+                        break;
+                    case "--days":
+                        days = Integer.parseInt(value);
+                        break;
+                    case "--type":
+                        exportType = value;
+                        break;
+                    case "--format":
+                        formats = EnumSet.noneOf(ExportFormat.class);
+                        for (String name : value.split(",")) {
+                            formats.add(ExportFormat.valueOf(name.trim()));
+                        }
+                        break;
+                    case "--memory-mb":
+                        memoryBytes = Long.parseLong(value) * 1024 * 1024;
+                        break;
+                    case "--temp":
+                        tempDirectory = new File(value);
+                        break;
+                    case "--out":
+                        outputDirectory = new File(value);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("未知参数: " + option);
+                }
+            }
+
+            join = new BoundedJoin(accounts, labels, cacheFiles);
+            join.setMemoryBytes(memoryBytes);
+            join.setInactiveDays(days);
+            if (tempDirectory != null) {
+                join.setTempDirectory(tempDirectory);
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println("错误: " + e.getMessage());
+            System.err.println("用法: BoundedJoin --follow export_uids.json [--follow ...] --cache user_data_cache.json [--cache ...] "
+                    + "[--days 天数] [--type 导出类型] [--format UID_LIST,DETAILED_CSV,JSON_LINES,CHUNKED_UID_LIST] "
+                    + "[--memory-mb 64] [--temp 目录] [--out 目录]");
+            System.exit(2);
+            return;
+        }
+
+        try {
+            long start = System.nanoTime();
+            try (Cursor cursor = join.open()) {
+                List<String> fileNames = DataExporter.exportStream(cursor, outputDirectory, exportType, days, formats);
+                System.out.println("已导出: " + String.join(", ", fileNames));
+                System.out.printf("关注用户 %d，有视频数据 %d，缺少视频数据 %d，不在关注列表中的缓存条目 %d，无法解析的缓存条目 %d，临时文件 %.1fMB，用时 %.1f秒%n",
+                        cursor.getDistinctFollows(), cursor.getJoined(), cursor.getUnmatched(), cursor.getOrphans(), cursor.getInvalid(),
+                        cursor.getSpilledBytes() / (1024.0 * 1024.0), (System.nanoTime() - start) / 1e9);
+            }
+        } catch (Exception e) {
+            System.err.println("处理失败: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+}
@@ -1,137 +1,112 @@
 package org.example;
 
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-
 import javax.swing.*;
 import java.io.File;
-import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * 缓存加载任务类
  * 从缓存文件中加载用户数据，避免重复请求B站API
  */
 public class CacheLoadingTask extends SwingWorker<List<UserData>, Void> {
+    private static final long MAX_PARALLEL_FILE_SIZE = Integer.MAX_VALUE - 8; // 并行模式把文件整个读入字节数组，超过数组上限时改用流水线
+    
     private final File cacheFile;
-    private final int inactiveDays;
+    private final File exportUidsFile; // 提供用户名和分组的关注列表文件，可为null
     private final JLabel statusLabel;
-    private final ObjectMapper objectMapper;
+    private final InactivityHistogram histogram; // 加载过程中实时更新的分布直方图，可为null
+    private boolean parallelDecode = true; // 是否使用fork/join并行解析整个缓存文件
+    
+    public CacheLoadingTask(File cacheFile, JLabel statusLabel) {
+        this(cacheFile, statusLabel, null);
+    }
     
-    public CacheLoadingTask(File cacheFile, int inactiveDays, JLabel statusLabel) {
+    public CacheLoadingTask(File cacheFile, JLabel statusLabel, InactivityHistogram histogram) {
+        this(cacheFile, findExportUidsFile(cacheFile), statusLabel, histogram);
+    }
+    
+    /**
+     * @param exportUidsFile export_uids.json文件，应在创建任务前（在事件分发线程上）确定，
+     *                       为null时任务失败；后台线程不再弹出文件选择框
+     */
+    public CacheLoadingTask(File cacheFile, File exportUidsFile, JLabel statusLabel, InactivityHistogram histogram) {
         this.cacheFile = cacheFile;
-        this.inactiveDays = inactiveDays;
+        this.exportUidsFile = exportUidsFile;
         this.statusLabel = statusLabel;
-        this.objectMapper = new ObjectMapper();
+        this.histogram = histogram;
+    }
+    
+    /**
+     * 设置解析方式：并行模式把文件读入内存，扫描出条目区间后在ForkJoinPool中并行解析；
+     * 关闭时通过流水线边读边解析，内存占用更低
+     * @param parallelDecode 是否并行解析
+     */
+    public void setParallelDecode(boolean parallelDecode) {
+        this.parallelDecode = parallelDecode;
+    }
+    
+    /**
+     * 查找与缓存文件配套的export_uids.json
+     * 首先在缓存文件所在目录查找，其次在当前目录查找
+     * @param cacheFile 缓存文件
+     * @return 找到的文件，找不到时返回null
+     */
+    public static File findExportUidsFile(File cacheFile) {
+        File exportUidsFile = new File(cacheFile.getAbsoluteFile().getParentFile(), "export_uids.json");
+        if (exportUidsFile.exists()) {
+            return exportUidsFile;
+        }
+        exportUidsFile = new File("export_uids.json");
+        return exportUidsFile.exists() ? exportUidsFile : null;
     }
     
     @Override
     protected List<UserData> doInBackground() throws Exception {
         statusLabel.setText("正在从缓存加载数据...");
-        
-        // 读取缓存文件
-        List<Map<String, Object>> userVidList = objectMapper.readValue(
-                cacheFile, new TypeReference<List<Map<String, Object>>>() {});
+        Utf8Arena.renewShared(); // 新数据集的字符串存放在新的存储区
         
         // 读取export_uids.json获取用户名和标签信息
-        // 首先尝试在缓存文件所在目录查找
-        File exportUidsFile = new File(cacheFile.getParentFile(), "export_uids.json");
-        if (!exportUidsFile.exists()) {
-            // 如果不存在，尝试在当前目录查找
-            exportUidsFile = new File("export_uids.json");
-            if (!exportUidsFile.exists()) {
-                // 如果仍然不存在，让用户选择文件
-                JFileChooser fileChooser = new JFileChooser();
-                fileChooser.setDialogTitle("请选择export_uids.json文件");
-                fileChooser.setFileFilter(new javax.swing.filechooser.FileNameExtensionFilter("JSON文件", "json"));
-                int result = fileChooser.showOpenDialog(null);
-                
-                if (result == JFileChooser.APPROVE_OPTION) {
-                    exportUidsFile = fileChooser.getSelectedFile();
-                } else {
-                    throw new Exception("未选择export_uids.json文件，无法获取用户名和标签信息");
-                }
-            }
+        if (exportUidsFile == null) {
+            throw new Exception("未选择export_uids.json文件，无法获取用户名和标签信息");
         }
-        
-        List<Map<String, Object>> userData = objectMapper.readValue(
-                exportUidsFile, new TypeReference<List<Map<String, Object>>>() {});
-        
-        // 创建用户ID到用户名和标签的映射
-        Map<Long, String> midToName = new HashMap<>();
-        Map<Long, List<String>> midToTags = new HashMap<>();
-        
-        for (Map<String, Object> user : userData) {
-            long mid = ((Number) user.get("mid")).longValue();
-            String name = (String) user.get("name");
-            List<String> tags = objectMapper.convertValue(user.get("tag"), new TypeReference<List<String>>() {});
-            
-            midToName.put(mid, name);
-            midToTags.put(mid, tags);
-        }
-        
-        // 处理数据
-        return processUserData(userVidList, midToName, midToTags);
-    }
-    
-    private List<UserData> processUserData(List<Map<String, Object>> userVidList, 
-                                          Map<Long, String> midToName, 
-                                          Map<Long, List<String>> midToTags) throws Exception {
-        List<UserData> allUsers = new ArrayList<>();
-        List<UserData> usersWithNoVideos = new ArrayList<>();
-        
-        for (Map<String, Object> entry : userVidList) {
-            long mid = ((Number) entry.get("mid")).longValue();
-            JsonNode userVid = objectMapper.convertValue(entry.get("user_vid"), JsonNode.class);
+        FollowListReader reader = new FollowListReader(exportUidsFile);
+        LongObjectMap<FollowRecord> records = new LongObjectMap<>();
+        reader.read(new FollowSource.Sink() {
+            @Override
+            public void onTotal(int total) {
+            }
             
-            try {
-                // 检查是否有视频数据
-                if (userVid.path("data").path("archives").size() > 0) {
-                    JsonNode firstVideo = userVid.path("data").path("archives").get(0);
-                    String videoTitle = firstVideo.path("title").asText();
-                    long pubdate = firstVideo.path("pubdate").asLong();
-                    String bvid = firstVideo.path("bvid").asText();
-                    
-                    UserData userData = new UserData(
-                            mid, 
-                            midToName.get(mid), 
-                            midToTags.get(mid), 
-                            videoTitle, 
-                            pubdate, 
-                            bvid);
-                    
-                    allUsers.add(userData);
-                } else {
-                    // 用户没有视频
-                    UserData userData = new UserData(
-                            mid, 
-                            midToName.get(mid), 
-                            midToTags.get(mid));
-                    
-                    usersWithNoVideos.add(userData);
-                }
-            } catch (Exception e) {
-                System.err.println("处理用户 " + mid + " 的数据时出错: " + e.getMessage());
-                // 创建一个没有视频的用户数据对象
-                UserData userData = new UserData(
-                        mid, 
-                        midToName.get(mid), 
-                        midToTags.get(mid));
-                
-                usersWithNoVideos.add(userData);
+            @Override
+            public void accept(FollowRecord record) {
+                records.put(record.getMid(), record);
             }
-        }
+        });
         
-        // 合并所有用户列表
-        List<UserData> allUsersCombined = new ArrayList<>(allUsers);
-        allUsersCombined.addAll(usersWithNoVideos);
+        // 并行模式一次性解析全部条目；否则边读取缓存文件边交给流水线解析，与网络抓取使用同样的后续阶段
+        PerfEvents.CacheLoad event = new PerfEvents.CacheLoad();
+        event.begin();
+        long start = System.nanoTime();
+        long bytes = cacheFile.length();
+        boolean parallel = parallelDecode && bytes <= MAX_PARALLEL_FILE_SIZE;
+        UserPipeline pipeline = new UserPipeline(reader.getTagDictionary(), histogram);
+        List<UserData> users = parallel
+                ? pipeline.decodeCache(cacheFile, records, ForkJoinPool.commonPool())
+                : pipeline.run(UserPipeline.cacheSource(cacheFile, records));
+        Metrics.global().add(Metrics.CACHE_LOAD_ENTRIES, users.size());
+        Metrics.global().recordSince(Metrics.CACHE_LOAD_LATENCY, start);
+        event.end();
+        if (event.shouldCommit()) {
+            event.path = cacheFile.getPath();
+            event.entries = users.size();
+            event.bytes = bytes;
+            event.parallel = parallel;
+            event.commit();
+        }
         
         // 返回所有用户数据，不再筛选不活跃用户
-        // 筛选工作将由MainApp中的updateInactiveDaysFilter方法完成
-        statusLabel.setText("从缓存加载数据完成，共 " + allUsersCombined.size() + " 个用户");
-        return allUsersCombined;
+        // 筛选工作将由MainApp中的updateFilter方法完成
+        statusLabel.setText("从缓存加载数据完成，共 " + users.size() + " 个用户");
+        return users;
     }
 }
\ No newline at end of file
@@ -0,0 +1,78 @@
+package org.example;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * 缓存文件条目扫描器
+ * 只跟踪括号层级和字符串状态，找出顶层数组中每个对象的字节区间，不做词法解析，
+ * 扫描很快；得到区间后各条目即可独立、并行地解析
+ */
+public class CacheScanner {
+    private CacheScanner() {
+    }
+
+    /**
+     * 扫描顶层数组中的对象
+     * @param data 缓存文件内容(UTF-8)
+     * @return 条目区间，第i个条目为[bounds[2i], bounds[2i+1])
+     * @throws IOException 内容不是对象数组或不完整时
+     */
+    public static int[] scan(byte[] data) throws IOException {
+        int[] bounds = new int[256];
+        int count = 0;
+        int depth = 0;
+        int start = -1;
+        boolean inString = false;
+        boolean started = false;
+
+        for (int i = 0; i < data.length; i++) {
+            byte b = data[i];
+            if (inString) {
+                if (b == '\\') {
+                    i++; // 跳过被转义的字符，多字节UTF-8的后续字节不会是引号或反斜杠
+                } else if (b == '"') {
+                    inString = false;
+                }
+                continue;
+            }
+            switch (b) {
+                case '"':
+                    inString = true;
+                    break;
+                case '[':
+                case '{':
+                    if (!started) {
+                        if (b != '[') {
+                            throw new IOException("缓存文件格式错误：应为数组");
+                        }
+                        started = true;
+                    } else if (depth == 1) {
+                        if (b != '{') {
+                            throw new IOException("缓存文件格式错误：条目应为对象");
+                        }
+                        start = i;
+                    }
+                    depth++;
+                    break;
+                case ']':
+                case '}':
+                    depth--;
+                    if (depth == 1 && b == '}') {
+                        if (count * 2 == bounds.length) {
+                            bounds = Arrays.copyOf(bounds, bounds.length * 2);
+                        }
+                        bounds[count * 2] = start;
+                        bounds[count * 2 + 1] = i + 1;
+                        count++;
+                    } else if (depth == 0) {
+                        return Arrays.copyOf(bounds, count * 2);
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        throw new IOException(started ? "缓存文件不完整" : "缓存文件格式错误：应为数组");
+    }
+}
@@ -0,0 +1,245 @@
+package org.example;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 自适应并发限制
+ * 按请求的往返时间(RTT)和限流响应自动调整同时进行的请求数(梯度算法)：
+ *   最小RTT是无负载时延迟的估计，近期RTT明显高于它说明请求开始排队，上限按比例缩小；
+ *   RTT没有上升时上限缓慢增加，逐步找到吞吐量最高的并发数；
+ *   被限流(-412等)时上限减半并暂停发出新请求一段时间，同时把天花板设在触发限流的并发数之下，
+ *   之后每隔一段时间才试探着提高一次，避免反复触发限流；网络错误时小幅降低。
+ * 上限、天花板和最小RTT保存在文件中，下次运行从上次的结果开始，不必重新摸索
+ */
+public class ConcurrencyLimiter {
+    public static final String FILE_NAME = "concurrency_tuning.json";
+    public static final int MAX_LIMIT = 16; // 并发上限的最大值，HTTP连接池大小与之相同
+    public static final long THROTTLE_PAUSE_MILLIS = 3000; // 被限流后暂停发出新请求的时间
+    private static final double INITIAL_LIMIT = 2;
+    private static final double SMOOTHING = 0.2; // 每次调整向新值移动的比例
+    private static final double RTT_TOLERANCE = 1.5; // 近期RTT超过最小RTT的该倍数才开始缩小
+    private static final double SHORT_WEIGHT = 0.25; // 近期RTT的平滑系数
+    private static final int MIN_RTT_DRIFT = 1000; // 最小RTT每个样本向当前RTT回升1/1000，适应网络变化
+    private static final int CEILING_PROBE_INTERVAL = 200; // 每隔多少个正常请求把天花板提高1
+    private static final double THROTTLE_BACKOFF = 0.5;
+    private static final double ERROR_BACKOFF = 0.9;
+
+    /**
+     * 一次请求的结果
+     */
+    public enum Outcome {
+        SUCCESS,
+        THROTTLED,
+        ERROR,
+        /** 没有实际发出请求，例如全部来自缓存，不参与调整 */
+        IGNORED
+    }
+
+    private final int maxLimit;
+    private final File file; // 保存调整结果的文件，null表示不保存
+    private double limit;
+    private double ceiling; // 上次触发限流的并发数之下，上限不超过它
+    private double minRttNanos; // 无负载时的RTT估计，0表示尚无样本
+    private double shortRttNanos; // 近期RTT
+    private int inFlight;
+    private long pausedUntilNanos;
+    private long samples;
+    private long throttles;
+    private final RateLimiter rateCap; // 请求间的最小间隔，null表示不限
+
+    /**
+     * @param maxLimit 并发上限的最大值，1到MAX_LIMIT
+     * @param minIntervalSeconds 两个请求开始之间的最小间隔(秒)，0表示不限
+     */
+    public ConcurrencyLimiter(int maxLimit, double minIntervalSeconds) {
+        this(maxLimit, minIntervalSeconds, null, INITIAL_LIMIT, maxLimit, 0);
+    }
+
+    private ConcurrencyLimiter(int maxLimit, double minIntervalSeconds, File file, double limit, double ceiling, double minRttNanos) {
+        if (maxLimit < 1 || maxLimit > MAX_LIMIT) {
+            throw new IllegalArgumentException("并发上限应在1到" + MAX_LIMIT + "之间");
+        }
+        if (minIntervalSeconds < 0) {
+            throw new IllegalArgumentException("请求间隔不能为负数");
+        }
+        this.maxLimit = maxLimit;
+        this.file = file;
+        this.ceiling = Math.max(1, Math.min(maxLimit, ceiling));
+        this.limit = Math.max(1, Math.min(this.ceiling, limit));
+        this.minRttNanos = minRttNanos;
+        this.rateCap = minIntervalSeconds > 0 ? new RateLimiter(1 / minIntervalSeconds) : null;
+    }
+
+    /**
+     * 从文件读取上次的调整结果，文件不存在或无法读取时从初始值开始；之后save写回同一文件
+     * @param file 调整结果文件
+     * @param maxLimit 并发上限的最大值，上次的结果超过时按该值
+     * @param minIntervalSeconds 两个请求开始之间的最小间隔(秒)，0表示不限
+     */
+    public static ConcurrencyLimiter load(File file, int maxLimit, double minIntervalSeconds) {
+        double limit = INITIAL_LIMIT;
+        double ceiling = maxLimit;
+        double minRttNanos = 0;
+        if (file.isFile()) {
+            try {
+                JsonNode node = new ObjectMapper().readTree(file);
+                limit = node.path("limit").asDouble(INITIAL_LIMIT);
+                ceiling = node.path("ceiling").asDouble(maxLimit);
+                minRttNanos = TimeUnit.MILLISECONDS.toNanos(1) * node.path("rttMillis").asDouble(0);
+            } catch (IOException e) {
+                System.err.println("读取并发调整结果 " + file.getPath() + " 时出错: " + e.getMessage());
+            }
+        }
+        return new ConcurrencyLimiter(maxLimit, minIntervalSeconds, file, limit, ceiling, minRttNanos);
+    }
+
+    // 当前目录下的调整结果文件
+    public static File defaultFile() {
+        return new File(System.getProperty("user.dir"), FILE_NAME);
+    }
+
+    /**
+     * 把当前的上限、天花板和最小RTT写回load时的文件
+     */
+    public void save() {
+        if (file == null) {
+            return;
+        }
+        ObjectMapper mapper = new ObjectMapper();
+        ObjectNode node = mapper.createObjectNode();
+        synchronized (this) {
+            node.put("limit", Math.round(limit * 100) / 100.0);
+            node.put("ceiling", Math.round(ceiling * 100) / 100.0);
+            node.put("rttMillis", Math.round(minRttNanos / 1e4) / 100.0);
+            node.put("samples", samples);
+            node.put("throttles", throttles);
+        }
+        node.put("savedAt", System.currentTimeMillis() / 1000);
+        try {
+            mapper.writerWithDefaultPrettyPrinter().writeValue(file, node);
+        } catch (IOException e) {
+            System.err.println("保存并发调整结果 " + file.getPath() + " 时出错: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 等待一个并发名额，进行中的请求达到上限或处于限流暂停时阻塞
+     * @param maxWaitMillis 最长等待时间
+     * @return 请求开始的时间点(System.nanoTime)，交给release；超时未获得名额时为-1
+     * @throws InterruptedException 等待期间被中断
+     */
+    public long acquire(long maxWaitMillis) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.min(maxWaitMillis, TimeUnit.DAYS.toMillis(1)));
+        synchronized (this) {
+            for (long now = System.nanoTime(); inFlight >= (int) limit || now < pausedUntilNanos; now = System.nanoTime()) {
+                long waitNanos = deadline - now;
+                if (waitNanos <= 0) {
+                    return -1;
+                }
+                if (inFlight < (int) limit) {
+                    waitNanos = Math.min(waitNanos, pausedUntilNanos - now); // 只在等暂停结束
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, waitNanos);
+            }
+            inFlight++;
+        }
+        if (rateCap != null) {
+            try {
+                rateCap.acquire();
+            } catch (InterruptedException e) {
+                // 名额已经占用，被中断(例如任务取消)时归还，否则awaitIdle会一直等待
+                synchronized (this) {
+                    inFlight--;
+                    notifyAll();
+                }
+                throw e;
+            }
+        }
+        return System.nanoTime();
+    }
+
+    /**
+     * 请求结束，按结果调整上限
+     * @param startNanos acquire返回的时间点
+     * @param outcome 请求结果
+     */
+    public synchronized void release(long startNanos, Outcome outcome) {
+        long rtt = System.nanoTime() - startNanos;
+        switch (outcome) {
+            case THROTTLED:
+                throttles++;
+                if (System.nanoTime() >= pausedUntilNanos) {
+                    // 同一次限流中同时返回的其他请求不再重复降低
+                    ceiling = Math.max(1, Math.min(ceiling, Math.floor(limit) - 1));
+                    limit = Math.max(1, limit * THROTTLE_BACKOFF);
+                    pausedUntilNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(THROTTLE_PAUSE_MILLIS);
+                }
+                break;
+            case ERROR:
+                limit = Math.max(1, limit * ERROR_BACKOFF);
+                break;
+            case SUCCESS:
+                adjust(rtt);
+                break;
+            default:
+                break;
+        }
+        inFlight--;
+        notifyAll();
+    }
+
+    // 按一次正常请求的RTT调整上限
+    private void adjust(long rttNanos) {
+        samples++;
+        if (samples % CEILING_PROBE_INTERVAL == 0 && ceiling < maxLimit) {
+            ceiling = Math.min(maxLimit, ceiling + 1); // 一段时间没有被限流，试探着放宽
+        }
+        minRttNanos = minRttNanos == 0 || rttNanos < minRttNanos ? rttNanos : minRttNanos + (rttNanos - minRttNanos) / MIN_RTT_DRIFT;
+        shortRttNanos = shortRttNanos == 0 ? rttNanos : shortRttNanos + (rttNanos - shortRttNanos) * SHORT_WEIGHT;
+        if (inFlight * 2 < limit) {
+            return; // 请求没有用满上限(例如读取关注列表较慢)，RTT不能说明上限是否合适
+        }
+        // 近期RTT接近最小RTT时梯度为1，上限增加约SMOOTHING个；排队变慢时按比例缩小，最多减半
+        double gradient = Math.max(0.5, Math.min(1.0, RTT_TOLERANCE * minRttNanos / shortRttNanos));
+        double newLimit = limit * gradient + 1;
+        limit = Math.max(1, Math.min(ceiling, limit * (1 - SMOOTHING) + newLimit * SMOOTHING));
+    }
+
+    /**
+     * 等待进行中的请求全部结束
+     */
+    public synchronized void awaitIdle() throws InterruptedException {
+        while (inFlight > 0) {
+            wait();
+        }
+    }
+
+    // 当前允许同时进行的请求数
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    public int getMaxLimit() {
+        return maxLimit;
+    }
+
+    public synchronized long getThrottles() {
+        return throttles;
+    }
+
+    // 是否处于限流后的暂停中
+    public synchronized boolean isPaused() {
+        return System.nanoTime() < pausedUntilNanos;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("并发上限 %d/%d，最小RTT %.0fms，被限流 %d 次", (int) limit, (int) ceiling, minRttNanos / 1e6, throttles);
+    }
+}
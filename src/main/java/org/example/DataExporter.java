@@ -1,161 +1,540 @@
 package org.example;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.MinimalPrettyPrinter;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
 
 /**
  * 数据导出工具类
  * 用于将不活跃用户的数据导出到文件中
  */
 public class DataExporter {
-    
+    private static final int BUFFER_SIZE = 64 * 1024; // 写入缓冲区大小
+    public static final int DEFAULT_UID_CHUNK_SIZE = 50; // 分块UID列表每行的UID数量
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    static final String CSV_LINE_END = "\r\n"; // RFC 4180规定的CSV换行符，取消关注日志也使用
+
     /**
      * 导出不活跃用户数据
-     * 
+     *
      * @param users 不活跃用户列表
      * @param directory 导出目录
-     * @param exportType 导出类型（导出全部、导出无分组、导出有分组）
+     * @param exportType 导出类型（导出全部、导出无分组、导出有分组、导出可能停更）
      * @return 导出文件名
      * @throws IOException 如果导出过程中发生IO错误
      */
     public static String exportInactiveUsers(List<UserData> users, File directory, String exportType) throws IOException {
+        // 传入的用户已按不活跃天数筛选过，可能停更不再按天数判断
+        return exportUsers(users, directory, exportType, 0, EnumSet.of(ExportFormat.UID_LIST)).get(0);
+    }
+
+    /**
+     * 导出详细的不活跃用户数据（包含更多信息）
+     *
+     * @param users 不活跃用户列表
+     * @param directory 导出目录
+     * @param exportType 导出类型
+     * @return 导出文件名
+     * @throws IOException 如果导出过程中发生IO错误
+     */
+    public static String exportDetailedInactiveUsers(List<UserData> users, File directory, String exportType) throws IOException {
+        return exportUsers(users, directory, exportType, 0, EnumSet.of(ExportFormat.DETAILED_CSV)).get(0);
+    }
+
+    /**
+     * 按多种格式导出用户数据，只遍历一次用户列表，边筛选边写入所有输出文件
+     *
+     * @param users 用户列表
+     * @param directory 导出目录
+     * @param exportType 导出类型
+     * @param inactiveDays 不活跃天数阈值，导出可能停更时用于判断更新规律未知的用户，0表示不按天数判断
+     * @param formats 导出格式
+     * @return 导出文件名列表，顺序与格式的声明顺序一致
+     * @throws IOException 如果导出过程中发生IO错误
+     */
+    public static List<String> exportUsers(List<UserData> users, File directory, String exportType, int inactiveDays,
+                                           Set<ExportFormat> formats) throws IOException {
         if (users == null || users.isEmpty()) {
             throw new IllegalArgumentException("没有数据可导出");
         }
-        
+        return exportStream(users.iterator(), directory, exportType, inactiveDays, formats);
+    }
+
+    /**
+     * 按多种格式导出逐个产出的用户，不要求用户全部在内存中
+     *
+     * @param users 用户序列，只遍历一次
+     * @param directory 导出目录
+     * @param exportType 导出类型
+     * @param inactiveDays 不活跃天数阈值，导出可能停更时用于判断更新规律未知的用户，0表示不按天数判断
+     * @param formats 导出格式
+     * @return 导出文件名列表，顺序与格式的声明顺序一致
+     * @throws IOException 如果导出过程中发生IO错误
+     */
+    public static List<String> exportStream(Iterator<UserData> users, File directory, String exportType, int inactiveDays,
+                                            Set<ExportFormat> formats) throws IOException {
         if (!directory.exists() || !directory.isDirectory()) {
             throw new IllegalArgumentException("导出目录不存在或不是一个目录");
         }
-        
-        // 根据导出类型筛选用户
-        List<UserData> usersToExport = new ArrayList<>();
-        
-        switch (exportType) {
-            case "导出已选择":
-                // 直接导出传入的用户列表，不需要额外筛选
-                usersToExport.addAll(users);
-                break;
-            case "导出全部":
-                usersToExport.addAll(users);
-                break;
-            case "导出无分组":
-                for (UserData user : users) {
-                    if (!user.hasTags()) {
-                        usersToExport.add(user);
-                    }
-                }
-                break;
-            case "导出有分组":
-                for (UserData user : users) {
-                    if (user.hasTags()) {
-                        usersToExport.add(user);
-                    }
-                }
-                break;
-            default:
-                throw new IllegalArgumentException("不支持的导出类型: " + exportType);
-        }
-        
-        if (usersToExport.isEmpty()) {
-            throw new IllegalArgumentException("没有符合条件的用户可导出");
+
+        if (formats == null || formats.isEmpty()) {
+            throw new IllegalArgumentException("未选择导出格式");
         }
-        
+
+        // 根据导出类型筛选用户，筛选在写入时进行，不再复制列表
+        Predicate<UserData> filter = filterFor(exportType, inactiveDays);
+
         // 生成文件名
         String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
-        String fileName = "inactive_users_" + timestamp + ".txt";
-        File outputFile = new File(directory, fileName);
-        
-        // 写入文件
-        try (FileWriter writer = new FileWriter(outputFile)) {
-            for (int i = 0; i < usersToExport.size(); i++) {
-                UserData user = usersToExport.get(i);
-                writer.write(String.valueOf(user.getUid()));
-                
-                // 如果不是最后一个用户，添加逗号分隔符
-                if (i < usersToExport.size() - 1) {
-                    writer.write(",");
+        List<ExportSink> sinks = new ArrayList<>();
+        List<File> files = new ArrayList<>();
+        int exported = 0;
+        boolean completed = false;
+        PerfEvents.Export event = new PerfEvents.Export();
+        event.begin();
+        long start = System.nanoTime();
+
+        try {
+            for (ExportFormat format : formats) {
+                File outputFile = new File(directory, format.fileName(timestamp));
+                files.add(outputFile);
+                sinks.add(openSink(format, outputFile));
+            }
+
+            // 写入文件
+            while (users.hasNext()) {
+                UserData user = users.next();
+                if (!filter.test(user)) {
+                    continue;
+                }
+                for (ExportSink sink : sinks) {
+                    sink.write(user);
                 }
+                exported++;
             }
+
+            closeAll(sinks);
+            completed = true;
+        } finally {
+            if (!completed) {
+                closeQuietly(sinks);
+            }
+            // 出错或没有符合条件的用户时删除不完整的文件
+            if (!completed || exported == 0) {
+                for (File file : files) {
+                    file.delete();
+                }
+            }
+        }
+
+        if (exported == 0) {
+            throw new IllegalArgumentException("没有符合条件的用户可导出");
+        }
+
+        Metrics.global().add(Metrics.EXPORT_USERS, exported);
+        Metrics.global().recordSince(Metrics.EXPORT_LATENCY, start);
+        event.end();
+        if (event.shouldCommit()) {
+            event.formats = formats.toString();
+            event.exportType = exportType;
+            event.users = exported;
+            event.commit();
         }
-        
-        return fileName;
+
+        List<String> fileNames = new ArrayList<>(sinks.size());
+        for (ExportSink sink : sinks) {
+            fileNames.add(sink.getFileName());
+        }
+        return fileNames;
     }
-    
+
     /**
-     * 导出详细的不活跃用户数据（包含更多信息）
-     * 
-     * @param users 不活跃用户列表
+     * 多账号模式下按账号分别导出，每个账号写入导出目录下以账号名称命名的子目录
+     *
+     * @param accounts 账号名称 -> 该账号的用户
      * @param directory 导出目录
      * @param exportType 导出类型
+     * @param inactiveDays 不活跃天数阈值，含义同exportUsers
+     * @param formats 导出格式
+     * @return 每个账号的导出结果描述，没有符合条件用户的账号会被跳过
+     * @throws IOException 如果导出过程中发生IO错误
+     */
+    public static List<String> exportAccounts(Map<String, List<UserData>> accounts, File directory, String exportType,
+                                              int inactiveDays, Set<ExportFormat> formats) throws IOException {
+        if (!directory.exists() || !directory.isDirectory()) {
+            throw new IllegalArgumentException("导出目录不存在或不是一个目录");
+        }
+
+        Predicate<UserData> filter = filterFor(exportType, inactiveDays);
+        List<String> results = new ArrayList<>(accounts.size());
+        for (Map.Entry<String, List<UserData>> account : accounts.entrySet()) {
+            List<UserData> users = account.getValue();
+            if (users == null || users.isEmpty() || !users.stream().anyMatch(filter)) {
+                results.add(account.getKey() + ": 没有符合条件的用户");
+                continue;
+            }
+            File accountDirectory = new File(directory, safeFileName(account.getKey()));
+            if (!accountDirectory.isDirectory() && !accountDirectory.mkdirs()) {
+                throw new IOException("无法创建目录: " + accountDirectory.getPath());
+            }
+            List<String> fileNames = exportUsers(users, accountDirectory, exportType, inactiveDays, formats);
+            results.add(account.getKey() + ": " + accountDirectory.getName() + File.separator + String.join(", ", fileNames));
+        }
+        return results;
+    }
+
+    /**
+     * 导出两次分析结果的差异为CSV
+     *
+     * @param entries 差异条目
+     * @param directory 导出目录
      * @return 导出文件名
      * @throws IOException 如果导出过程中发生IO错误
      */
-    public static String exportDetailedInactiveUsers(List<UserData> users, File directory, String exportType) throws IOException {
-        if (users == null || users.isEmpty()) {
-            throw new IllegalArgumentException("没有数据可导出");
+    public static String exportDiff(List<SnapshotDiff.Entry> entries, File directory) throws IOException {
+        if (entries == null || entries.isEmpty()) {
+            throw new IllegalArgumentException("没有差异可导出");
         }
-        
+
         if (!directory.exists() || !directory.isDirectory()) {
             throw new IllegalArgumentException("导出目录不存在或不是一个目录");
         }
-        
-        // 根据导出类型筛选用户
-        List<UserData> usersToExport = new ArrayList<>();
-        
+
+        String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
+        File outputFile = new File(directory, "snapshot_diff_" + timestamp + ".csv");
+        try (Writer writer = openWriter(outputFile)) {
+            // 写入BOM，使Excel能正确识别UTF-8中文
+            writer.write('\uFEFF');
+            writer.write("变化,UID,用户名,之前不活跃天数,现在不活跃天数,之前最新视频,现在最新视频" + CSV_LINE_END);
+            for (SnapshotDiff.Entry entry : entries) {
+                writeCsvField(writer, entry.getChange().getDisplayName());
+                writer.write(',');
+                writer.write(Long.toString(entry.getUid()));
+                writer.write(',');
+                writeCsvField(writer, entry.getUsername());
+                writer.write(',');
+                writer.write(entry.getBefore() != null ? SnapshotDiff.formatDays(entry.getDaysBefore()) : "");
+                writer.write(',');
+                writer.write(entry.getAfter() != null ? SnapshotDiff.formatDays(entry.getDaysAfter()) : "");
+                writer.write(',');
+                writeCsvField(writer, entry.getBefore() != null ? entry.getBefore().getLastVideoTitle() : "");
+                writer.write(',');
+                writeCsvField(writer, entry.getAfter() != null ? entry.getAfter().getLastVideoTitle() : "");
+                writer.write(CSV_LINE_END);
+            }
+        }
+        return outputFile.getName();
+    }
+
+    /**
+     * 导出本次运行中没有获取到视频数据的用户为CSV
+     *
+     * @param unfetched 超出时间预算而未抓取的用户
+     * @param failed 请求失败的用户
+     * @param directory 导出目录
+     * @return 导出文件名
+     * @throws IOException 如果导出过程中发生IO错误
+     */
+    public static String exportUnfetched(List<FollowRecord> unfetched, List<FollowRecord> failed, File directory) throws IOException {
+        String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
+        File outputFile = new File(directory, "unfetched_users_" + timestamp + ".csv");
+        try (Writer writer = openWriter(outputFile)) {
+            // 写入BOM，使Excel能正确识别UTF-8中文
+            writer.write('\uFEFF');
+            writer.write("UID,用户名,原因" + CSV_LINE_END);
+            writeUnfetched(writer, unfetched, "超出时间预算");
+            writeUnfetched(writer, failed, "请求失败");
+        }
+        return outputFile.getName();
+    }
+
+    private static void writeUnfetched(Writer writer, List<FollowRecord> records, String reason) throws IOException {
+        for (FollowRecord record : records) {
+            writer.write(Long.toString(record.getMid()));
+            writer.write(',');
+            writeCsvField(writer, record.getName());
+            writer.write(',');
+            writeCsvField(writer, reason);
+            writer.write(CSV_LINE_END);
+        }
+    }
+
+    // 把账号名称等任意文本转换为可用的文件名
+    static String safeFileName(String name) {
+        String safe = name.replaceAll("[\\\\/:*?\"<>|\\p{Cntrl}]", "_").trim();
+        return safe.isEmpty() || safe.equals(".") || safe.equals("..") ? "_" : safe;
+    }
+
+    /**
+     * 创建指定格式的导出输出端
+     *
+     * @param format 导出格式
+     * @param outputFile 输出文件
+     * @return 输出端，使用完毕后需要关闭
+     * @throws IOException 如果无法打开文件
+     */
+    public static ExportSink openSink(ExportFormat format, File outputFile) throws IOException {
+        switch (format) {
+            case UID_LIST:
+                return new UidListSink(outputFile, Integer.MAX_VALUE);
+            case DETAILED_CSV:
+                return new CsvSink(outputFile);
+            case JSON_LINES:
+                return new JsonLinesSink(outputFile);
+            case CHUNKED_UID_LIST:
+                return new UidListSink(outputFile, DEFAULT_UID_CHUNK_SIZE);
+            default:
+                throw new IllegalArgumentException("不支持的导出格式: " + format);
+        }
+    }
+
+    // 根据导出类型返回筛选条件，inactiveDays为不活跃天数阈值，0表示不按天数判断
+    static Predicate<UserData> filterFor(String exportType, int inactiveDays) {
         switch (exportType) {
             case "导出已选择":
                 // 直接导出传入的用户列表，不需要额外筛选
-                usersToExport.addAll(users);
-                break;
             case "导出全部":
-                usersToExport.addAll(users);
-                break;
+                return user -> true;
             case "导出无分组":
-                for (UserData user : users) {
-                    if (!user.hasTags()) {
-                        usersToExport.add(user);
-                    }
-                }
-                break;
+                return user -> !user.hasTags();
             case "导出有分组":
-                for (UserData user : users) {
-                    if (user.hasTags()) {
-                        usersToExport.add(user);
-                    }
-                }
-                break;
+                return UserData::hasTags;
+            case "导出可能停更":
+                // 没有视频，或按更新规律计算的停更可能达到阈值；只有一个视频、规律未知的按不活跃天数判断
+                return user -> user.isProbablyDormant(inactiveDays);
             default:
                 throw new IllegalArgumentException("不支持的导出类型: " + exportType);
         }
-        
-        if (usersToExport.isEmpty()) {
-            throw new IllegalArgumentException("没有符合条件的用户可导出");
+    }
+
+    /**
+     * 打开带缓冲的UTF-8文件写入器，通过FileChannel写入
+     *
+     * @param outputFile 输出文件，已存在时覆盖
+     * @return 写入器
+     * @throws IOException 如果无法打开文件
+     */
+    static Writer openWriter(File outputFile) throws IOException {
+        FileChannel channel = FileChannel.open(outputFile.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        return new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8.newEncoder(), BUFFER_SIZE), BUFFER_SIZE);
+    }
+
+    /**
+     * 按CSV规范(RFC 4180)写入一个文本字段：始终加引号，字段中的引号写成两个引号；记录之间以CSV_LINE_END分隔
+     *
+     * @param writer 写入器
+     * @param value 字段值，null按空字符串处理
+     * @throws IOException 如果写入失败
+     */
+    static void writeCsvField(Writer writer, String value) throws IOException {
+        writer.write('"');
+        if (value != null) {
+            int start = 0;
+            int quote;
+            while ((quote = value.indexOf('"', start)) >= 0) {
+                writer.write(value, start, quote + 1 - start);
+                writer.write('"');
+                start = quote + 1;
+            }
+            writer.write(value, start, value.length() - start);
         }
-        
-        // 生成文件名
-        String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
-        String fileName = "inactive_users_detailed_" + timestamp + ".txt";
-        File outputFile = new File(directory, fileName);
-        
-        // 写入文件
-        try (FileWriter writer = new FileWriter(outputFile)) {
-            writer.write("UID,用户名,分组,不活跃天数,最后更新视频\n");
-            
-            for (UserData user : usersToExport) {
-                writer.write(String.format("%d,\"%s\",\"%s\",%d,\"%s\"\n",
-                        user.getUid(),
-                        user.getUsername().replace("\"", "\\\""),
-                        String.join(", ", user.getTags()).replace("\"", "\\\""),
-                        user.getInactiveDays(),
-                        user.getLastVideoTitle().replace("\"", "\\\"")));
+        writer.write('"');
+    }
+
+    private static void closeAll(List<? extends Closeable> closeables) throws IOException {
+        IOException failure = null;
+        for (Closeable closeable : closeables) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private static void closeQuietly(List<? extends Closeable> closeables) {
+        try {
+            closeAll(closeables);
+        } catch (IOException e) {
+            System.err.println("关闭导出文件时出错: " + e.getMessage());
+        }
+    }
+
+    /**
+     * UID列表输出端，每行最多chunkSize个UID，以逗号分隔
+     */
+    private static class UidListSink implements ExportSink {
+        private final String fileName;
+        private final Writer writer;
+        private final int chunkSize;
+        private int inChunk = 0;
+        private boolean first = true;
+
+        UidListSink(File outputFile, int chunkSize) throws IOException {
+            this.fileName = outputFile.getName();
+            this.writer = openWriter(outputFile);
+            this.chunkSize = chunkSize;
+        }
+
+        @Override
+        public void write(UserData user) throws IOException {
+            if (!first) {
+                if (inChunk == chunkSize) {
+                    writer.write('\n');
+                    inChunk = 0;
+                } else {
+                    // 如果不是最后一个用户，添加逗号分隔符
+                    writer.write(',');
+                }
+            }
+            writer.write(Long.toString(user.getUid()));
+            inChunk++;
+            first = false;
+        }
+
+        @Override
+        public String getFileName() {
+            return fileName;
+        }
+
+        @Override
+        public void close() throws IOException {
+            writer.close();
+        }
+    }
+
+    /**
+     * 详细CSV输出端
+     */
+    private static class CsvSink implements ExportSink {
+        private final String fileName;
+        private final Writer writer;
+
+        CsvSink(File outputFile) throws IOException {
+            this.fileName = outputFile.getName();
+            this.writer = openWriter(outputFile);
+            // 写入BOM，使Excel能正确识别UTF-8中文
+            writer.write('\uFEFF');
+            writer.write("UID,用户名,分组,不活跃天数,最后更新视频,中位更新间隔(天),停更可能" + CSV_LINE_END);
+        }
+
+        @Override
+        public void write(UserData user) throws IOException {
+            writer.write(Long.toString(user.getUid()));
+            writer.write(',');
+            writeCsvField(writer, user.getUsername());
+            writer.write(',');
+            writeCsvField(writer, String.join(", ", user.getTags()));
+            writer.write(',');
+            writer.write(Integer.toString(user.getInactiveDays()));
+            writer.write(',');
+            writeCsvField(writer, user.getLastVideoTitle());
+            // 更新规律未知时两列留空
+            writer.write(',');
+            if (user.getCadence() != null) {
+                writer.write(String.format(Locale.ROOT, "%.1f,%.2f", user.getCadence().getMedianGapDays(), user.getDormantScore()));
+            } else {
+                writer.write(',');
+            }
+            writer.write(CSV_LINE_END);
+        }
+
+        @Override
+        public String getFileName() {
+            return fileName;
+        }
+
+        @Override
+        public void close() throws IOException {
+            writer.close();
+        }
+    }
+
+    /**
+     * JSON Lines输出端，每行一个用户对象
+     */
+    private static class JsonLinesSink implements ExportSink {
+        private final String fileName;
+        private final Writer writer;
+        private final JsonGenerator generator;
+
+        JsonLinesSink(File outputFile) throws IOException {
+            this.fileName = outputFile.getName();
+            this.writer = openWriter(outputFile);
+            this.generator = JSON_FACTORY.createGenerator(writer);
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.setPrettyPrinter(new MinimalPrettyPrinter("\n"));
+        }
+
+        @Override
+        public void write(UserData user) throws IOException {
+            generator.writeStartObject();
+            generator.writeNumberField("uid", user.getUid());
+            generator.writeStringField("username", user.getUsername());
+            generator.writeArrayFieldStart("tags");
+            for (String tag : user.getTags()) {
+                generator.writeString(tag);
+            }
+            generator.writeEndArray();
+            generator.writeBooleanField("hasVideos", user.hasVideos());
+            if (user.hasVideos()) {
+                generator.writeNumberField("inactiveDays", user.getInactiveDays());
+                generator.writeStringField("lastVideoTitle", user.getLastVideoTitle());
+                generator.writeNumberField("lastUpdateTimestamp", user.getLastUpdateTimestamp());
+                generator.writeStringField("bvid", user.getBvid());
+                PostingCadence cadence = user.getCadence();
+                if (cadence != null) {
+                    generator.writeArrayFieldStart("recentPubdates");
+                    for (long pubdate : cadence.recentPubdates(user.getLastUpdateTimestamp())) {
+                        generator.writeNumber(pubdate);
+                    }
+                    generator.writeEndArray();
+                    generator.writeNumberField("medianGapDays", Math.round(cadence.getMedianGapDays() * 10) / 10.0);
+                    generator.writeNumberField("dormantScore", Math.round(user.getDormantScore() * 1000) / 1000.0);
+                }
+            }
+            generator.writeEndObject();
+        }
+
+        @Override
+        public String getFileName() {
+            return fileName;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                generator.close();
+                writer.write('\n');
+            } finally {
+                writer.close();
             }
         }
-        
-        return fileName;
     }
-}
\ No newline at end of file
+}
@@ -1,248 +1,498 @@
 package org.example;
 
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ArrayNode;
-import com.fasterxml.jackson.databind.node.ObjectNode;
-
 import javax.swing.*;
 import java.io.File;
-import java.io.FileWriter;
-import java.nio.file.Files;
-import java.time.Instant;
-import java.time.LocalDateTime;
-import java.time.ZoneId;
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
-
-import me.tongfei.progressbar.ProgressBar;
-import org.apache.http.HttpEntity;
-import org.apache.http.client.config.RequestConfig;
-import org.apache.http.client.methods.CloseableHttpResponse;
-import org.apache.http.client.methods.HttpGet;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
-import org.apache.http.util.EntityUtils;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * 数据处理任务类
  * 在后台线程中处理B站API请求和数据分析
  */
 public class DataProcessingTask extends SwingWorker<List<UserData>, Integer> {
-    private final File inputFile;
+    private static final FollowRecord END_OF_INPUT = new FollowRecord(-1, null, null); // 队列结束标记
+    private static final int MAX_THROTTLE_RETRIES = 2; // 自适应并发时被限流的用户最多重新请求的次数
+    
+    private final FollowSource source; // 关注列表来源
+    private final File outputDir; // 缓存文件保存目录
     private final int inactiveDays;
     private final JProgressBar progressBar;
     private final JLabel statusLabel;
-    private final ObjectMapper objectMapper;
     private final int batchSize; // 批量处理数量
     private final double batchInterval; // 批次间隔(秒)，支持小数
-    
-    // B站API请求头
-    private static final Map<String, String> HEADERS = new HashMap<>();
-    static {
-        HEADERS.put("authority", "api.vc.bilibili.com");
-        HEADERS.put("accept", "application/json, text/plain, */*");
-        HEADERS.put("accept-language", "zh-CN,zh;q=0.9,en;q=0.8,en-GB;q=0.7,en-US;q=0.6");
-        HEADERS.put("content-type", "application/x-www-form-urlencoded");
-        HEADERS.put("origin", "https://message.bilibili.com");
-        HEADERS.put("referer", "https://message.bilibili.com/");
-        HEADERS.put("sec-ch-ua", "\"Chromium\";v=\"116\", \"Not)A;Brand\";v=\"24\", \"Microsoft Edge\";v=\"116\"");
-        HEADERS.put("sec-ch-ua-mobile", "?0");
-        HEADERS.put("sec-ch-ua-platform", "\"Windows\"");
-        HEADERS.put("sec-fetch-dest", "empty");
-        HEADERS.put("sec-fetch-mode", "cors");
-        HEADERS.put("sec-fetch-site", "same-site");
-        HEADERS.put("user-agent", "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/116.0.0.0 Safari/537.36 Edg/116.0.1938.81");
-    }
+    private final InactivityHistogram histogram; // 抓取过程中实时更新的分布直方图，可为null
+    private ResponseCache responseCache = ResponseCache.shared(); // 视频列表响应缓存，null表示每次都请求
+    private ActivitySource activitySource; // 视频列表来源，null表示按ActivitySource.create()创建
+    private RunBudget budget = new RunBudget(0); // 时间预算和剩余时间预测
+    private List<UserData> previousResults; // 上一次的分析结果，用于决定抓取顺序
+    private List<FetchPriority.Rule> priorityRules; // 抓取顺序规则，null表示有时间预算时候选优先、否则按读取顺序
+    private final List<FollowRecord> unfetched = new ArrayList<>(); // 超出时间预算而未抓取的用户
+    private final List<FollowRecord> failed = new ArrayList<>(); // 请求失败的用户
+    private String unfetchedReport; // 未获取用户的报告文件名
+    private int reusedCount; // 未获取、沿用上次缓存结果的用户数
+    private ConcurrencyLimiter limiter; // 自适应并发，null表示按固定的批次数量和间隔
+    private String endpointSummary; // 多接口路由时各接口的分配情况
+    private final AtomicInteger fetchedCount = new AtomicInteger(); // 已处理的用户数
+    private final Map<Long, Integer> throttleRetries = new ConcurrentHashMap<>(); // 被限流后已重新请求的次数
     
     public DataProcessingTask(File inputFile, int inactiveDays, JProgressBar progressBar, JLabel statusLabel) {
         this(inputFile, inactiveDays, progressBar, statusLabel, 2, 1);
     }
     
     public DataProcessingTask(File inputFile, int inactiveDays, JProgressBar progressBar, JLabel statusLabel, int batchSize, double batchInterval) {
-        this.inputFile = inputFile;
+        this(inputFile, inactiveDays, progressBar, statusLabel, batchSize, batchInterval, null);
+    }
+    
+    public DataProcessingTask(File inputFile, int inactiveDays, JProgressBar progressBar, JLabel statusLabel, int batchSize, double batchInterval,
+                              InactivityHistogram histogram) {
+        this(new FollowListReader(inputFile), inputFile.getAbsoluteFile().getParentFile(), inactiveDays, progressBar, statusLabel,
+                batchSize, batchInterval, histogram);
+    }
+    
+    /**
+     * @param source 关注列表来源，例如export_uids.json或直接从账号获取
+     * @param outputDir 缓存文件保存目录；来源不是export_uids.json时，关注列表也以该格式保存在此目录
+     */
+    public DataProcessingTask(FollowSource source, File outputDir, int inactiveDays, JProgressBar progressBar, JLabel statusLabel,
+                              int batchSize, double batchInterval, InactivityHistogram histogram) {
+        this.source = source;
+        this.outputDir = outputDir;
         this.inactiveDays = inactiveDays;
         this.progressBar = progressBar;
         this.statusLabel = statusLabel;
-        this.objectMapper = new ObjectMapper();
         this.batchSize = Math.max(1, batchSize); // 确保至少为1
         this.batchInterval = Math.max(0.1, batchInterval); // 确保至少为0.1秒
+        this.histogram = histogram;
+    }
+    
+    /**
+     * 设置视频列表响应缓存，默认使用ResponseCache.shared()
+     * @param responseCache 响应缓存，null表示每个用户都重新请求
+     */
+    public void setResponseCache(ResponseCache responseCache) {
+        this.responseCache = responseCache;
+    }
+    
+    /**
+     * 设置视频列表来源，默认按系统属性由ActivitySource.create()创建；任务结束时关闭该来源
+     * @param activitySource 数据来源，例如批量接口BatchArchiveClient
+     */
+    public void setActivitySource(ActivitySource activitySource) {
+        this.activitySource = activitySource;
+    }
+    
+    /**
+     * 启用自适应并发：同时进行的请求数按延迟和限流情况自动调整，批次数量和间隔不再使用
+     * （上限和最小间隔已包含在limiter中），任务结束时保存调整结果
+     * @param limiter 并发限制，null表示按固定批次
+     */
+    public void setConcurrencyLimiter(ConcurrencyLimiter limiter) {
+        this.limiter = limiter;
+    }
+    
+    /**
+     * 设置整次运行的时间预算。设置后先读完关注列表，按抓取顺序规则排序后再抓取，
+     * 到达截止时间即停止，剩余的用户写入报告文件，并沿用上次缓存文件中的结果
+     * @param budgetMillis 时间预算(毫秒)，0表示不限
+     */
+    public void setBudget(long budgetMillis) {
+        this.budget = new RunBudget(budgetMillis);
+    }
+    
+    // 上一次的分析结果，用于决定抓取顺序，可为null
+    public void setPreviousResults(List<UserData> previousResults) {
+        this.previousResults = previousResults;
+    }
+    
+    /**
+     * 设置抓取顺序规则。规则不为空时先读完关注列表，按FetchPriority排序后再抓取，最需要的用户最先得到结果
+     * @param priorityRules 依次比较的规则；null表示有时间预算时按"候选优先"、否则按读取顺序边读边抓取，空列表表示按读取顺序
+     */
+    public void setPriorityRules(List<FetchPriority.Rule> priorityRules) {
+        this.priorityRules = priorityRules;
+    }
+    
+    // 超出时间预算而未抓取的用户，任务完成后调用
+    public List<FollowRecord> getUnfetched() {
+        return unfetched;
+    }
+    
+    // 请求失败或被限流的用户，任务完成后调用
+    public List<FollowRecord> getFailed() {
+        return failed;
+    }
+    
+    // 未获取用户的报告文件名，全部获取成功时为null
+    public String getUnfetchedReport() {
+        return unfetchedReport;
+    }
+    
+    // 未获取的用户中沿用上次缓存结果的数量，任务完成后调用
+    public int getReusedCount() {
+        return reusedCount;
     }
     
     @Override
     protected List<UserData> doInBackground() throws Exception {
-        // 读取输入文件
+        // 新数据集的字符串存放在新的存储区，旧结果不再使用后随之回收
+        Utf8Arena.renewShared();
+        
+        // 读取关注列表
         publish(0);
-        statusLabel.setText("正在读取用户数据...");
+        statusLabel.setText("正在读取用户数据: " + source.getDescription());
+        progressBar.setMaximum(0);
+        progressBar.setValue(0);
         
-        List<Map<String, Object>> userData = objectMapper.readValue(
-                inputFile, new TypeReference<List<Map<String, Object>>>() {});
+        // 关注记录由读取线程逐条放入队列，读取与获取视频数据同时进行
+        BlockingQueue<FollowRecord> queue = new LinkedBlockingQueue<>();
+        AtomicReference<Exception> readError = new AtomicReference<>();
+        Thread reader = new Thread(() -> {
+            try {
+                source.read(new FollowSource.Sink() {
+                    @Override
+                    public void onTotal(int total) {
+                        SwingUtilities.invokeLater(() -> progressBar.setMaximum(total));
+                    }
+                    
+                    @Override
+                    public void accept(FollowRecord record) throws InterruptedException {
+                        queue.put(record);
+                    }
+                });
+            } catch (Exception e) {
+                readError.set(e);
+            } finally {
+                queue.add(END_OF_INPUT);
+            }
+        }, "follow-reader");
+        reader.setDaemon(true);
+        reader.start();
         
-        // 提取用户ID和名称
-        List<Long> mids = new ArrayList<>();
-        Map<Long, String> midToName = new HashMap<>();
-        Map<Long, List<String>> midToTags = new HashMap<>();
+        // 获取用户视频数据，解析、关联和汇总由流水线的后续阶段并行完成，原始响应边获取边写入缓存
+        LongObjectMap<FollowRecord> records = new LongObjectMap<>(); // 已读取的关注记录，用于去重
+        List<FollowRecord> followList = new ArrayList<>(); // 按读取顺序保存的关注列表
+        TagDictionary tagDictionary = source.getTagDictionary();
+        UserPipeline pipeline = new UserPipeline(tagDictionary, histogram);
+        File cacheFile = new File(outputDir, "user_data_cache.json");
+        pipeline.setCacheFile(cacheFile);
         
-        for (Map<String, Object> user : userData) {
-            long mid = ((Number) user.get("mid")).longValue();
-            String name = (String) user.get("name");
-            List<String> tags = objectMapper.convertValue(user.get("tag"), new TypeReference<List<String>>() {});
-            
-            mids.add(mid);
-            midToName.put(mid, name);
-            midToTags.put(mid, tags);
+        List<UserData> users;
+        try {
+            users = pipeline.run(emitter -> {
+                fetchAll(queue, records, followList, emitter);
+                if (readError.get() != null) {
+                    throw new Exception("读取关注列表失败: " + readError.get().getMessage(), readError.get());
+                }
+                // 新缓存文件在流水线结束时才替换旧文件，此时旧文件仍在，没有获取到的用户沿用其中上次的结果，
+                // 否则时间预算内只抓取了一部分时，其余用户的分析结果会随缓存文件、表格和会话快照一起丢失
+                reusedCount = reusePrevious(cacheFile, emitter);
+            });
+        } finally {
+            reader.interrupt();
         }
         
-        // 设置进度条
-        progressBar.setMaximum(mids.size());
-        progressBar.setValue(0);
+        if (!(source instanceof FollowListReader)) {
+            // 关注列表来自账号时同时保存为export_uids.json，加载缓存时需要用它获取用户名和分组
+            FollowListReader.write(new File(outputDir, "export_uids.json"), followList, tagDictionary);
+        }
         
-        // 获取用户视频数据
-        statusLabel.setText("正在从B站API获取用户视频数据...");
-        List<Map<String, Object>> userVidList = new ArrayList<>();
+        // 没有获取到的用户明确列出，不会当作没有视频的用户
+        if (!unfetched.isEmpty() || !failed.isEmpty()) {
+            unfetchedReport = DataExporter.exportUnfetched(unfetched, failed, outputDir);
+        }
         
-        try (CloseableHttpClient httpClient = HttpClients.createDefault()) {
-            int count = 0;
-            int batchCount = 0;
-            List<Long> currentBatch = new ArrayList<>();
-            
-            for (int i = 0; i < mids.size(); i++) {
-                currentBatch.add(mids.get(i));
-                
-                // 当达到批量大小或处理到最后一个用户时，处理当前批次
-                if (currentBatch.size() >= batchSize || i == mids.size() - 1) {
-                    batchCount++;
-                    statusLabel.setText(String.format("正在处理第 %d 批数据 (共 %d 个用户)", batchCount, currentBatch.size()));
-                    
-                    // 并行处理当前批次的用户
-                    for (Long mid : currentBatch) {
-                        try {
-                            String url = String.format("https://api.bilibili.com/x/series/recArchivesByKeywords?mid=%d&keywords=&orderby=senddate", mid);
-                            HttpGet request = new HttpGet(url);
-                            
-                            // 设置请求头
-                            for (Map.Entry<String, String> entry : HEADERS.entrySet()) {
-                                request.setHeader(entry.getKey(), entry.getValue());
-                            }
-                            
-                            // 设置超时
-                            RequestConfig requestConfig = RequestConfig.custom()
-                                    .setConnectTimeout(5000)
-                                    .setSocketTimeout(5000)
-                                    .build();
-                            request.setConfig(requestConfig);
-                            
-                            // 执行请求
-                            try (CloseableHttpResponse response = httpClient.execute(request)) {
-                                HttpEntity entity = response.getEntity();
-                                if (entity != null) {
-                                    String result = EntityUtils.toString(entity);
-                                    JsonNode userVid = objectMapper.readTree(result);
-                                    
-                                    Map<String, Object> entry = new HashMap<>();
-                                    entry.put("mid", mid);
-                                    entry.put("user_vid", userVid);
-                                    userVidList.add(entry);
-                                }
-                            }
-                            
-                            // 更新进度
-                            count++;
-                            publish(count);
-                            statusLabel.setText(String.format("正在获取用户数据 (%d/%d): %s", count, mids.size(), midToName.get(mid)));
-                            
-                        } catch (Exception e) {
-                            System.err.println("获取用户 " + mid + " 的数据时出错: " + e.getMessage());
-                            // 继续处理下一个用户
-                            count++;
-                            publish(count);
-                        }
-                    }
-                    
-                    // 清空当前批次，准备下一批
-                    currentBatch.clear();
-                    
-                    // 批次间休眠，避免请求过快
-                    if (i < mids.size() - 1) { // 如果不是最后一批
-                        statusLabel.setText(String.format("等待 %.1f 秒后处理下一批...", batchInterval));
-                        // 将秒转换为毫秒，支持小数
-                        Thread.sleep((long)(batchInterval * 1000));
-                    }
+        // 返回所有用户数据，不再筛选不活跃用户
+        // 筛选工作将由MainApp中的updateFilter方法完成，与CacheLoadingTask保持一致
+        statusLabel.setText("处理完成，共 " + users.size() + " 个用户"
+                + (responseCache != null ? String.format("，响应缓存命中率 %.1f%%", responseCache.getHitRatio() * 100) : "")
+                + (limiter != null ? "，" + limiter : "")
+                + (endpointSummary != null ? "，" + endpointSummary : "")
+                + (unfetchedReport != null ? String.format("，%d 个超出时间预算、%d 个请求失败(%d 个沿用上次结果)，已列入 %s",
+                        unfetched.size(), failed.size(), reusedCount, unfetchedReport) : ""));
+        return users;
+    }
+    
+    // 超出时间预算和请求失败的用户从上次的缓存文件中取出原始响应交给流水线，返回找到的用户数
+    private int reusePrevious(File cacheFile, UserPipeline.Emitter emitter) throws IOException, InterruptedException {
+        LongObjectMap<FollowRecord> missing = new LongObjectMap<>(unfetched.size() + failed.size());
+        for (FollowRecord record : unfetched) {
+            missing.put(record.getMid(), record);
+        }
+        synchronized (failed) {
+            for (FollowRecord record : failed) {
+                missing.put(record.getMid(), record);
+            }
+        }
+        if (missing.size() == 0) {
+            return 0;
+        }
+        statusLabel.setText("正在从上次的缓存中读取未获取的 " + missing.size() + " 个用户...");
+        return UserPipeline.emitCached(cacheFile, missing, emitter);
+    }
+    
+    // 按批次取出关注记录并请求视频列表，原始响应交给流水线
+    private void fetchAll(BlockingQueue<FollowRecord> queue, LongObjectMap<FollowRecord> records, List<FollowRecord> followList,
+                          UserPipeline.Emitter emitter) throws Exception {
+        // 有时间预算或排序规则时先读完关注列表再排序，最需要的用户最先抓取，预算不够时剩下的是最不重要的；否则边读边抓取
+        Iterator<FollowRecord> ordered = null;
+        List<FetchPriority.Rule> rules = priorityRules != null ? priorityRules
+                : budget.isLimited() ? Collections.singletonList(FetchPriority.Rule.CANDIDATE) : Collections.emptyList();
+        if (budget.isLimited() || !rules.isEmpty()) {
+            statusLabel.setText("正在读取关注列表...");
+            for (FollowRecord next = queue.take(); next != END_OF_INPUT; next = queue.take()) {
+                if (records.putIfAbsent(next.getMid(), next) == null) {
+                    followList.add(next);
                 }
             }
+            ordered = new FetchPriority(previousResults, inactiveDays, rules).order(followList).iterator();
+            budget.setTotal(followList.size());
         }
         
-        // 保存原始数据到缓存文件
-        statusLabel.setText("正在保存用户数据到缓存...");
-        // 将缓存文件保存在与输入文件相同的目录下
-        File cacheFile = new File(inputFile.getParentFile(), "user_data_cache.json");
-        objectMapper.writerWithDefaultPrettyPrinter().writeValue(cacheFile, userVidList);
-        
-        // 处理数据
-        statusLabel.setText("正在处理数据...");
-        return processUserData(userVidList, midToName, midToTags);
+        try (ActivitySource client = activitySource != null ? activitySource : ActivitySource.create()) {
+            client.setDeadline(budget.deadlineMillis());
+            if (limiter != null) {
+                fetchConcurrently(client, ordered, queue, records, followList, emitter);
+            } else {
+                fetchInBatches(client, ordered, queue, records, followList, emitter);
+            }
+            if (client instanceof EndpointRouter) {
+                endpointSummary = client.toString();
+            }
+            
+            // 后台刷新使用同一个数据来源，关闭前等待其完成，再把新内容写入磁盘；有时间预算时最多等到截止时间
+            if (responseCache != null) {
+                statusLabel.setText("正在等待缓存刷新完成...");
+                responseCache.awaitRevalidation(Math.min(TimeUnit.MINUTES.toMillis(1), budget.remainingMillis()));
+                responseCache.flush();
+            }
+        }
     }
     
-    private List<UserData> processUserData(List<Map<String, Object>> userVidList, 
-                                          Map<Long, String> midToName, 
-                                          Map<Long, List<String>> midToTags) throws Exception {
-        List<UserData> allUsers = new ArrayList<>();
-        List<UserData> usersWithNoVideos = new ArrayList<>();
+    // 取出下一个要抓取的关注记录：已排好序时直接取，否则从读取队列中取并去重；没有更多时返回END_OF_INPUT
+    private FollowRecord nextRecord(Iterator<FollowRecord> ordered, BlockingQueue<FollowRecord> queue,
+                                    LongObjectMap<FollowRecord> records, List<FollowRecord> followList) throws InterruptedException {
+        if (ordered != null) {
+            return ordered.hasNext() ? ordered.next() : END_OF_INPUT;
+        }
+        for (FollowRecord next = queue.take(); next != END_OF_INPUT; next = queue.take()) {
+            if (records.putIfAbsent(next.getMid(), next) == null) {
+                followList.add(next);
+                return next;
+            }
+        }
+        return END_OF_INPUT;
+    }
+    
+    // 固定批次：每批batchSize个请求依次发出，批次之间休眠batchInterval秒
+    private void fetchInBatches(ActivitySource client, Iterator<FollowRecord> ordered, BlockingQueue<FollowRecord> queue,
+                                LongObjectMap<FollowRecord> records, List<FollowRecord> followList,
+                                UserPipeline.Emitter emitter) throws InterruptedException {
+        int groupSize = Math.max(1, client.getBatchSize());
+        int batchCount = 0;
+        List<FollowRecord> currentBatch = new ArrayList<>();
+        boolean endOfInput = false;
         
-        for (Map<String, Object> entry : userVidList) {
-            long mid = ((Number) entry.get("mid")).longValue();
-            JsonNode userVid = (JsonNode) entry.get("user_vid");
+        while (!endOfInput) {
+            // 凑满一批或读到结束标记时处理当前批次；批量来源每个请求查询一组用户，一批为batchSize个请求
+            FollowRecord next = nextRecord(ordered, queue, records, followList);
+            if (next == END_OF_INPUT) {
+                endOfInput = true;
+            } else {
+                currentBatch.add(next);
+            }
+            if (currentBatch.isEmpty() || (currentBatch.size() < batchSize * groupSize && !endOfInput)) {
+                continue;
+            }
             
-            try {
-                // 检查是否有视频数据
-                if (userVid.path("data").path("archives").size() > 0) {
-                    JsonNode firstVideo = userVid.path("data").path("archives").get(0);
-                    String videoTitle = firstVideo.path("title").asText();
-                    long pubdate = firstVideo.path("pubdate").asLong();
-                    String bvid = firstVideo.path("bvid").asText();
-                    
-                    UserData userData = new UserData(
-                            mid, 
-                            midToName.get(mid), 
-                            midToTags.get(mid), 
-                            videoTitle, 
-                            pubdate, 
-                            bvid);
-                    
-                    allUsers.add(userData);
+            batchCount++;
+            statusLabel.setText(String.format("正在处理第 %d 批数据 (共 %d 个用户)", batchCount, currentBatch.size()));
+            long requestsBefore = client.getRequestCount();
+            
+            for (int from = 0; from < currentBatch.size(); from += groupSize) {
+                if (budget.isExpired()) {
+                    // 到达截止时间，本批剩余和尚未取出的用户都不再抓取
+                    unfetched.addAll(currentBatch.subList(from, currentBatch.size()));
+                    ordered.forEachRemaining(unfetched::add);
+                    endOfInput = true;
+                    break;
+                }
+                fetchGroup(client, currentBatch.subList(from, Math.min(currentBatch.size(), from + groupSize)), emitter, null);
+            }
+            
+            // 清空当前批次，准备下一批
+            currentBatch.clear();
+            
+            // 批次间休眠，避免请求过快；整批都来自缓存时不需要等待，等待时间不超过剩余预算
+            boolean requested = client.getRequestCount() > requestsBefore;
+            boolean last = ordered != null ? !ordered.hasNext() : queue.peek() == END_OF_INPUT;
+            if (requested && !endOfInput && !last) { // 如果不是最后一批
+                if (budget.isLimited() && budget.affordableItems() < followList.size() - fetchedCount.get()) {
+                    statusLabel.setText(String.format("时间预算不足，按当前速度还能获取约 %d 个用户，等待 %.1f 秒...",
+                            budget.affordableItems(), batchInterval));
                 } else {
-                    // 用户没有视频
-                    UserData userData = new UserData(
-                            mid, 
-                            midToName.get(mid), 
-                            midToTags.get(mid));
-                    
-                    usersWithNoVideos.add(userData);
+                    statusLabel.setText(String.format("等待 %.1f 秒后处理下一批...", batchInterval));
+                }
+                // 将秒转换为毫秒，支持小数
+                Thread.sleep(Math.min((long)(batchInterval * 1000), budget.remainingMillis()));
+            }
+        }
+    }
+    
+    // 自适应并发：每组一个请求，同时进行的请求数由ConcurrencyLimiter按延迟和限流情况调整，不在批次之间休眠
+    private void fetchConcurrently(ActivitySource client, Iterator<FollowRecord> ordered, BlockingQueue<FollowRecord> queue,
+                                   LongObjectMap<FollowRecord> records, List<FollowRecord> followList,
+                                   UserPipeline.Emitter emitter) throws Exception {
+        int groupSize = Math.max(1, client.getBatchSize());
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        ExecutorService workers = Executors.newFixedThreadPool(limiter.getMaxLimit(), r -> {
+            Thread thread = new Thread(r, "fetch-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Queue<FollowRecord> retries = new ConcurrentLinkedQueue<>(); // 被限流、等待重新请求的用户
+        try {
+            List<FollowRecord> group = new ArrayList<>(groupSize);
+            boolean endOfInput = false;
+            while (failure.get() == null) {
+                // 先重新请求被限流的用户，再取新的关注记录
+                FollowRecord next = retries.poll();
+                if (next == null && !endOfInput) {
+                    next = nextRecord(ordered, queue, records, followList);
+                    if (next == END_OF_INPUT) {
+                        endOfInput = true;
+                        next = null;
+                    }
+                }
+                if (next != null) {
+                    group.add(next);
+                }
+                if (group.isEmpty() || (group.size() < groupSize && next != null)) {
+                    if (endOfInput && group.isEmpty()) {
+                        // 输入已读完，等进行中的请求结束后看是否还有需要重新请求的用户
+                        limiter.awaitIdle();
+                        if (retries.isEmpty()) {
+                            break;
+                        }
+                    }
+                    continue;
                 }
-            } catch (Exception e) {
-                System.err.println("处理用户 " + mid + " 的数据时出错: " + e.getMessage());
-                // 创建一个没有视频的用户数据对象
-                UserData userData = new UserData(
-                        mid, 
-                        midToName.get(mid), 
-                        midToTags.get(mid));
                 
-                usersWithNoVideos.add(userData);
+                if (limiter.isPaused()) {
+                    statusLabel.setText(String.format("请求被限流，暂停 %.1f 秒，%s", ConcurrencyLimiter.THROTTLE_PAUSE_MILLIS / 1000.0, limiter));
+                }
+                long start = budget.isExpired() ? -1 : limiter.acquire(budget.remainingMillis());
+                if (start < 0) {
+                    // 到达截止时间，这一组和尚未取出的用户都不再抓取，等待重新请求的用户记为请求失败
+                    unfetched.addAll(group);
+                    if (ordered != null) {
+                        ordered.forEachRemaining(unfetched::add);
+                    }
+                    limiter.awaitIdle();
+                    synchronized (failed) {
+                        failed.addAll(retries);
+                    }
+                    break;
+                }
+                List<FollowRecord> current = group;
+                group = new ArrayList<>(groupSize);
+                workers.execute(() -> {
+                    ConcurrencyLimiter.Outcome outcome = ConcurrencyLimiter.Outcome.ERROR;
+                    try {
+                        outcome = fetchGroup(client, current, emitter, retries);
+                    } catch (Exception e) {
+                        failure.compareAndSet(null, e);
+                    } finally {
+                        limiter.release(start, outcome);
+                    }
+                });
+            }
+            limiter.awaitIdle();
+        } finally {
+            workers.shutdownNow();
+            limiter.save();
+        }
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+    }
+    
+    /**
+     * 请求一组用户并把结果交给流水线，可由多个线程同时调用
+     * 没有返回内容或被限流的用户记为请求失败，不会当作没有视频的用户
+     * @param retries 被限流的用户放入该队列重新请求(有次数限制)，null表示直接记为失败
+     * @return 请求结果，全部来自响应缓存时为IGNORED
+     */
+    private ConcurrencyLimiter.Outcome fetchGroup(ActivitySource client, List<FollowRecord> group, UserPipeline.Emitter emitter,
+                                                  Queue<FollowRecord> retries) throws InterruptedException {
+        long[] mids = new long[group.size()];
+        for (int i = 0; i < mids.length; i++) {
+            mids[i] = group.get(i).getMid();
+        }
+        LongObjectMap<byte[]> bodies = new LongObjectMap<>(mids.length);
+        ConcurrencyLimiter.Outcome outcome = ConcurrencyLimiter.Outcome.SUCCESS;
+        try {
+            // 优先使用响应缓存，缓存中没有可用内容的用户才发出请求
+            if (responseCache != null) {
+                if (!responseCache.getAll(mids, client, bodies)) {
+                    outcome = ConcurrencyLimiter.Outcome.IGNORED;
+                }
+            } else {
+                bodies = client.fetch(mids);
+            }
+        } catch (IOException e) {
+            System.err.println("获取用户 " + mids[0] + (mids.length > 1 ? " 等 " + mids.length + " 个用户" : "")
+                    + " 的数据时出错: " + e.getMessage());
+            outcome = ConcurrencyLimiter.Outcome.ERROR;
+            // 继续处理下一组，缓存中已有的用户不受影响
+        }
+        int done = 0;
+        for (FollowRecord record : group) {
+            byte[] body = bodies.get(record.getMid());
+            if (body != null && ArchiveSummary.isThrottled(body)) {
+                body = null;
+                if (outcome == ConcurrencyLimiter.Outcome.SUCCESS) {
+                    outcome = ConcurrencyLimiter.Outcome.THROTTLED;
+                }
+                if (retries != null && throttleRetries.merge(record.getMid(), 1, Integer::sum) <= MAX_THROTTLE_RETRIES) {
+                    // 缓存的限流响应也要删除，否则重新请求仍会读到它
+                    if (responseCache != null) {
+                        responseCache.invalidate(record.getMid());
+                    }
+                    retries.add(record);
+                    continue;
+                }
+            }
+            done++;
+            if (body != null) {
+                emitter.emit(record, record.getMid(), body);
+            } else {
+                synchronized (failed) {
+                    failed.add(record);
+                }
             }
         }
         
-        // 合并所有用户列表
-        List<UserData> allUsersCombined = new ArrayList<>(allUsers);
-        allUsersCombined.addAll(usersWithNoVideos);
-        
-        // 返回所有用户数据，不再筛选不活跃用户
-        // 筛选工作将由MainApp中的updateInactiveDaysFilter方法完成，与CacheLoadingTask保持一致
-        statusLabel.setText("处理完成，共 " + allUsersCombined.size() + " 个用户");
-        return allUsersCombined;
+        // 更新进度，等待重新请求的用户不计入
+        int count = fetchedCount.addAndGet(done);
+        budget.itemsDone(done);
+        publish(count);
+        statusLabel.setText(String.format("正在获取用户数据 (%d/%d)%s: %s", count, Math.max(count, progressBar.getMaximum()),
+                limiter != null ? "，并发 " + limiter.getLimit() : "", group.get(group.size() - 1).getName()));
+        return outcome;
     }
     
     @Override
@@ -251,7 +501,8 @@ public class DataProcessingTask extends SwingWorker<List<UserData>, Integer> {
         if (!chunks.isEmpty()) {
             int progress = chunks.get(chunks.size() - 1);
             progressBar.setValue(progress);
-            progressBar.setString(progress + " / " + progressBar.getMaximum());
+            budget.setTotal(progressBar.getMaximum());
+            progressBar.setString(progress + " / " + progressBar.getMaximum() + "，" + budget.describe());
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,475 @@
+package org.example;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.http.HttpHost;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.util.EntityUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 多接口路由
+ * 同一份数据可以从多个等价的接口获取(recArchivesByKeywords、空间投稿列表等)，它们各自单独限流。
+ * 路由把请求分散到这些接口上，每个接口有自己的速率预算，总吞吐量是各接口之和：
+ *   每次选择速率预算最快可用的健康接口，预算相同时轮流使用；
+ *   某个接口被限流或请求失败时，这一组中没有结果的用户立即转到下一个接口重新请求，
+ *   该接口进入冷却期，期间不再分配请求，连续失败时冷却期加倍；冷却期过后恢复使用，成功一次即重置。
+ * 可用的接口都试过仍失败时返回最后得到的响应(例如限流响应)，由调用方按限流处理，不会转给冷却中的接口；
+ * 一开始就没有可用接口时等到最早的冷却期结束或有路线恢复，最多等到截止时间，期间不发出任何请求。
+ * 各接口的响应已经是recArchivesByKeywords格式，路由不改变内容。
+ *
+ * 接口的速率限制是按出口IP计算的，配置了代理池时每个接口经由每个出口(直连或代理)各是一条路线，
+ * 各自有独立的速率预算，吞吐量随出口数量线性增加。有健康检查的路线(经由代理)连续失败多次后被剔除，
+ * 不再参与分配，后台定期通过该路线请求一次nav接口，恢复正常后才重新加入
+ */
+public class EndpointRouter implements ActivitySource {
+    /** 配置接口列表的系统属性名，值如 "keywords:2,space:1"，即接口名:每秒请求数，省略速率表示不限 */
+    public static final String ENDPOINTS_PROPERTY = "bilibili.activity.endpoints";
+    /** 配置代理池的系统属性名，值如 "direct,127.0.0.1:8001,127.0.0.1:8002"，direct表示直连 */
+    public static final String PROXIES_PROPERTY = "bilibili.activity.proxies";
+    /** 代理池中表示直连的名称 */
+    public static final String DIRECT = "direct";
+    private static final long INITIAL_COOLDOWN_MILLIS = TimeUnit.SECONDS.toMillis(30);
+    private static final long MAX_COOLDOWN_MILLIS = TimeUnit.MINUTES.toMillis(10);
+    private static final int EJECT_AFTER_FAILURES = 3; // 连续失败多少次后剔除
+    private static final long HEALTH_CHECK_INTERVAL_MILLIS = TimeUnit.SECONDS.toMillis(5);
+    private static final int HEALTH_CHECK_TIMEOUT_MILLIS = 3000;
+
+    private final List<Endpoint> endpoints = new ArrayList<>();
+    private int nextIndex; // 预算相同时轮流使用的起点
+    private long deadlineMillis = Long.MAX_VALUE; // 等待接口恢复的最晚时间
+    private ScheduledExecutorService healthChecker; // 被剔除路线的健康检查，首次剔除时创建
+
+    /**
+     * 路线的健康检查
+     */
+    public interface HealthCheck {
+        /**
+         * @return 路线是否恢复正常
+         * @throws IOException 检查请求失败时，视为仍不正常
+         */
+        boolean check() throws IOException;
+    }
+
+    /**
+     * 一个接口及其速率预算和健康状态
+     */
+    private static final class Endpoint {
+        final String name;
+        final ActivitySource source;
+        final RateLimiter budget; // null表示不限
+        final HealthCheck healthCheck; // null表示不会被剔除，只按冷却期暂停
+        int consecutiveFailures;
+        ScheduledFuture<?> ejection; // 被剔除期间的健康检查任务，null表示未被剔除
+        long cooldownMillis; // 当前冷却期长度，0表示健康
+        long cooldownUntilMillis;
+        long requests; // 分配到的fetch调用数
+        long failures; // 被限流或请求失败的调用数
+        long failovers; // 接替其他接口完成的调用数
+
+        Endpoint(String name, ActivitySource source, RateLimiter budget, HealthCheck healthCheck) {
+            this.name = name;
+            this.source = source;
+            this.budget = budget;
+            this.healthCheck = healthCheck;
+        }
+    }
+
+    /**
+     * 添加一个接口，先添加的接口在预算相同时先使用
+     * @param name 显示名称
+     * @param source 接口的数据来源，路由关闭时一起关闭
+     * @param requestsPerSecond 每秒最多分配的fetch调用数，0表示不限
+     */
+    public void addEndpoint(String name, ActivitySource source, double requestsPerSecond) {
+        addEndpoint(name, source, requestsPerSecond, null);
+    }
+
+    /**
+     * 添加一条可被剔除的路线
+     * @param name 显示名称
+     * @param source 路线的数据来源，路由关闭时一起关闭
+     * @param requestsPerSecond 每秒最多分配的fetch调用数，0表示不限
+     * @param healthCheck 剔除后判断能否恢复的检查，null表示不剔除
+     */
+    public synchronized void addEndpoint(String name, ActivitySource source, double requestsPerSecond, HealthCheck healthCheck) {
+        if (requestsPerSecond < 0) {
+            throw new IllegalArgumentException("接口 " + name + " 的速率不能为负数");
+        }
+        endpoints.add(new Endpoint(name, source, requestsPerSecond > 0 ? new RateLimiter(requestsPerSecond) : null, healthCheck));
+    }
+
+    /**
+     * 按配置创建路由，例如 "keywords:2,space:1"，全部直连
+     * 接口名：keywords(recArchivesByKeywords)、space(空间投稿列表，WBI签名)、batch(批量接口，批量大小取自 bilibili.activity.batch)
+     * @param spec 接口列表，以逗号分隔
+     * @return 路由
+     * @throws IllegalArgumentException 接口名或速率无法识别时
+     */
+    public static EndpointRouter parse(String spec) {
+        return parse(spec, DIRECT);
+    }
+
+    /**
+     * 按配置创建路由，每个接口经由每个出口各建一条路线，速率是每条路线的预算
+     * @param spec 接口列表，例如 "keywords:2,space:1"
+     * @param proxies 出口列表，例如 "direct,127.0.0.1:8001"，空白表示只直连
+     * @return 路由
+     * @throws IllegalArgumentException 接口名、速率或代理地址无法识别时
+     */
+    public static EndpointRouter parse(String spec, String proxies) {
+        EndpointRouter router = new EndpointRouter();
+        try {
+            addEndpoints(router, spec, parseProxies(proxies));
+        } catch (IllegalArgumentException e) {
+            try {
+                router.close(); // 已创建的客户端
+            } catch (IOException ignored) {
+            }
+            throw e;
+        }
+        return router;
+    }
+
+    /**
+     * 解析出口列表
+     * @param proxies 以逗号分隔的 host:port、http://host:port 或 direct
+     * @return 出口列表，直连为null
+     * @throws IllegalArgumentException 代理地址无效时
+     */
+    static List<HttpHost> parseProxies(String proxies) {
+        List<HttpHost> hosts = new ArrayList<>();
+        for (String part : proxies.split("[,，]")) {
+            String item = part.trim();
+            if (item.isEmpty()) {
+                continue;
+            }
+            if (DIRECT.equalsIgnoreCase(item)) {
+                hosts.add(null);
+                continue;
+            }
+            HttpHost host;
+            try {
+                host = HttpHost.create(item);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("代理地址无效: " + item);
+            }
+            if (host.getPort() <= 0) {
+                throw new IllegalArgumentException("代理地址缺少端口: " + item);
+            }
+            hosts.add(host);
+        }
+        if (hosts.isEmpty()) {
+            hosts.add(null);
+        }
+        return hosts;
+    }
+
+    private static void addEndpoints(EndpointRouter router, String spec, List<HttpHost> proxies) {
+        for (String part : spec.split("[,，]")) {
+            String item = part.trim();
+            if (item.isEmpty()) {
+                continue;
+            }
+            int colon = item.indexOf(':');
+            String name = colon >= 0 ? item.substring(0, colon).trim() : item;
+            double rate = 0;
+            if (colon >= 0) {
+                try {
+                    rate = Double.parseDouble(item.substring(colon + 1).trim());
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("接口 " + name + " 的速率无效: " + item.substring(colon + 1).trim());
+                }
+            }
+            if (rate < 0) {
+                throw new IllegalArgumentException("接口 " + name + " 的速率不能为负数");
+            }
+            for (HttpHost proxy : proxies) {
+                if (proxy == null) {
+                    router.addEndpoint(name, createSource(name, null), rate);
+                } else {
+                    router.addEndpoint(name + "@" + proxy.toHostString(), createSource(name, proxy), rate, () -> probe(proxy));
+                }
+            }
+        }
+        if (router.endpoints.isEmpty()) {
+            throw new IllegalArgumentException("没有配置任何接口");
+        }
+    }
+
+    private static ActivitySource createSource(String name, HttpHost proxy) {
+        switch (name) {
+            case "keywords":
+                return new ArchiveClient(proxy);
+            case "space":
+                return new SpaceArchiveClient(proxy);
+            case "batch":
+                return new BatchArchiveClient(Math.max(1, Integer.getInteger(BATCH_SIZE_PROPERTY, BatchArchiveClient.MAX_BATCH_SIZE)), proxy);
+            default:
+                throw new IllegalArgumentException("未知的接口: " + name);
+        }
+    }
+
+    // 各接口批量大小的最小值，保证每组都能交给任意一个接口
+    @Override
+    public synchronized int getBatchSize() {
+        int batchSize = Integer.MAX_VALUE;
+        for (Endpoint endpoint : endpoints) {
+            batchSize = Math.min(batchSize, endpoint.source.getBatchSize());
+        }
+        return endpoints.isEmpty() ? 1 : batchSize;
+    }
+
+    @Override
+    public synchronized void setDeadline(long deadlineMillis) {
+        this.deadlineMillis = deadlineMillis;
+        for (Endpoint endpoint : endpoints) {
+            endpoint.source.setDeadline(deadlineMillis);
+        }
+    }
+
+    @Override
+    public LongObjectMap<byte[]> fetch(long[] mids) throws IOException {
+        LongObjectMap<byte[]> bodies = new LongObjectMap<>(mids.length);
+        List<Endpoint> tried = new ArrayList<>();
+        IOException lastError = null;
+        long[] pending = mids;
+        while (pending.length > 0) {
+            Endpoint endpoint = choose(tried);
+            if (endpoint == null) {
+                // 可用的接口都试过了，返回已有的结果；一个都没试过时等待接口恢复
+                if (!tried.isEmpty() || !awaitAvailable()) {
+                    break;
+                }
+                continue;
+            }
+            tried.add(endpoint);
+            if (endpoint.budget != null) {
+                try {
+                    endpoint.budget.acquire();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("等待接口 " + endpoint.name + " 的速率预算时被中断", e);
+                }
+            }
+            try {
+                LongObjectMap<byte[]> result = endpoint.source.fetch(pending);
+                // 被限流或没有返回内容的用户交给下一个接口；限流响应先保留，所有接口都失败时返回它
+                long[] retry = new long[pending.length];
+                int count = 0;
+                for (long mid : pending) {
+                    byte[] body = result.get(mid);
+                    if (body != null) {
+                        bodies.put(mid, body);
+                    }
+                    if (body == null || !ArchiveSummary.isUsable(body)) {
+                        retry[count++] = mid;
+                    }
+                }
+                finished(endpoint, count == 0, tried.size() > 1);
+                pending = Arrays.copyOf(retry, count);
+            } catch (IOException e) {
+                lastError = e;
+                finished(endpoint, false, tried.size() > 1);
+            }
+        }
+        if (bodies.size() == 0 && lastError != null) {
+            throw lastError;
+        }
+        return bodies;
+    }
+
+    /**
+     * 代理路线的健康检查：经由代理请求nav接口，未登录时也会正常返回
+     * @param proxy HTTP代理
+     * @return 代理能转发请求且没有被限流
+     * @throws IOException 连接代理或读取响应失败时
+     */
+    static boolean probe(HttpHost proxy) throws IOException {
+        try (CloseableHttpClient client = HttpClients.custom().setProxy(proxy).build()) {
+            HttpGet request = new HttpGet(BilibiliApi.baseUrl() + "/x/web-interface/nav");
+            BilibiliApi.prepare(request, HEALTH_CHECK_TIMEOUT_MILLIS);
+            try (CloseableHttpResponse response = client.execute(request)) {
+                if (response.getStatusLine().getStatusCode() != 200 || response.getEntity() == null) {
+                    return false;
+                }
+                int code = new ObjectMapper().readTree(EntityUtils.toByteArray(response.getEntity())).path("code").asInt(0);
+                return !BilibiliApi.isThrottled(code);
+            }
+        }
+    }
+
+    // 选择未试过的接口中速率预算最快可用的健康接口；冷却中和被剔除的不选，没有可选的接口时返回null
+    private synchronized Endpoint choose(List<Endpoint> tried) {
+        long now = System.currentTimeMillis();
+        Endpoint best = null;
+        long bestWait = Long.MAX_VALUE;
+        for (int i = 0; i < endpoints.size(); i++) {
+            Endpoint endpoint = endpoints.get((nextIndex + i) % endpoints.size());
+            if (tried.contains(endpoint) || endpoint.ejection != null || now < endpoint.cooldownUntilMillis) {
+                continue;
+            }
+            long wait = endpoint.budget != null ? endpoint.budget.waitNanos() : 0;
+            if (wait < bestWait) {
+                best = endpoint;
+                bestWait = wait;
+            }
+        }
+        if (!endpoints.isEmpty()) {
+            nextIndex = (nextIndex + 1) % endpoints.size();
+        }
+        return best;
+    }
+
+    /**
+     * 没有健康接口时等待，直到最早的冷却期结束或有被剔除的路线恢复
+     * @return 是否有接口恢复，到达截止时间或没有接口时为false
+     * @throws IOException 等待被中断时
+     */
+    private synchronized boolean awaitAvailable() throws IOException {
+        while (true) {
+            long now = System.currentTimeMillis();
+            long until = Long.MAX_VALUE; // 最早的冷却结束时间，被剔除的路线恢复时由readmit唤醒
+            boolean waitable = false;
+            for (Endpoint endpoint : endpoints) {
+                if (endpoint.ejection == null && now >= endpoint.cooldownUntilMillis) {
+                    return true;
+                }
+                waitable = true;
+                if (endpoint.ejection == null) {
+                    until = Math.min(until, endpoint.cooldownUntilMillis);
+                }
+            }
+            if (!waitable || now >= deadlineMillis) {
+                return false;
+            }
+            long wakeAt = Math.min(until, deadlineMillis);
+            try {
+                wait(wakeAt == Long.MAX_VALUE ? 0 : Math.max(1, wakeAt - now));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("等待接口恢复时被中断", e);
+            }
+        }
+    }
+
+    // 记录一次调用的结果，更新接口的健康状态
+    private synchronized void finished(Endpoint endpoint, boolean success, boolean failover) {
+        endpoint.requests++;
+        if (failover) {
+            endpoint.failovers++;
+        }
+        if (success) {
+            endpoint.consecutiveFailures = 0;
+            endpoint.cooldownMillis = 0;
+            endpoint.cooldownUntilMillis = 0;
+            return;
+        }
+        endpoint.failures++;
+        endpoint.consecutiveFailures++;
+        if (endpoint.healthCheck != null) {
+            // 有健康检查的路线不按时间冷却，连续失败到一定次数后剔除，由健康检查决定何时恢复
+            if (endpoint.ejection == null && endpoint.consecutiveFailures >= EJECT_AFTER_FAILURES) {
+                eject(endpoint);
+            }
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (now >= endpoint.cooldownUntilMillis) {
+            // 同一冷却期内其他线程的失败不再重复加倍
+            endpoint.cooldownMillis = endpoint.cooldownMillis == 0 ? INITIAL_COOLDOWN_MILLIS
+                    : Math.min(MAX_COOLDOWN_MILLIS, endpoint.cooldownMillis * 2);
+            endpoint.cooldownUntilMillis = now + endpoint.cooldownMillis;
+        }
+    }
+
+    // 剔除路线，后台定期检查，恢复后重新加入
+    private void eject(Endpoint endpoint) {
+        if (healthChecker == null) {
+            healthChecker = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "endpoint-health-check");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        System.err.println("路线 " + endpoint.name + " 连续失败 " + endpoint.consecutiveFailures + " 次，暂时剔除");
+        endpoint.ejection = healthChecker.scheduleWithFixedDelay(() -> {
+            boolean healthy;
+            try {
+                healthy = endpoint.healthCheck.check();
+            } catch (IOException e) {
+                healthy = false;
+            }
+            if (healthy) {
+                readmit(endpoint);
+            }
+        }, HEALTH_CHECK_INTERVAL_MILLIS, HEALTH_CHECK_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized void readmit(Endpoint endpoint) {
+        if (endpoint.ejection != null) {
+            endpoint.ejection.cancel(false);
+            endpoint.ejection = null;
+        }
+        endpoint.consecutiveFailures = 0;
+        endpoint.cooldownMillis = 0;
+        endpoint.cooldownUntilMillis = 0;
+        notifyAll(); // 唤醒等待接口恢复的请求
+    }
+
+    // 所有接口实际发出的请求数之和
+    @Override
+    public synchronized long getRequestCount() {
+        long count = 0;
+        for (Endpoint endpoint : endpoints) {
+            count += endpoint.source.getRequestCount();
+        }
+        return count;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (healthChecker != null) {
+            healthChecker.shutdownNow();
+        }
+        IOException error = null;
+        for (Endpoint endpoint : endpoints) {
+            try {
+                endpoint.source.close();
+            } catch (IOException e) {
+                error = e;
+            }
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    // 各接口的分配情况，例如 "keywords 120 次(失败 3，接替 0)、space 60 次(失败 0，接替 3)"
+    @Override
+    public synchronized String toString() {
+        StringBuilder text = new StringBuilder();
+        for (Endpoint endpoint : endpoints) {
+            if (text.length() > 0) {
+                text.append('、');
+            }
+            text.append(String.format("%s %d 次(失败 %d，接替 %d)", endpoint.name, endpoint.requests, endpoint.failures, endpoint.failovers));
+            if (endpoint.ejection != null) {
+                text.append("已剔除");
+            } else if (System.currentTimeMillis() < endpoint.cooldownUntilMillis) {
+                text.append("冷却中");
+            }
+        }
+        return text.toString();
+    }
+}
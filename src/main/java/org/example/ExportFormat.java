@@ -0,0 +1,35 @@
+package org.example;
+
+/**
+ * 导出格式
+ */
+public enum ExportFormat {
+    UID_LIST("UID列表", "inactive_users_", ".txt"), // 逗号分隔的UID，单行
+    DETAILED_CSV("详细CSV", "inactive_users_detailed_", ".csv"), // 包含用户名、分组等信息的CSV
+    JSON_LINES("JSON Lines", "inactive_users_", ".jsonl"), // 每行一个JSON对象
+    CHUNKED_UID_LIST("分块UID列表", "inactive_users_chunked_", ".txt"); // 每行固定数量的UID，便于分批处理
+
+    private final String displayName;
+    private final String filePrefix;
+    private final String fileExtension;
+
+    ExportFormat(String displayName, String filePrefix, String fileExtension) {
+        this.displayName = displayName;
+        this.filePrefix = filePrefix;
+        this.fileExtension = fileExtension;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    // 根据时间戳生成导出文件名
+    public String fileName(String timestamp) {
+        return filePrefix + timestamp + fileExtension;
+    }
+
+    @Override
+    public String toString() {
+        return displayName;
+    }
+}
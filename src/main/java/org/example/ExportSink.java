@@ -0,0 +1,22 @@
+package org.example;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * 导出输出端
+ * 每个输出端对应一个导出文件，导出时对用户列表只遍历一次，每个用户依次写入所有输出端
+ */
+public interface ExportSink extends Closeable {
+    /**
+     * 写入一个用户
+     * @param user 用户数据
+     * @throws IOException 写入失败时
+     */
+    void write(UserData user) throws IOException;
+
+    /**
+     * @return 输出文件名
+     */
+    String getFileName();
+}
@@ -0,0 +1,200 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 抓取顺序
+ * 按一组规则排列关注记录，先抓取最需要的用户：时间预算不够时剩下的是最不重要的，不设预算时有用的结果也最先出现。
+ * 规则依次比较，前一条规则相同时才看下一条；所有规则都相同的用户保持原有顺序。
+ * 除"未分组优先"外，规则都依据上一次的分析结果，没有上次结果时这些规则不改变顺序
+ */
+public class FetchPriority {
+    /**
+     * 排序规则
+     */
+    public enum Rule {
+        /** 按上次的最新视频计算、现在已达到不活跃阈值的用户(包括没有视频的)优先，其次是上次结果中没有的用户，
+         *  上次还在更新、现在也未达到阈值的用户最后——新数据只会让其更活跃，不影响决定 */
+        CANDIDATE("候选优先"),
+        /** 不在任何分组的用户优先，通常要取消关注的就是这些 */
+        UNTAGGED("未分组优先"),
+        /** 上次的最新视频距不活跃阈值最近的用户优先，无论在阈值哪一侧；没有上次数据的用户排在最后 */
+        NEAR_THRESHOLD("接近阈值优先"),
+        /** 上次结果中没有的用户(新关注或从未获取成功)优先 */
+        NEVER_FETCHED("新关注优先");
+
+        private final String label;
+
+        Rule(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    /** 规则之间的分隔符，用于显示和解析 */
+    public static final String SEPARATOR = " > ";
+    /** 不排序时的显示文本 */
+    public static final String FILE_ORDER = "文件顺序";
+
+    private static final int CANDIDATE = 0;
+    private static final int UNKNOWN = 1;
+    private static final int ACTIVE = 2;
+
+    private final LongObjectMap<UserData> previous = new LongObjectMap<>();
+    private final int inactiveDays;
+    private final List<Rule> rules;
+
+    /**
+     * 只按"候选优先"排序
+     * @param previousResults 上一次的分析结果，可为null
+     * @param inactiveDays 不活跃天数阈值
+     */
+    public FetchPriority(List<UserData> previousResults, int inactiveDays) {
+        this(previousResults, inactiveDays, Collections.singletonList(Rule.CANDIDATE));
+    }
+
+    /**
+     * @param previousResults 上一次的分析结果，可为null
+     * @param inactiveDays 不活跃天数阈值
+     * @param rules 依次比较的规则，为空时保持原有顺序
+     */
+    public FetchPriority(List<UserData> previousResults, int inactiveDays, List<Rule> rules) {
+        if (previousResults != null) {
+            for (UserData user : previousResults) {
+                previous.put(user.getUid(), user);
+            }
+        }
+        this.inactiveDays = inactiveDays;
+        this.rules = new ArrayList<>(rules);
+    }
+
+    /**
+     * 解析规则列表，例如"未分组优先 > 候选优先"；规则可用名称或枚举名，以>、逗号或顿号分隔
+     * @param text 规则文本，空白或"文件顺序"表示不排序
+     * @return 规则列表
+     * @throws IllegalArgumentException 有无法识别的规则时
+     */
+    public static List<Rule> parseRules(String text) {
+        List<Rule> rules = new ArrayList<>();
+        if (text == null || text.trim().isEmpty() || FILE_ORDER.equals(text.trim())) {
+            return rules;
+        }
+        for (String part : text.split("[>,，、]")) {
+            String name = part.trim();
+            if (name.isEmpty()) {
+                continue;
+            }
+            Rule match = null;
+            for (Rule rule : Rule.values()) {
+                if (rule.label.equals(name) || rule.name().equalsIgnoreCase(name)) {
+                    match = rule;
+                }
+            }
+            if (match == null) {
+                throw new IllegalArgumentException("未知的抓取顺序规则: " + name);
+            }
+            if (!rules.contains(match)) {
+                rules.add(match);
+            }
+        }
+        return rules;
+    }
+
+    /**
+     * 规则列表的显示文本，可由parseRules解析
+     */
+    public static String formatRules(List<Rule> rules) {
+        if (rules.isEmpty()) {
+            return FILE_ORDER;
+        }
+        StringBuilder text = new StringBuilder();
+        for (Rule rule : rules) {
+            if (text.length() > 0) {
+                text.append(SEPARATOR);
+            }
+            text.append(rule.label);
+        }
+        return text.toString();
+    }
+
+    /**
+     * 按规则排序关注记录
+     * @param records 按读取顺序的关注记录
+     * @return 排好序的新列表
+     */
+    public List<FollowRecord> order(List<FollowRecord> records) {
+        if (rules.isEmpty()) {
+            return new ArrayList<>(records);
+        }
+        // 每条记录的各规则排序键只计算一次，List.sort是稳定排序
+        List<Keyed> keyed = new ArrayList<>(records.size());
+        for (FollowRecord record : records) {
+            int[] keys = new int[rules.size()];
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = key(rules.get(i), record);
+            }
+            keyed.add(new Keyed(record, keys));
+        }
+        keyed.sort(Keyed.ORDER);
+        List<FollowRecord> ordered = new ArrayList<>(records.size());
+        for (Keyed entry : keyed) {
+            ordered.add(entry.record);
+        }
+        return ordered;
+    }
+
+    // 排序键，越小越先抓取
+    private int key(Rule rule, FollowRecord record) {
+        UserData user = previous.get(record.getMid());
+        switch (rule) {
+            case UNTAGGED:
+                return record.hasTags() ? 1 : 0;
+            case NEVER_FETCHED:
+                return user == null ? 0 : 1;
+            case NEAR_THRESHOLD:
+                if (user == null || !user.hasVideos()) {
+                    return Integer.MAX_VALUE;
+                }
+                return Math.abs(UserData.inactiveDaysSince(user.getLastUpdateTimestamp()) - inactiveDays);
+            case CANDIDATE:
+            default:
+                if (user == null) {
+                    return UNKNOWN;
+                }
+                // 按现在的时间重新计算，上次之后已跨过阈值的用户也算作候选
+                int days = user.hasVideos() ? UserData.inactiveDaysSince(user.getLastUpdateTimestamp()) : Integer.MAX_VALUE;
+                return days >= inactiveDays ? CANDIDATE : ACTIVE;
+        }
+    }
+
+    private static final class Keyed {
+        static final Comparator<Keyed> ORDER = (a, b) -> {
+            for (int i = 0; i < a.keys.length; i++) {
+                int c = Integer.compare(a.keys[i], b.keys[i]);
+                if (c != 0) {
+                    return c;
+                }
+            }
+            return 0;
+        };
+
+        final FollowRecord record;
+        final int[] keys;
+
+        Keyed(FollowRecord record, int[] keys) {
+            this.record = record;
+            this.keys = keys;
+        }
+    }
+}
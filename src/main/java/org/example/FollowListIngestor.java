@@ -0,0 +1,174 @@
+package org.example;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.util.EntityUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * 关注列表获取类
+ * 直接从B站接口分页获取关注列表(/x/relation/followings)和分组(/x/relation/tags)，取代外部导出的export_uids.json。
+ * 分组和各页并发请求，每页返回后立即把记录交给下游，抓取视频数据不必等全部页面到齐；
+ * 下游在处理记录时就把分组ID转换为名称，因此交付第一页之前先等分组列表返回。
+ * 注意：未登录或查看他人的关注列表时，B站只返回前5页
+ */
+public class FollowListIngestor implements FollowSource {
+    private static final int PAGE_SIZE = 50; // 接口允许的最大每页数量
+    private static final int MAX_ATTEMPTS = 3; // 被限流时的最大尝试次数
+
+    private final String baseUrl;
+    private final long vmid;
+    private final String cookie;
+    private final int concurrency;
+    private final RateLimiter rateLimiter;
+    private final TagDictionary tagDictionary = new TagDictionary();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    /**
+     * @param baseUrl API地址，例如 BilibiliApi.baseUrl()
+     * @param vmid 要获取关注列表的用户ID
+     * @param cookie 登录Cookie，获取自己的完整关注列表和分组时需要
+     * @param concurrency 同时请求的页面数
+     * @param requestsPerSecond 每秒最多请求数
+     */
+    public FollowListIngestor(String baseUrl, long vmid, String cookie, int concurrency, double requestsPerSecond) {
+        this.baseUrl = baseUrl;
+        this.vmid = vmid;
+        this.cookie = cookie != null ? cookie.trim() : "";
+        this.concurrency = Math.max(1, concurrency);
+        this.rateLimiter = new RateLimiter(Math.max(0.1, requestsPerSecond));
+    }
+
+    @Override
+    public void read(Sink sink) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(concurrency);
+        try (CloseableHttpClient httpClient = HttpClients.custom()
+                .setMaxConnPerRoute(concurrency + 1)
+                .setMaxConnTotal(concurrency + 1)
+                .build()) {
+            // 分组列表与第一页同时请求
+            Future<?> tagsFuture = pool.submit(() -> {
+                loadTags(httpClient);
+                return null;
+            });
+
+            // 第一页返回总数，之后的页面并发请求
+            JsonNode firstPage = getJson(httpClient, followingsUrl(1));
+            int total = firstPage.path("data").path("total").asInt(0);
+            sink.onTotal(total);
+            await(tagsFuture); // 分组名称到齐后再交付，否则先处理的用户会保存成"分组+ID"
+            emit(firstPage, sink);
+
+            int pages = (total + PAGE_SIZE - 1) / PAGE_SIZE;
+            List<Future<?>> futures = new ArrayList<>();
+            for (int pn = 2; pn <= pages; pn++) {
+                final String url = followingsUrl(pn);
+                futures.add(pool.submit(() -> {
+                    emit(getJson(httpClient, url), sink);
+                    return null;
+                }));
+            }
+
+            for (Future<?> future : futures) {
+                await(future);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    // 等待任务完成，任务中的异常原样抛出
+    private static void await(Future<?> future) throws Exception {
+        try {
+            future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof Exception ? (Exception) cause : e;
+        }
+    }
+
+    @Override
+    public TagDictionary getTagDictionary() {
+        return tagDictionary;
+    }
+
+    @Override
+    public String getDescription() {
+        return "用户 " + vmid + " 的关注列表";
+    }
+
+    private String followingsUrl(int pn) {
+        return String.format("%s/x/relation/followings?vmid=%d&pn=%d&ps=%d&order=desc", baseUrl, vmid, pn, PAGE_SIZE);
+    }
+
+    // 将一页关注列表转换为记录交给下游
+    private void emit(JsonNode page, Sink sink) throws InterruptedException {
+        for (JsonNode item : page.path("data").path("list")) {
+            JsonNode tagNode = item.path("tag");
+            int[] tagIds = new int[tagNode.isArray() ? tagNode.size() : 0];
+            for (int i = 0; i < tagIds.length; i++) {
+                tagIds[i] = tagNode.get(i).asInt();
+            }
+            sink.accept(new FollowRecord(item.path("mid").asLong(), item.path("uname").asText(), tagIds));
+        }
+    }
+
+    // 获取分组名称；失败时不影响关注列表，分组显示为"分组+ID"
+    private void loadTags(CloseableHttpClient httpClient) throws InterruptedException {
+        try {
+            JsonNode tags = getJson(httpClient, baseUrl + "/x/relation/tags");
+            for (JsonNode tag : tags.path("data")) {
+                tagDictionary.put(tag.path("tagid").asInt(), tag.path("name").asText());
+            }
+        } catch (IOException e) {
+            System.err.println("获取分组列表时出错: " + e.getMessage());
+        }
+    }
+
+    // 发送GET请求并解析返回的JSON，被限流时退避重试
+    private JsonNode getJson(CloseableHttpClient httpClient, String url) throws IOException, InterruptedException {
+        for (int attempt = 1; ; attempt++) {
+            rateLimiter.acquire();
+            HttpGet request = new HttpGet(url);
+            BilibiliApi.prepare(request, 5000);
+            if (!cookie.isEmpty()) {
+                request.setHeader("cookie", cookie);
+            }
+
+            int code;
+            String message;
+            try (CloseableHttpResponse response = httpClient.execute(request)) {
+                int httpStatus = response.getStatusLine().getStatusCode();
+                String body = response.getEntity() != null ? EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8) : "";
+                if (httpStatus == 200) {
+                    JsonNode json = objectMapper.readTree(body);
+                    code = json.path("code").asInt(-1);
+                    if (code == 0) {
+                        return json;
+                    }
+                    message = json.path("message").asText("");
+                } else {
+                    code = httpStatus == 412 ? -412 : -httpStatus;
+                    message = "HTTP " + httpStatus;
+                }
+            }
+
+            if (!BilibiliApi.isThrottled(code) || attempt >= MAX_ATTEMPTS) {
+                throw new IOException("请求失败 (" + code + "): " + message);
+            }
+            rateLimiter.pause(1000L << attempt);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package org.example;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+
+/**
+ * export_uids.json 读取类
+ * 将油猴脚本导出的关注列表转换为关注记录。使用流式解析，边读边交付，
+ * 不再先读成List<Map>再逐个convertValue；分组名称在解析时直接转换为分组ID
+ */
+public class FollowListReader implements FollowSource {
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final File file;
+    private final TagDictionary tagDictionary = new TagDictionary();
+
+    public FollowListReader(File file) {
+        this.file = file;
+    }
+
+    @Override
+    public void read(Sink sink) throws Exception {
+        int count = 0;
+        int skipped = 0;
+        try (JsonParser parser = JSON_FACTORY.createParser(file)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IOException("export_uids.json格式错误：应为用户数组");
+            }
+            IntList tagIds = new IntList();
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                long mid = 0;
+                String name = null;
+                tagIds.clear();
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.getCurrentName();
+                    JsonToken value = parser.nextToken();
+                    switch (field) {
+                        case "mid":
+                            // 数字或数字字符串；null、无法解析的字符串按缺少UID处理
+                            mid = value.isScalarValue() ? parser.getValueAsLong(0) : 0;
+                            break;
+                        case "name":
+                            name = value == JsonToken.VALUE_NULL || !value.isScalarValue() ? null : parser.getText();
+                            break;
+                        case "tag":
+                            if (value == JsonToken.START_ARRAY) {
+                                readTags(parser, tagIds);
+                            }
+                            break;
+                        default:
+                            // 忽略其它字段
+                            break;
+                    }
+                    // 跳过非预期的对象或数组值，例如tag为对象；标量值和已读完的数组不受影响
+                    parser.skipChildren();
+                }
+                if (mid <= 0) {
+                    skipped++; // 没有有效UID的记录无法查询，直接丢弃
+                    continue;
+                }
+                sink.accept(new FollowRecord(mid, name, tagIds.toArray()));
+                count++;
+            }
+        }
+        if (skipped > 0) {
+            System.err.println(file.getName() + " 中有 " + skipped + " 条记录缺少有效的UID，已忽略");
+        }
+        // 本地文件解析很快，读完后再报告总数
+        sink.onTotal(count);
+    }
+
+    // 读取分组名称数组，跳过null和非文本的元素
+    private void readTags(JsonParser parser, IntList tagIds) throws IOException {
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            if (token == null) {
+                throw new IOException("export_uids.json格式错误：分组列表不完整");
+            }
+            if (token.isScalarValue() && token != JsonToken.VALUE_NULL) {
+                tagIds.add(tagDictionary.intern(parser.getText()));
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    // 解析单个用户分组时复用的int数组
+    private static final class IntList {
+        private int[] values = new int[4];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        void clear() {
+            size = 0;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+
+    @Override
+    public TagDictionary getTagDictionary() {
+        return tagDictionary;
+    }
+
+    @Override
+    public String getDescription() {
+        return file.getName();
+    }
+
+    /**
+     * 以export_uids.json的格式保存关注列表，便于之后加载缓存时获取用户名和分组
+     * @param file 输出文件
+     * @param records 关注记录
+     * @param tagDictionary 解析分组ID所用的字典
+     * @throws IOException 写入失败时
+     */
+    public static void write(File file, Iterable<FollowRecord> records, TagDictionary tagDictionary) throws IOException {
+        try (Writer writer = DataExporter.openWriter(file);
+             JsonGenerator generator = JSON_FACTORY.createGenerator(writer)) {
+            generator.useDefaultPrettyPrinter();
+            generator.writeStartArray();
+            for (FollowRecord record : records) {
+                generator.writeStartObject();
+                generator.writeNumberField("mid", record.getMid());
+                generator.writeStringField("name", record.getName());
+                generator.writeArrayFieldStart("tag");
+                for (int tagId : record.getTagIds()) {
+                    generator.writeString(tagDictionary.name(tagId));
+                }
+                generator.writeEndArray();
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package org.example;
+
+/**
+ * 关注记录
+ * 关注列表中的一项：用户ID、用户名和所在分组ID，分组名称通过TagDictionary解析
+ */
+public class FollowRecord {
+    private static final int[] NO_TAGS = new int[0];
+
+    private final long mid; // 用户ID
+    private final String name; // 用户名
+    private final int[] tagIds; // 分组ID
+
+    public FollowRecord(long mid, String name, int[] tagIds) {
+        this.mid = mid;
+        this.name = name;
+        this.tagIds = tagIds != null && tagIds.length > 0 ? tagIds : NO_TAGS;
+    }
+
+    public long getMid() {
+        return mid;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int[] getTagIds() {
+        return tagIds;
+    }
+
+    public boolean hasTags() {
+        return tagIds.length > 0;
+    }
+
+    @Override
+    public String toString() {
+        return "FollowRecord{" +
+                "mid=" + mid +
+                ", name='" + name + '\'' +
+                ", tagIds=" + java.util.Arrays.toString(tagIds) +
+                "}";
+    }
+}
@@ -0,0 +1,42 @@
+package org.example;
+
+/**
+ * 关注列表来源
+ * 逐条产出关注记录；实现可以在读取过程中就把记录交给下游，不必等全部读完
+ */
+public interface FollowSource {
+    /**
+     * 接收关注记录的回调，可能在多个线程上被调用
+     */
+    interface Sink {
+        /**
+         * 得知记录总数时调用；可能不调用，也可能在交付完全部记录后才调用
+         * @param total 记录总数
+         */
+        void onTotal(int total);
+
+        /**
+         * 接收一条记录
+         * @param record 关注记录
+         * @throws InterruptedException 等待下游时被中断
+         */
+        void accept(FollowRecord record) throws InterruptedException;
+    }
+
+    /**
+     * 读取全部记录并交给sink，返回时所有记录都已交付
+     * @param sink 接收记录的回调
+     * @throws Exception 读取失败时
+     */
+    void read(Sink sink) throws Exception;
+
+    /**
+     * @return 解析记录中分组ID所用的字典
+     */
+    TagDictionary getTagDictionary();
+
+    /**
+     * @return 来源描述，用于状态显示
+     */
+    String getDescription();
+}
@@ -0,0 +1,191 @@
+package org.example;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.function.IntConsumer;
+
+/**
+ * 不活跃天数分布面板
+ * 以堆叠柱状图显示有分组/无分组用户的不活跃天数分布，最右侧为无视频用户；
+ * 在图上拖动可调整阈值，阈值以上的人数由直方图快照的后缀和直接得出
+ */
+public class HistogramPanel extends JComponent {
+    private static final int TARGET_BARS = 60; // 期望显示的柱子数量
+    private static final int MIN_RANGE_DAYS = 60;
+    private static final Color TAGGED_COLOR = new Color(100, 149, 237);
+    private static final Color UNTAGGED_COLOR = new Color(255, 160, 90);
+    private static final Color THRESHOLD_COLOR = new Color(220, 50, 50);
+
+    private final InactivityHistogram histogram;
+    private final IntConsumer thresholdListener;
+    private InactivityHistogram.Snapshot snapshot;
+    private int paintedVersion = -1;
+    private int threshold;
+    private int rangeDays = MIN_RANGE_DAYS; // 横轴覆盖的天数
+    private int bucketDays = 1; // 每根柱子覆盖的天数
+    private boolean dragging = false;
+
+    /**
+     * @param histogram 数据来源
+     * @param thresholdListener 用户拖动阈值时接收新的天数
+     */
+    public HistogramPanel(InactivityHistogram histogram, IntConsumer thresholdListener) {
+        this.histogram = histogram;
+        this.thresholdListener = thresholdListener;
+        setPreferredSize(new Dimension(600, 110));
+        setToolTipText("拖动红线调整不活跃天数阈值");
+
+        MouseAdapter mouseHandler = new MouseAdapter() {
+            @Override
+            public void mousePressed(MouseEvent e) {
+                dragging = true;
+                dragTo(e.getX());
+            }
+
+            @Override
+            public void mouseDragged(MouseEvent e) {
+                dragTo(e.getX());
+            }
+
+            @Override
+            public void mouseReleased(MouseEvent e) {
+                dragging = false;
+                refresh(); // 拖动结束后再按新阈值调整横轴范围
+            }
+        };
+        addMouseListener(mouseHandler);
+        addMouseMotionListener(mouseHandler);
+
+        // 数据在后台持续累加，定时检查版本号并重绘
+        new Timer(300, e -> {
+            if (histogram.getVersion() != paintedVersion) {
+                refresh();
+            }
+        }).start();
+    }
+
+    // 外部修改阈值（例如在输入框中输入）时同步显示
+    public void setThreshold(int threshold) {
+        if (this.threshold != threshold) {
+            this.threshold = threshold;
+            if (!dragging) {
+                updateRange();
+            }
+            repaint();
+        }
+    }
+
+    private void refresh() {
+        paintedVersion = histogram.getVersion();
+        snapshot = histogram.snapshot();
+        updateRange();
+        repaint();
+    }
+
+    // 根据数据和阈值选择横轴范围与柱宽
+    private void updateRange() {
+        int maxDay = snapshot != null ? snapshot.maxNonEmptyDay() : -1;
+        int range = Math.max(MIN_RANGE_DAYS, Math.max(maxDay + 1, threshold + threshold / 5));
+        range = Math.min(range, InactivityHistogram.MAX_DAYS);
+        bucketDays = Math.max(1, (range + TARGET_BARS - 1) / TARGET_BARS);
+        rangeDays = bucketDays * ((range + bucketDays - 1) / bucketDays);
+    }
+
+    private Rectangle plotArea() {
+        Insets insets = getInsets();
+        int top = insets.top + 18; // 顶部留出文字区域
+        int bottom = getHeight() - insets.bottom - 4;
+        int left = insets.left + 4;
+        int right = getWidth() - insets.right - 4;
+        return new Rectangle(left, top, Math.max(1, right - left), Math.max(1, bottom - top));
+    }
+
+    // 横轴天数区域的宽度，其后是溢出和无视频两根柱子
+    private int dayAreaWidth(Rectangle plot) {
+        int barWidth = Math.max(2, plot.width / (rangeDays / bucketDays + 3));
+        return Math.max(1, plot.width - barWidth * 3);
+    }
+
+    private void dragTo(int x) {
+        Rectangle plot = plotArea();
+        int dayWidth = dayAreaWidth(plot);
+        int days = (int) Math.round((double) (x - plot.x) * rangeDays / dayWidth);
+        days = Math.max(0, Math.min(days, rangeDays));
+        if (days != threshold) {
+            threshold = days;
+            repaint();
+            thresholdListener.accept(days);
+        }
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        if (snapshot == null) {
+            refresh();
+        }
+        Graphics2D g2 = (Graphics2D) g.create();
+        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g2.setColor(Color.WHITE);
+        g2.fillRect(0, 0, getWidth(), getHeight());
+
+        Rectangle plot = plotArea();
+        int dayWidth = dayAreaWidth(plot);
+        int bucketCount = rangeDays / bucketDays;
+
+        // 聚合每根柱子的计数
+        int[] taggedBars = new int[bucketCount + 2];
+        int[] untaggedBars = new int[bucketCount + 2];
+        for (int bin = 0; bin < InactivityHistogram.OVERFLOW_BIN; bin++) {
+            int bar = bin < rangeDays ? bin / bucketDays : bucketCount; // 超出横轴范围的并入溢出柱
+            taggedBars[bar] += snapshot.getTagged(bin);
+            untaggedBars[bar] += snapshot.getUntagged(bin);
+        }
+        taggedBars[bucketCount] += snapshot.getTagged(InactivityHistogram.OVERFLOW_BIN);
+        untaggedBars[bucketCount] += snapshot.getUntagged(InactivityHistogram.OVERFLOW_BIN);
+        taggedBars[bucketCount + 1] = snapshot.getTagged(InactivityHistogram.NO_VIDEO_BIN);
+        untaggedBars[bucketCount + 1] = snapshot.getUntagged(InactivityHistogram.NO_VIDEO_BIN);
+
+        int max = 1;
+        for (int i = 0; i < taggedBars.length; i++) {
+            max = Math.max(max, taggedBars[i] + untaggedBars[i]);
+        }
+
+        double barWidth = (double) dayWidth / bucketCount;
+        int extraWidth = (plot.width - dayWidth) / 3;
+        for (int i = 0; i < taggedBars.length; i++) {
+            int x;
+            int width;
+            if (i < bucketCount) {
+                x = plot.x + (int) Math.round(i * barWidth);
+                width = Math.max(1, (int) Math.round((i + 1) * barWidth) - (int) Math.round(i * barWidth) - 1);
+            } else {
+                x = plot.x + dayWidth + extraWidth * (i - bucketCount) + extraWidth / 2;
+                width = Math.max(1, extraWidth - 1);
+            }
+            int untaggedHeight = (int) ((long) untaggedBars[i] * plot.height / max);
+            int taggedHeight = (int) ((long) taggedBars[i] * plot.height / max);
+            int bottom = plot.y + plot.height;
+            g2.setColor(UNTAGGED_COLOR);
+            g2.fillRect(x, bottom - untaggedHeight, width, untaggedHeight);
+            g2.setColor(TAGGED_COLOR);
+            g2.fillRect(x, bottom - untaggedHeight - taggedHeight, width, taggedHeight);
+        }
+
+        // 阈值线
+        int thresholdX = plot.x + (int) Math.round((double) Math.min(threshold, rangeDays) * dayWidth / rangeDays);
+        g2.setColor(THRESHOLD_COLOR);
+        g2.drawLine(thresholdX, plot.y - 2, thresholdX, plot.y + plot.height);
+
+        // 文字说明：阈值以上人数（由后缀和得出）
+        g2.setFont(getFont() != null ? getFont() : g2.getFont());
+        g2.setColor(Color.DARK_GRAY);
+        int taggedCount = snapshot.taggedAtLeast(threshold);
+        int untaggedCount = snapshot.untaggedAtLeast(threshold);
+        String text = String.format("不活跃 ≥ %d 天: %d / %d 人（有分组 %d，无分组 %d）  横轴 0-%d 天，末尾为更久和无视频",
+                threshold, taggedCount + untaggedCount, snapshot.total(), taggedCount, untaggedCount, rangeDays);
+        g2.drawString(text, plot.x, plot.y - 5);
+        g2.dispose();
+    }
+}
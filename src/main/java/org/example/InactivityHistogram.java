@@ -0,0 +1,141 @@
+package org.example;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * 不活跃天数分布直方图
+ * 按天计数，区分有分组和无分组用户；抓取或加载缓存时每得到一个结果就累加一次，
+ * 查询"不活跃天数不少于N的人数"时使用快照中的后缀和，O(1)得到结果而无需重新筛选列表
+ */
+public class InactivityHistogram {
+    /** 逐天统计的最大天数，超过的归入溢出桶 */
+    public static final int MAX_DAYS = 3650;
+    /** 溢出桶：不活跃天数 >= MAX_DAYS（但有视频） */
+    public static final int OVERFLOW_BIN = MAX_DAYS;
+    /** 无视频用户所在的桶 */
+    public static final int NO_VIDEO_BIN = MAX_DAYS + 1;
+    public static final int BIN_COUNT = MAX_DAYS + 2;
+
+    private final AtomicIntegerArray tagged = new AtomicIntegerArray(BIN_COUNT);
+    private final AtomicIntegerArray untagged = new AtomicIntegerArray(BIN_COUNT);
+    private final AtomicInteger version = new AtomicInteger(); // 每次变更递增，用于判断是否需要重绘
+
+    /**
+     * 记录一个结果
+     * @param inactiveDays 不活跃天数，无视频时为Integer.MAX_VALUE
+     * @param hasTags 是否有分组
+     */
+    public void add(int inactiveDays, boolean hasTags) {
+        (hasTags ? tagged : untagged).incrementAndGet(binOf(inactiveDays));
+        version.incrementAndGet();
+    }
+
+    public void add(UserData user) {
+        add(user.getInactiveDays(), user.hasTags());
+    }
+
+    // 清空后按给定用户列表重新统计
+    public void reset(List<UserData> users) {
+        clear();
+        if (users != null) {
+            for (UserData user : users) {
+                add(user);
+            }
+        }
+    }
+
+    public void clear() {
+        for (int i = 0; i < BIN_COUNT; i++) {
+            tagged.set(i, 0);
+            untagged.set(i, 0);
+        }
+        version.incrementAndGet();
+    }
+
+    public int getVersion() {
+        return version.get();
+    }
+
+    // 获取当前计数的快照，并计算后缀和
+    public Snapshot snapshot() {
+        return new Snapshot(this);
+    }
+
+    private static int binOf(int inactiveDays) {
+        if (inactiveDays == Integer.MAX_VALUE) {
+            return NO_VIDEO_BIN;
+        }
+        if (inactiveDays >= MAX_DAYS) {
+            return OVERFLOW_BIN;
+        }
+        return Math.max(0, inactiveDays); // 发布时间晚于当前时间时按0天计
+    }
+
+    /**
+     * 直方图快照
+     * suffix[i] 为桶i及之后所有桶的计数之和，对应 UserData.isInactive(i) 的人数
+     */
+    public static final class Snapshot {
+        private final int[] tagged = new int[BIN_COUNT];
+        private final int[] untagged = new int[BIN_COUNT];
+        private final int[] taggedSuffix = new int[BIN_COUNT + 1];
+        private final int[] untaggedSuffix = new int[BIN_COUNT + 1];
+
+        private Snapshot(InactivityHistogram histogram) {
+            for (int i = 0; i < BIN_COUNT; i++) {
+                tagged[i] = histogram.tagged.get(i);
+                untagged[i] = histogram.untagged.get(i);
+            }
+            for (int i = BIN_COUNT - 1; i >= 0; i--) {
+                taggedSuffix[i] = taggedSuffix[i + 1] + tagged[i];
+                untaggedSuffix[i] = untaggedSuffix[i + 1] + untagged[i];
+            }
+        }
+
+        public int getTagged(int bin) {
+            return tagged[bin];
+        }
+
+        public int getUntagged(int bin) {
+            return untagged[bin];
+        }
+
+        public int total() {
+            return taggedSuffix[0] + untaggedSuffix[0];
+        }
+
+        // 不活跃天数不少于threshold的有分组用户数
+        public int taggedAtLeast(int threshold) {
+            return taggedSuffix[startBin(threshold)];
+        }
+
+        // 不活跃天数不少于threshold的无分组用户数
+        public int untaggedAtLeast(int threshold) {
+            return untaggedSuffix[startBin(threshold)];
+        }
+
+        public int countAtLeast(int threshold) {
+            return taggedAtLeast(threshold) + untaggedAtLeast(threshold);
+        }
+
+        // 有数据的最大天数桶（不含溢出桶和无视频桶），没有数据时返回-1
+        public int maxNonEmptyDay() {
+            for (int i = MAX_DAYS - 1; i >= 0; i--) {
+                if (tagged[i] + untagged[i] > 0) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private static int startBin(int threshold) {
+            if (threshold <= 0) {
+                return 0;
+            }
+            // 超过逐天统计范围的阈值只能精确到溢出桶，无视频用户始终计入
+            return Math.min(threshold, OVERFLOW_BIN);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package org.example;
+
+import java.util.Arrays;
+
+/**
+ * 以long为键的哈希表
+ * 开放寻址、线性探测，键直接存放在long数组中，不为每个键创建Long对象；
+ * 用于按用户ID关联关注记录和视频数据。不支持删除，值不能为null，非线程安全
+ */
+public class LongObjectMap<V> {
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private long[] keys;
+    private Object[] values; // 值为null表示该槽位空闲
+    private int size;
+    private int mask;
+
+    public LongObjectMap() {
+        this(16);
+    }
+
+    /**
+     * @param expectedSize 预计元素数量，超过后自动扩容
+     */
+    public LongObjectMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(2, (int) (Math.max(1, expectedSize) / LOAD_FACTOR)) - 1) << 1;
+        keys = new long[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * 放入键值对
+     * @return 原来的值，不存在时返回null
+     */
+    public V put(long key, V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("值不能为null");
+        }
+        int slot = find(key);
+        @SuppressWarnings("unchecked")
+        V old = (V) values[slot];
+        if (old == null) {
+            keys[slot] = key;
+            size++;
+        }
+        values[slot] = value;
+        if (old == null && size > keys.length * LOAD_FACTOR) {
+            grow();
+        }
+        return old;
+    }
+
+    /**
+     * 键不存在时放入
+     * @return 已存在的值，放入成功时返回null
+     */
+    public V putIfAbsent(long key, V value) {
+        V old = get(key);
+        return old != null ? old : put(key, value);
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        return (V) values[find(key)];
+    }
+
+    public boolean containsKey(long key) {
+        return values[find(key)] != null;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    // 返回键所在槽位，不存在时返回应放入的空槽位
+    private int find(long key) {
+        int slot = hash(key) & mask;
+        while (values[slot] != null && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new long[oldKeys.length << 1];
+        values = new Object[oldValues.length << 1];
+        mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != null) {
+                int slot = find(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    // 用户ID大多连续或集中，打散后再取低位
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -3,38 +3,64 @@ package org.example;
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 import javax.swing.filechooser.FileNameExtensionFilter;
-import javax.swing.table.DefaultTableModel;
-import javax.swing.RowSorter;
-import javax.swing.SortOrder;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.io.File;
+import java.io.IOException;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * B站用户活跃度分析工具 - 主应用程序
  * 将Python项目转换为Java Swing GUI应用程序
  */
 public class MainApp extends JFrame {
+    private static final String PRIORITY_AUTO = "自动"; // 抓取顺序：有时间预算时候选优先，否则按文件顺序
+    
     private JTextField filePathField;
     private JTextField inactiveDaysField;
     private JButton browseButton;
     private JButton processButton;
     private JButton exportButton;
+    private JButton unfollowButton; // 批量取消关注
+    private JButton metricsButton; // 导出运行指标
+    private JButton diffButton; // 与上次的会话快照对比
     private JTable resultTable;
-    private DefaultTableModel tableModel;
+    private UserTableModel tableModel;
     private JComboBox<String> exportTypeComboBox;
+    private JComboBox<String> exportFormatComboBox; // 导出格式
     private JLabel statusLabel;
     private JProgressBar progressBar;
     private JButton loadCacheButton;
+    private JButton fetchAccountButton; // 直接从账号获取关注列表
+    private JButton multiAccountButton; // 多账号分析
+    private JComboBox<String> accountComboBox; // 多账号模式下选择查看的账号
     private JLabel userCountLabel; // 新增：用于显示不活跃用户/全部的标签
+    private JTextField maxDaysField; // 不活跃天数上限
+    private JTextField usernameFilterField; // 用户名关键字
+    private JTextField titleFilterField; // 视频标题关键字
+    private JTextField tagFilterField; // 分组组合
+    private final InactivityHistogram histogram = new InactivityHistogram(); // 不活跃天数分布
+    private HistogramPanel histogramPanel;
     
     private File selectedFile;
     private File cacheFile;
+    private File followListFile; // 当前结果对应的关注列表(export_uids.json)，保存在会话快照中
     private List<UserData> inactiveUsers;
+    private Map<String, List<UserData>> accountResults; // 多账号模式下各账号的结果，单账号时为null
+    private List<UserData> mergedUsers; // 多账号模式下去重合并后的结果
+    private UserSearchIndex searchIndex; // 检索索引，仅在查询线程上访问
+    private List<UserData> indexedUsers; // searchIndex对应的用户列表
+    private final QueryExecutor queryExecutor = new QueryExecutor(); // 后台筛选排序
+    private int sortColumn = 3; // 当前排序列，默认按不活跃天数
+    private boolean sortAscending = true; // 当前排序方向
     private boolean dataProcessed = false;
     
     // 定义全局字体
@@ -53,6 +79,7 @@ public class MainApp extends JFrame {
         initComponents();
         layoutComponents();
         addListeners();
+        restoreSession();
     }
     
     private void initFonts() {
@@ -82,22 +109,43 @@ public class MainApp extends JFrame {
         inactiveDaysField = new JTextField("365", 5);
         inactiveDaysField.setFont(mainFont);
         // 添加文本变化监听器，实现实时筛选
-        inactiveDaysField.getDocument().addDocumentListener(new javax.swing.event.DocumentListener() {
+        javax.swing.event.DocumentListener filterListener = new javax.swing.event.DocumentListener() {
             @Override
             public void insertUpdate(javax.swing.event.DocumentEvent e) {
-                updateInactiveDaysFilter();
+                updateFilter();
             }
 
             @Override
             public void removeUpdate(javax.swing.event.DocumentEvent e) {
-                updateInactiveDaysFilter();
+                updateFilter();
             }
 
             @Override
             public void changedUpdate(javax.swing.event.DocumentEvent e) {
-                updateInactiveDaysFilter();
+                updateFilter();
             }
-        });
+        };
+        inactiveDaysField.getDocument().addDocumentListener(filterListener);
+        
+        // 组合筛选条件：不活跃天数上限、用户名、视频标题和分组
+        maxDaysField = new JTextField(5);
+        maxDaysField.setFont(mainFont);
+        maxDaysField.getDocument().addDocumentListener(filterListener);
+        usernameFilterField = new JTextField(10);
+        usernameFilterField.setFont(mainFont);
+        usernameFilterField.getDocument().addDocumentListener(filterListener);
+        titleFilterField = new JTextField(12);
+        titleFilterField.setFont(mainFont);
+        titleFilterField.getDocument().addDocumentListener(filterListener);
+        tagFilterField = new JTextField(10);
+        tagFilterField.setFont(mainFont);
+        tagFilterField.setToolTipText("多个分组用逗号分隔，需同时满足；输入\"" + UserQuery.NO_TAG + "\"只显示没有分组的用户");
+        tagFilterField.getDocument().addDocumentListener(filterListener);
+        
+        // 不活跃天数分布图，拖动阈值线时同步修改不活跃天数输入框
+        histogramPanel = new HistogramPanel(histogram, days -> inactiveDaysField.setText(String.valueOf(days)));
+        histogramPanel.setFont(mainFont);
+        histogramPanel.setThreshold(365);
         
         // 处理按钮
         processButton = new JButton("处理数据");
@@ -108,6 +156,13 @@ public class MainApp extends JFrame {
         loadCacheButton = new JButton("加载缓存");
         loadCacheButton.setFont(mainFont);
         
+        // 从账号获取按钮，不需要export_uids.json
+        fetchAccountButton = new JButton("从账号获取");
+        fetchAccountButton.setFont(mainFont);
+        multiAccountButton = new JButton("多账号分析");
+        multiAccountButton.setFont(mainFont);
+        multiAccountButton.setToolTipText("选择多个账号的export_uids.json，共同关注的用户只请求一次");
+        
         // 状态显示
         statusLabel = new JLabel("请选择export_uids.json文件");
         statusLabel.setFont(mainFont);
@@ -120,25 +175,7 @@ public class MainApp extends JFrame {
         userCountLabel.setFont(mainFont);
         
         // 结果表格
-        String[] columnNames = {"UID", "用户名", "分组", "不活跃天数", "最后更新视频", "视频链接", "空间链接"};
-        tableModel = new DefaultTableModel(columnNames, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false; // 使表格不可编辑
-            }
-            
-            @Override
-            public Class<?> getColumnClass(int column) {
-                switch (column) {
-                    case 0: // UID
-                        return Long.class;
-                    case 3: // 不活跃天数
-                        return Integer.class;
-                    default:
-                        return String.class;
-                }
-            }
-        };
+        tableModel = new UserTableModel();
         resultTable = new JTable(tableModel);
         resultTable.setFont(tableFont);
         resultTable.getTableHeader().setFont(boldFont);
@@ -150,9 +187,28 @@ public class MainApp extends JFrame {
         resultTable.getColumnModel().getColumn(4).setPreferredWidth(250);
         resultTable.getColumnModel().getColumn(5).setPreferredWidth(100);
         resultTable.getColumnModel().getColumn(6).setPreferredWidth(100);
+        resultTable.getColumnModel().getColumn(7).setPreferredWidth(110);
         
-        // 添加表格排序功能
-        resultTable.setAutoCreateRowSorter(true);
+        // 添加表格排序功能：点击表头切换排序列和方向，排序在后台查询中完成
+        resultTable.getTableHeader().addMouseListener(new java.awt.event.MouseAdapter() {
+            @Override
+            public void mouseClicked(java.awt.event.MouseEvent evt) {
+                int viewColumn = resultTable.columnAtPoint(evt.getPoint());
+                if (viewColumn < 0) {
+                    return;
+                }
+                int column = resultTable.convertColumnIndexToModel(viewColumn);
+                if (column == sortColumn) {
+                    sortAscending = !sortAscending;
+                } else {
+                    sortColumn = column;
+                    sortAscending = true;
+                }
+                updateSortHeader();
+                updateFilter();
+            }
+        });
+        updateSortHeader();
         
         // 设置表格选择模式和网格线
         resultTable.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
@@ -180,15 +236,36 @@ public class MainApp extends JFrame {
         });
         
         // 导出选项
-        exportTypeComboBox = new JComboBox<>(new String[]{"导出已选择", "导出全部", "导出无分组", "导出有分组"});
+        exportTypeComboBox = new JComboBox<>(new String[]{"导出已选择", "导出全部", "导出无分组", "导出有分组", "导出可能停更"});
         exportTypeComboBox.setFont(mainFont);
+        String[] formatNames = new String[ExportFormat.values().length + 1];
+        for (ExportFormat format : ExportFormat.values()) {
+            formatNames[format.ordinal()] = format.getDisplayName();
+        }
+        formatNames[formatNames.length - 1] = "全部格式";
+        exportFormatComboBox = new JComboBox<>(formatNames);
+        exportFormatComboBox.setFont(mainFont);
         exportButton = new JButton("导出不活跃用户");
         exportButton.setFont(mainFont);
         exportButton.setEnabled(false);
+        unfollowButton = new JButton("批量取消关注");
+        unfollowButton.setFont(mainFont);
+        unfollowButton.setEnabled(false);
+        accountComboBox = new JComboBox<>();
+        accountComboBox.setFont(mainFont);
+        accountComboBox.setVisible(false);
+        diffButton = new JButton("对比快照");
+        diffButton.setFont(mainFont);
+        diffButton.setToolTipText("与之前保存的会话快照对比：新增不活跃、恢复更新、有新视频、取消关注和新关注");
+        metricsButton = new JButton("性能指标");
+        metricsButton.setFont(mainFont);
     }
     
     private JTextField batchSizeField;
     private JTextField batchIntervalField;
+    private JCheckBox adaptiveCheckBox; // 自动调节并发，选中时批量数量和间隔只作为上限
+    private JTextField budgetField; // 时间预算(分钟)，0表示不限
+    private JComboBox<String> priorityComboBox; // 抓取顺序规则，可编辑
     private JPanel statusBarPanel; // 新增：状态栏面板
     
     private void layoutComponents() {
@@ -224,6 +301,12 @@ public class MainApp extends JFrame {
         gbc.gridx = 3;
         filePanel.add(loadCacheButton, gbc);
         
+        gbc.gridx = 4;
+        filePanel.add(fetchAccountButton, gbc);
+        
+        gbc.gridx = 5;
+        filePanel.add(multiAccountButton, gbc);
+        
         // 设置面板 - 使用GridBagLayout
         JPanel settingsPanel = new JPanel(new GridBagLayout());
         GridBagConstraints settingsGbc = new GridBagConstraints();
@@ -249,8 +332,10 @@ public class MainApp extends JFrame {
         settingsGbc.weightx = 0;
         settingsPanel.add(batchSizeLabel, settingsGbc);
         
-        batchSizeField = new JTextField("2", 3);
+        batchSizeField = new JTextField("", 3);
         batchSizeField.setFont(mainFont);
+        batchSizeField.setToolTipText("每批请求数；自动调节时为同时进行的请求数上限，留空表示不限(最多"
+                + ConcurrencyLimiter.MAX_LIMIT + ")");
         settingsGbc.gridx = 3;
         settingsGbc.weightx = 0.1;
         settingsPanel.add(batchSizeField, settingsGbc);
@@ -261,19 +346,94 @@ public class MainApp extends JFrame {
         settingsGbc.weightx = 0;
         settingsPanel.add(intervalLabel, settingsGbc);
         
-        batchIntervalField = new JTextField("1", 3);
+        batchIntervalField = new JTextField("", 3);
         batchIntervalField.setFont(mainFont);
+        batchIntervalField.setToolTipText("批次之间的等待时间；自动调节时为两个请求之间的最小间隔，留空表示不限");
         settingsGbc.gridx = 5;
         settingsGbc.weightx = 0.1;
         settingsPanel.add(batchIntervalField, settingsGbc);
         
+        adaptiveCheckBox = new JCheckBox("自动调节", true);
+        adaptiveCheckBox.setFont(mainFont);
+        adaptiveCheckBox.setToolTipText("按请求延迟和限流情况自动调整并发数，结果保存在" + ConcurrencyLimiter.FILE_NAME
+                + "中供下次使用；不选时按固定批次处理(默认每批2个、间隔1秒)");
         settingsGbc.gridx = 6;
         settingsGbc.weightx = 0;
+        settingsPanel.add(adaptiveCheckBox, settingsGbc);
+        
+        JLabel budgetLabel = new JLabel("时间预算(分钟):");
+        budgetLabel.setFont(mainFont);
+        settingsGbc.gridx = 7;
+        settingsGbc.weightx = 0;
+        settingsPanel.add(budgetLabel, settingsGbc);
+        
+        budgetField = new JTextField("0", 3);
+        budgetField.setFont(mainFont);
+        budgetField.setToolTipText("0表示不限制；设置后按抓取顺序先获取最需要的用户，到时间即停止");
+        settingsGbc.gridx = 8;
+        settingsGbc.weightx = 0.1;
+        settingsPanel.add(budgetField, settingsGbc);
+        
+        JLabel priorityLabel = new JLabel("抓取顺序:");
+        priorityLabel.setFont(mainFont);
+        settingsGbc.gridx = 9;
+        settingsGbc.weightx = 0;
+        settingsPanel.add(priorityLabel, settingsGbc);
+        
+        // 预设的规则组合，也可以直接输入，例如"接近阈值优先 > 新关注优先"
+        priorityComboBox = new JComboBox<>(new String[]{
+                PRIORITY_AUTO,
+                FetchPriority.formatRules(Arrays.asList(FetchPriority.Rule.CANDIDATE)),
+                FetchPriority.formatRules(Arrays.asList(FetchPriority.Rule.UNTAGGED, FetchPriority.Rule.CANDIDATE)),
+                FetchPriority.formatRules(Arrays.asList(FetchPriority.Rule.NEAR_THRESHOLD, FetchPriority.Rule.UNTAGGED)),
+                FetchPriority.formatRules(Arrays.asList(FetchPriority.Rule.NEVER_FETCHED, FetchPriority.Rule.CANDIDATE)),
+                FetchPriority.FILE_ORDER});
+        priorityComboBox.setEditable(true);
+        priorityComboBox.setFont(mainFont);
+        priorityComboBox.setToolTipText("依次比较的规则，以 > 分隔：候选优先、未分组优先、接近阈值优先、新关注优先；"
+                + "自动表示设置时间预算时候选优先，否则按文件顺序");
+        settingsGbc.gridx = 10;
+        settingsGbc.weightx = 0.2;
+        settingsPanel.add(priorityComboBox, settingsGbc);
+        
+        settingsGbc.gridx = 11;
+        settingsGbc.weightx = 0;
         settingsGbc.insets = new Insets(5, 15, 5, 5); // 增加左侧间距
         settingsPanel.add(processButton, settingsGbc);
         
+        // 筛选面板 - 组合检索条件
+        JPanel filterPanel = new JPanel(new GridBagLayout());
+        GridBagConstraints filterGbc = new GridBagConstraints();
+        filterGbc.insets = new Insets(5, 5, 5, 5);
+        filterGbc.fill = GridBagConstraints.HORIZONTAL;
+        filterGbc.gridy = 0;
+        
+        String[] filterLabels = {"最大天数:", "用户名包含:", "视频标题包含:", "分组:"};
+        JTextField[] filterFields = {maxDaysField, usernameFilterField, titleFilterField, tagFilterField};
+        for (int i = 0; i < filterFields.length; i++) {
+            JLabel filterLabel = new JLabel(filterLabels[i]);
+            filterLabel.setFont(mainFont);
+            filterGbc.gridx = i * 2;
+            filterGbc.weightx = 0;
+            filterPanel.add(filterLabel, filterGbc);
+            
+            filterGbc.gridx = i * 2 + 1;
+            filterGbc.weightx = i == 0 ? 0.1 : 0.3;
+            filterPanel.add(filterFields[i], filterGbc);
+        }
+        
+        JPanel conditionPanel = new JPanel(new BorderLayout());
+        conditionPanel.add(settingsPanel, BorderLayout.NORTH);
+        conditionPanel.add(filterPanel, BorderLayout.CENTER);
+        
+        // 分布图面板
+        JPanel histogramWrapper = new JPanel(new BorderLayout());
+        histogramWrapper.setBorder(new EmptyBorder(5, 5, 5, 5));
+        histogramWrapper.add(histogramPanel, BorderLayout.CENTER);
+        conditionPanel.add(histogramWrapper, BorderLayout.SOUTH);
+        
         topPanel.add(filePanel, BorderLayout.NORTH);
-        topPanel.add(settingsPanel, BorderLayout.CENTER);
+        topPanel.add(conditionPanel, BorderLayout.CENTER);
         
         // 状态面板 - 使用BorderLayout让进度条右侧自动增长
         JPanel statusPanel = new JPanel(new BorderLayout(10, 0));
@@ -313,9 +473,14 @@ public class MainApp extends JFrame {
         exportPanel.setBorder(new EmptyBorder(5, 5, 5, 15));
         JLabel exportLabel = new JLabel("导出选项:");
         exportLabel.setFont(mainFont);
+        exportPanel.add(accountComboBox);
         exportPanel.add(exportLabel);
         exportPanel.add(exportTypeComboBox);
+        exportPanel.add(exportFormatComboBox);
         exportPanel.add(exportButton);
+        exportPanel.add(unfollowButton);
+        exportPanel.add(diffButton);
+        exportPanel.add(metricsButton);
         
         bottomPanel.add(statusBarPanel, BorderLayout.WEST);
         bottomPanel.add(exportPanel, BorderLayout.EAST);
@@ -327,6 +492,14 @@ public class MainApp extends JFrame {
     }
     
     private void addListeners() {
+        // 关闭窗口时保存会话快照，下次启动时直接显示
+        addWindowListener(new java.awt.event.WindowAdapter() {
+            @Override
+            public void windowClosing(java.awt.event.WindowEvent e) {
+                saveSession();
+            }
+        });
+        
         // 选择文件按钮
         browseButton.addActionListener(new ActionListener() {
             @Override
@@ -364,56 +537,31 @@ public class MainApp extends JFrame {
                     return;
                 }
                 
-                // 禁用按钮，防止重复点击
-                processButton.setEnabled(false);
-                browseButton.setEnabled(false);
-                loadCacheButton.setEnabled(false);
-                
-                // 清空表格
-                tableModel.setRowCount(0);
-                
-                // 获取批量处理参数
-                int batchSize = 2;
-                double batchInterval = 1.0;
-                try {
-                    batchSize = Integer.parseInt(batchSizeField.getText().trim());
-                    batchInterval = Double.parseDouble(batchIntervalField.getText().trim());
-                } catch (NumberFormatException ex) {
-                    // 使用默认值
-                }
-                
-                // 执行数据处理任务
-                new DataProcessingTask(selectedFile, inactiveDays, progressBar, statusLabel, batchSize, batchInterval) {
-                    @Override
-                    protected void done() {
-                        try {
-                            inactiveUsers = get();
-                            displayResults(inactiveUsers);
-                            dataProcessed = true;
-                            exportButton.setEnabled(true);
-                            
-                            // 重新启用按钮
-                            browseButton.setEnabled(true);
-                            processButton.setEnabled(true);
-                            loadCacheButton.setEnabled(true);
-                            
-                            // 创建缓存文件
-                            cacheFile = new File("user_data_cache.json");
-                            statusLabel.setText("处理完成，已创建缓存文件: user_data_cache.json");
-                            
-                            // 应用不活跃天数过滤器
-                            updateInactiveDaysFilter();
-                        } catch (InterruptedException | ExecutionException ex) {
-                            JOptionPane.showMessageDialog(MainApp.this, "处理数据时出错: " + ex.getMessage(), "错误", JOptionPane.ERROR_MESSAGE);
-                            statusLabel.setText("处理失败: " + ex.getMessage());
-                            
-                            // 重新启用按钮
-                            browseButton.setEnabled(true);
-                            processButton.setEnabled(true);
-                            loadCacheButton.setEnabled(true);
-                        }
-                    }
-                }.execute();
+                startProcessing(new FollowListReader(selectedFile), selectedFile.getAbsoluteFile().getParentFile(), inactiveDays);
+            }
+        });
+        
+        // 多账号分析按钮
+        multiAccountButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                showMultiAccountDialog();
+            }
+        });
+        
+        // 切换多账号模式下查看的账号
+        accountComboBox.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                switchAccount();
+            }
+        });
+        
+        // 从账号获取按钮
+        fetchAccountButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                showFetchAccountDialog();
             }
         });
         
@@ -446,33 +594,57 @@ public class MainApp extends JFrame {
                     return;
                 }
                 
+                // 在事件分发线程上确定export_uids.json，找不到时让用户选择
+                File exportUidsFile = CacheLoadingTask.findExportUidsFile(cacheFile);
+                if (exportUidsFile == null) {
+                    JFileChooser exportChooser = new JFileChooser(cacheFile.getAbsoluteFile().getParentFile());
+                    exportChooser.setDialogTitle("请选择export_uids.json文件");
+                    exportChooser.setFileFilter(new FileNameExtensionFilter("JSON文件", "json"));
+                    if (exportChooser.showOpenDialog(MainApp.this) != JFileChooser.APPROVE_OPTION) {
+                        statusLabel.setText("未选择export_uids.json文件，无法获取用户名和标签信息");
+                        return;
+                    }
+                    exportUidsFile = exportChooser.getSelectedFile();
+                }
+                
                 // 禁用按钮，防止重复点击
                 processButton.setEnabled(false);
                 browseButton.setEnabled(false);
                 loadCacheButton.setEnabled(false);
+                fetchAccountButton.setEnabled(false);
+                multiAccountButton.setEnabled(false);
                 
                 // 清空表格
-                tableModel.setRowCount(0);
+                tableModel.clear();
                 
                 // 执行缓存加载任务
-                new CacheLoadingTask(cacheFile, inactiveDays, statusLabel) {
+                histogram.clear();
+                final File loadedCacheFile = cacheFile;
+                final File loadedFollowListFile = exportUidsFile;
+                new CacheLoadingTask(cacheFile, exportUidsFile, statusLabel, histogram) {
                     @Override
                     protected void done() {
                         try {
                             inactiveUsers = get();
+                            MainApp.this.cacheFile = loadedCacheFile;
+                            followListFile = loadedFollowListFile;
+                            clearAccountResults();
                             displayResults(inactiveUsers);
                             dataProcessed = true;
                             exportButton.setEnabled(true);
+                            unfollowButton.setEnabled(true);
                             
                             // 重新启用按钮
                             browseButton.setEnabled(true);
                             processButton.setEnabled(true);
                             loadCacheButton.setEnabled(true);
+                            fetchAccountButton.setEnabled(true);
+                            multiAccountButton.setEnabled(true);
                             
                             statusLabel.setText("从缓存加载数据完成");
                             
                             // 应用不活跃天数过滤器
-                            updateInactiveDaysFilter();
+                            updateFilter();
                         } catch (InterruptedException | ExecutionException ex) {
                             JOptionPane.showMessageDialog(MainApp.this, "加载缓存时出错: " + ex.getMessage(), "错误", JOptionPane.ERROR_MESSAGE);
                             statusLabel.setText("加载失败: " + ex.getMessage());
@@ -481,6 +653,8 @@ public class MainApp extends JFrame {
                             browseButton.setEnabled(true);
                             processButton.setEnabled(true);
                             loadCacheButton.setEnabled(true);
+                            fetchAccountButton.setEnabled(true);
+                            multiAccountButton.setEnabled(true);
                         }
                     }
                 }.execute();
@@ -516,6 +690,17 @@ public class MainApp extends JFrame {
                     }
                 }
                 
+                // 多账号模式下查看合并结果时，可以按账号分别导出，每个账号使用相同的筛选条件
+                boolean perAccount = false;
+                if (accountResults != null && accountComboBox.getSelectedIndex() == 0 && !"导出已选择".equals(exportType)) {
+                    int choice = JOptionPane.showConfirmDialog(MainApp.this, "是否按账号分别导出到各自的子目录？\n选择\"否\"将导出去重合并后的结果。",
+                            "多账号导出", JOptionPane.YES_NO_CANCEL_OPTION, JOptionPane.QUESTION_MESSAGE);
+                    if (choice == JOptionPane.CANCEL_OPTION || choice == JOptionPane.CLOSED_OPTION) {
+                        return;
+                    }
+                    perAccount = choice == JOptionPane.YES_OPTION;
+                }
+                
                 JFileChooser dirChooser = new JFileChooser();
                 dirChooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
                 int result = dirChooser.showSaveDialog(MainApp.this);
@@ -524,70 +709,545 @@ public class MainApp extends JFrame {
                     File dir = dirChooser.getSelectedFile();
                     
                     try {
-                        String fileName = DataExporter.exportInactiveUsers(usersToExport, dir, exportType);
-                        JOptionPane.showMessageDialog(MainApp.this, "导出成功: " + fileName, "成功", JOptionPane.INFORMATION_MESSAGE);
+                        // 选择"全部格式"时一次遍历同时写出所有格式
+                        int formatIndex = exportFormatComboBox.getSelectedIndex();
+                        EnumSet<ExportFormat> formats = formatIndex < ExportFormat.values().length
+                                ? EnumSet.of(ExportFormat.values()[formatIndex])
+                                : EnumSet.allOf(ExportFormat.class);
+                        if (perAccount) {
+                            List<String> results = DataExporter.exportAccounts(filterAccountResults(), dir, exportType, currentInactiveDays(), formats);
+                            JOptionPane.showMessageDialog(MainApp.this, "导出完成:\n" + String.join("\n", results), "成功", JOptionPane.INFORMATION_MESSAGE);
+                            return;
+                        }
+                        List<String> fileNames = DataExporter.exportUsers(usersToExport, dir, exportType, currentInactiveDays(), formats);
+                        JOptionPane.showMessageDialog(MainApp.this, "导出成功: " + String.join(", ", fileNames), "成功", JOptionPane.INFORMATION_MESSAGE);
                     } catch (Exception ex) {
                         JOptionPane.showMessageDialog(MainApp.this, "导出失败: " + ex.getMessage(), "错误", JOptionPane.ERROR_MESSAGE);
                     }
                 }
             }
         });
+        
+        // 对比快照按钮
+        diffButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                compareWithSnapshot();
+            }
+        });
+        
+        // 性能指标按钮，将本次运行各阶段的计数和耗时写入当前目录
+        metricsButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                String timestamp = java.time.LocalDateTime.now().format(java.time.format.DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
+                File file = new File("metrics_" + timestamp + ".txt");
+                try {
+                    Metrics.global().dump(file);
+                    JOptionPane.showMessageDialog(MainApp.this, "运行指标已保存到: " + file.getAbsolutePath(), "性能指标", JOptionPane.INFORMATION_MESSAGE);
+                } catch (IOException ex) {
+                    JOptionPane.showMessageDialog(MainApp.this, "保存运行指标失败: " + ex.getMessage(), "错误", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        });
+        
+        // 批量取消关注按钮，按导出选项确定用户范围
+        unfollowButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                if (!dataProcessed || inactiveUsers == null || inactiveUsers.isEmpty()) {
+                    JOptionPane.showMessageDialog(MainApp.this, "没有数据", "错误", JOptionPane.ERROR_MESSAGE);
+                    return;
+                }
+                
+                String exportType = (String) exportTypeComboBox.getSelectedItem();
+                List<UserData> candidates = "导出已选择".equals(exportType) ? getSelectedTableUsers() : getCurrentTableUsers();
+                java.util.function.Predicate<UserData> filter = DataExporter.filterFor(exportType, currentInactiveDays());
+                List<UserData> users = new ArrayList<>(candidates.size());
+                for (UserData user : candidates) {
+                    if (filter.test(user)) {
+                        users.add(user);
+                    }
+                }
+                if (users.isEmpty()) {
+                    JOptionPane.showMessageDialog(MainApp.this, "没有符合条件的用户", "提示", JOptionPane.INFORMATION_MESSAGE);
+                    return;
+                }
+                
+                showUnfollowDialog(users);
+            }
+        });
     }
     
-    // 实时更新不活跃天数筛选
-    private void updateInactiveDaysFilter() {
+    // 从关注列表来源获取视频数据，完成后显示结果；缓存文件保存在outputDir
+    private void startProcessing(FollowSource source, File outputDir, int inactiveDays) {
+        List<FetchPriority.Rule> priorityRules;
+        try {
+            String priorityText = String.valueOf(priorityComboBox.getSelectedItem()).trim();
+            priorityRules = PRIORITY_AUTO.equals(priorityText) ? null : FetchPriority.parseRules(priorityText);
+        } catch (IllegalArgumentException ex) {
+            JOptionPane.showMessageDialog(this, ex.getMessage(), "错误", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        
+        // 禁用按钮，防止重复点击
+        processButton.setEnabled(false);
+        browseButton.setEnabled(false);
+        loadCacheButton.setEnabled(false);
+        fetchAccountButton.setEnabled(false);
+        multiAccountButton.setEnabled(false);
+        
+        // 清空表格
+        tableModel.clear();
+        
+        // 获取批量处理参数；留空或无效时为0，固定批次时使用默认值，自动调节时表示不限
+        int batchSizeCap = 0;
+        double batchIntervalCap = 0;
+        try {
+            batchSizeCap = Math.max(0, Integer.parseInt(batchSizeField.getText().trim()));
+        } catch (NumberFormatException ex) {
+            // 使用默认值
+        }
+        try {
+            batchIntervalCap = Math.max(0, Double.parseDouble(batchIntervalField.getText().trim()));
+        } catch (NumberFormatException ex) {
+            // 使用默认值
+        }
+        int batchSize = batchSizeCap > 0 ? batchSizeCap : 2;
+        double batchInterval = batchIntervalCap > 0 ? batchIntervalCap : 1.0;
+        double budgetMinutes = 0;
+        try {
+            budgetMinutes = Math.max(0, Double.parseDouble(budgetField.getText().trim()));
+        } catch (NumberFormatException ex) {
+            // 不限制
+        }
+        
+        // 执行数据处理任务
+        histogram.clear();
+        DataProcessingTask task = new DataProcessingTask(source, outputDir, inactiveDays, progressBar, statusLabel, batchSize, batchInterval, histogram) {
+            @Override
+            protected void done() {
+                // 重新启用按钮
+                browseButton.setEnabled(true);
+                processButton.setEnabled(selectedFile != null);
+                loadCacheButton.setEnabled(true);
+                fetchAccountButton.setEnabled(true);
+                multiAccountButton.setEnabled(true);
+                try {
+                    inactiveUsers = get();
+                    displayResults(inactiveUsers);
+                    dataProcessed = true;
+                    exportButton.setEnabled(true);
+                    unfollowButton.setEnabled(true);
+                    
+                    // 创建缓存文件；不是从文件读取的关注列表也已保存为export_uids.json
+                    cacheFile = new File(outputDir, "user_data_cache.json");
+                    followListFile = source instanceof FollowListReader ? selectedFile : new File(outputDir, "export_uids.json");
+                    statusLabel.setText("处理完成，已创建缓存文件: " + cacheFile.getPath());
+                    if (source instanceof MultiAccountSource) {
+                        showAccountResults((MultiAccountSource) source, inactiveUsers);
+                    } else {
+                        clearAccountResults();
+                    }
+                    
+                    // 应用不活跃天数过滤器
+                    updateFilter();
+                    
+                    if (getUnfetchedReport() != null) {
+                        statusLabel.setText(String.format("处理完成，%d 个用户未获取到数据，已列入 %s",
+                                getUnfetched().size() + getFailed().size(), getUnfetchedReport()));
+                        JOptionPane.showMessageDialog(MainApp.this,
+                                String.format("%d 个用户因超出时间预算未获取，%d 个用户请求失败。\n"
+                                                + "其中 %d 个用户沿用上次缓存中的结果，其余不在结果中；全部已列入 %s",
+                                        getUnfetched().size(), getFailed().size(), getReusedCount(),
+                                        new File(outputDir, getUnfetchedReport()).getPath()),
+                                "部分用户未获取", JOptionPane.WARNING_MESSAGE);
+                    }
+                } catch (InterruptedException | ExecutionException ex) {
+                    JOptionPane.showMessageDialog(MainApp.this, "处理数据时出错: " + ex.getMessage(), "错误", JOptionPane.ERROR_MESSAGE);
+                    statusLabel.setText("处理失败: " + ex.getMessage());
+                }
+            }
+        };
+        task.setBudget((long) (budgetMinutes * 60_000));
+        task.setPreviousResults(mergedUsers != null ? mergedUsers : inactiveUsers);
+        task.setPriorityRules(priorityRules);
+        if (adaptiveCheckBox.isSelected()) {
+            int maxLimit = batchSizeCap > 0 ? Math.min(batchSizeCap, ConcurrencyLimiter.MAX_LIMIT) : ConcurrencyLimiter.MAX_LIMIT;
+            task.setConcurrencyLimiter(ConcurrencyLimiter.load(ConcurrencyLimiter.defaultFile(), maxLimit, batchIntervalCap));
+        }
+        task.execute();
+    }
+    
+    // 选择多个账号的export_uids.json，合并去重后一次抓取；结果和缓存保存在当前目录的multi_account子目录
+    private void showMultiAccountDialog() {
+        int inactiveDays;
+        try {
+            inactiveDays = Integer.parseInt(inactiveDaysField.getText().trim());
+            if (inactiveDays <= 0) {
+                throw new NumberFormatException();
+            }
+        } catch (NumberFormatException ex) {
+            JOptionPane.showMessageDialog(this, "请输入有效的天数", "错误", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        
+        JFileChooser fileChooser = new JFileChooser(selectedFile != null ? selectedFile.getAbsoluteFile().getParentFile() : null);
+        fileChooser.setDialogTitle("选择多个账号的export_uids.json文件");
+        fileChooser.setFileFilter(new FileNameExtensionFilter("JSON文件", "json"));
+        fileChooser.setMultiSelectionEnabled(true);
+        if (fileChooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        File[] files = fileChooser.getSelectedFiles();
+        if (files.length < 2) {
+            JOptionPane.showMessageDialog(this, "请至少选择两个账号的关注列表文件", "提示", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+        
+        File outputDir = new File(System.getProperty("user.dir"), "multi_account");
+        if (!outputDir.isDirectory() && !outputDir.mkdirs()) {
+            JOptionPane.showMessageDialog(this, "无法创建目录: " + outputDir.getPath(), "错误", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        
+        List<FollowSource> accounts = new ArrayList<>(files.length);
+        for (File file : files) {
+            accounts.add(new FollowListReader(file));
+        }
+        startProcessing(new MultiAccountSource(accounts, accountLabels(files)), outputDir, inactiveDays);
+    }
+    
+    // 账号名称取文件名（去掉扩展名）；文件名相同时（例如都叫export_uids.json）加上所在目录名，仍重复时加序号
+    private static List<String> accountLabels(File[] files) {
+        List<String> names = new ArrayList<>(files.length);
+        for (File file : files) {
+            String name = file.getName();
+            int dot = name.lastIndexOf('.');
+            names.add(dot > 0 ? name.substring(0, dot) : name);
+        }
+        List<String> labels = new ArrayList<>(files.length);
+        for (int i = 0; i < files.length; i++) {
+            String label = names.get(i);
+            if (names.indexOf(label) != names.lastIndexOf(label)) {
+                File parent = files[i].getAbsoluteFile().getParentFile();
+                label = (parent != null ? parent.getName() : "") + "/" + label;
+            }
+            String unique = label;
+            for (int suffix = 2; labels.contains(unique); suffix++) {
+                unique = label + " (" + suffix + ")";
+            }
+            labels.add(unique);
+        }
+        return labels;
+    }
+    
+    // 显示多账号结果：默认查看去重合并后的结果，可切换到单个账号
+    private void showAccountResults(MultiAccountSource source, List<UserData> merged) {
+        accountResults = source.split(merged);
+        mergedUsers = merged;
+        List<String> items = new ArrayList<>();
+        items.add("全部账号（去重）");
+        items.addAll(accountResults.keySet());
+        accountComboBox.setModel(new DefaultComboBoxModel<>(items.toArray(new String[0])));
+        accountComboBox.setVisible(true);
+        statusLabel.setText(String.format("多账号处理完成：%d 个账号共 %d 条关注，去重后 %d 个用户，节省 %d 次请求",
+                accountResults.size(), source.getFollowCount(), source.getDistinctCount(),
+                source.getFollowCount() - source.getDistinctCount()));
+    }
+    
+    // 退出多账号模式
+    private void clearAccountResults() {
+        accountResults = null;
+        mergedUsers = null;
+        accountComboBox.setModel(new DefaultComboBoxModel<>());
+        accountComboBox.setVisible(false);
+    }
+    
+    // 切换查看的账号，保留当前的筛选条件和排序
+    private void switchAccount() {
+        if (accountResults == null || accountComboBox.getSelectedIndex() < 0) {
+            return;
+        }
+        List<UserData> users = accountComboBox.getSelectedIndex() == 0
+                ? mergedUsers : accountResults.get((String) accountComboBox.getSelectedItem());
+        if (users == null || users.isEmpty()) {
+            return;
+        }
+        displayResultsKeepingSort(users);
+        updateFilter();
+    }
+    
+    // 按当前筛选条件和排序筛选每个账号的结果，用于按账号分别导出
+    private Map<String, List<UserData>> filterAccountResults() {
+        UserQuery query = buildQuery();
+        Map<String, List<UserData>> filtered = new LinkedHashMap<>();
+        for (Map.Entry<String, List<UserData>> account : accountResults.entrySet()) {
+            if (query == null || account.getValue().isEmpty()) {
+                filtered.put(account.getKey(), account.getValue());
+                continue;
+            }
+            UserSearchIndex index = new UserSearchIndex(account.getValue());
+            int[] ordinals = index.getSortKeys().sort(index.search(query), sortColumn, sortAscending);
+            List<UserData> users = new ArrayList<>(ordinals.length);
+            for (int ordinal : ordinals) {
+                users.add(index.getUser(ordinal));
+            }
+            filtered.put(account.getKey(), users);
+        }
+        return filtered;
+    }
+    
+    // 显示从账号获取关注列表的对话框，确认后直接抓取，不需要export_uids.json
+    private void showFetchAccountDialog() {
+        int inactiveDays;
+        try {
+            inactiveDays = Integer.parseInt(inactiveDaysField.getText().trim());
+            if (inactiveDays <= 0) {
+                throw new NumberFormatException();
+            }
+        } catch (NumberFormatException ex) {
+            JOptionPane.showMessageDialog(this, "请输入有效的天数", "错误", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        
+        JTextField vmidField = new JTextField(15);
+        JTextField cookieField = new JTextField(30);
+        JTextField concurrencyField = new JTextField("4", 5);
+        JTextField rateField = new JTextField("2", 5);
+        
+        JPanel panel = new JPanel(new GridLayout(0, 2, 5, 5));
+        panel.add(new JLabel("用户UID:"));
+        panel.add(vmidField);
+        panel.add(new JLabel("Cookie (获取自己的完整列表和分组):"));
+        panel.add(cookieField);
+        panel.add(new JLabel("同时请求页数:"));
+        panel.add(concurrencyField);
+        panel.add(new JLabel("每秒请求数:"));
+        panel.add(rateField);
+        
+        int option = JOptionPane.showConfirmDialog(this, panel, "从账号获取关注列表",
+                JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE);
+        if (option != JOptionPane.OK_OPTION) {
+            return;
+        }
+        
+        FollowListIngestor ingestor;
+        try {
+            ingestor = new FollowListIngestor(BilibiliApi.baseUrl(),
+                    Long.parseLong(vmidField.getText().trim()),
+                    cookieField.getText(),
+                    Integer.parseInt(concurrencyField.getText().trim()),
+                    Double.parseDouble(rateField.getText().trim()));
+        } catch (NumberFormatException ex) {
+            JOptionPane.showMessageDialog(this, "请输入有效的数字", "错误", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        
+        // 缓存和关注列表保存在当前目录
+        startProcessing(ingestor, new File(System.getProperty("user.dir")), inactiveDays);
+    }
+    
+    // 显示取消关注设置对话框，确认后在后台执行
+    private void showUnfollowDialog(List<UserData> users) {
+        JTextField cookieField = new JTextField(30);
+        JCheckBox dryRunBox = new JCheckBox("演练模式（只记录，不发送请求）", true);
+        JTextField unfollowBatchField = new JTextField("10", 5);
+        JTextField unfollowIntervalField = new JTextField("5", 5);
+        JTextField rateField = new JTextField("1", 5);
+        JTextField retryField = new JTextField("3", 5);
+        
+        JPanel panel = new JPanel(new GridLayout(0, 2, 5, 5));
+        panel.add(new JLabel("Cookie (SESSDATA, bili_jct):"));
+        panel.add(cookieField);
+        panel.add(new JLabel("每批数量:"));
+        panel.add(unfollowBatchField);
+        panel.add(new JLabel("批次间隔(秒):"));
+        panel.add(unfollowIntervalField);
+        panel.add(new JLabel("每秒请求数:"));
+        panel.add(rateField);
+        panel.add(new JLabel("最大重试次数:"));
+        panel.add(retryField);
+        panel.add(dryRunBox);
+        
+        int option = JOptionPane.showConfirmDialog(this, panel, "批量取消关注 " + users.size() + " 个用户",
+                JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE);
+        if (option != JOptionPane.OK_OPTION) {
+            return;
+        }
+        
+        UnfollowExecutor executor;
+        try {
+            executor = new UnfollowExecutor(BilibiliApi.baseUrl(), cookieField.getText(),
+                    Integer.parseInt(unfollowBatchField.getText().trim()),
+                    Double.parseDouble(unfollowIntervalField.getText().trim()),
+                    Double.parseDouble(rateField.getText().trim()),
+                    Integer.parseInt(retryField.getText().trim()),
+                    dryRunBox.isSelected());
+        } catch (NumberFormatException ex) {
+            JOptionPane.showMessageDialog(this, "请输入有效的数字", "错误", JOptionPane.ERROR_MESSAGE);
+            return;
+        } catch (IllegalArgumentException ex) {
+            JOptionPane.showMessageDialog(this, ex.getMessage(), "错误", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        
+        if (!dryRunBox.isSelected()) {
+            int confirm = JOptionPane.showConfirmDialog(this, "确定要取消关注这 " + users.size() + " 个用户吗？此操作无法撤销。",
+                    "确认", JOptionPane.YES_NO_OPTION, JOptionPane.WARNING_MESSAGE);
+            if (confirm != JOptionPane.YES_OPTION) {
+                return;
+            }
+        }
+        
+        // 日志保存在输入文件所在目录，未选择文件时保存在当前目录
+        String timestamp = java.time.LocalDateTime.now().format(java.time.format.DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
+        File logDir = selectedFile != null ? selectedFile.getAbsoluteFile().getParentFile() : new File(".");
+        final File logFile = new File(logDir, "unfollow_log_" + timestamp + ".csv");
+        
+        unfollowButton.setEnabled(false);
+        processButton.setEnabled(false);
+        loadCacheButton.setEnabled(false);
+        fetchAccountButton.setEnabled(false);
+        multiAccountButton.setEnabled(false);
+        
+        new UnfollowTask(users, executor, logFile, progressBar, statusLabel) {
+            @Override
+            protected void done() {
+                unfollowButton.setEnabled(true);
+                processButton.setEnabled(selectedFile != null);
+                loadCacheButton.setEnabled(true);
+                fetchAccountButton.setEnabled(true);
+                multiAccountButton.setEnabled(true);
+                try {
+                    int success = 0;
+                    int failed = 0;
+                    for (UnfollowResult result : get()) {
+                        if (result.getStatus() == UnfollowResult.Status.FAILED) {
+                            failed++;
+                        } else {
+                            success++;
+                        }
+                    }
+                    String summary = String.format("取消关注完成：成功 %d，失败 %d，日志: %s", success, failed, logFile.getName());
+                    statusLabel.setText(summary);
+                    JOptionPane.showMessageDialog(MainApp.this, summary, "完成", JOptionPane.INFORMATION_MESSAGE);
+                } catch (InterruptedException | ExecutionException ex) {
+                    statusLabel.setText("取消关注失败: " + ex.getMessage());
+                    JOptionPane.showMessageDialog(MainApp.this, "取消关注时出错: " + ex.getMessage(), "错误", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        }.execute();
+    }
+    
+    // 实时更新组合筛选（不活跃天数范围、用户名、视频标题、分组），筛选和排序在后台线程执行
+    private void updateFilter() {
         if (!dataProcessed || inactiveUsers == null) {
             return;
         }
         
+        UserQuery query = buildQuery();
+        if (query == null) {
+            return; // 忽略无效输入
+        }
+        
+        final List<UserData> source = inactiveUsers;
+        final int column = sortColumn;
+        final boolean ascending = sortAscending;
+        queryExecutor.submit(() -> {
+            PerfEvents.Filter event = new PerfEvents.Filter();
+            event.begin();
+            long start = System.nanoTime();
+            UserSearchIndex index = indexFor(source);
+            QueryExecutor.checkCancelled();
+            BitSet hits = index.search(query);
+            QueryExecutor.checkCancelled();
+            int[] ordinals = index.getSortKeys().sort(hits, column, ascending);
+            QueryExecutor.checkCancelled();
+            
+            List<UserData> result = new ArrayList<>(ordinals.length);
+            for (int ordinal : ordinals) {
+                result.add(index.getUser(ordinal));
+            }
+            Metrics.global().recordSince(Metrics.FILTER_LATENCY, start);
+            event.end();
+            if (event.shouldCommit()) {
+                event.total = index.size();
+                event.hits = ordinals.length;
+                event.sortColumn = column;
+                event.commit();
+            }
+            return result;
+        }, this::displayFilteredResults); // 更新表格显示
+    }
+    
+    // 在查询线程上获取检索索引，数据变化后的首次查询时重新构建
+    private UserSearchIndex indexFor(List<UserData> users) {
+        if (searchIndex == null || indexedUsers != users) {
+            searchIndex = new UserSearchIndex(users);
+            indexedUsers = users;
+        }
+        return searchIndex;
+    }
+    
+    // 在表头上标出当前排序列和方向
+    private void updateSortHeader() {
+        javax.swing.table.TableColumnModel columnModel = resultTable.getColumnModel();
+        for (int i = 0; i < columnModel.getColumnCount(); i++) {
+            javax.swing.table.TableColumn tableColumn = columnModel.getColumn(i);
+            int modelColumn = tableColumn.getModelIndex();
+            String name = tableModel.getColumnName(modelColumn);
+            if (modelColumn == sortColumn) {
+                name += sortAscending ? " ▲" : " ▼";
+            }
+            tableColumn.setHeaderValue(name);
+        }
+        resultTable.getTableHeader().repaint();
+    }
+    
+    // 当前输入的不活跃天数阈值，输入无效时为0(不按天数判断)
+    private int currentInactiveDays() {
+        try {
+            return Math.max(0, Integer.parseInt(inactiveDaysField.getText().trim()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+    
+    /**
+     * 根据筛选输入框构建查询条件
+     * @return 查询条件，输入无效时返回null
+     */
+    private UserQuery buildQuery() {
         try {
             int inactiveDays = Integer.parseInt(inactiveDaysField.getText().trim());
             if (inactiveDays < 0) {
-                return;
+                return null;
             }
             
-            List<UserData> filteredUsers = new ArrayList<>();
+            histogramPanel.setThreshold(inactiveDays);
             
+            UserQuery query = new UserQuery();
             // 当不活跃天数为0时，显示所有用户
-            if (inactiveDays == 0) {
-                filteredUsers = new ArrayList<>(inactiveUsers);
-            } else {
-                for (UserData user : inactiveUsers) {
-                    if (user.isInactive(inactiveDays)) {
-                        filteredUsers.add(user);
-                    }
-                }
+            if (inactiveDays > 0) {
+                query.setMinInactiveDays(inactiveDays);
             }
-            
-            // 更新表格显示
-            displayFilteredResults(filteredUsers);
+            String maxDays = maxDaysField.getText().trim();
+            if (!maxDays.isEmpty()) {
+                query.setMaxInactiveDays(Integer.parseInt(maxDays));
+            }
+            query.setUsernameContains(usernameFilterField.getText());
+            query.setTitleContains(titleFilterField.getText());
+            query.setTags(tagFilterField.getText());
+            return query;
         } catch (NumberFormatException e) {
-            // 忽略无效输入
+            return null;
         }
     }
     
     private void displayFilteredResults(List<UserData> users) {
-        // 清空表格
-        tableModel.setRowCount(0);
-        
-        // 添加数据到表格
-        for (UserData user : users) {
-            Object[] rowData = {
-                user.getUid(),
-                user.getUsername(),
-                String.join(", ", user.getTags()),
-                user.getInactiveDays(),
-                user.getLastVideoTitle(),
-                user.getVideoUrl(),
-                user.getSpaceUrl()
-            };
-            tableModel.addRow(rowData);
-        }
-        
-        // 设置默认按不活跃天数升序排序
-        if (resultTable.getRowSorter() != null) {
-            resultTable.getRowSorter().setSortKeys(List.of(new RowSorter.SortKey(3, SortOrder.ASCENDING)));
-        }
+        // 更新表格数据
+        tableModel.setUsers(users);
         
         // 更新左下角状态栏标签，显示不活跃用户数量和总用户数量
         userCountLabel.setText(users.size() + "/" + inactiveUsers.size() + " 不活跃用户/全部");
@@ -598,24 +1258,13 @@ public class MainApp extends JFrame {
      * @return 当前表格中显示的用户数据列表
      */
     private List<UserData> getCurrentTableUsers() {
-        List<UserData> currentUsers = new ArrayList<>();
+        List<UserData> currentUsers = new ArrayList<>(tableModel.getRowCount());
         
-        // 获取当前表格中的所有行数据
-        for (int i = 0; i < tableModel.getRowCount(); i++) {
-            // 获取行的模型索引（考虑表格排序）
-            int modelRow = i;
-            if (resultTable.getRowSorter() != null) {
-                modelRow = resultTable.convertRowIndexToModel(i);
-            }
-            
-            // 从原始用户列表中找到对应的用户对象
-            long uid = (long) tableModel.getValueAt(modelRow, 0);
-            for (UserData user : inactiveUsers) {
-                if (user.getUid() == uid) {
-                    currentUsers.add(user);
-                    break;
-                }
-            }
+        // 按当前视图顺序获取表格中的所有行数据
+        for (int i = 0; i < resultTable.getRowCount(); i++) {
+            // 获取行的模型索引（考虑表格排序），模型行直接对应用户对象
+            int modelRow = resultTable.convertRowIndexToModel(i);
+            currentUsers.add(tableModel.getUserAt(modelRow));
         }
         
         return currentUsers;
@@ -626,10 +1275,9 @@ public class MainApp extends JFrame {
      * @return 表格中选中的用户数据列表
      */
     private List<UserData> getSelectedTableUsers() {
-        List<UserData> selectedUsers = new ArrayList<>();
-        
         // 获取表格中选中的行
         int[] selectedRows = resultTable.getSelectedRows();
+        List<UserData> selectedUsers = new ArrayList<>(selectedRows.length);
         
         if (selectedRows.length == 0) {
             return selectedUsers; // 没有选中任何行
@@ -637,25 +1285,24 @@ public class MainApp extends JFrame {
         
         // 遍历选中的行
         for (int viewRow : selectedRows) {
-            // 获取行的模型索引（考虑表格排序）
-            int modelRow = viewRow;
-            if (resultTable.getRowSorter() != null) {
-                modelRow = resultTable.convertRowIndexToModel(viewRow);
-            }
-            
-            // 从原始用户列表中找到对应的用户对象
-            long uid = (long) tableModel.getValueAt(modelRow, 0);
-            for (UserData user : inactiveUsers) {
-                if (user.getUid() == uid) {
-                    selectedUsers.add(user);
-                    break;
-                }
-            }
+            // 获取行的模型索引（考虑表格排序），模型行直接对应用户对象
+            int modelRow = resultTable.convertRowIndexToModel(viewRow);
+            selectedUsers.add(tableModel.getUserAt(modelRow));
         }
         
         return selectedUsers;
     }
     
+    // 替换结果列表但保留当前的排序列和方向
+    private void displayResultsKeepingSort(List<UserData> users) {
+        int column = sortColumn;
+        boolean ascending = sortAscending;
+        displayResults(users);
+        sortColumn = column;
+        sortAscending = ascending;
+        updateSortHeader();
+    }
+    
     private void displayResults(List<UserData> users) {
         if (users == null || users.isEmpty()) {
             JOptionPane.showMessageDialog(this, "没有找到不活跃用户", "信息", JOptionPane.INFORMATION_MESSAGE);
@@ -664,33 +1311,285 @@ public class MainApp extends JFrame {
         
         // 保存完整的用户列表，用于后续筛选
         inactiveUsers = new ArrayList<>(users);
-        
-        // 清空表格
-        tableModel.setRowCount(0);
-        
-        // 添加数据到表格
-        for (UserData user : users) {
-            Object[] rowData = {
-                user.getUid(),
-                user.getUsername(),
-                String.join(", ", user.getTags()),
-                user.getInactiveDays(),
-                user.getLastVideoTitle(),
-                user.getVideoUrl(),
-                user.getSpaceUrl()
-            };
-            tableModel.addRow(rowData);
-        }
+        // 以最终结果校正分布图（抓取过程中的计数可能包含后来解析失败的数据）
+        histogram.reset(inactiveUsers);
         
         // 设置默认按不活跃天数升序排序
-        if (resultTable.getRowSorter() != null) {
-            resultTable.getRowSorter().setSortKeys(List.of(new RowSorter.SortKey(3, SortOrder.ASCENDING)));
-        }
+        sortColumn = 3;
+        sortAscending = true;
+        updateSortHeader();
+        
+        // 表格内容由随后的updateFilter在后台筛选、排序后填充
+        tableModel.clear();
         
         // 更新左下角状态栏标签，显示不活跃用户数量和总用户数量
         userCountLabel.setText(users.size() + "/" + users.size() + " 不活跃用户/全部");
     }
     
+    // 启动时读取上次的会话快照并立即显示结果；缓存文件在此之后有变化时再在后台重新加载
+    private void restoreSession() {
+        final File snapshotFile = SessionSnapshot.defaultFile();
+        if (!snapshotFile.isFile()) {
+            return;
+        }
+        
+        statusLabel.setText("正在恢复上次的会话...");
+        new SwingWorker<SessionSnapshot, Void>() {
+            @Override
+            protected SessionSnapshot doInBackground() throws Exception {
+                return SessionSnapshot.read(snapshotFile);
+            }
+            
+            @Override
+            protected void done() {
+                SessionSnapshot snapshot;
+                try {
+                    snapshot = get();
+                } catch (InterruptedException | ExecutionException ex) {
+                    System.err.println("读取会话快照失败: " + ex.getMessage());
+                    statusLabel.setText("请选择export_uids.json文件");
+                    return;
+                }
+                // 读取期间已经开始了新的处理，或快照中没有用户时不再恢复
+                if (dataProcessed || snapshot.getUsers().isEmpty()) {
+                    return;
+                }
+                applySnapshot(snapshot);
+            }
+        }.execute();
+    }
+    
+    // 用快照恢复结果、阈值、排序状态和文件路径
+    private void applySnapshot(SessionSnapshot snapshot) {
+        clearAccountResults();
+        cacheFile = snapshot.getCacheFile();
+        followListFile = snapshot.getFollowListFile();
+        if (followListFile != null && followListFile.isFile()) {
+            selectedFile = followListFile;
+            filePathField.setText(selectedFile.getAbsolutePath());
+            processButton.setEnabled(true);
+        }
+        
+        displayResults(snapshot.getUsers());
+        if (snapshot.getSortColumn() >= 0 && snapshot.getSortColumn() < tableModel.getColumnCount()) {
+            sortColumn = snapshot.getSortColumn();
+            sortAscending = snapshot.isSortAscending();
+            updateSortHeader();
+        }
+        dataProcessed = true;
+        exportButton.setEnabled(true);
+        unfollowButton.setEnabled(true);
+        
+        String savedAt = java.time.Instant.ofEpochMilli(snapshot.getSavedAt()).atZone(java.time.ZoneId.systemDefault())
+                .format(java.time.format.DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm"));
+        statusLabel.setText("已恢复 " + savedAt + " 的会话，共 " + inactiveUsers.size() + " 个用户");
+        
+        // 恢复阈值后筛选，填充表格
+        inactiveDaysField.setText(String.valueOf(snapshot.getInactiveDays()));
+        updateFilter();
+        
+        if (snapshot.isCacheChanged()) {
+            reconcileCache(snapshot);
+        }
+    }
+    
+    // 快照保存后缓存文件有变化（例如在其他地方重新抓取过），在后台重新加载缓存并替换结果，保留当前的排序状态
+    private void reconcileCache(SessionSnapshot snapshot) {
+        final File changedCacheFile = snapshot.getCacheFile();
+        File exportUidsFile = followListFile != null && followListFile.isFile()
+                ? followListFile : CacheLoadingTask.findExportUidsFile(changedCacheFile);
+        if (exportUidsFile == null) {
+            statusLabel.setText(statusLabel.getText() + "；缓存文件已变化，但找不到export_uids.json，请手动加载缓存");
+            return;
+        }
+        
+        processButton.setEnabled(false);
+        browseButton.setEnabled(false);
+        loadCacheButton.setEnabled(false);
+        fetchAccountButton.setEnabled(false);
+        multiAccountButton.setEnabled(false);
+        
+        final File reconciledFollowListFile = exportUidsFile;
+        final String restoredStatus = statusLabel.getText();
+        new CacheLoadingTask(changedCacheFile, exportUidsFile, new JLabel(), null) {
+            @Override
+            protected void done() {
+                browseButton.setEnabled(true);
+                processButton.setEnabled(selectedFile != null);
+                loadCacheButton.setEnabled(true);
+                fetchAccountButton.setEnabled(true);
+                multiAccountButton.setEnabled(true);
+                try {
+                    List<UserData> users = get();
+                    if (users.isEmpty()) {
+                        return;
+                    }
+                    displayResultsKeepingSort(users);
+                    MainApp.this.cacheFile = changedCacheFile;
+                    followListFile = reconciledFollowListFile;
+                    statusLabel.setText("缓存文件已变化，已重新加载，共 " + users.size() + " 个用户");
+                    updateFilter();
+                } catch (InterruptedException | ExecutionException ex) {
+                    System.err.println("重新加载缓存失败: " + ex.getMessage());
+                    statusLabel.setText(restoredStatus + "；重新加载缓存失败: " + ex.getMessage());
+                }
+            }
+        }.execute();
+    }
+    
+    // 选择一个会话快照（默认为上次退出时保存的），在后台与当前结果归并对比，完成后显示差异
+    private void compareWithSnapshot() {
+        if (!dataProcessed || inactiveUsers == null || inactiveUsers.isEmpty()) {
+            JOptionPane.showMessageDialog(this, "没有数据", "错误", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        int threshold;
+        try {
+            threshold = Integer.parseInt(inactiveDaysField.getText().trim());
+            if (threshold <= 0) {
+                throw new NumberFormatException();
+            }
+        } catch (NumberFormatException ex) {
+            JOptionPane.showMessageDialog(this, "请输入有效的天数", "错误", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        
+        JFileChooser fileChooser = new JFileChooser(new File(System.getProperty("user.dir")));
+        fileChooser.setDialogTitle("选择要对比的会话快照");
+        fileChooser.setFileFilter(new FileNameExtensionFilter("会话快照", "bin"));
+        fileChooser.setSelectedFile(SessionSnapshot.defaultFile());
+        if (fileChooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        final File snapshotFile = fileChooser.getSelectedFile();
+        final List<UserData> current = new ArrayList<>(inactiveUsers);
+        
+        diffButton.setEnabled(false);
+        statusLabel.setText("正在对比快照: " + snapshotFile.getName());
+        new SwingWorker<List<SnapshotDiff.Entry>, Void>() {
+            private Map<SnapshotDiff.Change, Integer> counts;
+            private long savedAt;
+            
+            @Override
+            protected List<SnapshotDiff.Entry> doInBackground() throws Exception {
+                SessionSnapshot.Cursor before = SessionSnapshot.open(snapshotFile);
+                savedAt = before.getSavedAt();
+                current.sort((a, b) -> Long.compare(a.getUid(), b.getUid()));
+                List<SnapshotDiff.Entry> entries = new ArrayList<>();
+                try {
+                    counts = new SnapshotDiff(threshold, savedAt, System.currentTimeMillis())
+                            .diff(before, current.iterator(), entries::add);
+                } catch (java.io.UncheckedIOException ex) {
+                    throw ex.getCause();
+                }
+                return entries;
+            }
+            
+            @Override
+            protected void done() {
+                diffButton.setEnabled(true);
+                try {
+                    List<SnapshotDiff.Entry> entries = get();
+                    statusLabel.setText("对比完成，共 " + entries.size() + " 项变化");
+                    showDiffDialog(entries, counts, savedAt);
+                } catch (InterruptedException | ExecutionException ex) {
+                    Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+                    statusLabel.setText("对比失败: " + cause.getMessage());
+                    JOptionPane.showMessageDialog(MainApp.this, "对比快照时出错: " + cause.getMessage(), "错误", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        }.execute();
+    }
+    
+    // 显示差异列表，可以导出为CSV
+    private void showDiffDialog(List<SnapshotDiff.Entry> entries, Map<SnapshotDiff.Change, Integer> counts, long savedAt) {
+        String[] columns = {"变化", "UID", "用户名", "之前不活跃天数", "现在不活跃天数", "之前最新视频", "现在最新视频"};
+        javax.swing.table.DefaultTableModel model = new javax.swing.table.DefaultTableModel(columns, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+        for (SnapshotDiff.Entry entry : entries) {
+            UserData before = entry.getBefore();
+            UserData after = entry.getAfter();
+            model.addRow(new Object[] {
+                    entry.getChange().getDisplayName(),
+                    entry.getUid(),
+                    entry.getUsername(),
+                    before != null ? SnapshotDiff.formatDays(entry.getDaysBefore()) : "",
+                    after != null ? SnapshotDiff.formatDays(entry.getDaysAfter()) : "",
+                    before != null ? before.getLastVideoTitle() : "",
+                    after != null ? after.getLastVideoTitle() : ""
+            });
+        }
+        JTable table = new JTable(model);
+        table.setFont(tableFont);
+        table.setRowHeight(25);
+        table.setAutoCreateRowSorter(true);
+        
+        StringBuilder summary = new StringBuilder("与 ");
+        summary.append(java.time.Instant.ofEpochMilli(savedAt).atZone(java.time.ZoneId.systemDefault())
+                .format(java.time.format.DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm")));
+        summary.append(" 的快照相比：");
+        for (Map.Entry<SnapshotDiff.Change, Integer> count : counts.entrySet()) {
+            summary.append(count.getKey().getDisplayName()).append(' ').append(count.getValue()).append("  ");
+        }
+        JLabel summaryLabel = new JLabel(summary.toString().trim());
+        summaryLabel.setFont(mainFont);
+        summaryLabel.setBorder(new EmptyBorder(5, 5, 5, 5));
+        
+        final JDialog dialog = new JDialog(this, "快照对比", false);
+        JButton exportDiffButton = new JButton("导出差异");
+        exportDiffButton.setFont(mainFont);
+        exportDiffButton.setEnabled(!entries.isEmpty());
+        exportDiffButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                JFileChooser dirChooser = new JFileChooser();
+                dirChooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+                if (dirChooser.showSaveDialog(dialog) != JFileChooser.APPROVE_OPTION) {
+                    return;
+                }
+                try {
+                    String fileName = DataExporter.exportDiff(entries, dirChooser.getSelectedFile());
+                    JOptionPane.showMessageDialog(dialog, "导出成功: " + fileName, "成功", JOptionPane.INFORMATION_MESSAGE);
+                } catch (Exception ex) {
+                    JOptionPane.showMessageDialog(dialog, "导出失败: " + ex.getMessage(), "错误", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        });
+        JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        buttonPanel.add(exportDiffButton);
+        
+        dialog.setLayout(new BorderLayout());
+        dialog.add(summaryLabel, BorderLayout.NORTH);
+        dialog.add(new JScrollPane(table), BorderLayout.CENTER);
+        dialog.add(buttonPanel, BorderLayout.SOUTH);
+        dialog.setSize(850, 450);
+        dialog.setLocationRelativeTo(this);
+        dialog.setVisible(true);
+    }
+    
+    // 退出时保存会话快照，没有结果时不保存
+    private void saveSession() {
+        if (!dataProcessed || inactiveUsers == null || inactiveUsers.isEmpty()) {
+            return;
+        }
+        int inactiveDays;
+        try {
+            inactiveDays = Integer.parseInt(inactiveDaysField.getText().trim());
+        } catch (NumberFormatException ex) {
+            inactiveDays = 365;
+        }
+        try {
+            new SessionSnapshot(inactiveUsers, inactiveDays, sortColumn, sortAscending, cacheFile, followListFile)
+                    .write(SessionSnapshot.defaultFile());
+        } catch (IOException ex) {
+            System.err.println("保存会话快照失败: " + ex.getMessage());
+        }
+    }
+    
     public static void main(String[] args) {
         try {
             // 设置本地系统外观
@@ -0,0 +1,193 @@
+package org.example;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 运行指标
+ * 进程内的计数器和延迟直方图，各阶段记录请求数、字节数、错误数和耗时，
+ * 可随时导出为文本文件，便于事后分析一次较慢的运行。所有方法都是线程安全的
+ */
+public class Metrics {
+    private static final Metrics GLOBAL = new Metrics();
+
+    // 指标名称
+    public static final String FETCH_REQUESTS = "fetch.requests";
+    public static final String FETCH_ERRORS = "fetch.errors";
+    public static final String FETCH_BYTES = "fetch.bytes";
+    public static final String FETCH_LATENCY = "fetch.latency";
+    public static final String DECODE_ENTRIES = "decode.entries";
+    public static final String DECODE_ERRORS = "decode.errors";
+    public static final String DECODE_LATENCY = "decode.latency";
+    public static final String CACHE_WRITE_ENTRIES = "cache.write.entries";
+    public static final String CACHE_WRITE_LATENCY = "cache.write.latency";
+    public static final String CACHE_LOAD_ENTRIES = "cache.load.entries";
+    public static final String CACHE_LOAD_LATENCY = "cache.load.latency";
+    public static final String RESPONSE_CACHE_HITS = "response_cache.hits";
+    public static final String RESPONSE_CACHE_DISK_HITS = "response_cache.disk_hits";
+    public static final String RESPONSE_CACHE_STALE_HITS = "response_cache.stale_hits";
+    public static final String RESPONSE_CACHE_MISSES = "response_cache.misses";
+    public static final String FILTER_LATENCY = "filter.latency";
+    public static final String EXPORT_USERS = "export.users";
+    public static final String EXPORT_LATENCY = "export.latency";
+
+    private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private final Map<String, LatencyHistogram> latencies = new ConcurrentHashMap<>();
+
+    // 全局指标，应用中各处共用
+    public static Metrics global() {
+        return GLOBAL;
+    }
+
+    public void increment(String name) {
+        add(name, 1);
+    }
+
+    public void add(String name, long delta) {
+        counters.computeIfAbsent(name, k -> new LongAdder()).add(delta);
+    }
+
+    public long count(String name) {
+        LongAdder counter = counters.get(name);
+        return counter != null ? counter.sum() : 0;
+    }
+
+    /**
+     * 记录一次耗时
+     * @param name 指标名称
+     * @param startNanos 开始时的System.nanoTime()
+     */
+    public void recordSince(String name, long startNanos) {
+        recordNanos(name, System.nanoTime() - startNanos);
+    }
+
+    public void recordNanos(String name, long nanos) {
+        latencies.computeIfAbsent(name, k -> new LatencyHistogram()).record(nanos);
+    }
+
+    public LatencyHistogram latency(String name) {
+        return latencies.get(name);
+    }
+
+    public void reset() {
+        counters.clear();
+        latencies.clear();
+    }
+
+    // 生成文本报告：计数器，以及每个延迟指标的次数、平均值、分位数和最大值(毫秒)
+    public String report() {
+        StringBuilder report = new StringBuilder();
+        report.append("# 运行指标 ").append(LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME)).append('\n');
+        report.append("\n[计数器]\n");
+        for (Map.Entry<String, LongAdder> entry : new TreeMap<>(counters).entrySet()) {
+            report.append(String.format("%-24s %d%n", entry.getKey(), entry.getValue().sum()));
+        }
+        report.append("\n[延迟(ms)]\n");
+        report.append(String.format("%-24s %10s %10s %10s %10s %10s %10s%n", "名称", "次数", "平均", "p50", "p90", "p99", "最大"));
+        for (Map.Entry<String, LatencyHistogram> entry : new TreeMap<>(latencies).entrySet()) {
+            LatencyHistogram histogram = entry.getValue();
+            report.append(String.format("%-24s %10d %10.3f %10.3f %10.3f %10.3f %10.3f%n", entry.getKey(),
+                    histogram.getCount(), histogram.getMeanNanos() / 1e6,
+                    histogram.percentileNanos(0.5) / 1e6, histogram.percentileNanos(0.9) / 1e6,
+                    histogram.percentileNanos(0.99) / 1e6, histogram.getMaxNanos() / 1e6));
+        }
+        return report.toString();
+    }
+
+    /**
+     * 将报告写入文件
+     * @param file 输出文件，已存在时覆盖
+     * @throws IOException 写入失败时
+     */
+    public void dump(File file) throws IOException {
+        try (Writer writer = DataExporter.openWriter(file)) {
+            writer.write(report());
+        }
+    }
+
+    /**
+     * 延迟直方图
+     * 按2的幂划分桶，每个桶再细分为4个子桶，相对误差约为12%；记录时只做一次原子加法
+     */
+    public static class LatencyHistogram {
+        private static final int SUB_BUCKETS = 4;
+        private static final int BUCKETS = 64 * SUB_BUCKETS;
+
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        public void record(long nanos) {
+            long value = Math.max(0, nanos);
+            counts.incrementAndGet(bucket(value));
+            count.increment();
+            sum.add(value);
+            max.accumulate(value);
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public double getMeanNanos() {
+            long n = count.sum();
+            return n > 0 ? (double) sum.sum() / n : 0;
+        }
+
+        public long getMaxNanos() {
+            return max.get();
+        }
+
+        /**
+         * @param quantile 0到1之间的分位点
+         * @return 该分位点所在桶的上界(纳秒)，不超过最大值
+         */
+        public long percentileNanos(double quantile) {
+            long n = count.sum();
+            if (n == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(quantile * n);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts.get(i);
+                if (seen >= Math.max(1, rank)) {
+                    return Math.min(upperBound(i), getMaxNanos());
+                }
+            }
+            return getMaxNanos();
+        }
+
+        // 桶序号：高位为最高有效位的位置，低位为其后两位
+        private static int bucket(long value) {
+            if (value < SUB_BUCKETS) {
+                return (int) value;
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(value);
+            int sub = (int) (value >>> (exponent - 2)) & (SUB_BUCKETS - 1);
+            return Math.min(BUCKETS - 1, (exponent - 1) * SUB_BUCKETS + sub);
+        }
+
+        private static long upperBound(int bucket) {
+            if (bucket < SUB_BUCKETS) {
+                return bucket;
+            }
+            int exponent = bucket / SUB_BUCKETS + 1;
+            int sub = bucket % SUB_BUCKETS;
+            if (exponent >= 62) {
+                return Long.MAX_VALUE;
+            }
+            return ((long) (SUB_BUCKETS + sub + 1) << (exponent - 2)) - 1;
+        }
+    }
+}
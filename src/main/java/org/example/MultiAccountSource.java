@@ -0,0 +1,150 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 多账号关注列表来源
+ * 依次读取多个账号的关注列表，按用户ID去重后交给下游，每个被关注的用户只抓取一次、在缓存中只保存一次。
+ * 合并后的记录以"关注该用户的账号"作为分组，处理完成后再由split按各账号自己的用户名和分组拆分出每个账号的结果
+ */
+public class MultiAccountSource implements FollowSource {
+    private final List<FollowSource> accounts;
+    private final List<String> labels; // 账号名称，用于显示和导出目录
+    private final TagDictionary tagDictionary = new TagDictionary(); // 合并记录的分组字典，分组即账号名称
+    private final List<List<FollowRecord>> accountRecords = new ArrayList<>(); // 每个账号的原始记录，按读取顺序
+    private int followCount; // 去重前的关注总数
+    private int distinctCount; // 去重后的用户数
+
+    /**
+     * @param accounts 各账号的关注列表来源
+     * @param labels 各账号的名称，与accounts一一对应且不能重复
+     */
+    public MultiAccountSource(List<FollowSource> accounts, List<String> labels) {
+        if (accounts == null || accounts.isEmpty()) {
+            throw new IllegalArgumentException("至少需要一个账号");
+        }
+        if (labels == null || labels.size() != accounts.size()) {
+            throw new IllegalArgumentException("账号名称数量与账号数量不一致");
+        }
+        if (labels.stream().distinct().count() != labels.size()) {
+            throw new IllegalArgumentException("账号名称不能重复");
+        }
+        this.accounts = new ArrayList<>(accounts);
+        this.labels = new ArrayList<>(labels);
+    }
+
+    /**
+     * 先读完所有账号的关注列表再交付合并后的记录：关注列表比视频数据小得多，
+     * 这样交付前就知道每个用户被哪些账号关注，也能先报告去重后的总数
+     */
+    @Override
+    public void read(Sink sink) throws Exception {
+        accountRecords.clear();
+        LongObjectMap<int[]> followedBy = new LongObjectMap<>(); // 用户ID -> 关注该用户的账号的分组ID
+        List<FollowRecord> firstSeen = new ArrayList<>(); // 每个用户第一次出现时的记录，决定交付顺序
+        int total = 0;
+
+        for (int i = 0; i < accounts.size(); i++) {
+            List<FollowRecord> records = Collections.synchronizedList(new ArrayList<>());
+            accounts.get(i).read(new Sink() {
+                @Override
+                public void onTotal(int total) {
+                }
+
+                @Override
+                public void accept(FollowRecord record) {
+                    records.add(record);
+                }
+            });
+            accountRecords.add(records);
+            total += records.size();
+
+            int accountTag = tagDictionary.intern(labels.get(i));
+            for (FollowRecord record : records) {
+                int[] tags = followedBy.get(record.getMid());
+                if (tags == null) {
+                    followedBy.put(record.getMid(), new int[] {accountTag});
+                    firstSeen.add(record);
+                } else if (tags[tags.length - 1] != accountTag) {
+                    // 同一账号的列表中重复出现的用户只记一次
+                    int[] grown = Arrays.copyOf(tags, tags.length + 1);
+                    grown[tags.length] = accountTag;
+                    followedBy.put(record.getMid(), grown);
+                }
+            }
+        }
+
+        followCount = total;
+        distinctCount = firstSeen.size();
+        sink.onTotal(distinctCount);
+        for (FollowRecord record : firstSeen) {
+            sink.accept(new FollowRecord(record.getMid(), record.getName(), followedBy.get(record.getMid())));
+        }
+    }
+
+    /**
+     * 按账号拆分处理结果，每个账号的用户使用该账号自己的用户名和分组
+     * @param users 合并后的处理结果
+     * @return 账号名称 -> 该账号的用户，有视频的在前；抓取失败被丢弃的用户不在其中
+     */
+    public Map<String, List<UserData>> split(List<UserData> users) {
+        LongObjectMap<UserData> byMid = new LongObjectMap<>(users.size());
+        for (UserData user : users) {
+            byMid.put(user.getUid(), user);
+        }
+
+        Map<String, List<UserData>> result = new LinkedHashMap<>();
+        for (int i = 0; i < accountRecords.size(); i++) {
+            TagDictionary accountTags = accounts.get(i).getTagDictionary();
+            LongObjectMap<Boolean> added = new LongObjectMap<>();
+            List<UserData> withVideos = new ArrayList<>();
+            List<UserData> withoutVideos = new ArrayList<>();
+            for (FollowRecord record : accountRecords.get(i)) {
+                UserData user = byMid.get(record.getMid());
+                if (user == null || added.putIfAbsent(record.getMid(), Boolean.TRUE) != null) {
+                    continue;
+                }
+                List<String> tags = accountTags.names(record.getTagIds());
+                // 视频标题和BV号与合并结果共享存储，只另存该账号下的用户名
+                UserData accountUser = user.withNameAndTags(record.getName(), tags);
+                if (user.hasVideos()) {
+                    withVideos.add(accountUser);
+                } else {
+                    withoutVideos.add(accountUser);
+                }
+            }
+            withVideos.addAll(withoutVideos);
+            result.put(labels.get(i), withVideos);
+        }
+        return result;
+    }
+
+    @Override
+    public TagDictionary getTagDictionary() {
+        return tagDictionary;
+    }
+
+    @Override
+    public String getDescription() {
+        return accounts.size() + " 个账号";
+    }
+
+    public List<String> getLabels() {
+        return Collections.unmodifiableList(labels);
+    }
+
+    // 去重前的关注总数，read完成后有效
+    public int getFollowCount() {
+        return followCount;
+    }
+
+    // 去重后的用户数，即实际请求次数，read完成后有效
+    public int getDistinctCount() {
+        return distinctCount;
+    }
+}
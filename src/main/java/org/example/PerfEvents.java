@@ -0,0 +1,124 @@
+package org.example;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Java Flight Recorder自定义事件
+ * 覆盖抓取、解析、缓存写入、缓存加载、筛选和导出各阶段。未开启JFR时事件不会被记录，开销可以忽略。
+ * 录制方式：java -XX:StartFlightRecording=filename=run.jfr,settings=profile -jar ...，
+ * 之后用JDK Mission Control或 jfr print --events org.example.* run.jfr 查看
+ */
+public final class PerfEvents {
+    private static final String CATEGORY = "Bilibili Cleaner";
+
+    private PerfEvents() {
+    }
+
+    @Name("org.example.FetchRequest")
+    @Label("获取视频列表")
+    @Category({CATEGORY, "Network"})
+    @Description("一次视频列表请求，批量请求时为一组用户")
+    public static class FetchRequest extends Event {
+        @Label("用户ID")
+        @Description("批量请求时为组内第一个用户")
+        public long mid;
+
+        @Label("用户数")
+        public int users;
+
+        @Label("响应字节数")
+        @DataAmount
+        public long bytes;
+
+        @Label("HTTP状态码")
+        public int httpStatus;
+
+        @Label("错误信息")
+        public String error;
+    }
+
+    @Name("org.example.Decode")
+    @Label("解析视频列表")
+    @Category({CATEGORY, "Processing"})
+    public static class Decode extends Event {
+        @Label("用户ID")
+        public long mid;
+
+        @Label("字节数")
+        @Description("原始响应的字节数，解析已读入的JsonNode时为0")
+        @DataAmount
+        public long bytes;
+
+        @Label("接口返回码")
+        public int code;
+
+        @Label("有视频")
+        public boolean hasVideos;
+    }
+
+    @Name("org.example.CacheWrite")
+    @Label("写入缓存")
+    @Category({CATEGORY, "IO"})
+    public static class CacheWrite extends Event {
+        @Label("文件")
+        public String path;
+
+        @Label("条目数")
+        public int entries;
+
+        @Label("字节数")
+        @DataAmount
+        public long bytes;
+    }
+
+    @Name("org.example.CacheLoad")
+    @Label("加载缓存")
+    @Category({CATEGORY, "IO"})
+    public static class CacheLoad extends Event {
+        @Label("文件")
+        public String path;
+
+        @Label("用户数")
+        public int entries;
+
+        @Label("字节数")
+        @DataAmount
+        public long bytes;
+
+        @Label("并行解析")
+        public boolean parallel;
+    }
+
+    @Name("org.example.Filter")
+    @Label("筛选排序")
+    @Category({CATEGORY, "UI"})
+    public static class Filter extends Event {
+        @Label("用户总数")
+        public int total;
+
+        @Label("结果数")
+        public int hits;
+
+        @Label("排序列")
+        public int sortColumn;
+    }
+
+    @Name("org.example.Export")
+    @Label("导出")
+    @Category({CATEGORY, "IO"})
+    public static class Export extends Event {
+        @Label("格式")
+        public String formats;
+
+        @Label("导出类型")
+        public String exportType;
+
+        @Label("用户数")
+        public int users;
+    }
+}
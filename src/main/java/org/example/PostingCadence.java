@@ -0,0 +1,111 @@
+package org.example;
+
+import java.util.Arrays;
+
+/**
+ * 更新规律
+ * 由视频列表第一页中最近几个视频的发布时间得到：相邻视频的间隔、间隔的中位数，以及"可能已停更"的程度。
+ * 只看最新视频时，一年更新一次的用户和一年前已停更的用户无法区分；按各自的更新间隔衡量就能分开。
+ *
+ * 停更可能按泊松过程估计：以中位间隔为平均间隔，仍在更新的用户这么久没有新视频的概率为 exp(-距今时间/中位间隔)，
+ * 停更可能 = 1 - 该概率。距今时间等于一个间隔时约63%，三个间隔时约95%
+ */
+public final class PostingCadence {
+    /** 最多使用的发布时间数，即最近的这么多个视频 */
+    public static final int MAX_PUBDATES = 10;
+    /** 停更可能不低于该值时视为可能已停更 */
+    public static final double DORMANT_THRESHOLD = 0.95;
+    private static final int MIN_GAP_SECONDS = 3600; // 同一时间集中发布时中位间隔可能为0，计算时至少按1小时
+
+    private final int[] gaps; // 相邻视频的发布间隔(秒)，从最新的开始
+    private final int medianGap; // 间隔的中位数(秒)
+
+    private PostingCadence(int[] gaps) {
+        this.gaps = gaps;
+        int[] sorted = gaps.clone();
+        Arrays.sort(sorted);
+        int middle = sorted.length / 2;
+        this.medianGap = sorted.length % 2 == 1 ? sorted[middle]
+                : (int) (((long) sorted[middle - 1] + sorted[middle]) / 2);
+    }
+
+    /**
+     * 由发布时间计算
+     * @param pubdates 发布时间戳(秒)，顺序不限，只使用前count个
+     * @param count 有效的发布时间数
+     * @return 更新规律，少于两个有效的发布时间时为null
+     */
+    public static PostingCadence of(long[] pubdates, int count) {
+        long[] sorted = new long[count];
+        int n = 0;
+        for (int i = 0; i < count; i++) {
+            if (pubdates[i] > 0) {
+                sorted[n++] = pubdates[i];
+            }
+        }
+        if (n < 2) {
+            return null;
+        }
+        sorted = Arrays.copyOf(sorted, n);
+        Arrays.sort(sorted);
+        int[] gaps = new int[n - 1];
+        for (int i = 0; i < gaps.length; i++) {
+            // 从最新的开始
+            gaps[i] = (int) Math.min(Integer.MAX_VALUE, sorted[n - 1 - i] - sorted[n - 2 - i]);
+        }
+        return new PostingCadence(gaps);
+    }
+
+    /**
+     * 由已保存的间隔恢复，用于快照等
+     * @param gaps 发布间隔(秒)，从最新的开始
+     * @return 更新规律，没有间隔时为null
+     */
+    static PostingCadence ofGaps(int[] gaps) {
+        return gaps.length > 0 ? new PostingCadence(gaps.clone()) : null;
+    }
+
+    // 相邻视频的发布间隔(秒)，从最新的开始
+    public int[] getGaps() {
+        return gaps.clone();
+    }
+
+    // 参与计算的视频数
+    public int getPubdateCount() {
+        return gaps.length + 1;
+    }
+
+    public int getMedianGapSeconds() {
+        return medianGap;
+    }
+
+    public double getMedianGapDays() {
+        return medianGap / 86400.0;
+    }
+
+    /**
+     * 由最新视频的发布时间还原各视频的发布时间
+     * @param lastPubdate 最新视频(发布时间最大的，不一定是列表中第一个)的发布时间戳(秒)
+     * @return 发布时间戳，从最新的开始
+     */
+    public long[] recentPubdates(long lastPubdate) {
+        long[] pubdates = new long[gaps.length + 1];
+        pubdates[0] = lastPubdate;
+        for (int i = 0; i < gaps.length; i++) {
+            pubdates[i + 1] = pubdates[i] - gaps[i];
+        }
+        return pubdates;
+    }
+
+    /**
+     * 停更可能
+     * @param secondsSinceLast 距最新视频的时间(秒)
+     * @return 0到1
+     */
+    public double dormantScore(long secondsSinceLast) {
+        if (secondsSinceLast <= 0) {
+            return 0;
+        }
+        return 1 - Math.exp(-(double) secondsSinceLast / Math.max(MIN_GAP_SECONDS, medianGap));
+    }
+}
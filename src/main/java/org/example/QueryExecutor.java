@@ -0,0 +1,63 @@
+package org.example;
+
+import javax.swing.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * 后台查询执行器
+ * 筛选和排序在单独的后台线程中执行；新查询到达时取消正在执行的旧查询，
+ * 只有最后一次提交的查询结果才会在EDT上交给回调
+ */
+public class QueryExecutor {
+    private final ExecutorService executor;
+    private Future<?> current; // 仅在EDT上访问
+    private long generation; // 仅在EDT上访问，每次提交递增
+
+    public QueryExecutor() {
+        this.executor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "query-executor");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 提交查询，必须在EDT上调用
+     * @param query 在后台线程执行的查询
+     * @param onResult 查询完成且未被取代时，在EDT上接收结果
+     */
+    public <T> void submit(Callable<T> query, Consumer<T> onResult) {
+        if (current != null) {
+            current.cancel(true);
+        }
+        final long id = ++generation;
+        current = executor.submit(() -> {
+            try {
+                T result = query.call();
+                SwingUtilities.invokeLater(() -> {
+                    if (id == generation) {
+                        onResult.accept(result);
+                    }
+                });
+            } catch (CancellationException | InterruptedException e) {
+                // 已被新的查询取代，丢弃结果
+            } catch (Exception e) {
+                System.err.println("执行查询时出错: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * 在查询的各阶段之间调用，查询已被取消时抛出CancellationException
+     */
+    public static void checkCancelled() {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new CancellationException();
+        }
+    }
+}
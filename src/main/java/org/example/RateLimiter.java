@@ -0,0 +1,77 @@
+package org.example;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 请求速率限制器
+ * 按固定间隔发放许可（不允许突发），多个线程共享时保证总速率不超过设定值
+ */
+public class RateLimiter {
+    private long intervalNanos; // 两次许可之间的最小间隔
+    private long nextFreeNanos; // 下一个许可可用的时间点
+
+    /**
+     * @param permitsPerSecond 每秒许可数，必须大于0
+     */
+    public RateLimiter(double permitsPerSecond) {
+        setRate(permitsPerSecond);
+        this.nextFreeNanos = System.nanoTime();
+    }
+
+    // 调整速率，对之后发放的许可生效
+    public synchronized void setRate(double permitsPerSecond) {
+        if (permitsPerSecond <= 0) {
+            throw new IllegalArgumentException("速率必须大于0: " + permitsPerSecond);
+        }
+        this.intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond);
+    }
+
+    public synchronized double getRate() {
+        return (double) TimeUnit.SECONDS.toNanos(1) / intervalNanos;
+    }
+
+    /**
+     * 获取一个许可，必要时阻塞等待
+     * @throws InterruptedException 等待期间被中断
+     */
+    public void acquire() throws InterruptedException {
+        long waitNanos;
+        synchronized (this) {
+            long now = System.nanoTime();
+            long grantAt = Math.max(now, nextFreeNanos);
+            nextFreeNanos = grantAt + intervalNanos;
+            waitNanos = grantAt - now;
+        }
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+
+    /**
+     * 立即可用时获取一个许可，不等待
+     * @return 是否获取成功
+     */
+    public synchronized boolean tryAcquire() {
+        long now = System.nanoTime();
+        if (now < nextFreeNanos) {
+            return false;
+        }
+        nextFreeNanos = now + intervalNanos;
+        return true;
+    }
+
+    /**
+     * 距离下一个许可可用还要等待的时间，0表示立即可用
+     */
+    public synchronized long waitNanos() {
+        return Math.max(0, nextFreeNanos - System.nanoTime());
+    }
+
+    /**
+     * 暂停发放许可一段时间，用于被限流后的退避
+     * @param millis 暂停时长（毫秒）
+     */
+    public synchronized void pause(long millis) {
+        nextFreeNanos = Math.max(nextFreeNanos, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+}
@@ -0,0 +1,412 @@
+package org.example;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 视频列表响应缓存
+ * 位于ActivitySource请求之前的读穿透缓存，按用户存放recArchivesByKeywords格式的响应，与运行结果缓存(user_data_cache.json)相互独立。
+ * 内存中按字节数限制大小，超出时按最近最少使用淘汰并写入磁盘目录；磁盘上保留全部条目，重启后仍然有效。
+ *
+ * 每个条目有自己的有效期：正常响应默认24小时，接口返回错误码(例如被风控)的响应只保留几分钟。
+ * 正常响应过期后的一段时间内仍直接返回旧内容，同时在后台重新请求(stale-while-revalidate)，超过该时间才同步请求；
+ * 错误响应过期后直接视为未命中，不会在之后的运行中被当作旧内容反复返回
+ */
+public class ResponseCache {
+    public static final String DIRECTORY_NAME = "response_cache";
+    public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024; // 内存部分的默认上限
+    public static final long DEFAULT_TTL_MILLIS = TimeUnit.HOURS.toMillis(24); // 正常响应的有效期
+    public static final long DEFAULT_STALE_MILLIS = TimeUnit.HOURS.toMillis(24); // 过期后仍可返回旧内容的时间
+    public static final long ERROR_TTL_MILLIS = TimeUnit.MINUTES.toMillis(5); // 错误响应的有效期
+
+    private static ResponseCache shared;
+
+    private final long maxBytes;
+    private final long ttlMillis;
+    private final long staleMillis;
+    private final File directory; // 磁盘目录，null表示只使用内存
+    private final LinkedHashMap<Long, Entry> memory = new LinkedHashMap<>(1024, 0.75f, true); // 访问顺序，最久未用的在前
+    private long memoryBytes;
+    private final Set<Long> revalidating = ConcurrentHashMap.newKeySet();
+    private final List<Future<?>> pendingRevalidations = new ArrayList<>();
+    private final ExecutorService revalidator = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "response-cache-revalidate");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final LongAdder hits = new LongAdder(); // 内存中的新鲜条目
+    private final LongAdder diskHits = new LongAdder(); // 从磁盘读回的新鲜条目
+    private final LongAdder staleHits = new LongAdder(); // 返回旧内容并后台刷新
+    private final LongAdder misses = new LongAdder(); // 同步请求
+    private final LongAdder evictions = new LongAdder(); // 从内存淘汰到磁盘
+
+    public ResponseCache(File directory) {
+        this(directory, DEFAULT_MAX_BYTES, DEFAULT_TTL_MILLIS, DEFAULT_STALE_MILLIS);
+    }
+
+    /**
+     * @param directory 磁盘目录，null表示只使用内存
+     * @param maxBytes 内存部分的字节数上限
+     * @param ttlMillis 正常响应的有效期
+     * @param staleMillis 过期后仍返回旧内容并后台刷新的时间，0表示过期即同步请求
+     */
+    public ResponseCache(File directory, long maxBytes, long ttlMillis, long staleMillis) {
+        if (maxBytes <= 0 || ttlMillis <= 0 || staleMillis < 0) {
+            throw new IllegalArgumentException("缓存大小和有效期必须大于0");
+        }
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.ttlMillis = ttlMillis;
+        this.staleMillis = staleMillis;
+    }
+
+    // 应用中共用的缓存，磁盘目录位于当前目录下
+    public static synchronized ResponseCache shared() {
+        if (shared == null) {
+            shared = new ResponseCache(new File(System.getProperty("user.dir"), DIRECTORY_NAME));
+        }
+        return shared;
+    }
+
+    /**
+     * 读取一组用户的响应：新鲜和过期不久的内容直接放入结果，过期不久的一组在后台一次刷新，
+     * 其余用户通过source一次请求并放入缓存
+     * @param mids 用户ID，数量不超过source.getBatchSize
+     * @param source 实际的请求；旧内容的后台刷新也使用它，因此在awaitRevalidation返回前不能关闭
+     * @param bodies 写入结果，请求失败时仍包含缓存中已有的用户
+     * @return 是否发出了同步请求，全部来自缓存时为false
+     * @throws IOException 需要同步请求且请求失败时
+     */
+    public boolean getAll(long[] mids, ActivitySource source, LongObjectMap<byte[]> bodies) throws IOException {
+        long now = System.currentTimeMillis();
+        long[] stale = new long[mids.length];
+        int staleCount = 0;
+        long[] missing = new long[mids.length];
+        int missingCount = 0;
+        for (long mid : mids) {
+            Entry entry = lookup(mid);
+            if (entry != null && now < entry.expiresAt) {
+                if (entry.fromDisk) {
+                    count(diskHits, Metrics.RESPONSE_CACHE_DISK_HITS);
+                    entry.fromDisk = false;
+                } else {
+                    count(hits, Metrics.RESPONSE_CACHE_HITS);
+                }
+                bodies.put(mid, entry.body);
+            } else if (entry != null && now < entry.staleUntil) {
+                count(staleHits, Metrics.RESPONSE_CACHE_STALE_HITS);
+                bodies.put(mid, entry.body);
+                if (revalidating.add(mid)) {
+                    stale[staleCount++] = mid;
+                }
+            } else {
+                count(misses, Metrics.RESPONSE_CACHE_MISSES);
+                missing[missingCount++] = mid;
+            }
+        }
+        if (staleCount > 0) {
+            revalidate(Arrays.copyOf(stale, staleCount), source);
+        }
+        if (missingCount == 0) {
+            return false;
+        }
+
+        long[] request = Arrays.copyOf(missing, missingCount);
+        LongObjectMap<byte[]> loaded = source.fetch(request);
+        long fetchedAt = System.currentTimeMillis();
+        for (long mid : request) {
+            byte[] body = loaded.get(mid);
+            if (body != null) {
+                put(mid, body, fetchedAt);
+                bodies.put(mid, body);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 删除一个用户的条目(内存和磁盘)，例如缓存的是限流响应而需要重新请求时
+     */
+    public void invalidate(long mid) {
+        synchronized (this) {
+            Entry entry = memory.remove(mid);
+            if (entry != null) {
+                memoryBytes -= entry.body.length;
+            }
+        }
+        if (directory != null) {
+            try {
+                Files.deleteIfExists(fileFor(mid).toPath());
+            } catch (IOException e) {
+                System.err.println("删除响应缓存 " + fileFor(mid).getPath() + " 时出错: " + e.getMessage());
+            }
+        }
+    }
+
+    // 同时计入本缓存的统计和全局运行指标
+    private static void count(LongAdder counter, String metric) {
+        counter.increment();
+        Metrics.global().increment(metric);
+    }
+
+    // 在后台一次重新请求这组用户，调用前已登记到revalidating，同一用户同时只有一个刷新；
+    // 只用正常响应替换旧内容，刷新时被限流或返回其它错误码则保留旧条目，之后命中时再次刷新
+    private void revalidate(long[] mids, ActivitySource source) {
+        Future<?> future = revalidator.submit(() -> {
+            try {
+                LongObjectMap<byte[]> loaded = source.fetch(mids);
+                long fetchedAt = System.currentTimeMillis();
+                for (long mid : mids) {
+                    byte[] body = loaded.get(mid);
+                    if (body != null && isSuccess(body)) {
+                        put(mid, body, fetchedAt);
+                    }
+                }
+            } catch (IOException e) {
+                System.err.println("刷新 " + mids.length + " 个用户的缓存时出错: " + e.getMessage());
+            } finally {
+                for (long mid : mids) {
+                    revalidating.remove(mid);
+                }
+            }
+        });
+        synchronized (pendingRevalidations) {
+            pendingRevalidations.add(future);
+        }
+    }
+
+    /**
+     * 等待已提交的后台刷新完成，在关闭数据来源之前调用
+     * @param timeoutMillis 最长等待时间，超时后剩余的刷新结果可能失败
+     */
+    public void awaitRevalidation(long timeoutMillis) throws InterruptedException {
+        List<Future<?>> futures;
+        synchronized (pendingRevalidations) {
+            futures = new ArrayList<>(pendingRevalidations);
+            pendingRevalidations.clear();
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        for (Future<?> future : futures) {
+            try {
+                future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                return;
+            } catch (ExecutionException e) {
+                // 刷新任务内部已处理异常
+            }
+        }
+    }
+
+    // 响应的code为0，无法解析的内容不算
+    private static boolean isSuccess(byte[] body) {
+        try {
+            return ArchiveSummary.decode(body).getCode() == 0;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    // 放入内存，超出上限时把最久未用的条目写入磁盘
+    private void put(long mid, byte[] body, long fetchedAt) {
+        Entry entry = entryFor(body, fetchedAt);
+        if (entry == null) {
+            return;
+        }
+        List<Map.Entry<Long, Entry>> evicted = new ArrayList<>();
+        synchronized (this) {
+            Entry previous = memory.put(mid, entry);
+            if (previous != null) {
+                memoryBytes -= previous.body.length;
+            }
+            memoryBytes += body.length;
+            Iterator<Map.Entry<Long, Entry>> it = memory.entrySet().iterator();
+            while (memoryBytes > maxBytes && it.hasNext()) {
+                Map.Entry<Long, Entry> eldest = it.next();
+                if (eldest.getKey() == mid) {
+                    continue;
+                }
+                it.remove();
+                memoryBytes -= eldest.getValue().body.length;
+                evictions.increment();
+                if (eldest.getValue().dirty) {
+                    evicted.add(eldest);
+                }
+            }
+        }
+        for (Map.Entry<Long, Entry> spill : evicted) {
+            writeToDisk(spill.getKey(), spill.getValue());
+        }
+    }
+
+    // 先查内存，再查磁盘；磁盘上的条目读回后放入内存
+    private Entry lookup(long mid) {
+        synchronized (this) {
+            Entry entry = memory.get(mid);
+            if (entry != null) {
+                return entry;
+            }
+        }
+        if (directory == null) {
+            return null;
+        }
+        File file = fileFor(mid);
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            byte[] body = Files.readAllBytes(file.toPath());
+            long fetchedAt = file.lastModified();
+            Entry entry = entryFor(body, fetchedAt);
+            if (entry == null) {
+                return null;
+            }
+            entry.dirty = false;
+            entry.fromDisk = true;
+            synchronized (this) {
+                Entry previous = memory.putIfAbsent(mid, entry);
+                if (previous != null) {
+                    return previous;
+                }
+                memoryBytes += body.length;
+            }
+            return entry;
+        } catch (IOException e) {
+            System.err.println("读取响应缓存 " + file.getPath() + " 时出错: " + e.getMessage());
+            return null;
+        }
+    }
+
+    // 正常响应使用默认有效期，过期后还可作为旧内容返回；接口返回错误码时只短暂缓存，过期即失效；无法解析的内容不缓存
+    private Entry entryFor(byte[] body, long fetchedAt) {
+        int code;
+        try {
+            code = ArchiveSummary.decode(body).getCode();
+        } catch (IOException e) {
+            return null;
+        }
+        if (code == 0) {
+            long expiresAt = fetchedAt + ttlMillis;
+            return new Entry(body, fetchedAt, expiresAt, expiresAt + staleMillis);
+        }
+        long expiresAt = fetchedAt + Math.min(ttlMillis, ERROR_TTL_MILLIS);
+        return new Entry(body, fetchedAt, expiresAt, expiresAt);
+    }
+
+    // 按用户ID分到256个子目录，避免单个目录中文件过多
+    private File fileFor(long mid) {
+        return new File(new File(directory, String.format("%02x", mid & 0xFF)), mid + ".json");
+    }
+
+    // 写入磁盘，文件修改时间即获取时间；先写临时文件再替换
+    private void writeToDisk(long mid, Entry entry) {
+        if (directory == null) {
+            return;
+        }
+        File file = fileFor(mid);
+        try {
+            Files.createDirectories(file.getParentFile().toPath());
+            File tempFile = new File(file.getPath() + ".tmp");
+            Files.write(tempFile.toPath(), entry.body);
+            tempFile.setLastModified(entry.fetchedAt);
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            entry.dirty = false;
+        } catch (IOException e) {
+            System.err.println("写入响应缓存 " + file.getPath() + " 时出错: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 把内存中尚未写入磁盘的条目写入磁盘，每次运行结束时调用
+     */
+    public void flush() {
+        List<Map.Entry<Long, Entry>> dirty = new ArrayList<>();
+        synchronized (this) {
+            for (Map.Entry<Long, Entry> entry : memory.entrySet()) {
+                if (entry.getValue().dirty) {
+                    dirty.add(new AbstractMap.SimpleEntry<>(entry.getKey(), entry.getValue()));
+                }
+            }
+        }
+        for (Map.Entry<Long, Entry> entry : dirty) {
+            writeToDisk(entry.getKey(), entry.getValue());
+        }
+    }
+
+    // 清空内存部分，磁盘上的条目保留
+    public synchronized void clearMemory() {
+        memory.clear();
+        memoryBytes = 0;
+    }
+
+    public synchronized long getMemoryBytes() {
+        return memoryBytes;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getDiskHits() {
+        return diskHits.sum();
+    }
+
+    public long getStaleHits() {
+        return staleHits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    // 命中率：不需要同步请求的比例
+    public double getHitRatio() {
+        long served = hits.sum() + diskHits.sum() + staleHits.sum();
+        long total = served + misses.sum();
+        return total > 0 ? (double) served / total : 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("响应缓存: 内存命中 %d，磁盘命中 %d，旧内容 %d，未命中 %d，命中率 %.1f%%",
+                getHits(), getDiskHits(), getStaleHits(), getMisses(), getHitRatio() * 100);
+    }
+
+    private static final class Entry {
+        final byte[] body;
+        final long fetchedAt;
+        final long expiresAt;
+        final long staleUntil; // 此前过期的条目仍可作为旧内容返回，错误响应等于expiresAt
+        volatile boolean dirty = true; // 尚未写入磁盘
+        volatile boolean fromDisk; // 刚从磁盘读回，用于区分命中类型
+
+        Entry(byte[] body, long fetchedAt, long expiresAt, long staleUntil) {
+            this.body = body;
+            this.fetchedAt = fetchedAt;
+            this.expiresAt = expiresAt;
+            this.staleUntil = staleUntil;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package org.example;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 抓取运行的时间预算
+ * 记录最近若干次完成(一个用户或批量来源的一组用户)的时间点，按这段时间内的实际速度(包括批次间隔和缓存命中)预测剩余时间，
+ * 不受开始时读取关注列表和建立连接的影响；
+ * 设置了预算时还给出截止时间，抓取线程据此停止并限制单个请求的超时。
+ * 由抓取线程更新、EDT读取，方法均为同步方法
+ */
+public class RunBudget {
+    private static final int WINDOW = 32; // 按最近多少次完成计算速度
+    private static final int MIN_SAMPLES = 3; // 窗口内完成的用户少于该数量时不给出预测
+
+    private final long budgetMillis; // 0表示不限
+    private final long startNanos;
+    private final long[] doneNanos = new long[WINDOW]; // 最近完成的时间点，环形缓冲
+    private final int[] doneCounts = new int[WINDOW]; // 各时间点时已完成的用户数
+    private int events; // 完成的次数
+    private int completed;
+    private int total;
+
+    /**
+     * @param budgetMillis 时间预算(毫秒)，0表示不限
+     */
+    public RunBudget(long budgetMillis) {
+        if (budgetMillis < 0) {
+            throw new IllegalArgumentException("时间预算不能为负数");
+        }
+        this.budgetMillis = budgetMillis;
+        this.startNanos = System.nanoTime();
+    }
+
+    public boolean isLimited() {
+        return budgetMillis > 0;
+    }
+
+    // 用户总数，未知时为0
+    public synchronized void setTotal(int total) {
+        this.total = total;
+    }
+
+    /**
+     * 一个用户处理完成（无论成功与否）
+     */
+    public void itemDone() {
+        itemsDone(1);
+    }
+
+    /**
+     * 一组用户同时处理完成，例如批量来源的一次请求
+     * @param count 用户数
+     */
+    public synchronized void itemsDone(int count) {
+        completed += count;
+        doneNanos[events % WINDOW] = System.nanoTime();
+        doneCounts[events % WINDOW] = completed;
+        events++;
+    }
+
+    // 窗口内平均每个用户的耗时，样本不足时为-1
+    private double nanosPerItem() {
+        if (events < 2) {
+            return -1;
+        }
+        int newest = (events - 1) % WINDOW;
+        int oldest = (events - Math.min(events, WINDOW)) % WINDOW;
+        int items = doneCounts[newest] - doneCounts[oldest];
+        if (items < MIN_SAMPLES) {
+            return -1;
+        }
+        return (double) (doneNanos[newest] - doneNanos[oldest]) / items;
+    }
+
+    /**
+     * 预算剩余的时间
+     * @return 毫秒，不限时为Long.MAX_VALUE，已用完时为0
+     */
+    public long remainingMillis() {
+        if (!isLimited()) {
+            return Long.MAX_VALUE;
+        }
+        return Math.max(0, budgetMillis - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+    }
+
+    public boolean isExpired() {
+        return isLimited() && remainingMillis() == 0;
+    }
+
+    // 截止时间(System.currentTimeMillis)，不限时为Long.MAX_VALUE
+    public long deadlineMillis() {
+        return isLimited() ? System.currentTimeMillis() + remainingMillis() : Long.MAX_VALUE;
+    }
+
+    /**
+     * 按当前速度处理完剩余用户还需要的时间
+     * @return 毫秒，样本不足或总数未知时为-1
+     */
+    public synchronized long etaMillis() {
+        double nanosPerItem = nanosPerItem();
+        if (nanosPerItem < 0 || total <= 0) {
+            return -1;
+        }
+        return TimeUnit.NANOSECONDS.toMillis((long) (nanosPerItem * Math.max(0, total - completed)));
+    }
+
+    /**
+     * 按当前速度在预算内还能处理的用户数
+     * @return 不限时或样本不足时为Integer.MAX_VALUE
+     */
+    public synchronized int affordableItems() {
+        double nanosPerItem = nanosPerItem();
+        if (!isLimited() || nanosPerItem <= 0) {
+            return Integer.MAX_VALUE;
+        }
+        return (int) Math.min(Integer.MAX_VALUE, TimeUnit.MILLISECONDS.toNanos(remainingMillis()) / nanosPerItem);
+    }
+
+    /**
+     * 进度条上显示的剩余时间
+     * @return 例如"剩余约 2分05秒"，设置了预算时附带预算剩余时间
+     */
+    public String describe() {
+        long eta = etaMillis();
+        String text = eta < 0 ? "正在估算剩余时间" : "剩余约 " + formatDuration(eta);
+        if (isLimited()) {
+            long remaining = remainingMillis();
+            text += eta > remaining ? "，超出预算 " + formatDuration(eta - remaining) : "，预算剩余 " + formatDuration(remaining);
+        }
+        return text;
+    }
+
+    static String formatDuration(long millis) {
+        long seconds = (millis + 999) / 1000;
+        if (seconds < 60) {
+            return seconds + "秒";
+        }
+        if (seconds < 3600) {
+            return String.format("%d分%02d秒", seconds / 60, seconds % 60);
+        }
+        return String.format("%d小时%02d分", seconds / 3600, seconds % 3600 / 60);
+    }
+}
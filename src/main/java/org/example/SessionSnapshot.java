@@ -0,0 +1,414 @@
+package org.example;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * 会话快照
+ * 退出时保存最终的用户列表、不活跃天数阈值、排序状态以及缓存文件和关注列表的路径，
+ * 下次启动时一次读入内存后解码，无需重新解析缓存文件即可显示上次的结果。
+ *
+ * 文件格式(大端序)：魔数、版本、头部字段，随后是分组名称表和按用户ID升序排列的用户记录。
+ * 用户ID按与前一个的差值存储，整数使用变长编码，字符串为UTF-8，因此文件通常只有缓存文件的几十分之一
+ */
+public class SessionSnapshot {
+    public static final String FILE_NAME = "session_snapshot.bin";
+    private static final int MAGIC = 0x42534353; // "BSCS"
+    private static final int VERSION = 2; // 版本2在每个有视频的用户后增加更新间隔；仍可读取版本1
+
+    private final long savedAt; // 保存时间(毫秒)
+    private final int inactiveDays; // 不活跃天数阈值
+    private final int sortColumn; // 排序列
+    private final boolean sortAscending; // 排序方向
+    private final File cacheFile; // 缓存文件，可为null
+    private final long cacheLength; // 保存时缓存文件的大小，用于判断缓存是否已变化
+    private final long cacheLastModified; // 保存时缓存文件的修改时间
+    private final File followListFile; // 关注列表文件(export_uids.json)，可为null
+    private final List<UserData> users; // 按用户ID升序
+
+    public SessionSnapshot(List<UserData> users, int inactiveDays, int sortColumn, boolean sortAscending,
+                           File cacheFile, File followListFile) {
+        this(System.currentTimeMillis(), users, inactiveDays, sortColumn, sortAscending, cacheFile,
+                cacheFile != null ? cacheFile.length() : 0, cacheFile != null ? cacheFile.lastModified() : 0, followListFile);
+    }
+
+    private SessionSnapshot(long savedAt, List<UserData> users, int inactiveDays, int sortColumn, boolean sortAscending,
+                            File cacheFile, long cacheLength, long cacheLastModified, File followListFile) {
+        if (users == null) {
+            throw new IllegalArgumentException("用户列表不能为空");
+        }
+        this.savedAt = savedAt;
+        this.users = users;
+        this.inactiveDays = inactiveDays;
+        this.sortColumn = sortColumn;
+        this.sortAscending = sortAscending;
+        this.cacheFile = cacheFile;
+        this.cacheLength = cacheLength;
+        this.cacheLastModified = cacheLastModified;
+        this.followListFile = followListFile;
+    }
+
+    // 默认的快照文件，位于当前目录
+    public static File defaultFile() {
+        return new File(System.getProperty("user.dir"), FILE_NAME);
+    }
+
+    /**
+     * 写入快照文件，先写临时文件再替换，中途失败不会损坏已有的快照
+     * @param file 快照文件
+     * @throws IOException 写入失败时
+     */
+    public void write(File file) throws IOException {
+        List<UserData> sorted = new ArrayList<>(users);
+        sorted.sort((a, b) -> Long.compare(a.getUid(), b.getUid()));
+
+        // 分组名称表，记录中只保存序号
+        Map<String, Integer> tagIds = new HashMap<>();
+        List<String> tagNames = new ArrayList<>();
+        for (UserData user : sorted) {
+            for (String tag : user.getTags()) {
+                if (!tagIds.containsKey(tag)) {
+                    tagIds.put(tag, tagNames.size());
+                    tagNames.add(tag);
+                }
+            }
+        }
+
+        File tempFile = new File(file.getPath() + ".tmp");
+        boolean completed = false;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile.toPath()), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(savedAt);
+            out.writeInt(inactiveDays);
+            out.writeInt(sortColumn);
+            out.writeBoolean(sortAscending);
+            writeString(out, cacheFile != null ? cacheFile.getAbsolutePath() : "");
+            out.writeLong(cacheLength);
+            out.writeLong(cacheLastModified);
+            writeString(out, followListFile != null ? followListFile.getAbsolutePath() : "");
+
+            writeVarLong(out, tagNames.size());
+            for (String tag : tagNames) {
+                writeString(out, tag);
+            }
+
+            writeVarLong(out, sorted.size());
+            long previousUid = 0;
+            for (UserData user : sorted) {
+                writeVarLong(out, user.getUid() - previousUid);
+                previousUid = user.getUid();
+                writeUtf8(out, user.getArena(), user.getUsernameRef());
+                writeVarLong(out, user.getTags().size());
+                for (String tag : user.getTags()) {
+                    writeVarLong(out, tagIds.get(tag));
+                }
+                // 发布时间为0表示没有视频，此时不再写标题和BV号
+                writeVarLong(out, user.hasVideos() ? user.getLastUpdateTimestamp() : 0);
+                if (user.hasVideos()) {
+                    writeUtf8(out, user.getArena(), user.getLastVideoTitleRef());
+                    writeUtf8(out, user.getArena(), user.getBvidRef());
+                    // 更新间隔：个数和各间隔(秒)，没有更新规律时个数为0
+                    int[] gaps = user.getCadence() != null ? user.getCadence().getGaps() : new int[0];
+                    writeVarLong(out, gaps.length);
+                    for (int gap : gaps) {
+                        writeVarLong(out, gap);
+                    }
+                }
+            }
+            completed = true;
+        } finally {
+            if (!completed) {
+                tempFile.delete();
+            }
+        }
+        Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * 读取快照文件
+     * @param file 快照文件
+     * @return 快照，用户按ID升序
+     * @throws IOException 文件不存在、版本不符或内容损坏时
+     */
+    public static SessionSnapshot read(File file) throws IOException {
+        Cursor cursor = open(file);
+        List<UserData> users = new ArrayList<>(cursor.size());
+        try {
+            while (cursor.hasNext()) {
+                users.add(cursor.next());
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return new SessionSnapshot(cursor.savedAt, users, cursor.inactiveDays, cursor.sortColumn, cursor.sortAscending,
+                cursor.cacheFile, cursor.cacheLength, cursor.cacheLastModified, cursor.followListFile);
+    }
+
+    /**
+     * 打开快照文件，按用户ID升序逐个读取用户，不把全部用户读入内存
+     * @param file 快照文件
+     * @return 读取游标，头部字段已读取
+     * @throws IOException 文件不存在、版本不符或头部损坏时
+     */
+    public static Cursor open(File file) throws IOException {
+        // 读入堆内缓冲区而不是内存映射：映射在被垃圾回收前一直占用文件，Windows上退出时无法用新快照替换该文件
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE - 8) {
+                throw new IOException("快照文件过大: " + file.getPath());
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // 读到文件末尾或缓冲区写满
+            }
+            buffer.flip();
+            return new Cursor(buffer, file);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IOException("快照文件不完整: " + file.getPath());
+        }
+    }
+
+    /**
+     * 快照读取游标
+     * 文件内容已全部读入内存，不占用文件；读取到不完整的记录时next抛出UncheckedIOException
+     */
+    public static final class Cursor implements Iterator<UserData> {
+        private final ByteBuffer buffer;
+        private final File file;
+        private final long savedAt;
+        private final int inactiveDays;
+        private final int sortColumn;
+        private final boolean sortAscending;
+        private final File cacheFile;
+        private final long cacheLength;
+        private final long cacheLastModified;
+        private final File followListFile;
+        private final String[] tagNames;
+        private final Utf8Arena arena = new Utf8Arena(); // 读出的字符串不经解码直接存入
+        private final int count;
+        private final int version; // 文件的格式版本
+        private int position; // 已读取的用户数
+        private long uid; // 上一个用户的ID，记录中保存的是差值
+
+        private Cursor(ByteBuffer buffer, File file) throws IOException {
+            this.buffer = buffer;
+            this.file = file;
+            if (buffer.remaining() < 8 || buffer.getInt() != MAGIC) {
+                throw new IOException("不是会话快照文件");
+            }
+            version = buffer.getInt();
+            if (version < 1 || version > VERSION) {
+                throw new IOException("不支持的快照版本: " + version);
+            }
+            savedAt = buffer.getLong();
+            inactiveDays = buffer.getInt();
+            sortColumn = buffer.getInt();
+            sortAscending = buffer.get() != 0;
+            String cachePath = readString(buffer);
+            cacheFile = cachePath.isEmpty() ? null : new File(cachePath);
+            cacheLength = buffer.getLong();
+            cacheLastModified = buffer.getLong();
+            String followListPath = readString(buffer);
+            followListFile = followListPath.isEmpty() ? null : new File(followListPath);
+
+            tagNames = new String[readCount(buffer)];
+            for (int i = 0; i < tagNames.length; i++) {
+                tagNames[i] = readString(buffer);
+            }
+            count = readCount(buffer);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return position < count;
+        }
+
+        @Override
+        public UserData next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            try {
+                UserData user = readUser();
+                position++;
+                return user;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+                throw new UncheckedIOException(new IOException("快照文件不完整: " + file.getPath()));
+            }
+        }
+
+        private UserData readUser() throws IOException {
+            uid += readVarLong(buffer);
+            long username = readUtf8(buffer, arena);
+            int tagCount = readCount(buffer);
+            List<String> tags;
+            if (tagCount == 0) {
+                tags = new ArrayList<>(0);
+            } else {
+                String[] userTags = new String[tagCount];
+                for (int t = 0; t < tagCount; t++) {
+                    int tagId = readCount(buffer);
+                    if (tagId >= tagNames.length) {
+                        throw new IOException("快照文件已损坏");
+                    }
+                    userTags[t] = tagNames[tagId];
+                }
+                tags = new ArrayList<>(Arrays.asList(userTags));
+            }
+            long pubdate = readVarLong(buffer);
+            if (pubdate == 0) {
+                return new UserData(uid, arena, username, tags);
+            }
+            long title = readUtf8(buffer, arena);
+            UserData user = new UserData(uid, arena, username, tags, title, pubdate, readUtf8(buffer, arena));
+            if (version >= 2) {
+                int gapCount = readCount(buffer);
+                if (gapCount >= PostingCadence.MAX_PUBDATES) {
+                    throw new IOException("快照文件已损坏");
+                }
+                int[] gaps = new int[gapCount];
+                for (int i = 0; i < gaps.length; i++) {
+                    gaps[i] = (int) readVarLong(buffer);
+                }
+                user.setCadence(PostingCadence.ofGaps(gaps));
+            }
+            return user;
+        }
+
+        // 用户总数
+        public int size() {
+            return count;
+        }
+
+        public long getSavedAt() {
+            return savedAt;
+        }
+
+        public int getInactiveDays() {
+            return inactiveDays;
+        }
+    }
+
+    /**
+     * 缓存文件在快照保存后是否被修改过
+     * @return 缓存文件仍存在且大小或修改时间与保存时不同时为true
+     */
+    public boolean isCacheChanged() {
+        return cacheFile != null && cacheFile.isFile()
+                && (cacheFile.length() != cacheLength || cacheFile.lastModified() != cacheLastModified);
+    }
+
+    public long getSavedAt() {
+        return savedAt;
+    }
+
+    public int getInactiveDays() {
+        return inactiveDays;
+    }
+
+    public int getSortColumn() {
+        return sortColumn;
+    }
+
+    public boolean isSortAscending() {
+        return sortAscending;
+    }
+
+    public File getCacheFile() {
+        return cacheFile;
+    }
+
+    public File getFollowListFile() {
+        return followListFile;
+    }
+
+    public List<UserData> getUsers() {
+        return Collections.unmodifiableList(users);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = (value != null ? value : "").getBytes(StandardCharsets.UTF_8);
+        writeVarLong(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) throws IOException {
+        int length = readCount(buffer);
+        if (length > buffer.remaining()) {
+            throw new IOException("快照文件已损坏");
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // 直接写出存储区中的UTF-8字节，格式与writeString相同
+    private static void writeUtf8(DataOutputStream out, Utf8Arena arena, long reference) throws IOException {
+        writeVarLong(out, Utf8Arena.length(reference));
+        arena.writeTo(reference, out);
+    }
+
+    // 把UTF-8字节原样存入存储区，不创建String
+    private static long readUtf8(ByteBuffer buffer, Utf8Arena arena) throws IOException {
+        int length = readCount(buffer);
+        if (length > buffer.remaining()) {
+            throw new IOException("快照文件已损坏");
+        }
+        try {
+            return arena.add(buffer, length);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("快照文件已损坏", e);
+        }
+    }
+
+    // 无符号变长整数，每字节7位，最高位表示后面还有字节
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(ByteBuffer buffer) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IOException("快照文件已损坏");
+    }
+
+    // 读取数量或长度，超出int范围说明文件已损坏
+    private static int readCount(ByteBuffer buffer) throws IOException {
+        long value = readVarLong(buffer);
+        if (value < 0 || value > Integer.MAX_VALUE) {
+            throw new IOException("快照文件已损坏");
+        }
+        return (int) value;
+    }
+}
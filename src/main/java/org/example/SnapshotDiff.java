@@ -0,0 +1,200 @@
+package org.example;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * 两次分析结果的差异
+ * 两侧都是按用户ID升序的用户序列(例如SessionSnapshot.Cursor)，归并连接一遍完成，
+ * 每侧只保留当前的一个用户，内存占用与用户数无关。
+ *
+ * 不活跃天数分别按各自的分析时间计算，因此"新增不活跃"指上次分析时未达到阈值、本次达到阈值的用户
+ */
+public class SnapshotDiff {
+    /**
+     * 变化类型
+     */
+    public enum Change {
+        NEWLY_INACTIVE("新增不活跃"),
+        REACTIVATED("恢复更新"),
+        NEW_VIDEO("有新视频"),
+        UNFOLLOWED("已取消关注"),
+        FOLLOWED("新关注");
+
+        private final String displayName;
+
+        Change(String displayName) {
+            this.displayName = displayName;
+        }
+
+        public String getDisplayName() {
+            return displayName;
+        }
+
+        @Override
+        public String toString() {
+            return displayName;
+        }
+    }
+
+    /**
+     * 一个用户的变化
+     */
+    public static class Entry {
+        private final Change change;
+        private final UserData before; // 上次的数据，新关注时为null
+        private final UserData after; // 本次的数据，已取消关注时为null
+        private final int daysBefore; // 上次分析时的不活跃天数
+        private final int daysAfter; // 本次分析时的不活跃天数
+
+        Entry(Change change, UserData before, UserData after, int daysBefore, int daysAfter) {
+            this.change = change;
+            this.before = before;
+            this.after = after;
+            this.daysBefore = daysBefore;
+            this.daysAfter = daysAfter;
+        }
+
+        public Change getChange() {
+            return change;
+        }
+
+        public UserData getBefore() {
+            return before;
+        }
+
+        public UserData getAfter() {
+            return after;
+        }
+
+        public int getDaysBefore() {
+            return daysBefore;
+        }
+
+        public int getDaysAfter() {
+            return daysAfter;
+        }
+
+        public long getUid() {
+            return after != null ? after.getUid() : before.getUid();
+        }
+
+        // 优先使用本次的用户名
+        public String getUsername() {
+            return after != null ? after.getUsername() : before.getUsername();
+        }
+    }
+
+    private final int threshold; // 不活跃天数阈值
+    private final long beforeAt; // 上次分析的时间(毫秒)
+    private final long afterAt; // 本次分析的时间(毫秒)
+
+    /**
+     * @param threshold 不活跃天数阈值
+     * @param beforeAt 上次分析的时间(毫秒)，例如快照的保存时间
+     * @param afterAt 本次分析的时间(毫秒)
+     */
+    public SnapshotDiff(int threshold, long beforeAt, long afterAt) {
+        if (threshold <= 0) {
+            throw new IllegalArgumentException("不活跃天数阈值必须大于0");
+        }
+        this.threshold = threshold;
+        this.beforeAt = beforeAt;
+        this.afterAt = afterAt;
+    }
+
+    /**
+     * 归并连接两侧的用户，把每个变化交给consumer
+     * @param before 上次的用户，按用户ID升序
+     * @param after 本次的用户，按用户ID升序
+     * @param consumer 接收变化，按用户ID升序调用
+     * @return 各类变化的数量
+     * @throws IllegalArgumentException 某一侧没有按用户ID升序排列时
+     */
+    public Map<Change, Integer> diff(Iterator<UserData> before, Iterator<UserData> after, Consumer<Entry> consumer) {
+        Map<Change, Integer> counts = new EnumMap<>(Change.class);
+        for (Change change : Change.values()) {
+            counts.put(change, 0);
+        }
+
+        UserData b = next(before, null);
+        UserData a = next(after, null);
+        while (b != null || a != null) {
+            Entry entry;
+            if (a == null || (b != null && b.getUid() < a.getUid())) {
+                entry = new Entry(Change.UNFOLLOWED, b, null, daysAt(b, beforeAt), 0);
+                b = next(before, b);
+            } else if (b == null || a.getUid() < b.getUid()) {
+                entry = new Entry(Change.FOLLOWED, null, a, 0, daysAt(a, afterAt));
+                a = next(after, a);
+            } else {
+                entry = compare(b, a);
+                b = next(before, b);
+                a = next(after, a);
+            }
+            if (entry != null) {
+                counts.merge(entry.getChange(), 1, Integer::sum);
+                consumer.accept(entry);
+            }
+        }
+        return counts;
+    }
+
+    // 比较同一用户的两次数据，没有变化时返回null
+    private Entry compare(UserData before, UserData after) {
+        int daysBefore = daysAt(before, beforeAt);
+        int daysAfter = daysAt(after, afterAt);
+        Change change = null;
+        if (daysBefore < threshold && daysAfter >= threshold) {
+            change = Change.NEWLY_INACTIVE;
+        } else if (daysBefore >= threshold && daysAfter < threshold) {
+            change = Change.REACTIVATED;
+        } else if (after.hasVideos() && !after.getBvid().equals(before.getBvid())) {
+            change = Change.NEW_VIDEO;
+        }
+        return change != null ? new Entry(change, before, after, daysBefore, daysAfter) : null;
+    }
+
+    // 取下一个用户，同一用户ID重复出现时跳过
+    private static UserData next(Iterator<UserData> users, UserData previous) {
+        while (users.hasNext()) {
+            UserData user = users.next();
+            if (previous == null || user.getUid() > previous.getUid()) {
+                return user;
+            }
+            if (user.getUid() < previous.getUid()) {
+                throw new IllegalArgumentException("用户未按ID升序排列: " + user.getUid());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 指定时刻的不活跃天数，与UserData的计算方式一致
+     * @return 没有视频时为Integer.MAX_VALUE
+     */
+    static int daysAt(UserData user, long referenceMillis) {
+        if (!user.hasVideos() || user.getLastUpdateTimestamp() == 0) {
+            return Integer.MAX_VALUE;
+        }
+        ZoneId zone = ZoneId.systemDefault();
+        return (int) ChronoUnit.DAYS.between(
+                LocalDateTime.ofInstant(Instant.ofEpochSecond(user.getLastUpdateTimestamp()), zone),
+                LocalDateTime.ofInstant(Instant.ofEpochMilli(referenceMillis), zone));
+    }
+
+    /**
+     * 不活跃天数的显示文本，差异对话框和导出的CSV使用同样的格式
+     * @param days daysAt的结果
+     * @return 没有视频时为"无视频"
+     */
+    static String formatDays(int days) {
+        return days == Integer.MAX_VALUE ? "无视频" : String.valueOf(days);
+    }
+}
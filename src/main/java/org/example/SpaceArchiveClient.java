@@ -0,0 +1,228 @@
+package org.example;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHost;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.util.EntityUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 空间投稿列表客户端
+ * 请求空间页使用的 /x/space/wbi/arc/search 接口(需要WBI签名)，一次查询一个用户，
+ * 响应为 {"code":0,"data":{"list":{"vlist":[{"title":..,"created":..,"bvid":..},...]}}}。
+ * 响应转换成recArchivesByKeywords格式：vlist中每个视频改名为archives，created改为pubdate，
+ * 因此可以和ArchiveClient互换，解码和缓存都不变；返回错误码时只保留code和message。
+ * 签名被拒绝(-403)时重新获取WBI密钥并重试一次
+ */
+public class SpaceArchiveClient implements ActivitySource {
+    private static final int TIMEOUT_MILLIS = 5000;
+    private static final int PAGE_SIZE = 20; // 与recArchivesByKeywords默认的每页数量相同
+    private static final int SIGNATURE_REJECTED = -403;
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final CloseableHttpClient httpClient;
+    private final WbiSigner signer;
+    private final AtomicLong requestCount = new AtomicLong();
+    private volatile long deadlineMillis = Long.MAX_VALUE;
+
+    public SpaceArchiveClient() {
+        this(null);
+    }
+
+    /**
+     * @param proxy 经由的HTTP代理，null表示直连；获取WBI密钥也经由该代理
+     */
+    public SpaceArchiveClient(HttpHost proxy) {
+        this.httpClient = ArchiveClient.createHttpClient(proxy);
+        this.signer = new WbiSigner(httpClient);
+    }
+
+    @Override
+    public int getBatchSize() {
+        return 1;
+    }
+
+    @Override
+    public void setDeadline(long deadlineMillis) {
+        this.deadlineMillis = deadlineMillis;
+    }
+
+    @Override
+    public LongObjectMap<byte[]> fetch(long[] mids) throws IOException {
+        LongObjectMap<byte[]> bodies = new LongObjectMap<>(mids.length);
+        for (long mid : mids) {
+            byte[] body = load(mid);
+            if (body != null) {
+                bodies.put(mid, body);
+            }
+        }
+        return bodies;
+    }
+
+    /**
+     * 请求一个用户的投稿列表
+     * @param mid 用户ID
+     * @return recArchivesByKeywords格式的响应内容，没有内容时为null
+     * @throws IOException 请求失败或响应不是合法JSON时
+     */
+    public byte[] load(long mid) throws IOException {
+        byte[] body = request(mid);
+        if (body != null && ArchiveSummary.decode(body).getCode() == SIGNATURE_REJECTED) {
+            signer.invalidate(); // 密钥可能已经更换
+            body = request(mid);
+        }
+        return body;
+    }
+
+    private byte[] request(long mid) throws IOException {
+        PerfEvents.FetchRequest event = new PerfEvents.FetchRequest();
+        event.mid = mid;
+        event.users = 1;
+        event.begin();
+        long start = System.nanoTime();
+        requestCount.incrementAndGet();
+        try {
+            Map<String, String> params = new LinkedHashMap<>();
+            params.put("mid", Long.toString(mid));
+            params.put("ps", Integer.toString(PAGE_SIZE));
+            params.put("pn", "1");
+            params.put("order", "pubdate");
+            HttpGet request = new HttpGet(BilibiliApi.baseUrl() + "/x/space/wbi/arc/search?" + signer.sign(params));
+            long remaining = deadlineMillis - System.currentTimeMillis();
+            BilibiliApi.prepare(request, (int) Math.max(1, Math.min(TIMEOUT_MILLIS, remaining)));
+
+            byte[] body = null;
+            try (CloseableHttpResponse response = httpClient.execute(request)) {
+                event.httpStatus = response.getStatusLine().getStatusCode();
+                HttpEntity entity = response.getEntity();
+                if (entity != null) {
+                    body = EntityUtils.toByteArray(entity);
+                }
+            }
+            ArchiveClient.record(event, start, body != null ? body.length : 0, null);
+            return body != null ? normalize(body) : null;
+        } catch (IOException e) {
+            ArchiveClient.record(event, start, 0, e.getMessage());
+            throw e;
+        }
+    }
+
+    /**
+     * 把空间投稿列表响应转换成recArchivesByKeywords格式
+     * @param body 接口响应
+     * @return 转换后的内容
+     * @throws IOException 响应不是合法JSON时
+     */
+    static byte[] normalize(byte[] body) throws IOException {
+        int code = 0;
+        String message = "0";
+        ByteArrayOutputStream archives = new ByteArrayOutputStream();
+        try (JsonParser parser = JSON_FACTORY.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new JsonParseException(parser, "投稿列表响应应为JSON对象");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                if ("code".equals(field)) {
+                    code = parser.getValueAsInt(0);
+                } else if ("message".equals(field)) {
+                    message = parser.getValueAsString("");
+                } else if ("data".equals(field) && value == JsonToken.START_OBJECT) {
+                    readData(parser, archives);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(archives.size() + 64);
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(out)) {
+            generator.writeStartObject();
+            generator.writeNumberField("code", code);
+            generator.writeStringField("message", message);
+            if (code == 0) {
+                generator.writeFieldName("data");
+                generator.writeStartObject();
+                generator.writeFieldName("archives");
+                generator.writeRawValue(archives.size() > 0 ? archives.toString("UTF-8") : "[]");
+                generator.writeEndObject();
+            }
+            generator.writeEndObject();
+        }
+        return out.toByteArray();
+    }
+
+    // data.list.vlist，其余字段(分页信息、分区统计等)跳过
+    private static void readData(JsonParser parser, ByteArrayOutputStream archives) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            if ("list".equals(field) && value == JsonToken.START_OBJECT) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String listField = parser.getCurrentName();
+                    if (parser.nextToken() == JsonToken.START_ARRAY && "vlist".equals(listField)) {
+                        copyVideos(parser, archives);
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    // 复制视频列表，只保留ArchiveSummary读取的字段，created改名为pubdate
+    private static void copyVideos(JsonParser parser, ByteArrayOutputStream archives) throws IOException {
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(archives)) {
+            generator.writeStartArray();
+            JsonToken token;
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                if (token == null) {
+                    throw new JsonParseException(parser, "投稿列表不完整");
+                }
+                if (token != JsonToken.START_OBJECT) {
+                    parser.skipChildren();
+                    continue;
+                }
+                generator.writeStartObject();
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.getCurrentName();
+                    JsonToken value = parser.nextToken();
+                    if (("title".equals(field) || "bvid".equals(field) || "aid".equals(field)) && value.isScalarValue()) {
+                        generator.writeFieldName(field);
+                        generator.copyCurrentEvent(parser);
+                    } else if ("created".equals(field) && value.isScalarValue()) {
+                        generator.writeNumberField("pubdate", parser.getValueAsLong(0));
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+        }
+    }
+
+    @Override
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    @Override
+    public void close() throws IOException {
+        httpClient.close();
+    }
+}
@@ -0,0 +1,331 @@
+package org.example;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * 按用户ID的外部排序
+ * 记录(用户ID + 字节内容)先在内存中缓冲，缓冲的字节数达到上限时排序后写成一个有序段(run)落盘，
+ * 全部写入后多路归并各段。段数超过归并路数时先分批归并成更长的段，因此内存占用只取决于设置的上限，与记录总数无关。
+ *
+ * 排序是稳定的：用户ID相同的记录按写入顺序输出
+ */
+public class SpillSorter implements Closeable {
+    public static final int READ_BUFFER_SIZE = 64 * 1024; // 归并时每个段的读缓冲区
+    private static final int RECORD_OVERHEAD = 48; // 每条缓冲记录除内容外的估计占用：对象头、数组头和列表槽位
+    private static final Comparator<Record> BY_MID = Comparator.comparingLong(record -> record.mid);
+
+    /**
+     * 按用户ID升序读取记录的游标
+     */
+    public interface Cursor extends Closeable {
+        /**
+         * 前进到下一条记录
+         * @return 没有更多记录时为false
+         */
+        boolean next() throws IOException;
+
+        long mid();
+
+        byte[] payload();
+    }
+
+    private final File directory; // 有序段所在的临时目录
+    private final long memoryBytes;
+    private final int fanIn; // 一次归并的最多段数
+    private final List<Record> buffer = new ArrayList<>();
+    private long bufferedBytes;
+    private final List<Run> runs = new ArrayList<>();
+    private long recordCount;
+    private long spilledBytes; // 写入磁盘的字节数，包括中间归并
+    private boolean sorted;
+
+    /**
+     * @param directory 存放有序段的目录，必须已存在
+     * @param memoryBytes 缓冲和归并可使用的字节数
+     */
+    public SpillSorter(File directory, long memoryBytes) {
+        if (memoryBytes < 2L * READ_BUFFER_SIZE) {
+            throw new IllegalArgumentException("内存上限不能小于" + (2 * READ_BUFFER_SIZE / 1024) + "KB");
+        }
+        this.directory = directory;
+        this.memoryBytes = memoryBytes;
+        this.fanIn = (int) Math.min(1024, memoryBytes / READ_BUFFER_SIZE);
+    }
+
+    /**
+     * 写入一条记录，缓冲区满时排序落盘
+     * @param mid 用户ID
+     * @param payload 记录内容，写入后不应再修改
+     */
+    public void add(long mid, byte[] payload) throws IOException {
+        if (sorted) {
+            throw new IllegalStateException("已开始读取，不能再写入");
+        }
+        buffer.add(new Record(mid, payload));
+        bufferedBytes += payload.length + RECORD_OVERHEAD;
+        recordCount++;
+        if (bufferedBytes >= memoryBytes) {
+            spill();
+        }
+    }
+
+    // 把缓冲区排序后写成一个有序段
+    private void spill() throws IOException {
+        buffer.sort(BY_MID);
+        Run run = new Run(File.createTempFile("run", ".bin", directory));
+        try (DataOutputStream out = run.openWriter()) {
+            for (Record record : buffer) {
+                run.write(out, record.mid, record.payload);
+            }
+        }
+        spilledBytes += run.file.length();
+        runs.add(run);
+        buffer.clear();
+        bufferedBytes = 0;
+    }
+
+    /**
+     * 结束写入，返回按用户ID升序的游标；只能调用一次
+     * 没有落盘过时直接在内存中排序，否则先把剩余缓冲落盘，再把段数归并到不超过归并路数
+     */
+    public Cursor sorted() throws IOException {
+        if (sorted) {
+            throw new IllegalStateException("只能读取一次");
+        }
+        sorted = true;
+        if (runs.isEmpty()) {
+            buffer.sort(BY_MID);
+            return new BufferCursor(buffer);
+        }
+        if (!buffer.isEmpty()) {
+            spill();
+        }
+        while (runs.size() > fanIn) {
+            mergePass();
+        }
+        return new MergeCursor(new ArrayList<>(runs));
+    }
+
+    // 把相邻的段每fanIn个归并成一个，保持段之间的先后顺序，排序因此仍然稳定
+    private void mergePass() throws IOException {
+        List<Run> pending = new ArrayList<>(runs);
+        List<Run> merged = new ArrayList<>();
+        for (int from = 0; from < pending.size(); from += fanIn) {
+            List<Run> group = pending.subList(from, Math.min(pending.size(), from + fanIn));
+            if (group.size() == 1) {
+                merged.add(group.get(0));
+                continue;
+            }
+            Run run = new Run(File.createTempFile("run", ".bin", directory));
+            runs.add(run); // 出错时由close一并删除
+            try (MergeCursor cursor = new MergeCursor(new ArrayList<>(group));
+                 DataOutputStream out = run.openWriter()) {
+                while (cursor.next()) {
+                    run.write(out, cursor.mid(), cursor.payload());
+                }
+            }
+            spilledBytes += run.file.length();
+            merged.add(run);
+        }
+        runs.clear();
+        runs.addAll(merged);
+    }
+
+    // 写入的记录数
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    // 当前的有序段数，0表示全部在内存中
+    public int getRunCount() {
+        return runs.size();
+    }
+
+    public long getSpilledBytes() {
+        return spilledBytes;
+    }
+
+    /**
+     * 删除全部有序段
+     */
+    @Override
+    public void close() {
+        buffer.clear();
+        for (Run run : runs) {
+            run.delete();
+        }
+        runs.clear();
+    }
+
+    private static final class Record {
+        final long mid;
+        final byte[] payload;
+
+        Record(long mid, byte[] payload) {
+            this.mid = mid;
+            this.payload = payload;
+        }
+    }
+
+    /**
+     * 磁盘上的一个有序段：连续的 [用户ID(8字节)][内容长度(4字节)][内容]
+     */
+    private static final class Run {
+        final File file;
+        long count;
+
+        Run(File file) {
+            this.file = file;
+        }
+
+        DataOutputStream openWriter() throws IOException {
+            return new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), READ_BUFFER_SIZE));
+        }
+
+        void write(DataOutputStream out, long mid, byte[] payload) throws IOException {
+            out.writeLong(mid);
+            out.writeInt(payload.length);
+            out.write(payload);
+            count++;
+        }
+
+        void delete() {
+            try {
+                Files.deleteIfExists(file.toPath());
+            } catch (IOException e) {
+                System.err.println("删除临时文件时出错: " + e.getMessage());
+            }
+        }
+    }
+
+    // 读取一个有序段，同时作为归并堆中的元素
+    private static final class RunReader {
+        final int index; // 段的先后顺序，用户ID相同时先输出前面的段
+        final DataInputStream in;
+        long remaining;
+        long mid;
+        byte[] payload;
+
+        RunReader(Run run, int index) throws IOException {
+            this.index = index;
+            this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(run.file), READ_BUFFER_SIZE));
+            this.remaining = run.count;
+        }
+
+        boolean advance() throws IOException {
+            if (remaining == 0) {
+                return false;
+            }
+            remaining--;
+            mid = in.readLong();
+            payload = new byte[in.readInt()];
+            in.readFully(payload);
+            return true;
+        }
+    }
+
+    // 多路归并若干有序段，归并结束后删除这些段
+    private final class MergeCursor implements Cursor {
+        private final List<Run> sources;
+        private final PriorityQueue<RunReader> heap = new PriorityQueue<>(
+                Comparator.<RunReader>comparingLong(reader -> reader.mid).thenComparingInt(reader -> reader.index));
+        private final List<RunReader> readers = new ArrayList<>();
+        private RunReader current; // 上一次next返回的记录所在的段，下一次next时再前进
+        private long mid;
+        private byte[] payload;
+
+        MergeCursor(List<Run> sources) throws IOException {
+            this.sources = sources;
+            try {
+                for (int i = 0; i < sources.size(); i++) {
+                    RunReader reader = new RunReader(sources.get(i), i);
+                    readers.add(reader);
+                    if (reader.advance()) {
+                        heap.add(reader);
+                    }
+                }
+            } catch (IOException e) {
+                close();
+                throw e;
+            }
+        }
+
+        @Override
+        public boolean next() throws IOException {
+            if (current != null && current.advance()) {
+                heap.add(current);
+            }
+            current = heap.poll();
+            if (current == null) {
+                return false;
+            }
+            mid = current.mid;
+            payload = current.payload;
+            return true;
+        }
+
+        @Override
+        public long mid() {
+            return mid;
+        }
+
+        @Override
+        public byte[] payload() {
+            return payload;
+        }
+
+        @Override
+        public void close() throws IOException {
+            for (RunReader reader : readers) {
+                reader.in.close();
+            }
+            for (Run run : sources) {
+                run.delete();
+            }
+            runs.removeAll(sources);
+        }
+    }
+
+    // 从未落盘时直接遍历排好序的缓冲区
+    private static final class BufferCursor implements Cursor {
+        private final List<Record> records;
+        private int position = -1;
+
+        BufferCursor(List<Record> records) {
+            this.records = records;
+        }
+
+        @Override
+        public boolean next() {
+            return ++position < records.size();
+        }
+
+        @Override
+        public long mid() {
+            return records.get(position).mid;
+        }
+
+        @Override
+        public byte[] payload() {
+            return records.get(position).payload;
+        }
+
+        @Override
+        public void close() {
+            records.clear();
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 分组字典
+ * 维护分组ID与分组名称的对应关系。来自API的分组使用B站的tagid；
+ * 从export_uids.json读取的分组只有名称，由intern分配本地ID
+ */
+public class TagDictionary {
+    private static final int LOCAL_ID_BASE = 1 << 30; // 本地分配的ID从此开始，避免与B站tagid冲突
+
+    private final Map<Integer, String> names = new ConcurrentHashMap<>();
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private final AtomicInteger nextLocalId = new AtomicInteger(LOCAL_ID_BASE);
+
+    // 登记来自API的分组
+    public void put(int id, String name) {
+        names.put(id, name);
+        ids.putIfAbsent(name, id);
+    }
+
+    /**
+     * 获取分组名称对应的ID，不存在时分配一个本地ID
+     * @param name 分组名称
+     * @return 分组ID
+     */
+    public int intern(String name) {
+        return ids.computeIfAbsent(name, k -> {
+            int id = nextLocalId.getAndIncrement();
+            names.put(id, k);
+            return id;
+        });
+    }
+
+    // 分组名称，未知的ID显示为"分组+ID"
+    public String name(int id) {
+        String name = names.get(id);
+        return name != null ? name : "分组" + id;
+    }
+
+    // 将分组ID数组解析为名称列表
+    public List<String> names(int[] tagIds) {
+        List<String> result = new ArrayList<>(tagIds.length);
+        for (int id : tagIds) {
+            result.add(name(id));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,211 @@
+package org.example;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.http.NameValuePair;
+import org.apache.http.client.entity.UrlEncodedFormEntity;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.message.BasicNameValuePair;
+import org.apache.http.util.EntityUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 批量取消关注执行器
+ * 按批次调用关系修改接口(/x/relation/modify)，所有请求经过速率限制器，
+ * 被限流或网络错误时按指数退避重试；支持只记录不发送的演练模式，结果逐条写入日志文件。
+ * 请求始终逐个顺序发送，同一时间只有一个请求：批次只决定在哪里插入批次间隔和刷新日志，并不并行或流水线发送。
+ * 这样被限流时退避会立即作用于下一个请求，日志顺序也与发送顺序一致
+ */
+public class UnfollowExecutor {
+    private static final int ACT_UNFOLLOW = 2; // 关系操作：取消关注
+    private static final int RE_SRC = 11; // 关注来源：空间
+    private static final long BASE_BACKOFF_MILLIS = 1000; // 首次重试的退避时间
+
+    /**
+     * 进度回调
+     */
+    public interface Listener {
+        /**
+         * 每处理完一个用户调用一次（在执行线程上）
+         * @param result 该用户的结果
+         * @param completed 已完成数量
+         * @param total 总数量
+         */
+        void onResult(UnfollowResult result, int completed, int total);
+
+        /**
+         * 状态变化时调用，例如批次间等待
+         * @param message 状态描述
+         */
+        void onStatus(String message);
+    }
+
+    private final String baseUrl;
+    private final String cookie;
+    private final String csrf;
+    private final int batchSize;
+    private final long batchIntervalMillis;
+    private final RateLimiter rateLimiter;
+    private final int maxRetries;
+    private final boolean dryRun;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    /**
+     * @param baseUrl API地址，例如 BilibiliApi.baseUrl()
+     * @param cookie 登录Cookie，需包含SESSDATA和bili_jct；演练模式下可为空
+     * @param batchSize 每批用户数量
+     * @param batchInterval 批次间隔(秒)
+     * @param requestsPerSecond 每秒最多请求数
+     * @param maxRetries 单个用户的最大重试次数
+     * @param dryRun 是否为演练模式（不发送任何请求）
+     */
+    public UnfollowExecutor(String baseUrl, String cookie, int batchSize, double batchInterval,
+                            double requestsPerSecond, int maxRetries, boolean dryRun) {
+        this.baseUrl = baseUrl;
+        this.cookie = cookie != null ? cookie.trim() : "";
+        this.csrf = BilibiliApi.cookieValue(this.cookie, "bili_jct");
+        this.batchSize = Math.max(1, batchSize);
+        this.batchIntervalMillis = (long) (Math.max(0, batchInterval) * 1000);
+        this.rateLimiter = new RateLimiter(Math.max(0.01, requestsPerSecond));
+        this.maxRetries = Math.max(0, maxRetries);
+        this.dryRun = dryRun;
+
+        if (!dryRun && csrf.isEmpty()) {
+            throw new IllegalArgumentException("Cookie中缺少bili_jct，无法取消关注");
+        }
+    }
+
+    /**
+     * 执行批量取消关注
+     * @param users 要取消关注的用户
+     * @param logFile 结果日志文件（CSV），为null时不写日志
+     * @param listener 进度回调，可为null
+     * @return 每个用户的结果，顺序与输入一致
+     * @throws IOException 写日志失败时
+     * @throws InterruptedException 执行被取消时
+     */
+    public List<UnfollowResult> run(List<UserData> users, File logFile, Listener listener) throws IOException, InterruptedException {
+        List<UnfollowResult> results = new ArrayList<>(users.size());
+        Writer log = logFile != null ? DataExporter.openWriter(logFile) : null;
+
+        try (CloseableHttpClient httpClient = HttpClients.createDefault()) {
+            if (log != null) {
+                log.write('\uFEFF');
+                log.write("UID,用户名,结果,返回码,信息,尝试次数" + DataExporter.CSV_LINE_END);
+            }
+
+            for (int start = 0; start < users.size(); start += batchSize) {
+                int end = Math.min(users.size(), start + batchSize);
+                for (int i = start; i < end; i++) {
+                    if (Thread.currentThread().isInterrupted()) {
+                        throw new InterruptedException("取消关注任务已取消");
+                    }
+                    UserData user = users.get(i);
+                    UnfollowResult result = dryRun
+                            ? new UnfollowResult(user.getUid(), user.getUsername(), UnfollowResult.Status.DRY_RUN, 0, "演练模式，未发送请求", 0)
+                            : unfollow(httpClient, user);
+                    results.add(result);
+                    if (log != null) {
+                        writeLog(log, result);
+                    }
+                    if (listener != null) {
+                        listener.onResult(result, results.size(), users.size());
+                    }
+                }
+                if (log != null) {
+                    log.flush(); // 每批结束刷新一次，中途退出也能保留已完成部分的日志
+                }
+
+                // 批次间休眠，避免请求过快
+                if (!dryRun && end < users.size() && batchIntervalMillis > 0) {
+                    if (listener != null) {
+                        listener.onStatus(String.format("等待 %.1f 秒后处理下一批...", batchIntervalMillis / 1000.0));
+                    }
+                    Thread.sleep(batchIntervalMillis);
+                }
+            }
+        } finally {
+            if (log != null) {
+                log.close();
+            }
+        }
+        return results;
+    }
+
+    // 对单个用户发送取消关注请求，可重试的错误按指数退避重试
+    private UnfollowResult unfollow(CloseableHttpClient httpClient, UserData user) throws InterruptedException {
+        int attempts = 0;
+        int code = -1;
+        String message = "";
+        while (attempts <= maxRetries) {
+            rateLimiter.acquire();
+            attempts++;
+            boolean retryable;
+            try {
+                HttpPost request = new HttpPost(baseUrl + "/x/relation/modify");
+                BilibiliApi.prepare(request, 5000);
+                request.setHeader("cookie", cookie);
+                List<NameValuePair> params = new ArrayList<>();
+                params.add(new BasicNameValuePair("fid", String.valueOf(user.getUid())));
+                params.add(new BasicNameValuePair("act", String.valueOf(ACT_UNFOLLOW)));
+                params.add(new BasicNameValuePair("re_src", String.valueOf(RE_SRC)));
+                params.add(new BasicNameValuePair("csrf", csrf));
+                request.setEntity(new UrlEncodedFormEntity(params, StandardCharsets.UTF_8));
+
+                try (CloseableHttpResponse response = httpClient.execute(request)) {
+                    int httpStatus = response.getStatusLine().getStatusCode();
+                    String body = response.getEntity() != null ? EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8) : "";
+                    if (httpStatus != 200) {
+                        code = -httpStatus;
+                        message = "HTTP " + httpStatus;
+                        retryable = httpStatus == 412 || httpStatus == 429 || httpStatus >= 500;
+                    } else {
+                        JsonNode json = objectMapper.readTree(body);
+                        code = json.path("code").asInt(-1);
+                        message = json.path("message").asText("");
+                        if (code == 0) {
+                            return new UnfollowResult(user.getUid(), user.getUsername(), UnfollowResult.Status.SUCCESS, code, message, attempts);
+                        }
+                        retryable = BilibiliApi.isThrottled(code);
+                    }
+                }
+            } catch (IOException e) {
+                code = -1;
+                message = e.getMessage();
+                retryable = true;
+            }
+
+            if (!retryable || attempts > maxRetries) {
+                break;
+            }
+            // 指数退避，同时暂停限速器，让其它请求也一起等待
+            long backoff = BASE_BACKOFF_MILLIS << Math.min(attempts - 1, 6);
+            rateLimiter.pause(backoff);
+        }
+        return new UnfollowResult(user.getUid(), user.getUsername(), UnfollowResult.Status.FAILED, code, message, attempts);
+    }
+
+    private static void writeLog(Writer log, UnfollowResult result) throws IOException {
+        log.write(Long.toString(result.getUid()));
+        log.write(',');
+        DataExporter.writeCsvField(log, result.getUsername());
+        log.write(',');
+        log.write(result.getStatus().toString());
+        log.write(',');
+        log.write(Integer.toString(result.getCode()));
+        log.write(',');
+        DataExporter.writeCsvField(log, result.getMessage());
+        log.write(',');
+        log.write(Integer.toString(result.getAttempts()));
+        log.write(DataExporter.CSV_LINE_END);
+    }
+}
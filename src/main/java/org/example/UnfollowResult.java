@@ -0,0 +1,74 @@
+package org.example;
+
+/**
+ * 单个用户的取消关注结果
+ */
+public class UnfollowResult {
+    public enum Status {
+        SUCCESS("成功"),
+        FAILED("失败"),
+        DRY_RUN("演练");
+
+        private final String displayName;
+
+        Status(String displayName) {
+            this.displayName = displayName;
+        }
+
+        @Override
+        public String toString() {
+            return displayName;
+        }
+    }
+
+    private final long uid;
+    private final String username;
+    private final Status status;
+    private final int code; // API返回码，网络错误时为-1
+    private final String message;
+    private final int attempts; // 实际发送的请求次数
+
+    public UnfollowResult(long uid, String username, Status status, int code, String message, int attempts) {
+        this.uid = uid;
+        this.username = username;
+        this.status = status;
+        this.code = code;
+        this.message = message;
+        this.attempts = attempts;
+    }
+
+    public long getUid() {
+        return uid;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public int getCode() {
+        return code;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    @Override
+    public String toString() {
+        return "UnfollowResult{" +
+                "uid=" + uid +
+                ", status=" + status +
+                ", code=" + code +
+                ", message='" + message + '\'' +
+                ", attempts=" + attempts +
+                "}";
+    }
+}
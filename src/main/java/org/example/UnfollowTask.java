@@ -0,0 +1,57 @@
+package org.example;
+
+import javax.swing.*;
+import java.io.File;
+import java.util.List;
+
+/**
+ * 批量取消关注任务类
+ * 在后台线程中执行UnfollowExecutor，并在进度条上显示进度
+ */
+public class UnfollowTask extends SwingWorker<List<UnfollowResult>, Integer> {
+    private final List<UserData> users;
+    private final UnfollowExecutor executor;
+    private final File logFile;
+    private final JProgressBar progressBar;
+    private final JLabel statusLabel;
+
+    public UnfollowTask(List<UserData> users, UnfollowExecutor executor, File logFile, JProgressBar progressBar, JLabel statusLabel) {
+        this.users = users;
+        this.executor = executor;
+        this.logFile = logFile;
+        this.progressBar = progressBar;
+        this.statusLabel = statusLabel;
+    }
+
+    @Override
+    protected List<UnfollowResult> doInBackground() throws Exception {
+        // 设置进度条
+        progressBar.setMaximum(users.size());
+        progressBar.setValue(0);
+        publish(0);
+        statusLabel.setText("正在取消关注...");
+
+        return executor.run(users, logFile, new UnfollowExecutor.Listener() {
+            @Override
+            public void onResult(UnfollowResult result, int completed, int total) {
+                publish(completed);
+                statusLabel.setText(String.format("取消关注 (%d/%d): %s - %s", completed, total, result.getUsername(), result.getStatus()));
+            }
+
+            @Override
+            public void onStatus(String message) {
+                statusLabel.setText(message);
+            }
+        });
+    }
+
+    @Override
+    protected void process(List<Integer> chunks) {
+        // 更新进度条
+        if (!chunks.isEmpty()) {
+            int progress = chunks.get(chunks.size() - 1);
+            progressBar.setValue(progress);
+            progressBar.setString(progress + " / " + progressBar.getMaximum());
+        }
+    }
+}
@@ -9,22 +9,54 @@ import java.util.List;
 
 /**
  * 用户数据模型类
- * 存储B站用户的基本信息和视频更新情况
+ * 存储B站用户的基本信息和视频更新情况。
+ * 用户名、视频标题和BV号以UTF-8存放在Utf8Arena中，调用getter时才解码
  */
 public class UserData {
+    private static final String NO_VIDEO_TITLE = "无视频";
+
     private long uid; // 用户ID - 使用long类型避免大UID溢出
-    private String username; // 用户名
+    private Utf8Arena arena; // 字符串所在的存储区
+    private long username; // 用户名的引用
     private List<String> tags; // 用户分组标签
-    private String lastVideoTitle; // 最后一个视频标题
+    private long lastVideoTitle; // 最后一个视频标题的引用
     private long lastUpdateTimestamp; // 最后更新时间戳
-    private String bvid; // 视频BV号
+    private long bvid; // 视频BV号的引用
     private int inactiveDays; // 不活跃天数
     private boolean hasVideos; // 是否有视频
+    private PostingCadence cadence; // 更新规律，少于两个视频或未知时为null
 
     // 构造函数 - 有视频的用户
     public UserData(long uid, String username, List<String> tags, String lastVideoTitle, 
                    long lastUpdateTimestamp, String bvid) {
+        this(uid, Utf8Arena.shared(), username, tags, lastVideoTitle, lastUpdateTimestamp, bvid);
+    }
+
+    private UserData(long uid, Utf8Arena arena, String username, List<String> tags, String lastVideoTitle,
+                     long lastUpdateTimestamp, String bvid) {
+        this(uid, arena, arena.add(username), tags, arena.add(lastVideoTitle), lastUpdateTimestamp, arena.add(bvid));
+    }
+
+    // 构造函数 - 没有视频的用户
+    public UserData(long uid, String username, List<String> tags) {
+        this(uid, Utf8Arena.shared(), username, tags);
+    }
+
+    private UserData(long uid, Utf8Arena arena, String username, List<String> tags) {
+        this(uid, arena, arena.add(username), tags);
+    }
+
+    /**
+     * 由已存放的字符串构造有视频的用户，不经过String
+     * @param arena 字符串所在的存储区
+     * @param username 用户名的引用
+     * @param lastVideoTitle 视频标题的引用
+     * @param bvid BV号的引用
+     */
+    UserData(long uid, Utf8Arena arena, long username, List<String> tags, long lastVideoTitle,
+             long lastUpdateTimestamp, long bvid) {
         this.uid = uid;
+        this.arena = arena;
         this.username = username;
         this.tags = tags != null ? tags : new ArrayList<>();
         this.lastVideoTitle = lastVideoTitle;
@@ -34,31 +66,54 @@ public class UserData {
         calculateInactiveDays();
     }
 
-    // 构造函数 - 没有视频的用户
-    public UserData(long uid, String username, List<String> tags) {
+    // 由已存放的用户名构造没有视频的用户
+    UserData(long uid, Utf8Arena arena, long username, List<String> tags) {
         this.uid = uid;
+        this.arena = arena;
         this.username = username;
         this.tags = tags != null ? tags : new ArrayList<>();
-        this.lastVideoTitle = "无视频";
+        this.lastVideoTitle = Utf8Arena.NULL;
         this.lastUpdateTimestamp = 0;
-        this.bvid = "";
+        this.bvid = Utf8Arena.NULL;
         this.hasVideos = false;
         this.inactiveDays = Integer.MAX_VALUE; // 设置为最大值，表示无限不活跃
     }
 
+    /**
+     * 换用另一组用户名和分组，视频信息与本用户共享同一份存储
+     * @param username 用户名
+     * @param tags 分组标签
+     * @return 新的用户数据
+     */
+    UserData withNameAndTags(String username, List<String> tags) {
+        UserData user = hasVideos
+                ? new UserData(uid, arena, arena.add(username), tags, lastVideoTitle, lastUpdateTimestamp, bvid)
+                : new UserData(uid, arena, arena.add(username), tags);
+        user.cadence = cadence;
+        return user;
+    }
+
     // 计算不活跃天数
     private void calculateInactiveDays() {
-        if (lastUpdateTimestamp == 0) {
-            inactiveDays = Integer.MAX_VALUE;
-            return;
+        inactiveDays = inactiveDaysSince(lastUpdateTimestamp);
+    }
+
+    /**
+     * 计算从指定时间戳到现在的天数
+     * @param timestamp 秒级时间戳，0表示没有视频
+     * @return 不活跃天数，没有视频时为Integer.MAX_VALUE
+     */
+    public static int inactiveDaysSince(long timestamp) {
+        if (timestamp == 0) {
+            return Integer.MAX_VALUE;
         }
 
         LocalDateTime lastUpdate = LocalDateTime.ofInstant(
-                Instant.ofEpochSecond(lastUpdateTimestamp),
+                Instant.ofEpochSecond(timestamp),
                 ZoneId.systemDefault());
         LocalDateTime now = LocalDateTime.now();
         
-        inactiveDays = (int) ChronoUnit.DAYS.between(lastUpdate, now);
+        return (int) ChronoUnit.DAYS.between(lastUpdate, now);
     }
 
     // 检查用户是否不活跃（基于指定的天数阈值）
@@ -82,7 +137,7 @@ public class UserData {
     }
 
     public String getUsername() {
-        return username;
+        return arena.get(username);
     }
 
     public List<String> getTags() {
@@ -90,7 +145,7 @@ public class UserData {
     }
 
     public String getLastVideoTitle() {
-        return lastVideoTitle;
+        return hasVideos ? arena.get(lastVideoTitle) : NO_VIDEO_TITLE;
     }
 
     public long getLastUpdateTimestamp() {
@@ -98,24 +153,78 @@ public class UserData {
     }
 
     public String getBvid() {
-        return bvid;
+        return hasVideos ? arena.get(bvid) : "";
     }
 
     public int getInactiveDays() {
         return inactiveDays;
     }
 
+    // 更新规律，少于两个视频或未知时为null
+    public PostingCadence getCadence() {
+        return cadence;
+    }
+
+    // 设置更新规律，只对有视频的用户有效
+    void setCadence(PostingCadence cadence) {
+        this.cadence = hasVideos ? cadence : null;
+    }
+
+    /**
+     * 停更可能，按更新规律和距最新视频的时间计算
+     * @return 0到1，更新规律未知时为-1
+     */
+    public double getDormantScore() {
+        if (cadence == null) {
+            return -1;
+        }
+        return cadence.dormantScore(System.currentTimeMillis() / 1000 - lastUpdateTimestamp);
+    }
+
+    /**
+     * 是否可能已停更：没有视频，或停更可能达到阈值；
+     * 只有一个视频、更新规律未知时按不活跃天数判断
+     * @param inactiveDays 不活跃天数阈值，0表示不按天数判断
+     */
+    public boolean isProbablyDormant(int inactiveDays) {
+        if (!hasVideos) {
+            return true;
+        }
+        if (cadence == null) {
+            return inactiveDays > 0 && isInactive(inactiveDays);
+        }
+        return getDormantScore() >= PostingCadence.DORMANT_THRESHOLD;
+    }
+
     public boolean hasVideos() {
         return hasVideos;
     }
 
     public String getVideoUrl() {
+        String bvid = getBvid();
         if (bvid != null && !bvid.isEmpty()) {
             return "https://www.bilibili.com/video/" + bvid + "/";
         }
         return "";
     }
     
+    // 字符串所在的存储区以及各字段的引用，供快照直接读写UTF-8字节
+    Utf8Arena getArena() {
+        return arena;
+    }
+
+    long getUsernameRef() {
+        return username;
+    }
+
+    long getLastVideoTitleRef() {
+        return lastVideoTitle;
+    }
+
+    long getBvidRef() {
+        return bvid;
+    }
+
     public String getSpaceUrl() {
         return "https://space.bilibili.com/" + uid;
     }
@@ -124,9 +233,9 @@ public class UserData {
     public String toString() {
         return "UserData{" +
                 "uid=" + uid +
-                ", username='" + username + '\'' +
+                ", username='" + getUsername() + '\'' +
                 ", tags=" + tags +
-                ", lastVideoTitle='" + lastVideoTitle + '\'' +
+                ", lastVideoTitle='" + getLastVideoTitle() + '\'' +
                 ", inactiveDays=" + inactiveDays +
                 "}";
     }
@@ -0,0 +1,556 @@
+package org.example;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 用户数据处理流水线
+ * 网络抓取和缓存加载共用同一组阶段：
+ *   source(抓取或读取缓存) → decode(解析视频列表) → enrich(关联用户名和分组) → index(汇总结果)
+ * 阶段之间用有界队列连接，decode和enrich可由多个工作线程并行执行。
+ * index阶段在调用线程上运行，按序号恢复顺序，有视频的用户在前、没有视频的用户在后，
+ * 设置了缓存文件时同时把原始响应流式写入缓存
+ */
+public class UserPipeline {
+    private static final int DEFAULT_QUEUE_CAPACITY = 1024; // 每个队列的容量
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final Item END = new Item(-1, 0, null); // 队列结束标记
+
+    /**
+     * 数据来源阶段：网络抓取或读取缓存，在独立线程上运行
+     */
+    public interface Source {
+        /**
+         * 产出全部数据，返回时所有数据都已交给emitter
+         * @param emitter 接收数据的下游
+         * @throws Exception 读取失败时，整个流水线随之失败
+         */
+        void produce(Emitter emitter) throws Exception;
+    }
+
+    /**
+     * 接收来源阶段产出的原始响应
+     */
+    public interface Emitter {
+        /**
+         * @param record 关注记录，缓存中存在但关注列表中没有的用户为null
+         * @param mid 用户ID
+         * @param json 接口返回的原始内容，解析失败时丢弃该用户
+         */
+        void emit(FollowRecord record, long mid, byte[] json) throws InterruptedException;
+
+        /**
+         * @param record 关注记录，可为null
+         * @param mid 用户ID
+         * @param node 已读入的响应内容
+         */
+        void emit(FollowRecord record, long mid, JsonNode node) throws InterruptedException;
+    }
+
+    /**
+     * 流水线中的一条数据，各阶段依次填充
+     */
+    private static final class Item {
+        final int seq; // 来源阶段产出的顺序
+        final long mid;
+        final FollowRecord record;
+        byte[] json; // 原始响应，写入缓存后释放
+        JsonNode node; // 已读入的响应
+        ArchiveSummary summary; // decode阶段的结果
+        UserData user; // enrich阶段的结果
+
+        Item(int seq, long mid, FollowRecord record) {
+            this.seq = seq;
+            this.mid = mid;
+            this.record = record;
+        }
+    }
+
+    // 单个阶段对一条数据的处理，返回false表示丢弃
+    private interface Stage {
+        boolean process(Item item) throws Exception;
+    }
+
+    private final TagDictionary tagDictionary;
+    private final InactivityHistogram histogram; // 可为null
+    private final int decodeWorkers;
+    private final int enrichWorkers;
+    private final int queueCapacity;
+    private File cacheFile; // 原始响应写入的缓存文件，可为null
+
+    public UserPipeline(TagDictionary tagDictionary, InactivityHistogram histogram) {
+        this(tagDictionary, histogram, Runtime.getRuntime().availableProcessors(), 1, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * @param tagDictionary 解析分组ID所用的字典
+     * @param histogram 每得到一个用户就累加的分布直方图，可为null
+     * @param decodeWorkers decode阶段的线程数
+     * @param enrichWorkers enrich阶段的线程数
+     * @param queueCapacity 阶段之间队列的容量
+     */
+    public UserPipeline(TagDictionary tagDictionary, InactivityHistogram histogram,
+                        int decodeWorkers, int enrichWorkers, int queueCapacity) {
+        this.tagDictionary = tagDictionary;
+        this.histogram = histogram;
+        this.decodeWorkers = Math.max(1, decodeWorkers);
+        this.enrichWorkers = Math.max(1, enrichWorkers);
+        this.queueCapacity = Math.max(1, queueCapacity);
+    }
+
+    /**
+     * 设置缓存文件，来源阶段以原始内容产出的响应会按缓存格式写入该文件。
+     * 写入先在临时文件中进行，流水线成功结束后才替换原文件
+     * @param cacheFile 缓存文件，null表示不写缓存
+     */
+    public void setCacheFile(File cacheFile) {
+        this.cacheFile = cacheFile;
+    }
+
+    /**
+     * 运行流水线
+     * @param source 数据来源
+     * @return 全部用户，有视频的在前，各自保持来源顺序
+     * @throws Exception 任一阶段失败或被中断时
+     */
+    public List<UserData> run(Source source) throws Exception {
+        BlockingQueue<Item> rawQueue = new ArrayBlockingQueue<>(queueCapacity);
+        BlockingQueue<Item> decodedQueue = new ArrayBlockingQueue<>(queueCapacity);
+        BlockingQueue<Item> enrichedQueue = new ArrayBlockingQueue<>(queueCapacity);
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        Thread indexThread = Thread.currentThread();
+        ExecutorService pool = Executors.newFixedThreadPool(1 + decodeWorkers + enrichWorkers, runnable -> {
+            Thread thread = new Thread(runnable, "user-pipeline");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        Runnable onFailure = () -> {
+            pool.shutdownNow();
+            indexThread.interrupt();
+        };
+
+        try {
+            // source阶段
+            pool.execute(() -> {
+                AtomicInteger nextSeq = new AtomicInteger();
+                try {
+                    source.produce(new Emitter() {
+                        @Override
+                        public void emit(FollowRecord record, long mid, byte[] json) throws InterruptedException {
+                            Item item = new Item(nextSeq.getAndIncrement(), mid, record);
+                            item.json = json;
+                            rawQueue.put(item);
+                        }
+
+                        @Override
+                        public void emit(FollowRecord record, long mid, JsonNode node) throws InterruptedException {
+                            Item item = new Item(nextSeq.getAndIncrement(), mid, record);
+                            item.node = node;
+                            rawQueue.put(item);
+                        }
+                    });
+                    rawQueue.put(END);
+                } catch (InterruptedException e) {
+                    // 流水线已停止
+                } catch (Exception e) {
+                    if (failure.compareAndSet(null, e)) {
+                        onFailure.run();
+                    }
+                }
+            });
+            startStage(pool, decodeWorkers, rawQueue, decodedQueue, this::decode, failure, onFailure);
+            startStage(pool, enrichWorkers, decodedQueue, enrichedQueue, this::enrich, failure, onFailure);
+
+            List<UserData> users = index(enrichedQueue, failure);
+            if (failure.get() != null) {
+                throw failure.get();
+            }
+            return users;
+        } catch (InterruptedException e) {
+            if (failure.get() != null) {
+                Thread.interrupted(); // 清除由其它阶段失败引起的中断标记
+                throw failure.get();
+            }
+            throw e;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    // 启动一个阶段的工作线程；读到结束标记的线程把标记放回输入队列让同伴也能看到，最后一个退出的线程通知下游
+    private static void startStage(ExecutorService pool, int workers, BlockingQueue<Item> in, BlockingQueue<Item> out,
+                                   Stage stage, AtomicReference<Exception> failure, Runnable onFailure) {
+        AtomicInteger running = new AtomicInteger(workers);
+        for (int i = 0; i < workers; i++) {
+            pool.execute(() -> {
+                try {
+                    while (true) {
+                        Item item = in.take();
+                        if (item == END) {
+                            in.put(END);
+                            break;
+                        }
+                        if (stage.process(item)) {
+                            out.put(item);
+                        }
+                    }
+                    if (running.decrementAndGet() == 0) {
+                        out.put(END);
+                    }
+                } catch (InterruptedException e) {
+                    // 流水线已停止
+                } catch (Exception e) {
+                    if (failure.compareAndSet(null, e)) {
+                        onFailure.run();
+                    }
+                }
+            });
+        }
+    }
+
+    // decode阶段：流式解析视频列表；原始内容不是合法JSON时丢弃该用户
+    private boolean decode(Item item) throws IOException {
+        PerfEvents.Decode event = new PerfEvents.Decode();
+        event.begin();
+        long start = System.nanoTime();
+        try {
+            item.summary = item.json != null ? ArchiveSummary.decode(item.json) : ArchiveSummary.decode(item.node);
+            item.node = null;
+            return true;
+        } catch (JsonProcessingException e) {
+            System.err.println("解析用户 " + item.mid + " 的数据时出错: " + e.getOriginalMessage());
+            return false;
+        } finally {
+            recordDecode(event, start, item.mid, item.json != null ? item.json.length : 0, item.summary);
+        }
+    }
+
+    // 记录一次解析的指标和JFR事件，summary为null表示解析失败
+    private static void recordDecode(PerfEvents.Decode event, long startNanos, long mid, long bytes, ArchiveSummary summary) {
+        Metrics metrics = Metrics.global();
+        metrics.increment(Metrics.DECODE_ENTRIES);
+        metrics.recordSince(Metrics.DECODE_LATENCY, startNanos);
+        if (summary == null) {
+            metrics.increment(Metrics.DECODE_ERRORS);
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.mid = mid;
+            event.bytes = bytes;
+            if (summary != null) {
+                event.code = summary.getCode();
+                event.hasVideos = summary.hasVideos();
+            }
+            event.commit();
+        }
+    }
+
+    // enrich阶段：关联用户名和分组，生成用户数据并累加到分布直方图
+    private boolean enrich(Item item) {
+        item.user = toUserData(item.mid, item.record, item.summary);
+        item.summary = null;
+        return true;
+    }
+
+    // 由关注记录和视频列表摘要生成用户数据，并累加到分布直方图
+    private UserData toUserData(long mid, FollowRecord record, ArchiveSummary summary) {
+        String name = record != null ? record.getName() : null;
+        List<String> tags = record != null ? tagDictionary.names(record.getTagIds()) : null;
+        UserData user = summary.hasVideos()
+                ? new UserData(mid, name, tags, summary.getTitle(), summary.getPubdate(), summary.getBvid())
+                : new UserData(mid, name, tags);
+        user.setCadence(summary.getCadence());
+        if (histogram != null) {
+            histogram.add(user);
+        }
+        return user;
+    }
+
+    // index阶段：按序号收集结果，同时把原始响应写入缓存
+    private List<UserData> index(BlockingQueue<Item> in, AtomicReference<Exception> failure) throws Exception {
+        List<UserData> bySeq = new ArrayList<>();
+        File tempFile = cacheFile != null ? new File(cacheFile.getPath() + ".tmp") : null;
+        PerfEvents.CacheWrite event = new PerfEvents.CacheWrite();
+        event.begin();
+        long start = System.nanoTime();
+        int entries = 0;
+        boolean completed = false;
+        try (Writer writer = tempFile != null ? DataExporter.openWriter(tempFile) : null;
+             JsonGenerator cache = writer != null ? JSON_FACTORY.createGenerator(writer) : null) {
+            if (cache != null) {
+                cache.useDefaultPrettyPrinter();
+                cache.writeStartArray();
+            }
+
+            Item item;
+            while ((item = in.take()) != END) {
+                while (bySeq.size() <= item.seq) {
+                    bySeq.add(null);
+                }
+                bySeq.set(item.seq, item.user);
+                if (cache != null && item.json != null) {
+                    cache.writeStartObject();
+                    cache.writeNumberField("mid", item.mid);
+                    cache.writeFieldName("user_vid");
+                    cache.writeRawValue(new String(item.json, StandardCharsets.UTF_8));
+                    cache.writeEndObject();
+                    entries++;
+                }
+                item.json = null;
+            }
+
+            if (cache != null) {
+                cache.writeEndArray();
+            }
+            completed = failure.get() == null;
+        } catch (Exception e) {
+            // 失败时删除临时文件，删除失败作为附加异常，不覆盖原来的异常
+            if (tempFile != null) {
+                try {
+                    Files.deleteIfExists(tempFile.toPath());
+                } catch (IOException cleanup) {
+                    e.addSuppressed(cleanup);
+                }
+            }
+            throw e;
+        }
+
+        if (tempFile != null) {
+            if (completed) {
+                long bytes = tempFile.length();
+                Files.move(tempFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                Metrics.global().add(Metrics.CACHE_WRITE_ENTRIES, entries);
+                Metrics.global().recordSince(Metrics.CACHE_WRITE_LATENCY, start);
+                event.end();
+                if (event.shouldCommit()) {
+                    event.path = cacheFile.getPath();
+                    event.entries = entries;
+                    event.bytes = bytes;
+                    event.commit();
+                }
+            } else {
+                // 其它阶段已失败，由调用方抛出该阶段的异常，删除失败附加在该异常上
+                try {
+                    Files.deleteIfExists(tempFile.toPath());
+                } catch (IOException cleanup) {
+                    failure.get().addSuppressed(cleanup);
+                }
+            }
+        }
+
+        return videosFirst(bySeq);
+    }
+
+    // 有视频的用户在前，没有视频的用户在后，各自保持原有顺序；跳过被丢弃的(null)
+    private static List<UserData> videosFirst(List<UserData> bySeq) {
+        List<UserData> users = new ArrayList<>(bySeq.size());
+        for (UserData user : bySeq) {
+            if (user != null && user.hasVideos()) {
+                users.add(user);
+            }
+        }
+        for (UserData user : bySeq) {
+            if (user != null && !user.hasVideos()) {
+                users.add(user);
+            }
+        }
+        return users;
+    }
+
+    /**
+     * 流式读取缓存文件的来源阶段，每个条目的user_vid读成JsonNode后交给下游
+     * @param cacheFile 缓存文件
+     * @param records 按用户ID索引的关注记录
+     * @return 来源阶段
+     */
+    public static Source cacheSource(File cacheFile, LongObjectMap<FollowRecord> records) {
+        return emitter -> {
+            ObjectMapper objectMapper = new ObjectMapper();
+            try (JsonParser parser = objectMapper.getFactory().createParser(cacheFile)) {
+                if (parser.nextToken() != JsonToken.START_ARRAY) {
+                    throw new IOException("缓存文件格式错误：应为数组");
+                }
+                while (parser.nextToken() == JsonToken.START_OBJECT) {
+                    long mid = 0;
+                    JsonNode userVid = null;
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        String field = parser.getCurrentName();
+                        parser.nextToken();
+                        if ("mid".equals(field)) {
+                            mid = parser.getValueAsLong();
+                        } else if ("user_vid".equals(field)) {
+                            userVid = objectMapper.readTree(parser);
+                        } else {
+                            parser.skipChildren();
+                        }
+                    }
+                    if (userVid != null) {
+                        emitter.emit(records.get(mid), mid, userVid);
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * 从已有的缓存文件中取出指定用户的原始响应交给下游，例如时间预算内没有抓取到的用户沿用上次的结果。
+     * 与网络抓取的响应一样按原始字节交出，因此会写入新的缓存文件
+     * @param cacheFile 已有的缓存文件，不存在时不交出任何内容
+     * @param wanted 需要的用户，按用户ID索引的关注记录
+     * @param emitter 接收数据的下游
+     * @return 交出的用户数
+     * @throws IOException 读取失败或缓存文件不是数组时
+     */
+    public static int emitCached(File cacheFile, LongObjectMap<FollowRecord> wanted, Emitter emitter)
+            throws IOException, InterruptedException {
+        if (wanted.size() == 0 || !cacheFile.isFile()) {
+            return 0;
+        }
+        int emitted = 0;
+        try (JsonParser parser = JSON_FACTORY.createParser(cacheFile)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IOException("缓存文件格式错误：应为数组");
+            }
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                long mid = 0;
+                byte[] userVid = null;
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.getCurrentName();
+                    parser.nextToken();
+                    if ("mid".equals(field)) {
+                        mid = parser.getValueAsLong();
+                    } else if ("user_vid".equals(field) && (mid == 0 || wanted.containsKey(mid))) {
+                        // 通常mid在前，不需要的用户直接跳过；mid在后时先复制，读到mid后再判断
+                        ByteArrayOutputStream bytes = new ByteArrayOutputStream(1024);
+                        try (JsonGenerator generator = JSON_FACTORY.createGenerator(bytes)) {
+                            generator.copyCurrentStructure(parser);
+                        }
+                        userVid = bytes.toByteArray();
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+                FollowRecord record = wanted.get(mid);
+                if (userVid != null && record != null) {
+                    emitter.emit(record, mid, userVid);
+                    emitted++;
+                }
+            }
+        }
+        return emitted;
+    }
+
+    /**
+     * 并行解析整个缓存文件（fork/join模式）
+     * 缓存中的条目互不相关：先扫描出每个条目在文件中的字节区间，再按条目区间递归拆分，
+     * 在ForkJoinPool中并行解析。结果写入与条目序号对应的数组位置，因此保持原有顺序。
+     * 与run相比不需要阶段间的队列交接，适合一次性加载已在本地的缓存
+     * @param cacheFile 缓存文件
+     * @param records 按用户ID索引的关注记录
+     * @param pool 执行解析的线程池
+     * @return 全部用户，有视频的在前，各自保持缓存中的顺序
+     * @throws IOException 读取失败或缓存文件不是数组时
+     */
+    public List<UserData> decodeCache(File cacheFile, LongObjectMap<FollowRecord> records, ForkJoinPool pool) throws IOException {
+        byte[] data = Files.readAllBytes(cacheFile.toPath());
+        int[] bounds = CacheScanner.scan(data);
+        UserData[] users = new UserData[bounds.length / 2];
+        pool.invoke(new DecodeTask(data, bounds, records, users, 0, users.length));
+        return videosFirst(Arrays.asList(users));
+    }
+
+    /**
+     * 解析缓存条目区间的fork/join任务，区间足够小时直接顺序解析
+     */
+    private final class DecodeTask extends RecursiveAction {
+        private static final int THRESHOLD = 256; // 小于该条目数时不再拆分
+
+        private final byte[] data;
+        private final int[] bounds;
+        private final LongObjectMap<FollowRecord> records;
+        private final UserData[] users;
+        private final int from;
+        private final int to;
+
+        DecodeTask(byte[] data, int[] bounds, LongObjectMap<FollowRecord> records, UserData[] users, int from, int to) {
+            this.data = data;
+            this.bounds = bounds;
+            this.records = records;
+            this.users = users;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= THRESHOLD) {
+                decodeRange();
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new DecodeTask(data, bounds, records, users, from, mid),
+                    new DecodeTask(data, bounds, records, users, mid, to));
+        }
+
+        private void decodeRange() {
+            for (int i = from; i < to; i++) {
+                users[i] = decodeEntry(bounds[2 * i], bounds[2 * i + 1] - bounds[2 * i]);
+            }
+        }
+
+        // 解析一个缓存条目 {"mid": ..., "user_vid": {...}}，字段顺序不限；条目无效时返回null
+        private UserData decodeEntry(int offset, int length) {
+            PerfEvents.Decode event = new PerfEvents.Decode();
+            event.begin();
+            long start = System.nanoTime();
+            long mid = 0;
+            ArchiveSummary summary = null;
+            try (JsonParser parser = JSON_FACTORY.createParser(data, offset, length)) {
+                parser.nextToken();
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.getCurrentName();
+                    if ("user_vid".equals(field)) {
+                        summary = ArchiveSummary.decode(parser);
+                    } else {
+                        parser.nextToken();
+                        if ("mid".equals(field)) {
+                            mid = parser.getValueAsLong();
+                        } else {
+                            parser.skipChildren();
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                System.err.println("解析缓存条目时出错: " + e.getMessage());
+                summary = null;
+            }
+            recordDecode(event, start, mid, length, summary);
+            return summary != null ? toUserData(mid, records.get(mid), summary) : null;
+        }
+    }
+}
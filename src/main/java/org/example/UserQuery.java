@@ -0,0 +1,90 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 用户查询条件类
+ * 描述一次组合筛选：用户名、视频标题关键字、分组组合和不活跃天数范围，各条件之间为"且"关系
+ */
+public class UserQuery {
+    /** 分组条件中表示"没有任何分组"的特殊值 */
+    public static final String NO_TAG = "无分组";
+
+    private String usernameContains = ""; // 用户名包含的关键字（已转为小写）
+    private String titleContains = ""; // 最后视频标题包含的关键字（已转为小写）
+    private List<String> requiredTags = new ArrayList<>(); // 必须同时具有的分组
+    private boolean untaggedOnly = false; // 是否只匹配没有分组的用户
+    private int minInactiveDays = Integer.MIN_VALUE; // 不活跃天数下限（含）
+    private int maxInactiveDays = Integer.MAX_VALUE; // 不活跃天数上限（含）
+
+    public String getUsernameContains() {
+        return usernameContains;
+    }
+
+    public void setUsernameContains(String keyword) {
+        this.usernameContains = normalize(keyword);
+    }
+
+    public String getTitleContains() {
+        return titleContains;
+    }
+
+    public void setTitleContains(String keyword) {
+        this.titleContains = normalize(keyword);
+    }
+
+    public List<String> getRequiredTags() {
+        return requiredTags;
+    }
+
+    public boolean isUntaggedOnly() {
+        return untaggedOnly;
+    }
+
+    /**
+     * 按逗号分隔的文本设置分组条件
+     * 例如 "游戏, 音乐" 表示同时属于这两个分组；"无分组" 表示没有任何分组的用户
+     * @param text 分组文本，支持中英文逗号
+     */
+    public void setTags(String text) {
+        requiredTags = new ArrayList<>();
+        untaggedOnly = false;
+        if (text == null) {
+            return;
+        }
+        for (String part : text.split("[,，]")) {
+            String tag = part.trim();
+            if (tag.isEmpty()) {
+                continue;
+            }
+            if (NO_TAG.equals(tag)) {
+                untaggedOnly = true;
+            } else if (!requiredTags.contains(tag)) {
+                requiredTags.add(tag);
+            }
+        }
+    }
+
+    public int getMinInactiveDays() {
+        return minInactiveDays;
+    }
+
+    public void setMinInactiveDays(int minInactiveDays) {
+        this.minInactiveDays = minInactiveDays;
+    }
+
+    public int getMaxInactiveDays() {
+        return maxInactiveDays;
+    }
+
+    public void setMaxInactiveDays(int maxInactiveDays) {
+        this.maxInactiveDays = maxInactiveDays;
+    }
+
+    // 统一转为小写并去除首尾空白，检索不区分大小写
+    static String normalize(String text) {
+        return text == null ? "" : text.trim().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,283 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+/**
+ * 用户检索索引类
+ * 在数据加载完成后一次性构建：用户名和视频标题的N-gram倒排索引、分组索引以及按不活跃天数排序的索引，
+ * 组合查询通过位图求交完成，不再逐个遍历用户列表
+ */
+public class UserSearchIndex {
+    private final UserData[] users; // 序号 -> 用户，序号即用户在加载列表中的位置
+    private final TextIndex usernameIndex;
+    private final TextIndex titleIndex;
+    private final Map<String, BitSet> tagIndex = new HashMap<>();
+    private final BitSet untagged = new BitSet();
+    private final int[] ordinalsByDays; // 按不活跃天数升序排列的用户序号
+    private final int[] sortedDays; // 与ordinalsByDays一一对应的不活跃天数
+    private UserSortKeys sortKeys; // 首次排序时创建
+
+    public UserSearchIndex(List<UserData> userList) {
+        this.users = userList.toArray(new UserData[0]);
+
+        long[] dayPairs = new long[users.length];
+        for (int i = 0; i < users.length; i++) {
+            UserData user = users[i];
+            // 高32位为天数，低32位为序号，排序后即得到按天数有序的序号列表
+            dayPairs[i] = ((long) user.getInactiveDays() << 32) | i;
+
+            if (user.hasTags()) {
+                for (String tag : user.getTags()) {
+                    tagIndex.computeIfAbsent(tag, k -> new BitSet(users.length)).set(i);
+                }
+            } else {
+                untagged.set(i);
+            }
+        }
+
+        Arrays.sort(dayPairs);
+        ordinalsByDays = new int[users.length];
+        sortedDays = new int[users.length];
+        for (int i = 0; i < dayPairs.length; i++) {
+            ordinalsByDays[i] = (int) dayPairs[i];
+            sortedDays[i] = (int) (dayPairs[i] >> 32);
+        }
+
+        // 文本按序号现取现解码，索引本身不保留String
+        usernameIndex = new TextIndex(users.length, i -> users[i].getUsername());
+        titleIndex = new TextIndex(users.length, i -> users[i].hasVideos() ? users[i].getLastVideoTitle() : null);
+    }
+
+    public int size() {
+        return users.length;
+    }
+
+    public UserData getUser(int ordinal) {
+        return users[ordinal];
+    }
+
+    // 同一份数据共享的排序键
+    public synchronized UserSortKeys getSortKeys() {
+        if (sortKeys == null) {
+            sortKeys = new UserSortKeys(users);
+        }
+        return sortKeys;
+    }
+
+    /**
+     * 执行组合查询
+     * @param query 查询条件
+     * @return 命中的用户序号位图
+     */
+    public BitSet search(UserQuery query) {
+        BitSet result = inactiveDaysRange(query.getMinInactiveDays(), query.getMaxInactiveDays());
+
+        if (query.isUntaggedOnly()) {
+            result.and(untagged);
+        }
+        for (String tag : query.getRequiredTags()) {
+            BitSet tagged = tagIndex.get(tag);
+            if (tagged == null) {
+                return new BitSet(); // 没有用户属于该分组
+            }
+            result.and(tagged);
+        }
+
+        // 文本条件放在最后，只需校验已通过其它条件的候选用户
+        if (!query.getUsernameContains().isEmpty() && !result.isEmpty()) {
+            result = usernameIndex.match(query.getUsernameContains(), result);
+        }
+        if (!query.getTitleContains().isEmpty() && !result.isEmpty()) {
+            result = titleIndex.match(query.getTitleContains(), result);
+        }
+        return result;
+    }
+
+    /**
+     * 执行组合查询并按加载顺序返回用户列表
+     * @param query 查询条件
+     * @return 命中的用户列表
+     */
+    public List<UserData> select(UserQuery query) {
+        BitSet hits = search(query);
+        List<UserData> result = new ArrayList<>(hits.cardinality());
+        for (int i = hits.nextSetBit(0); i >= 0; i = hits.nextSetBit(i + 1)) {
+            result.add(users[i]);
+        }
+        return result;
+    }
+
+    // 不活跃天数在[min, max]区间内的用户，通过二分查找定位排序索引中的区间
+    private BitSet inactiveDaysRange(int min, int max) {
+        BitSet result = new BitSet(users.length);
+        if (min > max) {
+            return result;
+        }
+        if (min == Integer.MIN_VALUE && max == Integer.MAX_VALUE) {
+            result.set(0, users.length);
+            return result;
+        }
+        int from = lowerBound(sortedDays, min);
+        int to = max == Integer.MAX_VALUE ? sortedDays.length : lowerBound(sortedDays, max + 1);
+        for (int i = from; i < to; i++) {
+            result.set(ordinalsByDays[i]);
+        }
+        return result;
+    }
+
+    // 第一个不小于key的位置
+    private static int lowerBound(int[] sorted, int key) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sorted[mid] < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * 文本倒排索引
+     * 对小写化后的文本建立单字和双字(bigram)索引，倒排表以压缩行(CSR)形式存放在int数组中；
+     * 查询时对关键字的所有bigram倒排表求交，再用原文确认子串匹配；原文只在确认时按序号取得
+     */
+    static final class TextIndex {
+        private final IntFunction<String> texts; // 序号 -> 原文，可以为null
+        private final int[] grams; // 有序的gram键
+        private final int[] offsets; // gram i 的倒排表为 postings[offsets[i], offsets[i+1])
+        private final int[] postings;
+
+        /**
+         * @param size 文本数量
+         * @param texts 序号 -> 原文，建立索引时每个序号取一次，之后只在确认匹配时调用
+         */
+        TextIndex(int size, IntFunction<String> texts) {
+            this.texts = texts;
+
+            long[] pairs = new long[64];
+            int count = 0;
+            for (int ordinal = 0; ordinal < size; ordinal++) {
+                String text = UserQuery.normalize(texts.apply(ordinal));
+                for (int i = 0; i < text.length(); i++) {
+                    if (count + 2 > pairs.length) {
+                        pairs = Arrays.copyOf(pairs, pairs.length * 2);
+                    }
+                    // 高32位为gram，低32位为序号
+                    pairs[count++] = ((long) unigram(text.charAt(i)) << 32) | ordinal;
+                    if (i + 1 < text.length() && text.charAt(i) != 0) {
+                        pairs[count++] = ((long) bigram(text.charAt(i), text.charAt(i + 1)) << 32) | ordinal;
+                    }
+                }
+            }
+            Arrays.sort(pairs, 0, count);
+
+            int[] gramBuf = new int[Math.max(1, count)];
+            int[] offsetBuf = new int[count + 1];
+            int[] postingBuf = new int[count];
+            int gramCount = 0;
+            int postingCount = 0;
+            long previous = -1;
+            for (int i = 0; i < count; i++) {
+                long pair = pairs[i];
+                if (pair == previous) {
+                    continue; // 同一文本中重复出现的gram只记录一次
+                }
+                int gram = (int) (pair >>> 32);
+                if (gramCount == 0 || gramBuf[gramCount - 1] != gram) {
+                    gramBuf[gramCount] = gram;
+                    offsetBuf[gramCount] = postingCount;
+                    gramCount++;
+                }
+                postingBuf[postingCount++] = (int) pair;
+                previous = pair;
+            }
+            offsetBuf[gramCount] = postingCount;
+
+            this.grams = Arrays.copyOf(gramBuf, gramCount);
+            this.offsets = Arrays.copyOf(offsetBuf, gramCount + 1);
+            this.postings = Arrays.copyOf(postingBuf, postingCount);
+        }
+
+        /**
+         * 查找包含关键字的文本
+         * @param keyword 已小写化的非空关键字
+         * @param within 候选范围，只返回其中的序号
+         * @return 命中的序号位图
+         */
+        BitSet match(String keyword, BitSet within) {
+            BitSet result = new BitSet();
+            if (keyword.length() == 1) {
+                int slot = Arrays.binarySearch(grams, unigram(keyword.charAt(0)));
+                if (slot >= 0) {
+                    for (int i = offsets[slot]; i < offsets[slot + 1]; i++) {
+                        if (within.get(postings[i])) {
+                            result.set(postings[i]);
+                        }
+                    }
+                }
+                return result;
+            }
+
+            // 按倒排表长度从短到长求交，尽早缩小候选集
+            int[] slots = new int[keyword.length() - 1];
+            for (int i = 0; i < slots.length; i++) {
+                int slot = Arrays.binarySearch(grams, bigram(keyword.charAt(i), keyword.charAt(i + 1)));
+                if (slot < 0) {
+                    return result;
+                }
+                slots[i] = slot;
+            }
+            Integer[] order = new Integer[slots.length];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = slots[i];
+            }
+            Arrays.sort(order, (a, b) -> Integer.compare(offsets[a + 1] - offsets[a], offsets[b + 1] - offsets[b]));
+
+            BitSet candidates = new BitSet();
+            for (int i = offsets[order[0]]; i < offsets[order[0] + 1]; i++) {
+                if (within.get(postings[i])) {
+                    candidates.set(postings[i]);
+                }
+            }
+            for (int k = 1; k < order.length && !candidates.isEmpty(); k++) {
+                BitSet next = new BitSet();
+                for (int i = offsets[order[k]]; i < offsets[order[k] + 1]; i++) {
+                    if (candidates.get(postings[i])) {
+                        next.set(postings[i]);
+                    }
+                }
+                candidates = next;
+            }
+
+            // bigram全部命中不代表连续出现，用原文确认
+            for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+                String text = texts.apply(i);
+                if (text != null && text.toLowerCase(Locale.ROOT).contains(keyword)) {
+                    result.set(i);
+                }
+            }
+            return result;
+        }
+
+        // 单字gram：高16位为0
+        private static int unigram(char c) {
+            return c;
+        }
+
+        // 双字gram：首字符为0的组合不会出现在正常文本中，与单字gram不冲突
+        private static int bigram(char first, char second) {
+            return (first << 16) | second;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package org.example;
+
+import java.text.CollationKey;
+import java.text.Collator;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * 表格排序键类
+ * 为每一列预先计算int排序键（数值列直接取值，文本列取排序名次），
+ * 排序时把"键+序号"打包成long数组做原始类型排序，避免比较装箱后的单元格对象
+ */
+public class UserSortKeys {
+    private final UserData[] users;
+    private final int[][] keys = new int[UserTableModel.COLUMN_NAMES.length][];
+
+    public UserSortKeys(UserData[] users) {
+        this.users = users;
+    }
+
+    /**
+     * 对命中的用户按指定列排序
+     * @param hits 命中的用户序号
+     * @param column 排序列
+     * @param ascending 是否升序
+     * @return 排好序的用户序号，键相同时保持加载顺序
+     */
+    public int[] sort(BitSet hits, int column, boolean ascending) {
+        int[] key = keyFor(column);
+        long[] packed = new long[hits.cardinality()];
+        int n = 0;
+        for (int i = hits.nextSetBit(0); i >= 0; i = hits.nextSetBit(i + 1)) {
+            // 降序时对键取反，序号仍保持升序，排序结果稳定
+            int k = ascending ? key[i] : ~key[i];
+            packed[n++] = ((long) k << 32) | i;
+        }
+        Arrays.sort(packed);
+
+        int[] ordinals = new int[n];
+        for (int i = 0; i < n; i++) {
+            ordinals[i] = (int) packed[i];
+        }
+        return ordinals;
+    }
+
+    // 排序键按需计算，同一份数据只计算一次
+    private synchronized int[] keyFor(int column) {
+        if (keys[column] == null) {
+            keys[column] = computeKey(column);
+        }
+        return keys[column];
+    }
+
+    private int[] computeKey(int column) {
+        int[] key = new int[users.length];
+        switch (column) {
+            case 0: { // UID为long，取其在全部UID中的名次
+                long[] sorted = new long[users.length];
+                for (int i = 0; i < users.length; i++) {
+                    sorted[i] = users[i].getUid();
+                }
+                Arrays.sort(sorted);
+                for (int i = 0; i < users.length; i++) {
+                    key[i] = Arrays.binarySearch(sorted, users[i].getUid());
+                }
+                return key;
+            }
+            case 3: // 不活跃天数直接作为键
+                for (int i = 0; i < users.length; i++) {
+                    key[i] = users[i].getInactiveDays();
+                }
+                return key;
+            case 7: // 停更可能按千分比排序，更新规律未知的为-1，升序时排在最前
+                for (int i = 0; i < users.length; i++) {
+                    double score = users[i].getDormantScore();
+                    key[i] = score < 0 ? -1 : (int) Math.round(score * 1000);
+                }
+                return key;
+            default: { // 文本列按本地化规则排序后的名次作为键，与表格默认的字符串排序一致
+                Collator collator = Collator.getInstance();
+                CollationKey[] collationKeys = new CollationKey[users.length];
+                Integer[] order = new Integer[users.length];
+                for (int i = 0; i < users.length; i++) {
+                    Object value = UserTableModel.cellValue(users[i], column);
+                    collationKeys[i] = collator.getCollationKey(value != null ? value.toString() : "");
+                    order[i] = i;
+                }
+                Arrays.sort(order, (a, b) -> collationKeys[a].compareTo(collationKeys[b]));
+                int rank = 0;
+                for (int i = 0; i < order.length; i++) {
+                    if (i > 0 && collationKeys[order[i]].compareTo(collationKeys[order[i - 1]]) != 0) {
+                        rank = i;
+                    }
+                    key[order[i]] = rank;
+                }
+                return key;
+            }
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package org.example;
+
+import javax.swing.table.AbstractTableModel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 结果表格模型类
+ * 直接持有每一行对应的UserData对象，模型行索引即可取得用户，无需再按UID查找
+ */
+public class UserTableModel extends AbstractTableModel {
+    static final String[] COLUMN_NAMES = {"UID", "用户名", "分组", "不活跃天数", "最后更新视频", "视频链接", "空间链接", "停更可能"};
+
+    private List<UserData> rows = new ArrayList<>();
+
+    // 替换表格中的全部行，直接接管传入的列表（由后台查询新建），不再复制
+    public void setUsers(List<UserData> users) {
+        this.rows = users != null ? users : new ArrayList<>();
+        fireTableDataChanged();
+    }
+
+    // 清空表格
+    public void clear() {
+        rows = new ArrayList<>();
+        fireTableDataChanged();
+    }
+
+    /**
+     * 获取模型行对应的用户数据
+     * @param modelRow 模型行索引（视图行需先经过convertRowIndexToModel转换）
+     * @return 该行的用户数据
+     */
+    public UserData getUserAt(int modelRow) {
+        return rows.get(modelRow);
+    }
+
+    @Override
+    public int getRowCount() {
+        return rows.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMN_NAMES.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMN_NAMES[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        switch (column) {
+            case 0: // UID
+                return Long.class;
+            case 3: // 不活跃天数
+                return Integer.class;
+            default:
+                return String.class;
+        }
+    }
+
+    @Override
+    public boolean isCellEditable(int row, int column) {
+        return false; // 使表格不可编辑
+    }
+
+    @Override
+    public Object getValueAt(int rowIndex, int columnIndex) {
+        return cellValue(rows.get(rowIndex), columnIndex);
+    }
+
+    /**
+     * 获取用户在指定列显示的值
+     * @param user 用户数据
+     * @param column 列索引
+     * @return 单元格的值
+     */
+    static Object cellValue(UserData user, int column) {
+        switch (column) {
+            case 0:
+                return user.getUid();
+            case 1:
+                return user.getUsername();
+            case 2:
+                return String.join(", ", user.getTags());
+            case 3:
+                return user.getInactiveDays();
+            case 4:
+                return user.getLastVideoTitle();
+            case 5:
+                return user.getVideoUrl();
+            case 6:
+                return user.getSpaceUrl();
+            case 7:
+                return describeCadence(user);
+            default:
+                return null;
+        }
+    }
+
+    // 例如 "97%（约每12天）"，少于两个视频时为空
+    private static String describeCadence(UserData user) {
+        PostingCadence cadence = user.getCadence();
+        if (cadence == null) {
+            return "";
+        }
+        double days = cadence.getMedianGapDays();
+        return String.format(days >= 1 ? "%.0f%%（约每%.0f天）" : "%.0f%%（约每%.1f天）", user.getDormantScore() * 100, days);
+    }
+}
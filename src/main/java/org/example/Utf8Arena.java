@@ -0,0 +1,173 @@
+package org.example;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * UTF-8字符串存储区
+ * 用户名、视频标题和BV号以UTF-8字节的形式连续存放在共享的字节块中，每个字符串只占一个long引用，
+ * 省去每个String对象及其字节数组各自的对象头；只有在表格单元格渲染或导出时才解码成String。
+ *
+ * 只能追加不能删除，数据集被替换后整个存储区随引用它的用户数据一起被回收。
+ * 引用的高24位为块序号，中间20位为块内偏移，低20位为字节长度；空字符串不占用块，引用固定为EMPTY
+ */
+public class Utf8Arena {
+    public static final long NULL = -1L; // 表示null字符串的引用
+    public static final long EMPTY = 0L; // 空字符串的引用，长度为0，不指向任何块
+    private static final int OFFSET_BITS = 20;
+    private static final int LENGTH_BITS = 20;
+    private static final int MAX_CHUNK_SIZE = 1 << OFFSET_BITS; // 单个块最大1MB
+    private static final int MIN_CHUNK_SIZE = 64 * 1024; // 首个块64KB，之后逐块翻倍
+    private static final int MAX_LENGTH = (1 << LENGTH_BITS) - 1;
+    private static final int MAX_CHUNKS = 1 << 23; // 引用为非负数，NULL不会与正常引用冲突
+
+    private static volatile Utf8Arena shared = new Utf8Arena();
+
+    private volatile byte[][] chunks = new byte[0][]; // 只在加锁时替换，读取时无需加锁
+    private byte[] current; // 正在写入的块
+    private int position; // current中已使用的字节数
+    private long size; // 已存放的字节总数
+
+    /**
+     * 当前数据集使用的存储区
+     */
+    public static Utf8Arena shared() {
+        return shared;
+    }
+
+    /**
+     * 换用新的共享存储区，在加载新的数据集之前调用；
+     * 旧的用户数据仍引用原来的存储区，不再使用后一起被回收
+     */
+    public static void renewShared() {
+        shared = new Utf8Arena();
+    }
+
+    /**
+     * 存放一个字符串
+     * @param value 字符串，可以为null
+     * @return 字符串的引用
+     */
+    public long add(String value) {
+        if (value == null) {
+            return NULL;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        return add(bytes, 0, bytes.length);
+    }
+
+    /**
+     * 存放UTF-8字节，不做解码
+     * @return 字符串的引用
+     * @throws IllegalArgumentException 超过1MB时
+     */
+    public synchronized long add(byte[] bytes, int offset, int length) {
+        if (length == 0) {
+            return EMPTY; // 块刚好写满时偏移会溢出到块序号，空字符串不预留空间
+        }
+        int start = reserve(length);
+        System.arraycopy(bytes, offset, current, start, length);
+        return reference(start, length);
+    }
+
+    /**
+     * 从缓冲区当前位置读取length个UTF-8字节并存放，缓冲区位置随之前移
+     * @return 字符串的引用
+     * @throws IllegalArgumentException 超过1MB时
+     */
+    public synchronized long add(ByteBuffer buffer, int length) {
+        if (length == 0) {
+            return EMPTY;
+        }
+        int start = reserve(length);
+        buffer.get(current, start, length);
+        return reference(start, length);
+    }
+
+    // 在当前块中预留length个字节，空间不足时换一个新块
+    private int reserve(int length) {
+        if (length > MAX_LENGTH) {
+            throw new IllegalArgumentException("字符串过长: " + length + "字节");
+        }
+        if (current == null || current.length - position < length) {
+            if (chunks.length == MAX_CHUNKS) {
+                throw new IllegalStateException("字符串存储区已满");
+            }
+            int chunkSize = current == null ? MIN_CHUNK_SIZE : Math.min(current.length * 2, MAX_CHUNK_SIZE);
+            current = new byte[Math.max(chunkSize, length)];
+            position = 0;
+            byte[][] grown = Arrays.copyOf(chunks, chunks.length + 1);
+            grown[grown.length - 1] = current;
+            chunks = grown;
+        }
+        int start = position;
+        position += length;
+        size += length;
+        return start;
+    }
+
+    private long reference(int start, int length) {
+        return ((long) (chunks.length - 1) << (OFFSET_BITS + LENGTH_BITS))
+                | ((long) start << LENGTH_BITS)
+                | length;
+    }
+
+    /**
+     * 解码成String
+     * @param reference add返回的引用
+     * @return 字符串，引用为NULL时返回null
+     */
+    public String get(long reference) {
+        if (reference == NULL) {
+            return null;
+        }
+        int length = length(reference);
+        if (length == 0) {
+            return "";
+        }
+        return new String(chunk(reference), offset(reference), length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 把UTF-8字节原样写出，不经过String
+     * @param reference add返回的引用，NULL和空字符串不写任何内容
+     */
+    public void writeTo(long reference, OutputStream out) throws IOException {
+        if (length(reference) > 0) {
+            out.write(chunk(reference), offset(reference), length(reference));
+        }
+    }
+
+    /**
+     * UTF-8字节长度
+     * @return 引用为NULL时为0
+     */
+    public static int length(long reference) {
+        return reference == NULL ? 0 : (int) (reference & MAX_LENGTH);
+    }
+
+    private static int offset(long reference) {
+        return (int) ((reference >>> LENGTH_BITS) & (MAX_CHUNK_SIZE - 1));
+    }
+
+    private byte[] chunk(long reference) {
+        return chunks[(int) (reference >>> (OFFSET_BITS + LENGTH_BITS))];
+    }
+
+    // 已存放的字节数
+    public synchronized long size() {
+        return size;
+    }
+
+    // 已分配的字节数，包括各块末尾未使用的部分
+    public long capacity() {
+        long capacity = 0;
+        for (byte[] chunk : chunks) {
+            capacity += chunk.length;
+        }
+        return capacity;
+    }
+}
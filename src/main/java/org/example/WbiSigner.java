@@ -0,0 +1,147 @@
+package org.example;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.util.EntityUtils;
+
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * WBI签名
+ * /x/space/wbi/ 下的接口要求在参数中附带wts(时间戳)和w_rid(签名)：
+ *   1. 从 /x/web-interface/nav 的 wbi_img 中取出img_key和sub_key(图片文件名)，未登录时同样返回
+ *   2. 两者拼接后按固定的置换表重排，取前32个字符作为mixin_key
+ *   3. 参数加上wts后按名称排序，值中去掉 !'()* 后URL编码拼成查询串，w_rid = md5(查询串 + mixin_key)
+ * 密钥每天更换，这里缓存一段时间，签名被拒绝时由调用方调用invalidate重新获取
+ */
+public class WbiSigner {
+    private static final int[] MIXIN_KEY_ENC_TAB = {
+            46, 47, 18, 2, 53, 8, 23, 32, 15, 50, 10, 31, 58, 3, 45, 35, 27, 43, 5, 49,
+            33, 9, 42, 19, 29, 28, 14, 39, 12, 38, 41, 13, 37, 48, 7, 16, 24, 55, 40,
+            61, 26, 17, 0, 1, 60, 51, 30, 4, 22, 25, 54, 21, 56, 59, 6, 63, 57, 62, 11,
+            36, 20, 34, 44, 52
+    };
+    private static final long KEY_TTL_MILLIS = TimeUnit.HOURS.toMillis(6); // 密钥的缓存时间
+    private static final int TIMEOUT_MILLIS = 5000;
+
+    private final CloseableHttpClient httpClient;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private String mixinKey;
+    private long fetchedAt;
+
+    /**
+     * @param httpClient 获取密钥使用的HTTP客户端，由调用方关闭
+     */
+    public WbiSigner(CloseableHttpClient httpClient) {
+        this.httpClient = httpClient;
+    }
+
+    /**
+     * 为参数签名
+     * @param params 请求参数，不含wts和w_rid
+     * @return 带wts和w_rid的查询串
+     * @throws IOException 获取密钥失败时
+     */
+    public String sign(Map<String, String> params) throws IOException {
+        return sign(params, mixinKey(), System.currentTimeMillis() / 1000);
+    }
+
+    // 丢弃缓存的密钥，下次签名时重新获取
+    public synchronized void invalidate() {
+        mixinKey = null;
+    }
+
+    private synchronized String mixinKey() throws IOException {
+        if (mixinKey == null || System.currentTimeMillis() - fetchedAt > KEY_TTL_MILLIS) {
+            HttpGet request = new HttpGet(BilibiliApi.baseUrl() + "/x/web-interface/nav");
+            BilibiliApi.prepare(request, TIMEOUT_MILLIS);
+            JsonNode wbiImg;
+            try (CloseableHttpResponse response = httpClient.execute(request)) {
+                if (response.getEntity() == null) {
+                    throw new IOException("获取WBI密钥失败: 没有响应内容");
+                }
+                wbiImg = objectMapper.readTree(EntityUtils.toByteArray(response.getEntity())).path("data").path("wbi_img");
+            }
+            String imgKey = keyFromUrl(wbiImg.path("img_url").asText(""));
+            String subKey = keyFromUrl(wbiImg.path("sub_url").asText(""));
+            if (imgKey.isEmpty() || subKey.isEmpty()) {
+                throw new IOException("获取WBI密钥失败: 响应中没有wbi_img");
+            }
+            mixinKey = mixinKey(imgKey, subKey);
+            fetchedAt = System.currentTimeMillis();
+        }
+        return mixinKey;
+    }
+
+    // 图片地址的文件名(不含扩展名)就是密钥
+    private static String keyFromUrl(String url) {
+        String name = url.substring(url.lastIndexOf('/') + 1);
+        int dot = name.indexOf('.');
+        return dot >= 0 ? name.substring(0, dot) : name;
+    }
+
+    /**
+     * 按置换表从img_key和sub_key得到mixin_key
+     */
+    static String mixinKey(String imgKey, String subKey) {
+        String raw = imgKey + subKey;
+        StringBuilder key = new StringBuilder(32);
+        for (int index : MIXIN_KEY_ENC_TAB) {
+            if (index < raw.length()) {
+                key.append(raw.charAt(index));
+            }
+            if (key.length() == 32) {
+                break;
+            }
+        }
+        return key.toString();
+    }
+
+    /**
+     * 计算签名，测试用的LocalApiStub校验签名时也使用
+     * @param params 请求参数，不含wts和w_rid
+     * @param mixinKey mixin_key
+     * @param wts 时间戳(秒)
+     * @return 带wts和w_rid的查询串
+     */
+    static String sign(Map<String, String> params, String mixinKey, long wts) {
+        Map<String, String> sorted = new TreeMap<>(params);
+        sorted.put("wts", Long.toString(wts));
+        StringBuilder query = new StringBuilder();
+        for (Map.Entry<String, String> param : sorted.entrySet()) {
+            if (query.length() > 0) {
+                query.append('&');
+            }
+            query.append(encode(param.getKey())).append('=').append(encode(param.getValue().replaceAll("[!'()*]", "")));
+        }
+        return query + "&w_rid=" + md5(query + mixinKey);
+    }
+
+    // 与JavaScript的encodeURIComponent一致：空格为%20，~不编码
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8).replace("+", "%20").replace("%7E", "~");
+    }
+
+    private static String md5(String text) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(text.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(32);
+            for (byte b : digest) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5不可用", e);
+        }
+    }
+}
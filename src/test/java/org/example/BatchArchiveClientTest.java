@@ -0,0 +1,144 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 批量视频列表客户端测试
+ * 对照本地桩服务比较逐个请求和批量请求的请求数，以及批量响应的拆分
+ */
+class BatchArchiveClientTest {
+    private static final int USERS = 100;
+
+    @RegisterExtension
+    final LocalApiStubExtension api = new LocalApiStubExtension();
+
+    @Test
+    void batchSourceNeedsOneRequestPerGroup() throws IOException {
+        LongObjectMap<byte[]> single = fetchAll(new ArchiveClient());
+        LongObjectMap<byte[]> batched = fetchAll(new BatchArchiveClient(BatchArchiveClient.MAX_BATCH_SIZE));
+
+        assertEquals(USERS, api.stub().getRequestCount("/x/series/recArchivesByKeywords"));
+        assertEquals(USERS / BatchArchiveClient.MAX_BATCH_SIZE, api.stub().getRequestCount("/x/series/recArchivesBatch"));
+        assertEquals(USERS, batched.size());
+        // 拆分后的内容与逐个请求的结果解码一致
+        for (long mid = 1; mid <= USERS; mid++) {
+            ArchiveSummary expected = ArchiveSummary.decode(single.get(mid));
+            ArchiveSummary actual = ArchiveSummary.decode(batched.get(mid));
+            assertEquals(expected.hasVideos(), actual.hasVideos(), "mid " + mid);
+            assertEquals(expected.getTitle(), actual.getTitle(), "mid " + mid);
+            assertEquals(expected.getBvid(), actual.getBvid(), "mid " + mid);
+            if (expected.getCadence() != null) {
+                // 桩服务的发布时间随当前时间变化，比较相邻视频的间隔
+                assertArrayEquals(expected.getCadence().getGaps(), actual.getCadence().getGaps(), "mid " + mid);
+            }
+        }
+    }
+
+    @Test
+    void smallerBatchSizeSendsMoreRequests() throws IOException {
+        try (BatchArchiveClient client = new BatchArchiveClient(20)) {
+            long[] mids = new long[20];
+            for (int from = 1; from <= USERS; from += mids.length) {
+                for (int i = 0; i < mids.length; i++) {
+                    mids[i] = from + i;
+                }
+                client.fetch(mids);
+            }
+            assertEquals(USERS / 20, client.getRequestCount());
+        }
+        assertEquals(USERS / 20, api.stub().getRequestCount("/x/series/recArchivesBatch"));
+    }
+
+    @Test
+    void fetchRejectsMoreUsersThanBatchSize() throws IOException {
+        try (BatchArchiveClient client = new BatchArchiveClient(2)) {
+            assertThrows(IllegalArgumentException.class, () -> client.fetch(new long[]{1, 2, 3}));
+            assertEquals(0, client.getRequestCount());
+        }
+    }
+
+    @Test
+    void splitKeepsPerItemCodes() throws IOException {
+        byte[] body = bytes("{\"code\":0,\"data\":{\"items\":["
+                + "{\"mid\":1,\"archives\":[{\"title\":\"a\",\"pubdate\":100,\"bvid\":\"BV1\"},{\"pubdate\":50}]},"
+                + "{\"mid\":2,\"code\":-412},"
+                + "{\"archives\":[],\"mid\":3}]}}");
+        LongObjectMap<byte[]> bodies = new LongObjectMap<>();
+        BatchArchiveClient.split(body, new long[]{1, 2, 3, 4}, bodies);
+
+        assertEquals(3, bodies.size());
+        ArchiveSummary first = ArchiveSummary.decode(bodies.get(1));
+        assertEquals(0, first.getCode());
+        assertTrue(first.hasVideos());
+        assertEquals("a", first.getTitle());
+        assertEquals(100, first.getPubdate());
+        assertEquals("BV1", first.getBvid());
+        assertArrayEquals(new int[]{50}, first.getCadence().getGaps());
+
+        ArchiveSummary throttled = ArchiveSummary.decode(bodies.get(2));
+        assertEquals(-412, throttled.getCode());
+        assertTrue(ArchiveSummary.isThrottled(bodies.get(2)));
+
+        ArchiveSummary empty = ArchiveSummary.decode(bodies.get(3));
+        assertEquals(0, empty.getCode());
+        assertFalse(empty.hasVideos());
+
+        // 响应中没有的用户不出现在结果中，由调用方记为请求失败
+        assertNull(bodies.get(4));
+    }
+
+    @Test
+    void splitGivesWholeResponseErrorToEveryUser() throws IOException {
+        byte[] body = bytes("{\"code\":-412,\"message\":\"请求被拦截\",\"data\":{\"items\":[{\"mid\":1,\"archives\":[]}]}}");
+        LongObjectMap<byte[]> bodies = new LongObjectMap<>();
+        long[] mids = {1, 2, 3};
+        BatchArchiveClient.split(body, mids, bodies);
+
+        assertEquals(mids.length, bodies.size());
+        for (long mid : mids) {
+            assertSame(body, bodies.get(mid));
+            assertEquals(-412, ArchiveSummary.decode(bodies.get(mid)).getCode());
+        }
+    }
+
+    @Test
+    void splitRejectsNonObjectResponse() {
+        assertThrows(IOException.class, () -> BatchArchiveClient.split(bytes("[1,2]"), new long[]{1}, new LongObjectMap<>()));
+    }
+
+    // 按数据来源的批量大小分组请求1到USERS
+    private static LongObjectMap<byte[]> fetchAll(ActivitySource source) throws IOException {
+        LongObjectMap<byte[]> bodies = new LongObjectMap<>(USERS);
+        try (source) {
+            int groupSize = source.getBatchSize();
+            for (int from = 1; from <= USERS; from += groupSize) {
+                long[] mids = new long[Math.min(groupSize, USERS - from + 1)];
+                for (int i = 0; i < mids.length; i++) {
+                    mids[i] = from + i;
+                }
+                LongObjectMap<byte[]> loaded = source.fetch(mids);
+                for (long mid : mids) {
+                    bodies.put(mid, loaded.get(mid));
+                }
+            }
+            assertEquals((USERS + groupSize - 1) / groupSize, source.getRequestCount());
+        }
+        return bodies;
+    }
+
+    private static byte[] bytes(String json) {
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+}
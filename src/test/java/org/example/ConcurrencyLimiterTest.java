@@ -0,0 +1,41 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 并发限制器测试
+ * 等待请求间隔时被中断，占用的名额要归还
+ */
+class ConcurrencyLimiterTest {
+
+    @Test
+    void interruptedWhileWaitingForRateCapReleasesSlot() throws Exception {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(4, 60); // 两个请求之间至少间隔60秒
+        long start = limiter.acquire(1000);
+        assertTrue(start >= 0);
+
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread waiting = new Thread(() -> {
+            try {
+                limiter.acquire(1000);
+            } catch (Throwable e) {
+                failure.set(e);
+            }
+        });
+        waiting.start();
+        Thread.sleep(200); // 等它占用名额后进入请求间隔的等待
+        waiting.interrupt();
+        waiting.join(5000);
+        assertInstanceOf(InterruptedException.class, failure.get());
+
+        limiter.release(start, ConcurrencyLimiter.Outcome.SUCCESS);
+        assertTimeoutPreemptively(Duration.ofSeconds(5), limiter::awaitIdle);
+    }
+}
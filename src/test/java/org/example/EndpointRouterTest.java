@@ -0,0 +1,71 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 多接口路由测试
+ * 对照本地桩服务验证请求在接口间的分配、单个接口被限流时的接替，以及冷却中的接口不再接收请求
+ */
+class EndpointRouterTest {
+    private static final String KEYWORDS = "/x/series/recArchivesByKeywords";
+    private static final String SPACE = "/x/space/wbi/arc/search";
+    private static final int USERS = 40;
+
+    @RegisterExtension
+    final LocalApiStubExtension api = new LocalApiStubExtension();
+
+    @Test
+    void spreadsRequestsAcrossEndpoints() throws IOException {
+        try (EndpointRouter router = EndpointRouter.parse("keywords,space")) {
+            for (long mid = 1; mid <= USERS; mid++) {
+                byte[] body = router.fetch(new long[]{mid}).get(mid);
+                assertTrue(ArchiveSummary.isUsable(body), "mid " + mid);
+            }
+            assertEquals(USERS, router.getRequestCount());
+        }
+        // 都没有速率限制时轮流分配
+        assertEquals(USERS / 2, api.stub().getRequestCount(KEYWORDS));
+        assertEquals(USERS / 2, api.stub().getRequestCount(SPACE));
+    }
+
+    @Test
+    void failsOverWhenOneEndpointIsBlocked() throws IOException {
+        api.stub().setBlocked(KEYWORDS, true);
+        try (EndpointRouter router = EndpointRouter.parse("keywords,space")) {
+            for (long mid = 1; mid <= USERS; mid++) {
+                byte[] body = router.fetch(new long[]{mid}).get(mid);
+                assertTrue(ArchiveSummary.isUsable(body), "mid " + mid);
+            }
+            assertTrue(router.toString().contains("冷却中"), router.toString());
+        }
+        // 被限流一次后进入冷却，其余请求都交给space
+        assertEquals(1, api.stub().getRequestCount(KEYWORDS));
+        assertEquals(USERS, api.stub().getRequestCount(SPACE));
+    }
+
+    @Test
+    void doesNotDispatchToCoolingEndpoints() throws IOException {
+        api.stub().setBlocked(KEYWORDS, true);
+        api.stub().setBlocked(SPACE, true);
+        try (EndpointRouter router = EndpointRouter.parse("keywords,space")) {
+            long deadline = System.currentTimeMillis() + 300;
+            router.setDeadline(deadline);
+
+            // 所有接口都被限流时返回限流响应，由调用方记为失败
+            byte[] body = router.fetch(new long[]{1}).get(1);
+            assertTrue(ArchiveSummary.isThrottled(body));
+
+            // 都在冷却中时等到截止时间，不再发出请求
+            assertEquals(0, router.fetch(new long[]{2}).size());
+            assertTrue(System.currentTimeMillis() >= deadline);
+        }
+        assertEquals(1, api.stub().getRequestCount(KEYWORDS));
+        assertEquals(1, api.stub().getRequestCount(SPACE));
+    }
+}
@@ -0,0 +1,105 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 关注列表获取测试
+ * 对照本地桩服务验证分页、总数回调、分组名称解析和被限流时的退避重试
+ */
+class FollowListIngestorTest {
+    private static final String FOLLOWINGS = "/x/relation/followings";
+    private static final int FOLLOWINGS_COUNT = 230; // 5页，最后一页30个
+    private static final int TAGS = 4;
+
+    @RegisterExtension
+    final LocalApiStubExtension api = new LocalApiStubExtension();
+
+    @Test
+    void readsEveryPageAndReportsTotal() throws Exception {
+        api.stub().setFollowings(FOLLOWINGS_COUNT, TAGS);
+        FollowListIngestor ingestor = new FollowListIngestor(api.stub().getBaseUrl(), 1, "", 3, 100);
+        RecordingSink sink = new RecordingSink(ingestor.getTagDictionary());
+        ingestor.read(sink);
+
+        assertEquals(FOLLOWINGS_COUNT, sink.total.get());
+        assertEquals(FOLLOWINGS_COUNT, sink.records.size());
+        Set<Long> mids = new HashSet<>();
+        for (FollowRecord record : sink.records) {
+            mids.add(record.getMid());
+        }
+        assertEquals(FOLLOWINGS_COUNT, mids.size());
+        assertTrue(mids.contains(1L) && mids.contains((long) FOLLOWINGS_COUNT));
+        assertEquals(5, api.stub().getRequestCount(FOLLOWINGS));
+    }
+
+    @Test
+    void tagNamesAreKnownBeforeFirstRecord() throws Exception {
+        api.stub().setFollowings(FOLLOWINGS_COUNT, TAGS);
+        api.stub().setTagsLatency(300); // 分组列表比第一页晚返回
+        FollowListIngestor ingestor = new FollowListIngestor(api.stub().getBaseUrl(), 1, "", 3, 100);
+        RecordingSink sink = new RecordingSink(ingestor.getTagDictionary());
+        ingestor.read(sink);
+
+        int tagged = 0;
+        for (int i = 0; i < sink.records.size(); i++) {
+            FollowRecord record = sink.records.get(i);
+            if (record.getMid() % 3 == 0) {
+                assertEquals(0, record.getTagIds().length, "mid " + record.getMid());
+                continue;
+            }
+            // 桩服务中mid的分组为 mid%分组数+1，名称为"分组"+字母+ID
+            int tagId = (int) (record.getMid() % TAGS + 1);
+            assertEquals(List.of("分组" + (char) ('A' + tagId - 1) + tagId), sink.tagNames.get(i), "mid " + record.getMid());
+            tagged++;
+        }
+        assertTrue(tagged > 0);
+    }
+
+    @Test
+    void throttledPageIsRetriedAfterBackoff() throws Exception {
+        api.stub().setFollowings(FOLLOWINGS_COUNT, TAGS);
+        api.stub().setThrottleEvery(4); // 第4个关注列表请求返回-412
+        FollowListIngestor ingestor = new FollowListIngestor(api.stub().getBaseUrl(), 1, "", 1, 100);
+        RecordingSink sink = new RecordingSink(ingestor.getTagDictionary());
+        long start = System.currentTimeMillis();
+        ingestor.read(sink);
+
+        assertEquals(FOLLOWINGS_COUNT, sink.records.size());
+        // 5页加1次重试；第一次重试前至少暂停2秒
+        assertEquals(6, api.stub().getRequestCount(FOLLOWINGS));
+        assertTrue(System.currentTimeMillis() - start >= 2000);
+    }
+
+    // 记录交付的记录，以及交付时分组ID对应的名称
+    private static final class RecordingSink implements FollowSource.Sink {
+        final TagDictionary tagDictionary;
+        final AtomicInteger total = new AtomicInteger(-1);
+        final List<FollowRecord> records = new ArrayList<>();
+        final List<List<String>> tagNames = new ArrayList<>();
+
+        RecordingSink(TagDictionary tagDictionary) {
+            this.tagDictionary = tagDictionary;
+        }
+
+        @Override
+        public void onTotal(int total) {
+            this.total.set(total);
+        }
+
+        @Override
+        public synchronized void accept(FollowRecord record) {
+            records.add(record);
+            tagNames.add(tagDictionary.names(record.getTagIds()));
+        }
+    }
+}
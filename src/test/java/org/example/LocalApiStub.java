@@ -0,0 +1,489 @@
+package org.example;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 本地API桩服务
+ * 在本机模拟B站接口，用于在不访问真实服务的情况下验证批量操作的限速、重试等行为。
+ * 启动后以 -Dbilibili.api.base=http://127.0.0.1:端口 运行主程序即可让所有请求发往桩服务。
+ * 位于测试代码中，不随 -Pdist 打包；单独启动时先 mvn test-compile，再把 target/test-classes 加入classpath运行main。
+ *
+ * 已模拟的接口：
+ *   POST /x/relation/modify  取消关注，校验csrf，可配置每N个请求返回一次限流(-412)
+ *   GET  /x/relation/followings  分页关注列表，内容由setFollowings生成
+ *   GET  /x/relation/tags  关注分组列表
+ *   GET  /x/series/recArchivesByKeywords  用户视频列表，按mid确定性地生成，约十分之一的用户没有视频
+ *   GET  /x/series/recArchivesBatch  批量视频列表(mids=1,2,3，最多50个)，内容与逐个请求相同，供BatchArchiveClient使用
+ *   GET  /x/web-interface/nav  只返回WBI签名用的wbi_img(未登录)
+ *   GET  /x/space/wbi/arc/search  空间投稿列表，校验WBI签名(失败返回-403)，视频与recArchivesByKeywords相同，供SpaceArchiveClient使用
+ * 视频列表接口可按setLoadModel模拟处理时间随并发增加和超过并发上限时的限流，每个接口分别计算并发；
+ * setBlocked可让某个接口持续返回限流，用于验证多接口切换；setWbiKeys模拟WBI密钥轮换；
+ * setClientRateLimit按出口(X-Forwarded-For请求头，没有时为来源地址)限制每秒请求数，配合LocalForwardProxy验证代理池
+ */
+public class LocalApiStub implements Closeable {
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final Map<String, AtomicInteger> requestCounts = new ConcurrentHashMap<>();
+    private final Set<Long> unfollowed = ConcurrentHashMap.newKeySet();
+    private volatile int throttleEvery = 0; // 每N个请求返回一次限流，0表示不限流
+    private volatile int followingCount = 0; // 模拟的关注数量
+    private volatile int tagCount = 0; // 模拟的分组数量
+    private final Map<String, AtomicInteger> activeRequests = new ConcurrentHashMap<>(); // 各视频列表接口正在处理的请求
+    private final Set<String> blocked = ConcurrentHashMap.newKeySet(); // 持续返回限流的接口
+    private final Map<String, long[]> clientWindows = new HashMap<>(); // 各出口当前一秒的{秒数, 请求数}
+    private volatile int clientRateLimit = 0; // 每个出口每秒最多的视频列表请求，0表示不限
+    private volatile int latencyMillis = 0; // 视频列表请求的处理时间
+    private volatile int capacity = 1; // 超过该并发数后处理时间按比例增加
+    private volatile int maxConcurrent = 0; // 超过该并发数时返回限流，0表示不限
+    private volatile int tagsLatencyMillis = 0; // 分组列表的处理时间
+    // WBI密钥，取自公开文档中的示例
+    static final String WBI_IMG_KEY = "7cd084941338484aae1ad9425b84077c";
+    static final String WBI_SUB_KEY = "4932caff0ff746eab6f01bf08b70ac45";
+    private volatile String wbiImgKey = WBI_IMG_KEY;
+    private volatile String wbiSubKey = WBI_SUB_KEY;
+    private static final long WBI_MAX_SKEW_SECONDS = 600; // 签名时间戳与当前时间的最大差距
+    private static final int ARCHIVES_PER_USER = 5; // 有视频的用户的视频数
+
+    /**
+     * @param port 监听端口，0表示随机选择空闲端口
+     * @throws IOException 端口不可用时
+     */
+    public LocalApiStub(int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+        server.setExecutor(executor);
+        server.createContext("/x/relation/modify", this::handleRelationModify);
+        server.createContext("/x/relation/followings", this::handleFollowings);
+        server.createContext("/x/relation/tags", this::handleTags);
+        server.createContext("/x/series/recArchivesByKeywords", this::handleRecArchives);
+        server.createContext("/x/series/recArchivesBatch", this::handleRecArchivesBatch);
+        server.createContext("/x/web-interface/nav", this::handleNav);
+        server.createContext("/x/space/wbi/arc/search", this::handleSpaceArcSearch);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    // 桩服务地址，可直接作为API地址使用
+    public String getBaseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    // 设置每N个请求返回一次限流响应，用于验证重试逻辑
+    public void setThrottleEvery(int throttleEvery) {
+        this.throttleEvery = Math.max(0, throttleEvery);
+    }
+
+    /**
+     * 模拟视频列表接口的服务端负载，用于验证自适应并发：
+     * 同时处理的请求不超过capacity时每个请求耗时latencyMillis，超过后按倍数变慢，超过maxConcurrent时返回限流(-412)
+     * @param latencyMillis 单个请求的处理时间，0表示立即返回
+     * @param capacity 不变慢的最大并发数
+     * @param maxConcurrent 触发限流的并发数，0表示不限流
+     */
+    public void setLoadModel(int latencyMillis, int capacity, int maxConcurrent) {
+        this.latencyMillis = Math.max(0, latencyMillis);
+        this.capacity = Math.max(1, capacity);
+        this.maxConcurrent = Math.max(0, maxConcurrent);
+    }
+
+    /**
+     * 让指定接口持续返回限流(-412)，模拟某个接口单独被风控
+     * @param path 接口路径，例如 /x/series/recArchivesByKeywords
+     * @param blocked 是否返回限流
+     */
+    public void setBlocked(String path, boolean blocked) {
+        if (blocked) {
+            this.blocked.add(path);
+        } else {
+            this.blocked.remove(path);
+        }
+    }
+
+    /**
+     * 按出口限制视频列表接口的请求速率，超过时返回限流(-412)，模拟按IP计算的风控
+     * @param requestsPerSecond 每个出口每秒最多的请求数，0表示不限
+     */
+    public void setClientRateLimit(int requestsPerSecond) {
+        this.clientRateLimit = Math.max(0, requestsPerSecond);
+    }
+
+    /**
+     * 设置模拟的关注列表：mid为1到count，每三个用户中有一个不在任何分组
+     * @param count 关注数量
+     * @param tagCount 分组数量，分组ID为1到tagCount
+     */
+    public void setFollowings(int count, int tagCount) {
+        this.followingCount = Math.max(0, count);
+        this.tagCount = Math.max(0, tagCount);
+    }
+
+    /**
+     * 更换WBI密钥，模拟B站定期轮换密钥：之后用旧密钥计算的签名返回-403，nav返回新密钥
+     * @param imgKey wbi_img中img_url的文件名
+     * @param subKey wbi_img中sub_url的文件名
+     */
+    public void setWbiKeys(String imgKey, String subKey) {
+        this.wbiImgKey = imgKey;
+        this.wbiSubKey = subKey;
+    }
+
+    // 设置分组列表接口的处理时间，用于验证分组名称到齐之前不交付关注记录
+    public void setTagsLatency(int latencyMillis) {
+        this.tagsLatencyMillis = Math.max(0, latencyMillis);
+    }
+
+    // 指定接口收到的请求数
+    public int getRequestCount(String path) {
+        AtomicInteger count = requestCounts.get(path);
+        return count != null ? count.get() : 0;
+    }
+
+    // 已通过桩服务取消关注的用户
+    public Set<Long> getUnfollowed() {
+        return unfollowed;
+    }
+
+    private void handleRelationModify(HttpExchange exchange) throws IOException {
+        int count = countRequest(exchange);
+        if (isThrottled(count)) {
+            respond(exchange, "{\"code\":-412,\"message\":\"请求被拦截\"}");
+            return;
+        }
+        Map<String, String> form = parseQuery(readBody(exchange));
+        String cookie = exchange.getRequestHeaders().getFirst("cookie");
+        String csrf = BilibiliApi.cookieValue(cookie, "bili_jct");
+        if (csrf.isEmpty() || !csrf.equals(form.get("csrf"))) {
+            respond(exchange, "{\"code\":-111,\"message\":\"csrf校验失败\"}");
+            return;
+        }
+        if (!"2".equals(form.get("act"))) {
+            respond(exchange, "{\"code\":-400,\"message\":\"桩服务只支持取消关注\"}");
+            return;
+        }
+        try {
+            unfollowed.add(Long.parseLong(form.get("fid")));
+        } catch (NumberFormatException e) {
+            respond(exchange, "{\"code\":-400,\"message\":\"请求错误\"}");
+            return;
+        }
+        respond(exchange, "{\"code\":0,\"message\":\"0\",\"ttl\":1}");
+    }
+
+    private void handleFollowings(HttpExchange exchange) throws IOException {
+        int count = countRequest(exchange);
+        if (isThrottled(count)) {
+            respond(exchange, "{\"code\":-412,\"message\":\"请求被拦截\"}");
+            return;
+        }
+        Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+        int pn = parseInt(query.get("pn"), 1);
+        int ps = parseInt(query.get("ps"), 50);
+        int total = followingCount;
+        int tags = tagCount;
+
+        StringBuilder json = new StringBuilder("{\"code\":0,\"message\":\"0\",\"ttl\":1,\"data\":{\"list\":[");
+        int from = Math.max(0, (pn - 1) * ps);
+        int to = Math.min(total, from + ps);
+        for (int i = from; i < to; i++) {
+            long mid = i + 1;
+            if (i > from) {
+                json.append(',');
+            }
+            json.append("{\"mid\":").append(mid).append(",\"uname\":\"用户").append(mid).append("\",\"tag\":");
+            if (tags == 0 || mid % 3 == 0) {
+                json.append("null");
+            } else {
+                json.append('[').append(mid % tags + 1).append(']');
+            }
+            json.append('}');
+        }
+        json.append("],\"re_version\":0,\"total\":").append(total).append("}}");
+        respond(exchange, json.toString());
+    }
+
+    private void handleTags(HttpExchange exchange) throws IOException {
+        countRequest(exchange);
+        if (tagsLatencyMillis > 0) {
+            try {
+                Thread.sleep(tagsLatencyMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        StringBuilder json = new StringBuilder("{\"code\":0,\"message\":\"0\",\"ttl\":1,\"data\":[");
+        for (int id = 1; id <= tagCount; id++) {
+            if (id > 1) {
+                json.append(',');
+            }
+            json.append("{\"tagid\":").append(id).append(",\"name\":\"分组").append((char) ('A' + (id - 1) % 26))
+                    .append(id).append("\",\"count\":0,\"tip\":\"\"}");
+        }
+        json.append("]}");
+        respond(exchange, json.toString());
+    }
+
+    private void handleRecArchives(HttpExchange exchange) throws IOException {
+        handleArchives(exchange, this::respondRecArchives);
+    }
+
+    // 视频列表接口共用：计数、限流和负载模拟，之后由responder生成内容
+    private void handleArchives(HttpExchange exchange, Responder responder) throws IOException {
+        int count = countRequest(exchange);
+        String path = exchange.getHttpContext().getPath();
+        AtomicInteger active = activeRequests.computeIfAbsent(path, k -> new AtomicInteger());
+        int concurrent = active.incrementAndGet();
+        try {
+            if (isThrottled(count) || isOverloaded(concurrent) || blocked.contains(path) || isOverRate(exchange)) {
+                respond(exchange, "{\"code\":-412,\"message\":\"请求被拦截\"}");
+                return;
+            }
+            simulateLatency(concurrent);
+            responder.respond(exchange);
+        } finally {
+            active.decrementAndGet();
+        }
+    }
+
+    private interface Responder {
+        void respond(HttpExchange exchange) throws IOException;
+    }
+
+    private void respondRecArchives(HttpExchange exchange) throws IOException {
+        Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+        long mid = parseInt(query.get("mid"), 0);
+
+        StringBuilder json = new StringBuilder("{\"code\":0,\"message\":\"0\",\"ttl\":1,\"data\":{");
+        appendArchives(json, mid, "archives", "pubdate");
+        json.append(",\"page\":{\"num\":1,\"size\":20,\"total\":").append(mid % 10 != 0 ? ARCHIVES_PER_USER : 0).append("}}}");
+        respond(exchange, json.toString());
+    }
+
+    private void handleRecArchivesBatch(HttpExchange exchange) throws IOException {
+        handleArchives(exchange, this::respondRecArchivesBatch);
+    }
+
+    private void respondRecArchivesBatch(HttpExchange exchange) throws IOException {
+        String[] mids = parseQuery(exchange.getRequestURI().getRawQuery()).getOrDefault("mids", "").split(",");
+        if (mids.length > BatchArchiveClient.MAX_BATCH_SIZE) {
+            respond(exchange, "{\"code\":-400,\"message\":\"一次最多查询" + BatchArchiveClient.MAX_BATCH_SIZE + "个用户\"}");
+            return;
+        }
+
+        StringBuilder json = new StringBuilder("{\"code\":0,\"message\":\"0\",\"ttl\":1,\"data\":{\"items\":[");
+        boolean first = true;
+        for (String value : mids) {
+            long mid = parseInt(value, 0);
+            if (mid <= 0) {
+                continue;
+            }
+            if (!first) {
+                json.append(',');
+            }
+            first = false;
+            json.append("{\"mid\":").append(mid).append(',');
+            appendArchives(json, mid, "archives", "pubdate");
+            json.append('}');
+        }
+        json.append("]}}");
+        respond(exchange, json.toString());
+    }
+
+    private void handleNav(HttpExchange exchange) throws IOException {
+        countRequest(exchange);
+        respond(exchange, "{\"code\":-101,\"message\":\"账号未登录\",\"ttl\":1,\"data\":{\"isLogin\":false,\"wbi_img\":{"
+                + "\"img_url\":\"https://i0.hdslb.com/bfs/wbi/" + wbiImgKey + ".png\","
+                + "\"sub_url\":\"https://i0.hdslb.com/bfs/wbi/" + wbiSubKey + ".png\"}}}");
+    }
+
+    private void handleSpaceArcSearch(HttpExchange exchange) throws IOException {
+        handleArchives(exchange, this::respondSpaceArcSearch);
+    }
+
+    private void respondSpaceArcSearch(HttpExchange exchange) throws IOException {
+        Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+        if (!isSignatureValid(query)) {
+            respond(exchange, "{\"code\":-403,\"message\":\"访问权限不足\",\"ttl\":1}");
+            return;
+        }
+        long mid = parseInt(query.get("mid"), 0);
+        StringBuilder json = new StringBuilder("{\"code\":0,\"message\":\"0\",\"ttl\":1,\"data\":{\"list\":{\"tlist\":{},");
+        appendArchives(json, mid, "vlist", "created");
+        json.append("},\"page\":{\"pn\":1,\"ps\":").append(parseInt(query.get("ps"), 30))
+                .append(",\"count\":").append(mid % 10 != 0 ? ARCHIVES_PER_USER : 0).append("}}}");
+        respond(exchange, json.toString());
+    }
+
+    // 按与客户端相同的算法重新计算w_rid，时间戳偏差过大也视为无效
+    private boolean isSignatureValid(Map<String, String> query) {
+        Map<String, String> params = new HashMap<>(query);
+        String wRid = params.remove("w_rid");
+        String wts = params.remove("wts");
+        if (wRid == null || wts == null) {
+            return false;
+        }
+        long timestamp;
+        try {
+            timestamp = Long.parseLong(wts);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+        if (Math.abs(System.currentTimeMillis() / 1000 - timestamp) > WBI_MAX_SKEW_SECONDS) {
+            return false;
+        }
+        String signed = WbiSigner.sign(params, WbiSigner.mixinKey(wbiImgKey, wbiSubKey), timestamp);
+        return signed.endsWith("&w_rid=" + wRid);
+    }
+
+    /**
+     * 按mid确定性地生成视频列表，各视频列表接口共用
+     * @param listName 列表字段名，recArchivesByKeywords为archives，空间投稿列表为vlist
+     * @param timeField 发布时间字段名，分别为pubdate和created
+     */
+    private static void appendArchives(StringBuilder json, long mid, String listName, String timeField) {
+        json.append('"').append(listName).append("\":[");
+        if (mid % 10 != 0) {
+            // 最新视频距今0到约4年，按mid确定，便于重复运行时比对结果
+            long now = System.currentTimeMillis() / 1000;
+            // 更新间隔1到60天，也按mid确定
+            long pubdate = now - (mid * 7919 % 1500) * 86400L;
+            long gap = (1 + mid % 60) * 86400L;
+            for (int i = 0; i < ARCHIVES_PER_USER; i++) {
+                if (i > 0) {
+                    json.append(',');
+                }
+                json.append("{\"aid\":").append(mid * 10 + i)
+                        .append(",\"bvid\":\"BVstub").append(mid).append('x').append(i)
+                        .append("\",\"title\":\"用户").append(mid).append("的视频").append(i)
+                        .append("\",\"").append(timeField).append("\":").append(pubdate - i * gap).append('}');
+            }
+        }
+        json.append(']');
+    }
+
+    private static int parseInt(String value, int defaultValue) {
+        try {
+            return value != null ? Integer.parseInt(value) : defaultValue;
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    // 记录请求并返回该接口的第几个请求（从1开始）
+    private int countRequest(HttpExchange exchange) {
+        return requestCounts.computeIfAbsent(exchange.getHttpContext().getPath(), k -> new AtomicInteger()).incrementAndGet();
+    }
+
+    private boolean isThrottled(int count) {
+        int every = throttleEvery;
+        return every > 0 && count % every == 0;
+    }
+
+    // 该出口本秒的请求数是否超过限制
+    private boolean isOverRate(HttpExchange exchange) {
+        int limit = clientRateLimit;
+        if (limit == 0) {
+            return false;
+        }
+        String client = exchange.getRequestHeaders().getFirst("X-Forwarded-For");
+        if (client == null) {
+            client = exchange.getRemoteAddress().getAddress().getHostAddress();
+        }
+        long second = System.currentTimeMillis() / 1000;
+        synchronized (clientWindows) {
+            long[] window = clientWindows.computeIfAbsent(client, k -> new long[2]);
+            if (window[0] != second) {
+                window[0] = second;
+                window[1] = 0;
+            }
+            return ++window[1] > limit;
+        }
+    }
+
+    private boolean isOverloaded(int concurrent) {
+        int max = maxConcurrent;
+        return max > 0 && concurrent > max;
+    }
+
+    // 按当前并发数模拟处理时间：不超过capacity时为latencyMillis，之后每多capacity个请求增加一倍
+    private void simulateLatency(int concurrent) {
+        int latency = latencyMillis;
+        if (latency == 0) {
+            return;
+        }
+        try {
+            Thread.sleep((long) latency * ((concurrent + capacity - 1) / capacity));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    static String readBody(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    static Map<String, String> parseQuery(String query) {
+        Map<String, String> params = new HashMap<>();
+        if (query == null || query.isEmpty()) {
+            return params;
+        }
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            String key = eq >= 0 ? pair.substring(0, eq) : pair;
+            String value = eq >= 0 ? pair.substring(eq + 1) : "";
+            params.put(URLDecoder.decode(key, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return params;
+    }
+
+    static void respond(HttpExchange exchange, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * 单独启动桩服务
+     * 参数：[端口，默认8089] [每N个请求限流一次，默认0] [模拟关注数量，默认0] [分组数量，默认5]
+     */
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8089;
+        LocalApiStub stub = new LocalApiStub(port);
+        if (args.length > 1) {
+            stub.setThrottleEvery(Integer.parseInt(args[1]));
+        }
+        if (args.length > 2) {
+            stub.setFollowings(Integer.parseInt(args[2]), args.length > 3 ? Integer.parseInt(args[3]) : 5);
+        }
+        stub.start();
+        System.out.println("本地API桩服务已启动: " + stub.getBaseUrl());
+        System.out.println("运行主程序时添加参数 -D" + BilibiliApi.BASE_URL_PROPERTY + "=" + stub.getBaseUrl());
+    }
+}
@@ -0,0 +1,39 @@
+package org.example;
+
+import org.junit.jupiter.api.extension.AfterEachCallback;
+import org.junit.jupiter.api.extension.BeforeEachCallback;
+import org.junit.jupiter.api.extension.ExtensionContext;
+
+/**
+ * 测试用的桩服务夹具
+ * 每个测试前在随机端口启动LocalApiStub，并把 bilibili.api.base 指向它；测试后关闭桩服务并恢复原来的API地址。
+ * 用法：@RegisterExtension final LocalApiStubExtension api = new LocalApiStubExtension();
+ */
+class LocalApiStubExtension implements BeforeEachCallback, AfterEachCallback {
+    private LocalApiStub stub;
+    private String previousBaseUrl;
+
+    @Override
+    public void beforeEach(ExtensionContext context) throws Exception {
+        stub = new LocalApiStub(0);
+        stub.start();
+        previousBaseUrl = System.getProperty(BilibiliApi.BASE_URL_PROPERTY);
+        System.setProperty(BilibiliApi.BASE_URL_PROPERTY, stub.getBaseUrl());
+    }
+
+    @Override
+    public void afterEach(ExtensionContext context) {
+        stub.close();
+        stub = null;
+        if (previousBaseUrl != null) {
+            System.setProperty(BilibiliApi.BASE_URL_PROPERTY, previousBaseUrl);
+        } else {
+            System.clearProperty(BilibiliApi.BASE_URL_PROPERTY);
+        }
+    }
+
+    // 当前测试的桩服务
+    LocalApiStub stub() {
+        return stub;
+    }
+}
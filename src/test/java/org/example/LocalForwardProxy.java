@@ -0,0 +1,131 @@
+package org.example;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 本地转发代理
+ * 模拟一个出口代理，与LocalApiStub配合验证代理池的分流、剔除和恢复。
+ * 收到 "GET http://host/path HTTP/1.1" 形式的代理请求后直连目标地址转发，
+ * 并附加 X-Forwarded-For 请求头标明出口，LocalApiStub按该请求头分别计算每个出口的请求速率。
+ * 只支持http目标，不支持CONNECT
+ * 与LocalApiStub一样位于测试代码中，不随 -Pdist 打包
+ */
+public class LocalForwardProxy implements Closeable {
+    private static final int TIMEOUT_MILLIS = 10000;
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final AtomicInteger requestCount = new AtomicInteger();
+    private volatile boolean failing; // 为true时所有请求返回502，模拟代理故障
+
+    /**
+     * @param port 监听端口，0表示随机选择空闲端口
+     * @throws IOException 端口不可用时
+     */
+    public LocalForwardProxy(int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    // 代理地址，可直接作为代理池的一项
+    public String getAddress() {
+        return "127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    // 设置是否模拟故障
+    public void setFailing(boolean failing) {
+        this.failing = failing;
+    }
+
+    // 收到的请求数，包括模拟故障时拒绝的
+    public int getRequestCount() {
+        return requestCount.get();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requestCount.incrementAndGet();
+        URI target = exchange.getRequestURI();
+        if (failing || !"http".equalsIgnoreCase(target.getScheme())) {
+            exchange.sendResponseHeaders(failing ? 502 : 400, -1);
+            exchange.close();
+            return;
+        }
+        HttpURLConnection connection = (HttpURLConnection) target.toURL().openConnection(Proxy.NO_PROXY);
+        try {
+            connection.setRequestMethod(exchange.getRequestMethod());
+            connection.setConnectTimeout(TIMEOUT_MILLIS);
+            connection.setReadTimeout(TIMEOUT_MILLIS);
+            for (Map.Entry<String, List<String>> header : exchange.getRequestHeaders().entrySet()) {
+                String name = header.getKey();
+                if (!"Host".equalsIgnoreCase(name) && !name.toLowerCase().contains("connection")) {
+                    for (String value : header.getValue()) {
+                        connection.addRequestProperty(name, value);
+                    }
+                }
+            }
+            connection.setRequestProperty("X-Forwarded-For", "proxy-" + server.getAddress().getPort());
+            if ("POST".equalsIgnoreCase(exchange.getRequestMethod())) {
+                connection.setDoOutput(true);
+                try (InputStream in = exchange.getRequestBody(); OutputStream out = connection.getOutputStream()) {
+                    in.transferTo(out);
+                }
+            }
+
+            int status = connection.getResponseCode();
+            byte[] body;
+            try (InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+                body = in != null ? in.readAllBytes() : new byte[0];
+            }
+            String contentType = connection.getContentType();
+            if (contentType != null) {
+                exchange.getResponseHeaders().set("Content-Type", contentType);
+            }
+            exchange.sendResponseHeaders(status, body.length > 0 ? body.length : -1);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } catch (IOException e) {
+            exchange.sendResponseHeaders(502, -1);
+            exchange.close();
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    /**
+     * 单独启动代理
+     * 参数：[端口，默认8090]
+     */
+    public static void main(String[] args) throws IOException {
+        LocalForwardProxy proxy = new LocalForwardProxy(args.length > 0 ? Integer.parseInt(args[0]) : 8090);
+        proxy.start();
+        System.out.println("本地转发代理已启动: " + proxy.getAddress());
+        System.out.println("运行主程序时添加参数 -D" + EndpointRouter.PROXIES_PROPERTY + "=" + proxy.getAddress());
+    }
+}
@@ -0,0 +1,63 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 更新规律测试
+ * 最新视频取发布时间最大的(第一个可能是置顶视频)，以及更新规律未知时的停更判断
+ */
+class PostingCadenceTest {
+    private static final long DAY = 86400;
+
+    @Test
+    void latestVideoIsTheOneWithMaxPubdate() throws IOException {
+        // 第一个是较早的置顶视频
+        ArchiveSummary summary = ArchiveSummary.decode(bytes("{\"code\":0,\"data\":{\"archives\":["
+                + "{\"title\":\"置顶\",\"pubdate\":1000,\"bvid\":\"BV1\"},"
+                + "{\"title\":\"最新\",\"pubdate\":5000,\"bvid\":\"BV2\"},"
+                + "{\"title\":\"较早\",\"pubdate\":3000,\"bvid\":\"BV3\"}]}}"));
+
+        assertEquals("最新", summary.getTitle());
+        assertEquals("BV2", summary.getBvid());
+        assertEquals(5000, summary.getPubdate());
+        assertArrayEquals(new int[]{2000, 2000}, summary.getCadence().getGaps());
+        assertArrayEquals(new long[]{5000, 3000, 1000}, summary.getCadence().recentPubdates(summary.getPubdate()));
+    }
+
+    @Test
+    void singleVideoFallsBackToInactiveDays() {
+        long now = System.currentTimeMillis() / 1000;
+        UserData user = new UserData(1, "a", Collections.emptyList(), "唯一的视频", now - 400 * DAY, "BV1");
+        assertNull(user.getCadence());
+
+        assertTrue(user.isProbablyDormant(365));
+        assertFalse(user.isProbablyDormant(500));
+        assertFalse(user.isProbablyDormant(0));
+        assertTrue(DataExporter.filterFor("导出可能停更", 365).test(user));
+    }
+
+    @Test
+    void cadenceDecidesWhenKnown() {
+        long now = System.currentTimeMillis() / 1000;
+        UserData user = new UserData(1, "a", Collections.emptyList(), "视频", now - 400 * DAY, "BV1");
+        // 每年更新一次，400天没有新视频还不算停更；阈值不影响有规律的用户
+        user.setCadence(PostingCadence.ofGaps(new int[]{(int) (365 * DAY), (int) (365 * DAY)}));
+
+        assertFalse(user.isProbablyDormant(365));
+        assertTrue(new UserData(2, "b", Collections.emptyList()).isProbablyDormant(0));
+    }
+
+    private static byte[] bytes(String json) {
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+}
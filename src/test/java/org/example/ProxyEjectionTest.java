@@ -0,0 +1,67 @@
+package org.example;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 代理路线剔除与恢复测试
+ * 经由LocalForwardProxy访问本地桩服务，代理故障时连续失败3次后剔除，恢复后由健康检查(每5秒)重新加入
+ */
+class ProxyEjectionTest {
+    private static final String KEYWORDS = "/x/series/recArchivesByKeywords";
+
+    @RegisterExtension
+    final LocalApiStubExtension api = new LocalApiStubExtension();
+    private LocalForwardProxy proxy;
+
+    @BeforeEach
+    void startProxy() throws IOException {
+        proxy = new LocalForwardProxy(0);
+        proxy.start();
+    }
+
+    @AfterEach
+    void stopProxy() {
+        proxy.close();
+    }
+
+    @Test
+    void failingProxyIsEjectedAndReadmittedByHealthCheck() throws IOException {
+        try (EndpointRouter router = EndpointRouter.parse("keywords", proxy.getAddress())) {
+            proxy.setFailing(true);
+            for (long mid = 1; mid <= 3; mid++) {
+                assertFalse(router.toString().contains("已剔除"), router.toString());
+                fetchIgnoringErrors(router, mid);
+            }
+            assertTrue(router.toString().contains("已剔除"), router.toString());
+            assertEquals(0, api.stub().getRequestCount(KEYWORDS));
+
+            // 代理恢复后，等待中的请求在健康检查重新加入路线时继续
+            proxy.setFailing(false);
+            long start = System.currentTimeMillis();
+            router.setDeadline(start + 15000);
+            byte[] body = router.fetch(new long[]{4}).get(4);
+
+            assertTrue(ArchiveSummary.isUsable(body));
+            assertTrue(System.currentTimeMillis() - start < 15000);
+            assertFalse(router.toString().contains("已剔除"), router.toString());
+        }
+        assertEquals(1, api.stub().getRequestCount(KEYWORDS));
+    }
+
+    // 代理故障时请求可能抛出异常，也可能返回无法使用的内容，都记为该路线失败
+    private static void fetchIgnoringErrors(EndpointRouter router, long mid) {
+        try {
+            router.fetch(new long[]{mid});
+        } catch (IOException ignored) {
+        }
+    }
+}
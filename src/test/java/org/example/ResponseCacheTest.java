@@ -0,0 +1,90 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * 响应缓存测试
+ * 过期后返回旧内容并在后台刷新，刷新得到错误响应时保留旧内容
+ */
+class ResponseCacheTest {
+    private static final byte[] OK = bytes("{\"code\":0,\"data\":{\"archives\":[{\"title\":\"a\",\"pubdate\":100}]}}");
+    private static final byte[] THROTTLED = bytes("{\"code\":-412,\"message\":\"请求被拦截\"}");
+    private static final byte[] REFRESHED = bytes("{\"code\":0,\"data\":{\"archives\":[{\"title\":\"b\",\"pubdate\":200}]}}");
+
+    @Test
+    void failedRevalidationKeepsStaleEntry() throws Exception {
+        ResponseCache cache = new ResponseCache(null, 1024 * 1024, 1, TimeUnit.HOURS.toMillis(1));
+        FixedSource source = new FixedSource(OK);
+        LongObjectMap<byte[]> bodies = new LongObjectMap<>();
+        cache.getAll(new long[]{1}, source, bodies);
+        Thread.sleep(5); // 等条目过期
+
+        // 后台刷新被限流：旧内容不被替换，仍作为旧内容返回，下次命中时再次刷新
+        source.body = THROTTLED;
+        for (int i = 0; i < 2; i++) {
+            bodies = new LongObjectMap<>();
+            assertFalse(cache.getAll(new long[]{1}, source, bodies));
+            assertArrayEquals(OK, bodies.get(1));
+            cache.awaitRevalidation(5000);
+        }
+        assertEquals(3, source.requests);
+        assertEquals(2, cache.getStaleHits());
+
+        // 刷新成功后使用新内容
+        source.body = REFRESHED;
+        cache.getAll(new long[]{1}, source, new LongObjectMap<>());
+        cache.awaitRevalidation(5000);
+        bodies = new LongObjectMap<>();
+        cache.getAll(new long[]{1}, source, bodies);
+        assertArrayEquals(REFRESHED, bodies.get(1));
+    }
+
+    // 每次请求都返回同一份内容
+    private static final class FixedSource implements ActivitySource {
+        volatile byte[] body;
+        volatile int requests;
+
+        FixedSource(byte[] body) {
+            this.body = body;
+        }
+
+        @Override
+        public int getBatchSize() {
+            return 1;
+        }
+
+        @Override
+        public LongObjectMap<byte[]> fetch(long[] mids) {
+            requests++;
+            LongObjectMap<byte[]> bodies = new LongObjectMap<>();
+            for (long mid : mids) {
+                bodies.put(mid, body);
+            }
+            return bodies;
+        }
+
+        @Override
+        public void setDeadline(long deadlineMillis) {
+        }
+
+        @Override
+        public long getRequestCount() {
+            return requests;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static byte[] bytes(String json) {
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+}
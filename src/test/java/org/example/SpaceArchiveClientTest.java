@@ -0,0 +1,57 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 空间投稿列表客户端测试
+ * 对照本地桩服务验证WBI密钥的缓存，以及签名被拒绝(-403)后重新获取密钥
+ */
+class SpaceArchiveClientTest {
+    private static final String NAV = "/x/web-interface/nav";
+    private static final String SPACE = "/x/space/wbi/arc/search";
+
+    @RegisterExtension
+    final LocalApiStubExtension api = new LocalApiStubExtension();
+
+    @Test
+    void loadConvertsToRecArchivesFormatAndCachesKeys() throws IOException {
+        try (SpaceArchiveClient client = new SpaceArchiveClient()) {
+            ArchiveSummary withVideos = ArchiveSummary.decode(client.load(1));
+            ArchiveSummary withoutVideos = ArchiveSummary.decode(client.load(10));
+
+            assertEquals(0, withVideos.getCode());
+            assertTrue(withVideos.hasVideos());
+            assertTrue(withVideos.getPubdate() > 0);
+            assertEquals(0, withoutVideos.getCode());
+            assertFalse(withoutVideos.hasVideos());
+            assertEquals(2, client.getRequestCount());
+        }
+        // 密钥只获取一次
+        assertEquals(1, api.stub().getRequestCount(NAV));
+        assertEquals(2, api.stub().getRequestCount(SPACE));
+    }
+
+    @Test
+    void loadRefreshesKeysWhenSignatureRejected() throws IOException {
+        try (SpaceArchiveClient client = new SpaceArchiveClient()) {
+            assertEquals(0, ArchiveSummary.decode(client.load(1)).getCode());
+
+            api.stub().setWbiKeys("653657f524a547ac981ded72ea172057", "6e4909c702f846728e64f6007736a338");
+            ArchiveSummary summary = ArchiveSummary.decode(client.load(2));
+
+            assertEquals(0, summary.getCode());
+            assertTrue(summary.hasVideos());
+            // 旧密钥签名的请求被拒绝一次，重新获取密钥后重试成功
+            assertEquals(3, client.getRequestCount());
+        }
+        assertEquals(2, api.stub().getRequestCount(NAV));
+        assertEquals(3, api.stub().getRequestCount(SPACE));
+    }
+}
@@ -0,0 +1,115 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 批量取消关注测试
+ * 对照本地桩服务验证演练模式、csrf、被限流时的退避重试和结果日志
+ */
+class UnfollowExecutorTest {
+    private static final String MODIFY = "/x/relation/modify";
+    private static final String COOKIE = "SESSDATA=test; bili_jct=0123456789abcdef";
+
+    @RegisterExtension
+    final LocalApiStubExtension api = new LocalApiStubExtension();
+
+    @TempDir
+    File directory;
+
+    @Test
+    void dryRunSendsNoRequests() throws Exception {
+        UnfollowExecutor executor = new UnfollowExecutor(api.stub().getBaseUrl(), "", 2, 0, 100, 3, true);
+        List<UnfollowResult> results = executor.run(users(1, 2, 3), null, null);
+
+        assertEquals(3, results.size());
+        for (UnfollowResult result : results) {
+            assertEquals(UnfollowResult.Status.DRY_RUN, result.getStatus());
+            assertEquals(0, result.getAttempts());
+        }
+        assertEquals(0, api.stub().getRequestCount(MODIFY));
+        assertTrue(api.stub().getUnfollowed().isEmpty());
+    }
+
+    @Test
+    void cookieWithoutCsrfIsRejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new UnfollowExecutor(api.stub().getBaseUrl(), "SESSDATA=test", 2, 0, 100, 3, false));
+        assertThrows(IllegalArgumentException.class,
+                () -> new UnfollowExecutor(api.stub().getBaseUrl(), null, 2, 0, 100, 3, false));
+        assertEquals(0, api.stub().getRequestCount(MODIFY));
+    }
+
+    @Test
+    void throttledRequestIsRetriedUntilSuccess() throws Exception {
+        api.stub().setThrottleEvery(2); // 第2个请求返回-412
+        UnfollowExecutor executor = new UnfollowExecutor(api.stub().getBaseUrl(), COOKIE, 10, 0, 100, 3, false);
+        long start = System.currentTimeMillis();
+        List<UnfollowResult> results = executor.run(users(1, 2), null, null);
+
+        assertEquals(UnfollowResult.Status.SUCCESS, results.get(0).getStatus());
+        assertEquals(1, results.get(0).getAttempts());
+        assertEquals(UnfollowResult.Status.SUCCESS, results.get(1).getStatus());
+        assertEquals(2, results.get(1).getAttempts());
+        assertEquals(3, api.stub().getRequestCount(MODIFY));
+        assertEquals(Set.of(1L, 2L), api.stub().getUnfollowed());
+        // 重试前退避至少1秒
+        assertTrue(System.currentTimeMillis() - start >= 1000);
+    }
+
+    @Test
+    void retriesStopAtMaxRetries() throws Exception {
+        api.stub().setThrottleEvery(1); // 每个请求都被限流
+        UnfollowExecutor executor = new UnfollowExecutor(api.stub().getBaseUrl(), COOKIE, 10, 0, 100, 1, false);
+        UnfollowResult result = executor.run(users(7), null, null).get(0);
+
+        assertEquals(UnfollowResult.Status.FAILED, result.getStatus());
+        assertEquals(-412, result.getCode());
+        assertEquals(2, result.getAttempts()); // 首次请求加1次重试
+        assertEquals(2, api.stub().getRequestCount(MODIFY));
+        assertFalse(api.stub().getUnfollowed().contains(7L));
+    }
+
+    @Test
+    void logHasOneCrlfRowPerUserInInputOrder() throws Exception {
+        File logFile = new File(directory, "unfollow.csv");
+        UnfollowExecutor executor = new UnfollowExecutor(api.stub().getBaseUrl(), COOKIE, 2, 0, 100, 0, false);
+        executor.run(users(5, 3, 9), logFile, null);
+
+        String log = new String(Files.readAllBytes(logFile.toPath()), StandardCharsets.UTF_8);
+        assertTrue(log.startsWith("\uFEFFUID,"));
+        assertTrue(log.endsWith("\r\n"));
+        assertFalse(log.replace("\r\n", "").contains("\n"), "只用CRLF结束记录");
+        String[] lines = log.substring(1).split("\r\n");
+        assertEquals(4, lines.length);
+        List<String> uids = new ArrayList<>();
+        for (int i = 1; i < lines.length; i++) {
+            uids.add(lines[i].substring(0, lines[i].indexOf(',')));
+            assertTrue(lines[i].contains("," + UnfollowResult.Status.SUCCESS + ",0,"), lines[i]);
+        }
+        assertArrayEquals(new String[]{"5", "3", "9"}, uids.toArray());
+    }
+
+    private static List<UserData> users(long... uids) {
+        List<UserData> users = new ArrayList<>();
+        for (long uid : uids) {
+            users.add(new UserData(uid, "用户" + uid, Collections.emptyList()));
+        }
+        return users;
+    }
+}
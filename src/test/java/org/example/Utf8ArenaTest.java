@@ -0,0 +1,66 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * UTF-8字符串存储区测试
+ * 块刚好写满时存放空字符串，以及写出和解码
+ */
+class Utf8ArenaTest {
+    private static final int MAX_CHUNK_SIZE = 1 << 20;
+
+    @Test
+    void emptyStringAfterFullMaxChunk() throws IOException {
+        Utf8Arena arena = new Utf8Arena();
+        // 依次写满64KB、128KB、256KB、512KB和1MB的块；单个字符串不超过1MB-1，每块分两次写
+        for (int chunkSize = 64 * 1024; chunkSize <= MAX_CHUNK_SIZE; chunkSize *= 2) {
+            arena.add(new byte[chunkSize / 2], 0, chunkSize / 2);
+            arena.add(new byte[chunkSize / 2], 0, chunkSize / 2);
+        }
+        assertEquals(arena.capacity(), arena.size());
+        long empty = arena.add("");
+        long emptyFromBuffer = arena.add(ByteBuffer.allocate(0), 0);
+
+        // 在下一个块分配之前写出，引用不能指向不存在的块
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        arena.writeTo(empty, out);
+        arena.writeTo(emptyFromBuffer, out);
+        assertEquals(0, out.size());
+        assertEquals("", arena.get(empty));
+        assertEquals("", arena.get(emptyFromBuffer));
+
+        long after = arena.add("标题");
+        assertEquals("标题", arena.get(after));
+        arena.writeTo(after, out);
+        assertEquals("标题", out.toString("UTF-8"));
+    }
+
+    @Test
+    void emptyStringInNewArena() throws IOException {
+        Utf8Arena arena = new Utf8Arena();
+        long empty = arena.add("");
+
+        assertEquals("", arena.get(empty));
+        arena.writeTo(empty, new ByteArrayOutputStream());
+        assertEquals(0, arena.size());
+        assertEquals(0, arena.capacity());
+    }
+
+    @Test
+    void nullIsKeptApartFromEmpty() throws IOException {
+        Utf8Arena arena = new Utf8Arena();
+        assertEquals(Utf8Arena.NULL, arena.add((String) null));
+        assertNull(arena.get(Utf8Arena.NULL));
+        assertEquals(0, Utf8Arena.length(Utf8Arena.NULL));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        arena.writeTo(Utf8Arena.NULL, out);
+        assertEquals(0, out.size());
+    }
+}
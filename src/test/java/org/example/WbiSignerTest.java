@@ -0,0 +1,42 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * WBI签名测试
+ * 对照公开文档中的示例：img_key、sub_key与LocalApiStub使用的相同
+ */
+class WbiSignerTest {
+    private static final String MIXIN_KEY = "ea1db124af3c7062474693fa704f4ff8";
+
+    @Test
+    void mixinKeyMatchesPublishedExample() {
+        assertEquals(MIXIN_KEY, WbiSigner.mixinKey(LocalApiStub.WBI_IMG_KEY, LocalApiStub.WBI_SUB_KEY));
+    }
+
+    @Test
+    void signMatchesPublishedExample() {
+        Map<String, String> params = new LinkedHashMap<>();
+        params.put("foo", "114");
+        params.put("bar", "514");
+        params.put("zab", "1919810");
+
+        assertEquals("bar=514&foo=114&wts=1702204169&zab=1919810&w_rid=8f6f2b5b3d485fe1886cec6a0be8c5d4",
+                WbiSigner.sign(params, MIXIN_KEY, 1702204169));
+    }
+
+    @Test
+    void signEncodesLikeEncodeURIComponentAndDropsReservedCharacters() {
+        Map<String, String> params = new HashMap<>();
+        params.put("keyword", "a b~(c)!*'");
+
+        String query = WbiSigner.sign(params, MIXIN_KEY, 1);
+        assertEquals("keyword=a%20b~c&wts=1", query.substring(0, query.indexOf("&w_rid=")));
+    }
+}